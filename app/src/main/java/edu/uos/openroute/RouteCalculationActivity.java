@@ -2,16 +2,29 @@ package edu.uos.openroute;
 
 import android.app.Activity;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Parcelable;
 import android.support.v7.app.AppCompatActivity;
+import edu.uos.openroute.routing.CachingRoadManager;
+import edu.uos.openroute.routing.FallbackRoadManager;
+import edu.uos.openroute.routing.HedgedTransport;
+import edu.uos.openroute.routing.OfflineRoadManager;
 import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.ParallelLegRoadManager;
+import edu.uos.openroute.routing.RequestContext;
+import edu.uos.openroute.routing.RouteCache;
+import edu.uos.openroute.routing.RouteStore;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.RoutingExecutor;
 import edu.uos.openroute.util.Position;
 import org.osmdroid.bonuspack.routing.Road;
 import org.osmdroid.bonuspack.routing.RoadManager;
 import org.osmdroid.util.GeoPoint;
 
+import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
 /**
  * This activity calculates a route between two points in the background while showing an waiting animation.
@@ -23,6 +36,17 @@ public class RouteCalculationActivity extends AppCompatActivity {
      */
     public final static String START = "START", DESTINATION = "DESTINATION", PROFILE = "PROFILE";
 
+    /**
+     * Named constant for the optional intermediate waypoints (an array of positions) provided in the bundle on create.
+     */
+    public final static String WAYPOINTS = "WAYPOINTS";
+
+    // The time a calculation may take at most in milliseconds, including all network round trips.
+    private final static long DEADLINE = 30000;
+
+    // The running calculation, cancelled if the activity is left.
+    private RequestContext calculation = null;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -34,13 +58,33 @@ public class RouteCalculationActivity extends AppCompatActivity {
             Position start = (Position) data.get(START);
             Position destination = (Position) data.get(DESTINATION);
             OpenRouteServiceManager.Profile profile = (OpenRouteServiceManager.Profile) data.get(PROFILE);
+            Parcelable[] waypoints = data.getParcelableArray(WAYPOINTS);
 
             // Check all required data is available ...
             if (start != null && destination != null && profile != null) {
-                RoadManager roadManager = new OpenRouteServiceManager(getString(R.string.OpenRouteServiceAPIKey), profile);
+                // Send the requests to the configured backends ...
+                HedgedTransport transport;
+                try {
+                    transport = HedgedTransport.getInstance(this);
+                } catch (MalformedURLException invalid) {
+                    throw new IllegalStateException("The configured routing backends are invalid!", invalid);
+                }
+
+                // ... and answer repeated requests from the persistent cache. Long trips are requested in parts concurrently.
+                RoadManager roadManager = new ParallelLegRoadManager(new CachingRoadManager(
+                        new OpenRouteServiceManager(getString(R.string.OpenRouteServiceAPIKey), profile, transport),
+                        RouteCache.getInstance(this)
+                ), ParallelLegRoadManager.DEFAULT_WAYPOINTS_PER_REQUEST);
+
+                // ... and calculate the route on the device if the service is not reachable and a road graph is available.
+                OfflineRoadManager offline = OfflineRoadManager.create(this, profile);
+                if (offline != null) {
+                    roadManager = new FallbackRoadManager(roadManager, offline);
+                }
 
                 // ... and start the calculate asynchronously in background.
-                new RouteCalculator(this, start, destination, roadManager).execute();
+                RouteCalculator calculator = new RouteCalculator(this, start, waypoints, destination, profile, roadManager, RouteStore.getInstance(this));
+                this.calculation = RoutingExecutor.getInstance().submit(DEADLINE, calculator, calculator, calculator);
                 return;
             }
         }
@@ -49,48 +93,93 @@ public class RouteCalculationActivity extends AppCompatActivity {
         throw new IllegalArgumentException("Required extras for the activity are missing!");
     }
 
+    @Override
+    protected void onDestroy() {
+        // Abort the calculation, its result would not be shown anyway.
+        if (this.calculation != null) {
+            this.calculation.cancel();
+            this.calculation = null;
+        }
+        super.onDestroy();
+    }
+
     /**
      * The asynchronously route calculation running in the background.
      */
-    private static class RouteCalculator extends AsyncTask<Void, Void, Road> {
+    private static class RouteCalculator implements Callable<long[]>, RoutingExecutor.Callback<long[]>, RoutingExecutor.Cleanup<long[]> {
         private final RoadManager roadManager;
+        private final RouteStore store;
         private final Position start, destination;
+        private final Parcelable[] waypoints;
+        private final OpenRouteServiceManager.Profile profile;
         private Activity activity;
 
-        public RouteCalculator(Activity parent, Position start, Position destination, RoadManager roadManager) {
+        public RouteCalculator(Activity parent, Position start, Parcelable[] waypoints, Position destination, OpenRouteServiceManager.Profile profile,
+                               RoadManager roadManager, RouteStore store) {
             this.start = start;
+            this.waypoints = waypoints;
             this.destination = destination;
+            this.profile = profile;
             this.roadManager = roadManager;
+            this.store = store;
             this.activity = parent;
         }
 
         @Override
-        protected Road doInBackground(Void... nothing) {
-            // Prepare the inputs
+        public long[] call() throws RoutingException {
+            // Prepare the inputs, including all intermediate waypoints
             ArrayList<GeoPoint> points = new ArrayList<>();
             points.add(start.toGeoPoint());
+            if (waypoints != null) {
+                for (Parcelable waypoint : waypoints) {
+                    points.add(((Position) waypoint).toGeoPoint());
+                }
+            }
             points.add(destination.toGeoPoint());
 
-            // Calculate the route
-            return roadManager.getRoad(points);
+            // Calculate the route and its alternatives, the fastest one first
+            Road[] roads = roadManager.getRoads(points);
+            if (roads == null || roads.length == 0 || roads[0] == null) {
+                throw new RoutingException("Unable to calculate the route", null, false);
+            }
+
+            // Hand the routes over by handles instead of parceling them. The alternatives stay packed until one is selected.
+            long[] handles = new long[roads.length];
+            int count = 0;
+            for (Road road : roads) {
+                if (count == 0 || road.mStatus == Road.STATUS_OK) {
+                    handles[count++] = store.put(road);
+                }
+            }
+            return Arrays.copyOf(handles, count);
         }
 
         @Override
-        protected void onPostExecute(Road road) {
-            // If the calculation was not successful ...
-            if (road == null) {
-                // ... return to the previous activity with indication that there was a problem ...
-                this.activity.setResult(-1);
-                this.activity.finish();
-                this.activity = null;
-                return;
+        public void onUndelivered(long[] roads) {
+            // The activity was left in the meantime, so nobody takes the roads out of the store.
+            for (long road : roads) {
+                store.release(road);
             }
+        }
 
-            // ... , otherwise visualize the route in a new activity.
+        @Override
+        public void onFailure(Exception cause) {
+            // If the calculation was not successful, return to the previous activity with indication that there was a problem ...
+            this.activity.setResult(-1);
+            this.activity.finish();
+            this.activity = null;
+        }
+
+        @Override
+        public void onSuccess(long[] roads) {
+            // ... , otherwise visualize the route and its alternatives in a new activity.
             Intent viewIntent = new Intent(activity, RouteViewer.class);
-            viewIntent.putExtra(RouteViewer.ROAD, road);
+            viewIntent.putExtra(RouteViewer.ROAD, roads[0]);
+            viewIntent.putExtra(RouteViewer.ALTERNATIVES, Arrays.copyOfRange(roads, 1, roads.length));
             viewIntent.putExtra(RouteViewer.START, start);
             viewIntent.putExtra(RouteViewer.DESTINATION, destination);
+            viewIntent.putExtra(RouteViewer.PROFILE, profile);
+            viewIntent.putExtra(RouteViewer.WAYPOINTS, waypoints);
             activity.startActivity(viewIntent);
         }
     }
@@ -6,6 +6,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.Toast;
 import edu.uos.openroute.gui.CoordinateControl;
 import edu.uos.openroute.gui.ProfileSpinner;
@@ -23,6 +24,7 @@ public class RouteInputActivity extends AppCompatActivity {
     private static final int CALCULATION_REQUEST_CODE = 42;
 
     private CoordinateControl start, destination;
+    private EditText waypoints;
     private ProfileSpinner profile;
 
     @Override
@@ -33,6 +35,7 @@ public class RouteInputActivity extends AppCompatActivity {
         // Group the widgets by their semantic role using independent "controllers"
         this.start = new CoordinateControl(this, R.id.input_start_latitude, R.id.input_start_longitude, R.id.btn_set_start);
         this.destination = new CoordinateControl(this, R.id.input_destination_latitude, R.id.input_destination_longitude, R.id.btn_set_destination);
+        this.waypoints = this.findViewById(R.id.input_waypoints);
         this.profile = new ProfileSpinner(this, R.id.spinner_profile);
 
         // Add the actual functionality
@@ -42,12 +45,15 @@ public class RouteInputActivity extends AppCompatActivity {
                 // Parse the given positions
                 Position start = RouteInputActivity.this.start.getPosition();
                 Position destination = RouteInputActivity.this.destination.getPosition();
+                Position[] waypoints = Position.listFromString(RouteInputActivity.this.waypoints.getText().toString());
 
                 // Check the positions for validity ...
                 if (start == null) {
                     Toast.makeText(RouteInputActivity.this, R.string.start_invalid, LENGTH_SHORT).show();
                 } else if (destination == null) {
                     Toast.makeText(RouteInputActivity.this, R.string.destination_invalid, LENGTH_SHORT).show();
+                } else if (waypoints == null) {
+                    Toast.makeText(RouteInputActivity.this, R.string.waypoints_invalid, LENGTH_SHORT).show();
                 } else if (start.distance(destination) < 0.0001) {
                     Toast.makeText(RouteInputActivity.this, R.string.distance_invalid, LENGTH_SHORT).show();
                 } else {
@@ -55,6 +61,7 @@ public class RouteInputActivity extends AppCompatActivity {
                     Intent viewIntent = new Intent(RouteInputActivity.this, RouteCalculationActivity.class);
                     viewIntent.putExtra(RouteCalculationActivity.START, start);
                     viewIntent.putExtra(RouteCalculationActivity.DESTINATION, destination);
+                    viewIntent.putExtra(RouteCalculationActivity.WAYPOINTS, waypoints);
                     viewIntent.putExtra(RouteCalculationActivity.PROFILE, RouteInputActivity.this.profile.getProfile());
                     RouteInputActivity.this.startActivityForResult(viewIntent, CALCULATION_REQUEST_CODE);
                 }
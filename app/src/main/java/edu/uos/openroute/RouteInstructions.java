@@ -1,26 +1,40 @@
 package edu.uos.openroute;
 
+import android.content.Context;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
-import android.util.TypedValue;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
-import android.widget.ListAdapter;
-import android.widget.ListView;
-import android.widget.TextView;
-import edu.uos.openroute.util.Position;
-import org.osmdroid.bonuspack.routing.Road;
-import org.osmdroid.bonuspack.routing.RoadNode;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import edu.uos.openroute.gui.InstructionAdapter;
+import edu.uos.openroute.routing.CompactRoute;
+import edu.uos.openroute.routing.RequestContext;
+import edu.uos.openroute.routing.RouteStore;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.RoutingExecutor;
+
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * This activity shows the instructions in an linerar way.
  */
-public class RouteInstructions extends AppCompatActivity {
+public class RouteInstructions extends AppCompatActivity implements RouteStore.OnReplaceListener {
 
-    // Named constants for required data of the activity provided in the bundle on create.
+    // Named constants for required data of the activity provided in the bundle on create: The handle of the road in the store.
     public final static String ROAD = "ROAD";
 
+    // Name for the used logger.
+    private final static String LOGGER_ID = "RouteInstructions";
+
+    // The time creating the labels of all steps may take at most in milliseconds.
+    private final static long LABELING_TIMEOUT = 10000;
+
+    private final InstructionAdapter adapter = new InstructionAdapter();
+    private long handle;
+    private RequestContext labeling = null;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -29,13 +43,18 @@ public class RouteInstructions extends AppCompatActivity {
         // Load the required road of the activity and fail otherwise.
         Bundle data = this.getIntent().getExtras();
         if (data != null) {
-            Road road = (Road) data.get(ROAD);
-            if (road != null) {
-                // Create a usable model for the ModelViewController pattern
-                ListAdapter model = this.getModel(road);
+            this.handle = (savedInstanceState != null ? savedInstanceState : data).getLong(ROAD, RouteStore.NO_HANDLE);
+            if (this.handle != RouteStore.NO_HANDLE) {
+                // Set the model and controller to the view, the steps follow once the road is loaded and labeled
+                RecyclerView list = findViewById(R.id.instruction_list);
+                list.setHasFixedSize(true);
+                list.setLayoutManager(new LinearLayoutManager(this));
+                list.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+                list.setAdapter(this.adapter);
+                this.showRoute(this.handle);
 
-                // Set the model and controller to the view
-                ((ListView)findViewById(R.id.instruction_list)).setAdapter(model);
+                // Follow the road once it is replaced, i.e. after the user left it
+                RouteStore.getInstance(this).addOnReplaceListener(this);
                 return;
             }
         }
@@ -43,33 +62,70 @@ public class RouteInstructions extends AppCompatActivity {
         throw new IllegalArgumentException("Required extras for the activity are missing!");
     }
 
-    /**
-     * Create the model and controller for a ListView.
-     * @param road The route of interest.
-     * @return a suitable adapter.
-     */
-    private ListAdapter getModel(Road road) {
-        // Overwrite the ArrayAdapter for custom labels
-        return new ArrayAdapter<RoadNode>(this, android.R.layout.simple_list_item_2, android.R.id.text1, road.mNodes) {
-            @Override
-            public View getView(int position, View convertView, ViewGroup parent) {
-                // Let the superclass make the heavy load
-                View view = super.getView(position, convertView, parent);
+    @Override
+    protected void onDestroy() {
+        RouteStore.getInstance(this).removeOnReplaceListener(this);
+        if (this.labeling != null) {
+            this.labeling.cancel();
+            this.labeling = null;
+        }
+        super.onDestroy();
+    }
 
-                // Find the widgets of the Android default layout "simple_list_item_2"
-                TextView text1 = view.findViewById(android.R.id.text1);
-                TextView text2 = view.findViewById(android.R.id.text2);
+    @Override
+    public void onReplace(long previous, long handle) {
+        if (previous != this.handle) {
+            return;
+        }
+        this.handle = handle;
 
-                // Get the node of interest
-                RoadNode node = (RoadNode)this.getItem(position);
+        // The replaced road is released, so a recreated activity has to show the new one.
+        this.getIntent().putExtra(ROAD, handle);
+        this.showRoute(handle);
+    }
 
-                // Set the text and ensure the second text is smaller
-                text1.setText(node.mInstructions);
-                text2.setText(Road.getLengthDurationText(RouteInstructions.this, node.mLength, node.mDuration));
-                text2.setTextSize(TypedValue.COMPLEX_UNIT_DIP,12);
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(ROAD, this.handle);
+    }
+
+    /**
+     * Show the steps of a route instead of the current ones, loading the route and creating the labels and the changes
+     * in the background.
+     *
+     * @param handle The handle of the route in the store.
+     */
+    private void showRoute(final long handle) {
+        // A pending update would not be based on the steps shown anymore.
+        if (this.labeling != null) {
+            this.labeling.cancel();
+        }
 
-                return view;
+        final Context context = this.getApplicationContext();
+        final RouteStore store = RouteStore.getInstance(this);
+        final List<InstructionAdapter.Step> current = this.adapter.getSteps();
+        this.labeling = RoutingExecutor.getInstance().submit(LABELING_TIMEOUT, new Callable<InstructionAdapter.Update>() {
+            @Override
+            public InstructionAdapter.Update call() throws RoutingException {
+                CompactRoute route = store.getCompact(handle);
+                if (route == null) {
+                    throw new RoutingException("The route is not available anymore", null, false);
+                }
+                return InstructionAdapter.prepare(context, route, current);
+            }
+        }, new RoutingExecutor.Callback<InstructionAdapter.Update>() {
+            @Override
+            public void onSuccess(InstructionAdapter.Update update) {
+                RouteInstructions.this.labeling = null;
+                RouteInstructions.this.adapter.apply(update);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                RouteInstructions.this.labeling = null;
+                Log.w(LOGGER_ID, "Unable to prepare the instructions", cause);
             }
-        };
+        });
     }
 }
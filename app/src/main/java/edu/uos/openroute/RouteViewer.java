@@ -2,38 +2,120 @@ package edu.uos.openroute;
 
 import android.content.Context;
 import android.content.Intent;
+import android.location.Location;
 import android.os.Bundle;
+import android.os.Parcelable;
 import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
 import android.widget.Toast;
+import edu.uos.openroute.gui.RouteOverlay;
+import edu.uos.openroute.gui.StepMarkerLayer;
+import edu.uos.openroute.gui.TilePrefetcher;
+import edu.uos.openroute.routing.CompactRoute;
+import edu.uos.openroute.routing.FallbackRoadManager;
+import edu.uos.openroute.routing.HedgedTransport;
+import edu.uos.openroute.routing.NavigationProgress;
+import edu.uos.openroute.routing.OffRouteDetector;
+import edu.uos.openroute.routing.OfflineRoadManager;
+import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.ParallelLegRoadManager;
+import edu.uos.openroute.routing.OpenRouteServiceRoad;
+import edu.uos.openroute.routing.RequestContext;
+import edu.uos.openroute.routing.RouteGeometry;
+import edu.uos.openroute.routing.RouteIndex;
+import edu.uos.openroute.routing.RouteStore;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.RoutingExecutor;
+import edu.uos.openroute.util.LocationAccess;
+import edu.uos.openroute.util.NavigationSession;
 import edu.uos.openroute.util.Position;
 import org.osmdroid.bonuspack.routing.Road;
 import org.osmdroid.bonuspack.routing.RoadManager;
-import org.osmdroid.bonuspack.routing.RoadNode;
 import org.osmdroid.config.Configuration;
 import org.osmdroid.events.MapEventsReceiver;
-import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.tileprovider.MapTileProviderBase;
+import org.osmdroid.tileprovider.MapTileProviderBasic;
+import org.osmdroid.tileprovider.modules.IFilesystemCache;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
 import org.osmdroid.views.overlay.Marker;
+import org.osmdroid.views.overlay.Overlay;
 import org.osmdroid.views.overlay.Polyline;
 import org.osmdroid.views.overlay.infowindow.InfoWindow;
 
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 /**
  * This activity visualizes a calculated road on an interactive map.
  */
-public class RouteViewer extends AppCompatActivity implements MapView.OnFirstLayoutListener, MapEventsReceiver {
+public class RouteViewer extends AppCompatActivity implements MapView.OnFirstLayoutListener, MapEventsReceiver, NavigationSession.Listener {
 
     /**
-     * Named constants for required data of the activity provided in the bundle on create.
+     * Named constants for required data of the activity provided in the bundle on create. The road is given by its
+     * handle in the {@link RouteStore}.
      */
     public static final String ROAD = "ROAD", START = "DESTINATION", DESTINATION = "START";
 
+    /**
+     * Named constants for optional data of the activity: The profile the road was calculated with, required for
+     * calculating a new road once the user left it, the intermediate waypoints (an array of positions) and the handles
+     * of alternative roads in the {@link RouteStore}, which the user may select instead.
+     */
+    public static final String PROFILE = "PROFILE", WAYPOINTS = "WAYPOINTS", ALTERNATIVES = "ALTERNATIVES";
+
+    // The time loading the road, indexing it for following it and calculating a new one may take at most in milliseconds.
+    private static final long LOADING_DEADLINE = 10000, INDEXING_DEADLINE = 30000, REROUTING_DEADLINE = 15000;
+
+    // Prefetching the tiles along the road: The width of the corridor to each side in meters, the zoom levels, the
+    // limits and the time it may take at most in milliseconds.
+    private static final double PREFETCH_BUFFER = 500;
+    private static final int PREFETCH_MIN_ZOOM = 10, PREFETCH_MAX_ZOOM = 16, PREFETCH_MAX_TILES = 5000, PREFETCH_PARALLELISM = 2;
+    private static final long PREFETCH_MAX_BYTES = 50 * 1024 * 1024, PREFETCH_DEADLINE = 10 * 60 * 1000;
+
+    // The color of alternative roads, drawn below the current one.
+    private static final int ALTERNATIVE_COLOR = 0x80808080;
+
     private MapView map;
-    private Road road;
+    private boolean laidOut = false;
+    private long handle;
+    private OpenRouteServiceRoad road;
+    private RequestContext loading;
     private Position start, destination;
+    private RouteOverlay routeOverlay;
+    private StepMarkerLayer stepMarkers;
+    private Parcelable[] waypoints;
+
+    // The alternative roads, which are only unpacked once the user selects one of them by tapping on it.
+    private long[] alternatives;
+    private RouteGeometry[] alternativeGeometries;
+    private final List<RouteOverlay> alternativeOverlays = new ArrayList<>();
+
+    // Following the route: The preparation in the background, the session once prepared and whether it was running.
+    private RequestContext indexing;
+    private NavigationSession navigation;
+    private boolean following = false;
+    private Button followButton;
+    private TextView navigationText;
+
+    // Calculating a new road once the user left it, from the vertex and the step the user was last seen on the road.
+    private RoadManager roadManager;
+    private RequestContext rerouting;
+    private final OffRouteDetector offRoute = new OffRouteDetector();
+    private int lastVertexOnRoute = 0, lastStepOnRoute = 0;
+
+    // Downloading the tiles along the road in the background, showing its progress.
+    private RequestContext prefetching;
+    private ProgressBar prefetchProgress;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -45,38 +127,225 @@ public class RouteViewer extends AppCompatActivity implements MapView.OnFirstLay
         setContentView(R.layout.activity_route_viewer);
 
         // Load the required arguments for the activity: The road, start point and destination point and fail otherwise.
+        // A road calculated after the user left the original one or a selected alternative replaces it in the saved state.
         Bundle data = this.getIntent().getExtras();
         if (data != null) {
-            this.road = (Road) data.get(ROAD);
+            this.handle = (savedInstanceState != null ? savedInstanceState : data).getLong(ROAD, RouteStore.NO_HANDLE);
+            this.alternatives = (savedInstanceState != null ? savedInstanceState : data).getLongArray(ALTERNATIVES);
             this.start = (Position) data.get(START);
             this.destination = (Position) data.get(DESTINATION);
+            this.waypoints = data.getParcelableArray(WAYPOINTS);
+            this.roadManager = this.createRoadManager((OpenRouteServiceManager.Profile) data.get(PROFILE));
         }
 
-        if (this.road == null || this.start == null || this.destination == null) {
+        if (this.handle == RouteStore.NO_HANDLE || this.start == null || this.destination == null) {
             throw new IllegalArgumentException("Required extras for the activity are missing!");
         }
+        if (this.alternatives == null) {
+            this.alternatives = new long[0];
+        }
 
         // Instantiate the map
         this.map = this.findViewById(R.id.map);
         this.map.setMultiTouchControls(true);
         this.map.addOnFirstLayoutListener(this);
-        this.map.setTileSource(TileSourceFactory.MAPNIK);
+        this.map.setTileSource(TilePrefetcher.createTileSource(this));
 
-        // Create all the markers of the route to the map
-        this.drawRoute();
+        // Create the markers of start and destination, the route follows once it is loaded
+        this.addMarker(getString(R.string.start), start).setIcon(getDrawable(R.mipmap.marker_start_end));
+        this.addMarker(getString(R.string.destination), destination).setIcon(getDrawable(R.mipmap.marker_start_end));
 
         // Add functionality to the button for all instructions
         ((Button)this.findViewById(R.id.btn_show_instructions)).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 Intent viewIntent = new Intent(RouteViewer.this, RouteInstructions.class);
-                viewIntent.putExtra(RouteViewer.ROAD, road);
+                viewIntent.putExtra(RouteInstructions.ROAD, handle);
                 RouteViewer.this.startActivity(viewIntent);
             }
         });
 
-        // Show a route summary
-        Toast.makeText(this, getString(R.string.route_overview, this.road.mLength, this.road.mDuration / 60), Toast.LENGTH_LONG).show();
+        // Following the route is possible once it is loaded and indexed
+        this.followButton = this.findViewById(R.id.btn_follow_route);
+        this.followButton.setOnClickListener(new FollowRouteOperation(this));
+        this.navigationText = this.findViewById(R.id.text_navigation);
+        this.prefetchProgress = this.findViewById(R.id.progress_prefetch);
+        this.loadRoad();
+    }
+
+    /**
+     * Load the road in the background, as it is read from storage after a restart of the process, and show it.
+     */
+    private void loadRoad() {
+        final RouteStore store = RouteStore.getInstance(this);
+        final long handle = this.handle;
+        this.loading = RoutingExecutor.getInstance().submit(LOADING_DEADLINE, new Callable<StoredRoad>() {
+            @Override
+            public StoredRoad call() throws RoutingException {
+                return new StoredRoad(handle, RouteViewer.createRoad(RouteViewer.getCompact(store, handle)));
+            }
+        }, new RoutingExecutor.Callback<StoredRoad>() {
+            @Override
+            public void onSuccess(StoredRoad stored) {
+                RouteViewer.this.loading = null;
+                RouteViewer.this.showRoad(stored.road);
+
+                // Show a route summary
+                Toast.makeText(RouteViewer.this, getString(R.string.route_overview, stored.road.mLength, stored.road.mDuration / 60), Toast.LENGTH_LONG).show();
+                RouteViewer.this.loadAlternatives();
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                RouteViewer.this.loading = null;
+                Toast.makeText(RouteViewer.this, R.string.route_unavailable, Toast.LENGTH_LONG).show();
+                RouteViewer.this.finish();
+            }
+        });
+    }
+
+    /**
+     * Load the geometries of the alternative roads in the background and draw them. Their steps stay packed.
+     */
+    private void loadAlternatives() {
+        if (this.alternatives.length == 0) {
+            return;
+        }
+
+        final RouteStore store = RouteStore.getInstance(this);
+        final long[] alternatives = this.alternatives;
+        this.loading = RoutingExecutor.getInstance().submit(LOADING_DEADLINE, new Callable<RouteGeometry[]>() {
+            @Override
+            public RouteGeometry[] call() throws RoutingException {
+                RouteGeometry[] geometries = new RouteGeometry[alternatives.length];
+                for (int i = 0; i < alternatives.length; ++i) {
+                    geometries[i] = RouteViewer.getCompact(store, alternatives[i]).getGeometry();
+                }
+                return geometries;
+            }
+        }, new RoutingExecutor.Callback<RouteGeometry[]>() {
+            @Override
+            public void onSuccess(RouteGeometry[] geometries) {
+                RouteViewer.this.loading = null;
+                RouteViewer.this.drawAlternatives(geometries);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                // The current road is shown anyway, just without alternatives.
+                RouteViewer.this.loading = null;
+            }
+        });
+    }
+
+    /**
+     * Draw the alternative roads below the current one, replacing previously drawn ones. Tapping on one selects it.
+     *
+     * @param geometries The geometries of the alternatives.
+     */
+    private void drawAlternatives(RouteGeometry[] geometries) {
+        this.removeAlternatives();
+        this.alternativeGeometries = geometries;
+        for (int i = 0; i < geometries.length; ++i) {
+            final int alternative = i;
+            RouteOverlay overlay = new RouteOverlay(map, geometries[i]);
+            overlay.setColor(ALTERNATIVE_COLOR);
+            overlay.setOnClickListener(new Polyline.OnClickListener() {
+                @Override
+                public boolean onClick(Polyline polyline, MapView mapView, GeoPoint eventPos) {
+                    RouteViewer.this.selectAlternative(alternative);
+                    return true;
+                }
+            });
+            map.getOverlays().add(0, overlay);
+            this.alternativeOverlays.add(overlay);
+        }
+        map.invalidate();
+    }
+
+    /**
+     * Remove the drawn alternative roads from the map.
+     */
+    private void removeAlternatives() {
+        for (RouteOverlay overlay : this.alternativeOverlays) {
+            map.getOverlays().remove(overlay);
+            overlay.onDetach(map);
+        }
+        this.alternativeOverlays.clear();
+        map.invalidate();
+    }
+
+    /**
+     * Show an alternative road instead of the current one, which becomes an alternative in turn. The nodes of the
+     * alternative are only created now, in the background.
+     *
+     * @param alternative The index of the alternative.
+     */
+    private void selectAlternative(final int alternative) {
+        // A road being loaded or calculated is shown first
+        if (this.loading != null || this.rerouting != null) {
+            return;
+        }
+
+        final RouteStore store = RouteStore.getInstance(this);
+        final long handle = this.alternatives[alternative];
+        this.loading = RoutingExecutor.getInstance().submit(LOADING_DEADLINE, new Callable<StoredRoad>() {
+            @Override
+            public StoredRoad call() throws RoutingException {
+                return new StoredRoad(handle, RouteViewer.createRoad(RouteViewer.getCompact(store, handle)));
+            }
+        }, new RoutingExecutor.Callback<StoredRoad>() {
+            @Override
+            public void onSuccess(StoredRoad stored) {
+                RouteViewer.this.loading = null;
+                RouteViewer.this.swapAlternative(alternative, stored);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                RouteViewer.this.loading = null;
+                Toast.makeText(RouteViewer.this, R.string.route_unavailable, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Show a loaded alternative road instead of the current one and keep the current one as alternative.
+     *
+     * @param alternative The index of the alternative.
+     * @param stored      The loaded alternative.
+     */
+    private void swapAlternative(int alternative, StoredRoad stored) {
+        RouteGeometry[] geometries = this.alternativeGeometries.clone();
+        geometries[alternative] = this.road.getGeometry();
+        this.alternatives = this.alternatives.clone();
+        this.alternatives[alternative] = this.handle;
+        this.handle = stored.handle;
+        this.lastVertexOnRoute = this.lastStepOnRoute = 0;
+
+        // A recreated activity has to show the selected road.
+        this.getIntent().putExtra(ROAD, this.handle);
+        this.getIntent().putExtra(ALTERNATIVES, this.alternatives);
+        this.offRoute.onRerouted();
+        this.showRoad(stored.road);
+        this.drawAlternatives(geometries);
+    }
+
+    /**
+     * Show a road instead of the current one, prepare following it and download its tiles.
+     *
+     * @param road The road.
+     */
+    private void showRoad(OpenRouteServiceRoad road) {
+        final boolean first = this.road == null;
+        this.road = road;
+        this.drawRoute();
+        if (first && this.laidOut) {
+            map.zoomToBoundingBox(road.mBoundingBox, false);
+            stepMarkers.refresh();
+        }
+        this.prepareNavigation();
+        this.prefetchTiles();
     }
 
     /**
@@ -112,47 +381,405 @@ public class RouteViewer extends AppCompatActivity implements MapView.OnFirstLay
     }
 
     /**
-     * Draw the route on the map.
+     * Draw the route on the map, replacing a previously drawn one.
      */
     private void drawRoute() {
-        // Add the route overlay
-        Polyline roadOverlay = RoadManager.buildRoadOverlay(road);
-        map.getOverlays().add(roadOverlay);
+        // Add the route overlay with a level of detail depending on the zoom
+        RouteGeometry geometry = road.getGeometry();
+        RouteOverlay routeOverlay = new RouteOverlay(map, geometry);
 
-        // Add the nodes
-        for (int i = 0; i < road.mNodes.size(); i++) {
-            RoadNode node = road.mNodes.get(i);
+        // Add the nodes, which are only materialized inside the visible area
+        StepMarkerLayer stepMarkers = new StepMarkerLayer(this, map, road.getNodes(), getDrawable(R.mipmap.marker));
 
-            // Add the marker with specific icon and transparencey effect.
-            Marker marker = this.addMarker(getString(R.string.step, i + 1, road.mNodes.size()), node.mInstructions, node.mLocation);
-            marker.setAlpha(0.5f);
-            marker.setIcon(getDrawable(R.mipmap.marker));
+        if (this.routeOverlay == null) {
+            map.getOverlays().add(routeOverlay);
+            map.getOverlays().add(stepMarkers);
+        } else {
+            this.replaceOverlay(this.routeOverlay, routeOverlay);
+            this.replaceOverlay(this.stepMarkers, stepMarkers);
+            stepMarkers.refresh();
         }
-
-        // Add start and destination marker with bubbles
-        this.addMarker(getString(R.string.start), start).setIcon(getDrawable(R.mipmap.marker_start_end));
-        this.addMarker(getString(R.string.destination), destination).setIcon(getDrawable(R.mipmap.marker_start_end));
+        this.routeOverlay = routeOverlay;
+        this.stepMarkers = stepMarkers;
 
         // Enforce recalculation of the map
         map.invalidate();
     }
 
+    /**
+     * Replace an overlay of the map at its position.
+     *
+     * @param previous The overlay shown before.
+     * @param next     The overlay shown instead.
+     */
+    private void replaceOverlay(Overlay previous, Overlay next) {
+        List<Overlay> overlays = map.getOverlays();
+        overlays.set(overlays.indexOf(previous), next);
+        previous.onDetach(map);
+    }
+
+    /**
+     * Create the road manager used for calculating a new road once the user left the current one.
+     *
+     * @param profile The profile the road was calculated with.
+     * @return the road manager or null, if the profile is unknown.
+     */
+    private RoadManager createRoadManager(OpenRouteServiceManager.Profile profile) {
+        if (profile == null) {
+            return null;
+        }
+        try {
+            OpenRouteServiceManager manager = new OpenRouteServiceManager(getString(R.string.OpenRouteServiceAPIKey), profile, HedgedTransport.getInstance(this));
+            RoadManager roadManager = new ParallelLegRoadManager(manager, ParallelLegRoadManager.DEFAULT_WAYPOINTS_PER_REQUEST);
+
+            // Calculate new roads on the device while the service is not reachable, if a road graph is available.
+            OfflineRoadManager offline = OfflineRoadManager.create(this, profile);
+            return offline != null ? new FallbackRoadManager(roadManager, offline) : roadManager;
+        } catch (MalformedURLException invalid) {
+            throw new IllegalStateException("The configured routing backends are invalid!", invalid);
+        }
+    }
+
+    /**
+     * Return the route of a handle in the store. As the route is read from storage after a restart of the process,
+     * this should not be called on the UI thread.
+     *
+     * @param store  The store.
+     * @param handle The handle of the route.
+     * @return the route.
+     * @throws RoutingException if the route was released in the meantime.
+     */
+    private static CompactRoute getCompact(RouteStore store, long handle) throws RoutingException {
+        CompactRoute route = store.getCompact(handle);
+        if (route == null) {
+            throw new RoutingException("The route is not available anymore", null, false);
+        }
+        return route;
+    }
+
+    /**
+     * Build the osmdroid road of a route, including the nodes shown on the map. This should not be called on the UI
+     * thread.
+     *
+     * @param route The route.
+     * @return the road.
+     */
+    private static OpenRouteServiceRoad createRoad(CompactRoute route) {
+        OpenRouteServiceRoad road = route.toRoad();
+        road.getNodes();
+        return road;
+    }
+
+    /**
+     * Prepare following the current road in the background, as indexing long roads takes a while.
+     * A previous session is replaced, continuing to follow if it did.
+     */
+    private void prepareNavigation() {
+        if (this.indexing != null) {
+            this.indexing.cancel();
+        }
+
+        final RouteStore store = RouteStore.getInstance(this);
+        final long handle = this.handle;
+        this.indexing = RoutingExecutor.getInstance().submit(INDEXING_DEADLINE, new Callable<NavigationProgress>() {
+            @Override
+            public NavigationProgress call() throws RoutingException {
+                return new NavigationProgress(RouteViewer.getCompact(store, handle));
+            }
+        }, new RoutingExecutor.Callback<NavigationProgress>() {
+            @Override
+            public void onSuccess(NavigationProgress progress) {
+                if (RouteViewer.this.navigation != null) {
+                    RouteViewer.this.navigation.stop();
+                }
+                RouteViewer.this.navigation = new NavigationSession(RouteViewer.this, progress, RouteViewer.this);
+                RouteViewer.this.followButton.setEnabled(true);
+                if (RouteViewer.this.following) {
+                    RouteViewer.this.setFollowing(true);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                // The route could still be viewed, just not followed.
+                RouteViewer.this.followButton.setEnabled(false);
+            }
+        });
+    }
+
+    /**
+     * Calculate a new road from the location of the user to the remaining waypoints and the destination, keeping the
+     * part of the current road already travelled.
+     *
+     * @param location The location of the user.
+     */
+    private void reroute(final Location location) {
+        final RouteStore store = RouteStore.getInstance(this);
+        final RoadManager roadManager = this.roadManager;
+        final long handle = this.handle;
+        final int vertex = this.lastVertexOnRoute, step = this.lastStepOnRoute;
+        final Parcelable[] waypoints = this.waypoints;
+        final Position destination = this.destination;
+
+        this.rerouting = RoutingExecutor.getInstance().submit(REROUTING_DEADLINE, new Callable<StoredRoad>() {
+            @Override
+            public StoredRoad call() throws RoutingException {
+                CompactRoute route = RouteViewer.getCompact(store, handle);
+
+                // The waypoints of legs not finished yet are still to be visited
+                ArrayList<GeoPoint> points = new ArrayList<>();
+                points.add(new GeoPoint(location.getLatitude(), location.getLongitude()));
+                for (int i = route.getStepLeg(step); waypoints != null && i < waypoints.length; ++i) {
+                    points.add(((Position) waypoints[i]).toGeoPoint());
+                }
+                points.add(destination.toGeoPoint());
+
+                Road tail = roadManager.getRoad(points);
+                if (tail == null) {
+                    throw new RoutingException("Unable to calculate a new route", null, true);
+                }
+                CompactRoute spliced = route.splice(vertex, CompactRoute.fromRoad(tail));
+                OpenRouteServiceRoad road = RouteViewer.createRoad(spliced);
+                return new StoredRoad(store.put(spliced), road);
+            }
+        }, new RoutingExecutor.Callback<StoredRoad>() {
+            @Override
+            public void onSuccess(StoredRoad stored) {
+                RouteViewer.this.rerouting = null;
+                RouteViewer.this.replaceRoad(stored);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                // Try again once the rate limit allows it, if the user is still off the road.
+                RouteViewer.this.rerouting = null;
+            }
+        }, new RoutingExecutor.Cleanup<StoredRoad>() {
+            @Override
+            public void onUndelivered(StoredRoad stored) {
+                // The new road is not shown anymore, i.e. as the activity was left.
+                store.release(stored.handle);
+            }
+        });
+    }
+
+    /**
+     * Show another road instead of the current one and follow it.
+     *
+     * @param stored The new road, already put into the store.
+     */
+    private void replaceRoad(StoredRoad stored) {
+        RouteStore store = RouteStore.getInstance(this);
+        store.replace(this.handle, stored.handle);
+        this.handle = stored.handle;
+        this.lastVertexOnRoute = this.lastStepOnRoute = 0;
+
+        // The alternatives start at the former start, so they are of no use anymore.
+        for (long alternative : this.alternatives) {
+            store.release(alternative);
+        }
+        this.alternatives = new long[0];
+        this.removeAlternatives();
+
+        // The replaced road is released, so a recreated activity has to show the new one.
+        this.getIntent().putExtra(ROAD, stored.handle);
+        this.getIntent().putExtra(ALTERNATIVES, this.alternatives);
+        this.offRoute.onRerouted();
+        this.showRoad(stored.road);
+    }
+
+    /**
+     * Download the tiles along the current road into the cache in the background, replacing a previous download.
+     * This only happens for a tile server configured in the resources, as the OpenStreetMap servers forbid bulk downloads.
+     */
+    private void prefetchTiles() {
+        if (this.prefetching != null) {
+            this.prefetching.cancel();
+            this.onPrefetchFinished();
+        }
+
+        MapTileProviderBase tileProvider = map.getTileProvider();
+        ITileSource tileSource = tileProvider.getTileSource();
+        if (!(tileSource instanceof OnlineTileSourceBase) || !(tileProvider instanceof MapTileProviderBasic)
+                || !TilePrefetcher.isAllowed((OnlineTileSourceBase) tileSource)) {
+            return;
+        }
+        IFilesystemCache cache = ((MapTileProviderBasic) tileProvider).getTileWriter();
+        if (cache == null) {
+            return;
+        }
+
+        final TilePrefetcher prefetcher = new TilePrefetcher(
+                (OnlineTileSourceBase) tileSource, cache, PREFETCH_PARALLELISM, PREFETCH_MAX_BYTES, Configuration.getInstance().getUserAgentValue()
+        );
+        final RouteStore store = RouteStore.getInstance(this);
+        final long handle = this.handle;
+        final ProgressBar progressBar = this.prefetchProgress;
+        progressBar.setProgress(0);
+        progressBar.setContentDescription(getString(R.string.prefetch_progress, 0));
+        progressBar.setVisibility(View.VISIBLE);
+        this.prefetching = RoutingExecutor.getInstance().submit(PREFETCH_DEADLINE, new Callable<Long>() {
+            @Override
+            public Long call() throws InterruptedException, RoutingException {
+                RouteGeometry geometry = RouteViewer.getCompact(store, handle).getGeometry();
+                long[] tiles = TilePrefetcher.getCorridorTiles(geometry, PREFETCH_BUFFER, PREFETCH_MIN_ZOOM, PREFETCH_MAX_ZOOM, PREFETCH_MAX_TILES);
+                return prefetcher.run(tiles, new TilePrefetcher.Listener() {
+                    @Override
+                    public void onProgress(int processed, int total, long bytes) {
+                        // Show the progress in whole percents only
+                        final int percent = 100 * processed / total;
+                        if (percent != 100 * (processed - 1) / total) {
+                            progressBar.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    progressBar.setProgress(percent);
+                                    progressBar.setContentDescription(getString(R.string.prefetch_progress, percent));
+                                }
+                            });
+                        }
+                    }
+                });
+            }
+        }, new RoutingExecutor.Callback<Long>() {
+            @Override
+            public void onSuccess(Long bytes) {
+                RouteViewer.this.onPrefetchFinished();
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                // The remaining tiles are loaded once they are shown.
+                RouteViewer.this.onPrefetchFinished();
+            }
+        });
+    }
+
+    /**
+     * Remove the progress of the prefetch once it finished.
+     */
+    private void onPrefetchFinished() {
+        this.prefetching = null;
+        this.prefetchProgress.setVisibility(View.GONE);
+    }
+
     @Override
     public void onFirstLayout(View v, int left, int top, int right, int bottom) {
-        // Zoom towards the bounding box provided from the calculated road.
-        map.zoomToBoundingBox(road.mBoundingBox, false);
+        // Zoom towards the bounding box provided from the calculated road, once it is loaded.
+        this.laidOut = true;
+        if (this.road != null) {
+            map.zoomToBoundingBox(road.mBoundingBox, false);
+            stepMarkers.refresh();
+        }
+    }
+
+    /**
+     * Start or stop following the route.
+     *
+     * @param follow true iff the route should be followed.
+     */
+    private void setFollowing(boolean follow) {
+        if (follow) {
+            try {
+                this.navigation.start();
+            } catch (SecurityException ex) {
+                Toast.makeText(this, R.string.location_denied, Toast.LENGTH_LONG).show();
+                return;
+            }
+        } else {
+            this.navigation.stop();
+        }
+        this.following = follow;
+        this.followButton.setText(follow ? R.string.stop_following : R.string.follow_route);
+        this.navigationText.setVisibility(follow ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    public void onProgress(NavigationProgress progress, Location location) {
+        RouteIndex.Match match = progress.getMatch();
+        if (match != null) {
+            map.getController().animateTo(new GeoPoint(match.getLatitude(), match.getLongitude()));
+        }
+        this.navigationText.setText(getString(
+                R.string.navigation_progress,
+                progress.getDistanceToNextStep() * 1000,
+                progress.getRemainingDistance(),
+                progress.getRemainingDuration() / 60
+        ));
+
+        // Calculate a new road once the user has left this one for sure
+        if (match == null || this.roadManager == null) {
+            return;
+        }
+        boolean reroute = this.offRoute.update(match.getDistance() * 1000, location.hasAccuracy() ? location.getAccuracy() : 0, location.getTime());
+        if (!this.offRoute.isOffRoute()) {
+            this.lastVertexOnRoute = match.getSegment();
+            this.lastStepOnRoute = match.getStep();
+        } else if (reroute && this.rerouting == null) {
+            // Only a started recalculation counts for the rate limit, not one due while another is running
+            this.offRoute.onRerouting(location.getTime());
+            this.reroute(location);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(ROAD, this.handle);
+        outState.putLongArray(ALTERNATIVES, this.alternatives);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        // Redirect the permission events to the global permission controller
+        LocationAccess.handlePermissionRequest(requestCode, permissions, grantResults);
     }
 
     @Override
     public void onResume() {
         super.onResume();
         map.onResume();
+
+        // Continue following the route where it was interrupted
+        if (this.following) {
+            this.setFollowing(true);
+        }
     }
 
     @Override
     public void onPause() {
         super.onPause();
         map.onPause();
+
+        // Locations are only requested while the route is visible, saving the battery otherwise
+        if (this.navigation != null) {
+            this.navigation.stop();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (this.loading != null) {
+            this.loading.cancel();
+        }
+        if (this.indexing != null) {
+            this.indexing.cancel();
+        }
+        if (this.rerouting != null) {
+            this.rerouting.cancel();
+        }
+        if (this.prefetching != null) {
+            this.prefetching.cancel();
+        }
+
+        // The roads are not required anymore once the user left the route for good.
+        if (this.isFinishing()) {
+            RouteStore store = RouteStore.getInstance(this);
+            store.release(this.handle);
+            for (long alternative : this.alternatives) {
+                store.release(alternative);
+            }
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -165,4 +792,63 @@ public class RouteViewer extends AppCompatActivity implements MapView.OnFirstLay
     public boolean longPressHelper(GeoPoint p) {
         return false;
     }
+
+    /**
+     * A road loaded in the background together with its handle in the store.
+     */
+    private static class StoredRoad {
+        private final long handle;
+        private final OpenRouteServiceRoad road;
+
+        /**
+         * Create a new pair.
+         *
+         * @param handle The handle of the road.
+         * @param road   The road.
+         */
+        StoredRoad(long handle, OpenRouteServiceRoad road) {
+            this.handle = handle;
+            this.road = road;
+        }
+    }
+
+    /**
+     * The operation toggling whether the route is followed, asking for the permission to access the location first.
+     */
+    private class FollowRouteOperation extends LocationAccess {
+
+        /**
+         * Create the operation which is started on click.
+         *
+         * @param activity The activity.
+         */
+        FollowRouteOperation(RouteViewer activity) {
+            super(activity);
+        }
+
+        @Override
+        public void onClick(View view) {
+            if (RouteViewer.this.following) {
+                RouteViewer.this.setFollowing(false);
+            } else {
+                super.onClick(view);
+            }
+        }
+
+        @Override
+        public void onSuccess(Location location) {
+            // The permission is granted; the session waits for the first location itself.
+            RouteViewer.this.setFollowing(true);
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            LocationAccess.MissingRightsException missingRights = (LocationAccess.MissingRightsException) e;
+            if (!missingRights.isFinalDecision()) {
+                missingRights.showExplanation(R.string.permission_reason_title, R.string.permission_reason_text, R.string.yes, R.string.no);
+            } else {
+                Toast.makeText(this.activity, R.string.location_denied, Toast.LENGTH_LONG).show();
+            }
+        }
+    }
 }
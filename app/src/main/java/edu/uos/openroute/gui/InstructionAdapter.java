@@ -0,0 +1,188 @@
+package edu.uos.openroute.gui;
+
+import android.content.Context;
+import android.support.annotation.WorkerThread;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import edu.uos.openroute.R;
+import edu.uos.openroute.routing.CompactRoute;
+import org.osmdroid.bonuspack.routing.Road;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The model and controller for a list of instructions, recycling the views of the steps scrolled out of sight.
+ * The labels of the steps are created in the background, and a changed route only updates the steps which differ.
+ */
+public class InstructionAdapter extends RecyclerView.Adapter<InstructionAdapter.ViewHolder> {
+
+    private List<Step> steps = Collections.emptyList();
+
+    /**
+     * Return the steps currently shown.
+     *
+     * @return the steps.
+     */
+    public List<Step> getSteps() {
+        return this.steps;
+    }
+
+    /**
+     * Prepare showing the steps of a route instead of the current ones. As all the labels are created and compared,
+     * this should not be called on the UI thread.
+     *
+     * @param context The context the labels are created with.
+     * @param route   The route.
+     * @param current The steps currently shown.
+     * @return the update, which is applied by {@link #apply(Update)}.
+     */
+    @WorkerThread
+    public static Update prepare(Context context, CompactRoute route, List<Step> current) {
+        List<Step> steps = new ArrayList<>(route.getStepCount());
+        for (int i = 0; i < route.getStepCount(); ++i) {
+            steps.add(new Step(route.getStepLatitudeE5(i), route.getStepLongitudeE5(i), route.getStepManeuver(i), route.getStepInstruction(i),
+                    Road.getLengthDurationText(context, route.getStepLength(i), route.getStepDuration(i))));
+        }
+        return new Update(steps, DiffUtil.calculateDiff(new StepDiff(current, steps)));
+    }
+
+    /**
+     * Show the steps of a prepared update, which has to be based on the steps currently shown.
+     *
+     * @param update The update.
+     */
+    public void apply(Update update) {
+        this.steps = update.steps;
+        update.diff.dispatchUpdatesTo(this);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.instruction_item, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        Step step = this.steps.get(position);
+        holder.instruction.setText(step.instruction);
+        holder.label.setText(step.label);
+    }
+
+    @Override
+    public int getItemCount() {
+        return this.steps.size();
+    }
+
+    /**
+     * A step as shown in the list.
+     */
+    public static class Step {
+        private final int latitude, longitude, maneuver;
+        private final String instruction, label;
+
+        /**
+         * Create a new step.
+         *
+         * @param latitude    The latitude of the maneuver in E5.
+         * @param longitude   The longitude of the maneuver in E5.
+         * @param maneuver    The maneuver type.
+         * @param instruction The instruction.
+         * @param label       The formatted length and duration.
+         */
+        public Step(int latitude, int longitude, int maneuver, String instruction, String label) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.maneuver = maneuver;
+            this.instruction = instruction;
+            this.label = label;
+        }
+
+        /**
+         * Check if two steps stand for the same maneuver, even if the route changed its length afterwards. The location is
+         * compared instead of the vertex in the geometry, as the vertices are numbered anew after rerouting.
+         *
+         * @param other The other step.
+         * @return true iff both are the same maneuver.
+         */
+        boolean isSameManeuver(Step other) {
+            return this.latitude == other.latitude && this.longitude == other.longitude && this.maneuver == other.maneuver
+                    && this.instruction.equals(other.instruction);
+        }
+    }
+
+    /**
+     * The steps of a route, ready to be shown instead of the current ones.
+     */
+    public static class Update {
+        private final List<Step> steps;
+        private final DiffUtil.DiffResult diff;
+
+        /**
+         * Create a new update.
+         *
+         * @param steps The new steps.
+         * @param diff  The changes from the current steps to the new ones.
+         */
+        private Update(List<Step> steps, DiffUtil.DiffResult diff) {
+            this.steps = steps;
+            this.diff = diff;
+        }
+    }
+
+    /**
+     * The comparison of the steps currently shown and the new ones.
+     */
+    public static class StepDiff extends DiffUtil.Callback {
+        private final List<Step> current, next;
+
+        /**
+         * Create a new comparison.
+         *
+         * @param current The steps currently shown.
+         * @param next    The new steps.
+         */
+        public StepDiff(List<Step> current, List<Step> next) {
+            this.current = current;
+            this.next = next;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return this.current.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return this.next.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return this.current.get(oldItemPosition).isSameManeuver(this.next.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return this.current.get(oldItemPosition).label.equals(this.next.get(newItemPosition).label);
+        }
+    }
+
+    /**
+     * The views of a single step, which are looked up only once.
+     */
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        private final TextView instruction, label;
+
+        ViewHolder(View view) {
+            super(view);
+            this.instruction = view.findViewById(R.id.step_instruction);
+            this.label = view.findViewById(R.id.step_label);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package edu.uos.openroute.gui;
+
+import android.os.AsyncTask;
+import edu.uos.openroute.routing.GeoPoints;
+import edu.uos.openroute.routing.RouteGeometry;
+import edu.uos.openroute.routing.RoutePyramid;
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.overlay.Polyline;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * A polyline showing a route with a level of detail depending on the current zoom of the map.
+ * The simplified geometries are calculated in background; until they are available, nothing is drawn.
+ */
+public class RouteOverlay extends Polyline implements MapListener {
+
+    // Default style of routes as used by OSMBonusPack.
+    private static final int COLOR = 0x800000FF;
+    private static final float WIDTH = 5.0f;
+
+    private final MapView map;
+    private final PyramidBuilder builder;
+    private RoutePyramid pyramid;
+    private ArrayList<GeoPoint>[] bandPoints;
+    private int currentBand = -1;
+
+    /**
+     * Create the overlay and start the calculation of the level of detail.
+     *
+     * @param map      The map the overlay is shown on.
+     * @param geometry The full geometry of the route.
+     */
+    public RouteOverlay(MapView map, RouteGeometry geometry) {
+        super(map);
+        this.map = map;
+        this.setColor(COLOR);
+        this.setWidth(WIDTH);
+
+        map.addMapListener(this);
+        this.builder = new PyramidBuilder(this);
+        this.builder.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, geometry);
+    }
+
+    /**
+     * Return the pyramid of simplified geometries, i.e. for checking the vertex count of its bands.
+     *
+     * @return the pyramid or null, if it is not calculated yet.
+     */
+    public RoutePyramid getPyramid() {
+        return pyramid;
+    }
+
+    /**
+     * Return the band currently drawn.
+     *
+     * @return the index of the band or -1, if nothing is drawn yet.
+     */
+    public int getCurrentBand() {
+        return currentBand;
+    }
+
+    /**
+     * Show the band fitting to a zoom level.
+     *
+     * @param zoomLevel The current zoom level of the map.
+     */
+    @SuppressWarnings("unchecked")
+    private void showBand(double zoomLevel) {
+        if (pyramid == null) {
+            return;
+        }
+
+        int band = pyramid.getBand(zoomLevel);
+        if (band == currentBand) {
+            return;
+        }
+
+        // The GeoPoints of a band are only created once it is shown the first time.
+        if (bandPoints == null) {
+            bandPoints = new ArrayList[pyramid.getBandCount()];
+        }
+        if (bandPoints[band] == null) {
+            bandPoints[band] = GeoPoints.of(pyramid.getGeometry(band));
+        }
+
+        this.setPoints(bandPoints[band]);
+        currentBand = band;
+        map.invalidate();
+    }
+
+    @Override
+    public boolean onScroll(ScrollEvent event) {
+        return false;
+    }
+
+    @Override
+    public boolean onZoom(ZoomEvent event) {
+        this.showBand(event.getZoomLevel());
+        return false;
+    }
+
+    @Override
+    public void onDetach(MapView mapView) {
+        // The pyramid is not required anymore, if it is still being calculated.
+        this.builder.cancel(false);
+        mapView.removeMapListener(this);
+        super.onDetach(mapView);
+    }
+
+    /**
+     * The asynchronous calculation of the pyramid running in the background.
+     * It only keeps a weak reference to the overlay, so a running calculation does not keep the overlay and its map alive.
+     */
+    private static class PyramidBuilder extends AsyncTask<RouteGeometry, Void, RoutePyramid> {
+        private final WeakReference<RouteOverlay> overlay;
+
+        PyramidBuilder(RouteOverlay overlay) {
+            this.overlay = new WeakReference<>(overlay);
+        }
+
+        @Override
+        protected RoutePyramid doInBackground(RouteGeometry... geometry) {
+            return new RoutePyramid(geometry[0]);
+        }
+
+        @Override
+        protected void onPostExecute(RoutePyramid pyramid) {
+            RouteOverlay overlay = this.overlay.get();
+            if (overlay != null) {
+                overlay.pyramid = pyramid;
+                overlay.showBand(overlay.map.getZoomLevelDouble());
+            }
+        }
+    }
+}
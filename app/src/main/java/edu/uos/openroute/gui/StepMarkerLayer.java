@@ -0,0 +1,264 @@
+package edu.uos.openroute.gui;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
+import android.util.LongSparseArray;
+import edu.uos.openroute.R;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.events.DelayedMapListener;
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.overlay.FolderOverlay;
+import org.osmdroid.views.overlay.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A layer showing the markers of the steps of a route.
+ * Only steps inside the visible area get a marker, steps close to each other on the screen share a single one and
+ * markers leaving the visible area are reused for the ones entering it.
+ */
+public class StepMarkerLayer extends FolderOverlay implements MapListener {
+
+    // Size of a cluster on the screen in density-independent pixels.
+    private static final float CLUSTER_SIZE = 40;
+
+    // Size of a tile in pixels, used to derive the size of a pixel in degrees.
+    private static final int TILE_SIZE = 256;
+
+    // Delay in milliseconds after the last movement of the map until the markers are updated.
+    private static final long UPDATE_DELAY = 100;
+
+    // The number of instructions shown in the bubble of a cluster at most.
+    private static final int MAX_CLUSTER_INSTRUCTIONS = 3;
+
+    private final Context context;
+    private final MapView map;
+    private final List<RoadNode> nodes;
+    private final Drawable icon;
+    private final float clusterPixels;
+    private final MapListener delayedListener;
+
+    // Markers currently shown and markers ready for reuse.
+    private final ArrayList<Marker> visibleMarkers = new ArrayList<>(), freeMarkers = new ArrayList<>();
+
+    // Reused state of the clustering: The cell of each cluster and its first step, last step and number of steps.
+    // The steps of a cluster are linked by the index of the next step in the same cluster.
+    private final LongSparseArray<Integer> cells = new LongSparseArray<>();
+    private final int[] clusterFirst, clusterLast, clusterSize, nextStep;
+
+    /**
+     * Create the layer. It updates itself as soon as the map is moved.
+     *
+     * @param context The context used for the labels.
+     * @param map     The map the layer is shown on.
+     * @param nodes   The steps of the route.
+     * @param icon    The icon shared by all the markers.
+     */
+    public StepMarkerLayer(Context context, MapView map, List<RoadNode> nodes, Drawable icon) {
+        super();
+        this.context = context;
+        this.map = map;
+        this.nodes = nodes;
+        this.icon = icon;
+        this.clusterPixels = CLUSTER_SIZE * context.getResources().getDisplayMetrics().density;
+        this.clusterFirst = new int[nodes.size()];
+        this.clusterLast = new int[nodes.size()];
+        this.clusterSize = new int[nodes.size()];
+        this.nextStep = new int[nodes.size()];
+
+        this.delayedListener = new DelayedMapListener(this, UPDATE_DELAY);
+        map.addMapListener(this.delayedListener);
+    }
+
+    /**
+     * Return the number of markers currently shown.
+     *
+     * @return the number of markers.
+     */
+    public int getMarkerCount() {
+        return visibleMarkers.size();
+    }
+
+    /**
+     * Update the markers towards the currently visible area of the map.
+     */
+    public void refresh() {
+        // Include a margin around the visible area so small movements do not immediately require an update.
+        BoundingBox area = map.getBoundingBox();
+        double latitudeMargin = 0.25 * area.getLatitudeSpan(), longitudeMargin = 0.25 * area.getLongitudeSpanWithDateLine();
+        double north = area.getLatNorth() + latitudeMargin, south = area.getLatSouth() - latitudeMargin;
+        double east = area.getLonEast() + longitudeMargin, west = area.getLonWest() - longitudeMargin;
+
+        // Derive the size of a cluster cell in degrees from the current zoom level.
+        double cellLongitude = clusterPixels * 360.0 / (TILE_SIZE * Math.pow(2, map.getZoomLevelDouble()));
+        double cellLatitude = cellLongitude * Math.cos(Math.toRadians(area.getCenterLatitude()));
+
+        // Assign all visible steps to their cell
+        cells.clear();
+        int clusters = 0;
+        for (int i = 0; i < nodes.size(); ++i) {
+            GeoPoint location = nodes.get(i).mLocation;
+            double latitude = location.getLatitude(), longitude = location.getLongitude();
+            if (latitude > north || latitude < south || longitude > east || longitude < west) {
+                continue;
+            }
+
+            long cell = ((long) Math.floor(latitude / cellLatitude) << 32) | ((long) Math.floor(longitude / cellLongitude) & 0xffffffffL);
+            Integer cluster = cells.get(cell);
+            if (cluster == null) {
+                cluster = clusters++;
+                cells.put(cell, cluster);
+                clusterFirst[cluster] = i;
+                clusterSize[cluster] = 0;
+            } else {
+                nextStep[clusterLast[cluster]] = i;
+            }
+            clusterLast[cluster] = i;
+            ++clusterSize[cluster];
+        }
+
+        // Reuse the existing markers for the clusters and release the ones not required anymore
+        for (int cluster = 0; cluster < clusters; ++cluster) {
+            Marker marker;
+            if (cluster < visibleMarkers.size()) {
+                marker = visibleMarkers.get(cluster);
+            } else {
+                marker = freeMarkers.isEmpty() ? this.createMarker() : freeMarkers.remove(freeMarkers.size() - 1);
+                visibleMarkers.add(marker);
+                this.add(marker);
+            }
+            this.updateMarker(marker, clusterFirst[cluster], clusterLast[cluster], clusterSize[cluster]);
+        }
+        while (visibleMarkers.size() > clusters) {
+            Marker marker = visibleMarkers.remove(visibleMarkers.size() - 1);
+            marker.closeInfoWindow();
+            this.remove(marker);
+            freeMarkers.add(marker);
+        }
+
+        map.invalidate();
+    }
+
+    /**
+     * Create a new marker with the shared style.
+     *
+     * @return the marker.
+     */
+    private Marker createMarker() {
+        Marker marker = new Marker(map);
+        marker.setIcon(icon);
+        marker.setAlpha(0.5f);
+        return marker;
+    }
+
+    /**
+     * Let a marker show a cluster of steps.
+     *
+     * @param marker The marker.
+     * @param first  The index of the first step in the cluster.
+     * @param last   The index of the last step in the cluster.
+     * @param size   The number of steps in the cluster.
+     */
+    private void updateMarker(Marker marker, int first, int last, int size) {
+        String title;
+        if (size == 1) {
+            title = context.getString(R.string.step, first + 1, nodes.size());
+        } else if (last - first + 1 == size) {
+            title = context.getString(R.string.step_cluster, first + 1, last + 1, nodes.size());
+        } else {
+            // The route passes the area several times, so a single range would include steps shown elsewhere.
+            title = context.getString(R.string.step_cluster_list, this.listSteps(first, last), nodes.size());
+        }
+
+        // Keep an open bubble if the marker still shows the same steps.
+        if (title.equals(marker.getTitle())) {
+            return;
+        }
+
+        RoadNode node = nodes.get(first);
+        marker.closeInfoWindow();
+        marker.setPosition(node.mLocation);
+        marker.setTitle(title);
+        marker.setSnippet(size == 1 ? node.mInstructions : this.listInstructions(first, size));
+    }
+
+    /**
+     * List the first instructions of a cluster, one per line.
+     *
+     * @param first The index of the first step in the cluster.
+     * @param size  The number of steps in the cluster.
+     * @return the list as HTML, as the bubble shows it.
+     */
+    private String listInstructions(int first, int size) {
+        StringBuilder list = new StringBuilder();
+        int step = first;
+        for (int i = 0; i < Math.min(size, MAX_CLUSTER_INSTRUCTIONS); ++i) {
+            if (i > 0) {
+                list.append("<br>");
+                step = nextStep[step];
+            }
+            list.append(step + 1).append(". ").append(TextUtils.htmlEncode(nodes.get(step).mInstructions));
+        }
+        if (size > MAX_CLUSTER_INSTRUCTIONS) {
+            list.append("<br>").append(TextUtils.htmlEncode(context.getString(R.string.step_cluster_more, size - MAX_CLUSTER_INSTRUCTIONS)));
+        }
+        return list.toString();
+    }
+
+    /**
+     * List the steps of a cluster, combining consecutive steps to ranges.
+     *
+     * @param first The index of the first step in the cluster.
+     * @param last  The index of the last step in the cluster.
+     * @return the list of the steps, i.e. "3-5, 9".
+     */
+    private String listSteps(int first, int last) {
+        StringBuilder list = new StringBuilder();
+        int start = first, end = first;
+        while (true) {
+            int next = end < last ? nextStep[end] : -1;
+            if (next == end + 1) {
+                end = next;
+                continue;
+            }
+
+            // The current range ends here
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+            list.append(start + 1);
+            if (end > start) {
+                list.append('-').append(end + 1);
+            }
+            if (next == -1) {
+                return list.toString();
+            }
+            start = end = next;
+        }
+    }
+
+    @Override
+    public boolean onScroll(ScrollEvent event) {
+        this.refresh();
+        return false;
+    }
+
+    @Override
+    public boolean onZoom(ZoomEvent event) {
+        this.refresh();
+        return false;
+    }
+
+    @Override
+    public void onDetach(MapView mapView) {
+        mapView.removeMapListener(this.delayedListener);
+        super.onDetach(mapView);
+    }
+}
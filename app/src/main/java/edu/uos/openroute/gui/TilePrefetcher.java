@@ -0,0 +1,291 @@
+package edu.uos.openroute.gui;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+import edu.uos.openroute.R;
+import edu.uos.openroute.routing.RouteGeometry;
+import org.osmdroid.tileprovider.modules.IFilesystemCache;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.tileprovider.tilesource.TileSourcePolicy;
+import org.osmdroid.tileprovider.tilesource.XYTileSource;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads the map tiles along a route into the tile cache of osmdroid, so that following the route works on a weak
+ * connection. The tiles cover a corridor around the route geometry for a range of zoom levels; tiles already cached are
+ * skipped. Downloads run with a bounded number of connections and stop once a size limit is reached.
+ */
+public class TilePrefetcher {
+
+    // Name for the used logger.
+    private final static String LOGGER_ID = "TilePrefetcher";
+
+    // The circumference of the earth at the equator in meters, as used by Web Mercator.
+    private final static double EARTH_CIRCUMFERENCE = 40075016.686;
+
+    // The latitude in degrees beyond which Web Mercator has no tiles.
+    private final static double MAX_LATITUDE = 85.05112878;
+
+    // The time a connection may take to be established or to deliver data in milliseconds.
+    private final static int TIMEOUT = 10000;
+
+    private final OnlineTileSourceBase tileSource;
+    private final IFilesystemCache cache;
+    private final int parallelism;
+    private final long maxBytes;
+    private final String userAgent;
+
+    /**
+     * Create a new prefetcher.
+     *
+     * @param tileSource  The source the tiles are downloaded from. It has to allow bulk downloads.
+     * @param cache       The cache the tiles are stored in.
+     * @param parallelism The maximal number of concurrent downloads, further limited by the policy of the source.
+     * @param maxBytes    The number of bytes after which no further downloads are started.
+     * @param userAgent   The user agent sent to the tile server.
+     * @throws IllegalArgumentException if the source does not allow bulk downloads or the parallelism is not positive.
+     */
+    public TilePrefetcher(OnlineTileSourceBase tileSource, IFilesystemCache cache, int parallelism, long maxBytes, String userAgent) throws IllegalArgumentException {
+        if (!TilePrefetcher.isAllowed(tileSource)) {
+            throw new IllegalArgumentException("The tile source does not allow bulk downloads");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+
+        int maxConcurrent = tileSource.getTileSourcePolicy().getMaxConcurrent();
+        this.tileSource = tileSource;
+        this.cache = cache;
+        this.parallelism = maxConcurrent > 0 ? Math.min(parallelism, maxConcurrent) : parallelism;
+        this.maxBytes = maxBytes;
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * Create the tile source of the map. The tile server configured in the resources is used if there is one, its policy
+     * allows bulk downloads. Otherwise the OpenStreetMap servers are used, which forbid prefetching.
+     *
+     * @param context The context to read the configuration from.
+     * @return The tile source.
+     */
+    public static OnlineTileSourceBase createTileSource(Context context) {
+        Resources resources = context.getResources();
+        String url = resources.getString(R.string.TileServerURL);
+        if (url.isEmpty()) {
+            return TileSourceFactory.MAPNIK;
+        }
+
+        // Tiles are requested with the user agent of the app, no flag restricts their usage
+        TileSourcePolicy policy = new TileSourcePolicy(resources.getInteger(R.integer.TileServerMaxConcurrent), 0);
+        return new XYTileSource(resources.getString(R.string.TileServerName), 0, resources.getInteger(R.integer.TileServerMaxZoom),
+                256, ".png", new String[]{url}, resources.getString(R.string.TileServerCopyright), policy);
+    }
+
+    /**
+     * Check if the usage policy of a tile source allows prefetching its tiles.
+     *
+     * @param tileSource The tile source.
+     * @return true iff bulk downloads are allowed.
+     */
+    public static boolean isAllowed(OnlineTileSourceBase tileSource) {
+        return tileSource.getTileSourcePolicy().acceptsBulkDownload();
+    }
+
+    /**
+     * Calculate the tiles covering a corridor around a route geometry. The tiles are ordered by zoom level and along the
+     * route within each zoom level, so that a truncated set covers the start of the route in all zoom levels first.
+     *
+     * @param geometry The geometry of the route.
+     * @param buffer   The distance the corridor extends to each side of the route in meters.
+     * @param minZoom  The lowest zoom level.
+     * @param maxZoom  The highest zoom level.
+     * @param maxTiles The maximal number of tiles returned.
+     * @return the tile indices as used by osmdroid.
+     */
+    public static long[] getCorridorTiles(RouteGeometry geometry, double buffer, int minZoom, int maxZoom, int maxTiles) {
+        LinkedHashSet<Long> tiles = new LinkedHashSet<>();
+        for (int zoom = minZoom; zoom <= maxZoom && tiles.size() < maxTiles; ++zoom) {
+            final double tileCount = 1 << zoom;
+            for (int i = 0; i < geometry.size() && tiles.size() < maxTiles; ++i) {
+                final double latitude = geometry.getLatitudeE5(i) / RouteGeometry.E5, longitude = geometry.getLongitudeE5(i) / RouteGeometry.E5;
+                final double x = TilePrefetcher.toTileX(longitude, tileCount), y = TilePrefetcher.toTileY(latitude, tileCount);
+
+                // The size of a tile shrinks towards the poles
+                final double tileSize = EARTH_CIRCUMFERENCE * Math.cos(Math.toRadians(Math.min(Math.abs(latitude), MAX_LATITUDE))) / tileCount;
+                final double margin = buffer / tileSize;
+
+                // Sample the segment towards the next vertex in steps of half a tile, covering each sample with its margin
+                final int next = Math.min(i + 1, geometry.size() - 1);
+                final double dx = TilePrefetcher.toTileX(geometry.getLongitudeE5(next) / RouteGeometry.E5, tileCount) - x;
+                final double dy = TilePrefetcher.toTileY(geometry.getLatitudeE5(next) / RouteGeometry.E5, tileCount) - y;
+                final int samples = (int) Math.ceil(2 * Math.max(Math.abs(dx), Math.abs(dy)));
+                for (int sample = 0; sample <= samples; ++sample) {
+                    final double share = samples > 0 ? (double) sample / samples : 0;
+                    final double sampleX = x + share * dx, sampleY = y + share * dy;
+                    final int maxX = Math.min((int) (sampleX + margin), (int) tileCount - 1);
+                    final int maxY = Math.min((int) (sampleY + margin), (int) tileCount - 1);
+                    for (int tileX = Math.max((int) (sampleX - margin), 0); tileX <= maxX; ++tileX) {
+                        for (int tileY = Math.max((int) (sampleY - margin), 0); tileY <= maxY; ++tileY) {
+                            if (tiles.size() < maxTiles) {
+                                tiles.add(MapTileIndex.getTileIndex(zoom, tileX, tileY));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        long[] result = new long[tiles.size()];
+        Iterator<Long> iterator = tiles.iterator();
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = iterator.next();
+        }
+        return result;
+    }
+
+    /**
+     * Download the tiles not cached yet. This method returns once every tile was processed or the size limit was reached.
+     * The listener is called from the worker threads, possibly concurrently.
+     *
+     * @param tiles    The tile indices.
+     * @param listener The listener receiving the progress.
+     * @return the number of bytes downloaded.
+     * @throws InterruptedException if the current thread was interrupted. All running downloads are cancelled.
+     */
+    public long run(long[] tiles, final Listener listener) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final Semaphore slots = new Semaphore(parallelism);
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        final int total = tiles.length;
+        try {
+            for (final long tile : tiles) {
+                slots.acquire();
+                if (bytes.get() >= maxBytes) {
+                    slots.release();
+                    break;
+                }
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!cache.exists(tileSource, tile)) {
+                                bytes.addAndGet(TilePrefetcher.this.download(tile));
+                            }
+                        } catch (IOException failure) {
+                            // The tile is simply loaded once it is shown.
+                            Log.d(LOGGER_ID, "Unable to download tile " + MapTileIndex.toString(tile));
+                        } catch (InterruptedException interrupted) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            listener.onProgress(processed.incrementAndGet(), total, bytes.get());
+                            slots.release();
+                        }
+                    }
+                });
+            }
+
+            // Wait for the remaining downloads
+            slots.acquire(parallelism);
+            slots.release(parallelism);
+        } finally {
+            executor.shutdownNow();
+        }
+        return bytes.get();
+    }
+
+    /**
+     * Download a single tile into the cache.
+     *
+     * @param tile The tile index.
+     * @return the size of the tile in bytes.
+     * @throws IOException          if the download failed.
+     * @throws InterruptedException if the current thread was interrupted while waiting for the source.
+     */
+    private long download(long tile) throws IOException, InterruptedException {
+        // Respect the limit of concurrent connections the source shares with the map
+        tileSource.acquire();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(tileSource.getTileURLString(tile)).openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setRequestProperty("User-Agent", userAgent);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected status " + connection.getResponseCode());
+            }
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            try (InputStream input = connection.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    data.write(buffer, 0, read);
+                }
+            }
+            if (!cache.saveFile(tileSource, tile, new ByteArrayInputStream(data.toByteArray()), null)) {
+                throw new IOException("Unable to store tile");
+            }
+            return data.size();
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            tileSource.release();
+        }
+    }
+
+    /**
+     * Convert a longitude into a tile column.
+     *
+     * @param longitude The longitude in degrees.
+     * @param tileCount The number of tiles per axis at the zoom level.
+     * @return the column with its fractional part.
+     */
+    private static double toTileX(double longitude, double tileCount) {
+        return (longitude + 180) / 360 * tileCount;
+    }
+
+    /**
+     * Convert a latitude into a tile row with the Web Mercator projection.
+     *
+     * @param latitude  The latitude in degrees.
+     * @param tileCount The number of tiles per axis at the zoom level.
+     * @return the row with its fractional part.
+     */
+    private static double toTileY(double latitude, double tileCount) {
+        double phi = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        return (1 - Math.log(Math.tan(phi) + 1 / Math.cos(phi)) / Math.PI) / 2 * tileCount;
+    }
+
+    /**
+     * Receives the progress of a prefetch.
+     */
+    public interface Listener {
+
+        /**
+         * Called once a tile was processed, i.e. downloaded, skipped as cached or failed.
+         *
+         * @param processed The number of tiles processed so far.
+         * @param total     The number of tiles.
+         * @param bytes     The number of bytes downloaded so far.
+         */
+        void onProgress(int processed, int total, long bytes);
+    }
+}
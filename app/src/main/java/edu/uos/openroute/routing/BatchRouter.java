@@ -0,0 +1,193 @@
+package edu.uos.openroute.routing;
+
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Calculates a large number of routes without any user interface involved.
+ * The routes are calculated with a bounded number of concurrent requests, temporary failures are retried with an
+ * exponential backoff and each result is handed to a listener as soon as it is available, so that no result has to be
+ * kept in memory until the whole batch is done.
+ */
+public class BatchRouter {
+
+    private final Router router;
+    private final int parallelism, maxAttempts;
+    private final long initialBackoff, maxBackoff;
+
+    /**
+     * Create a new batch router calculating the routes with the Open Route Service.
+     *
+     * @param manager        The manager used for the single routes.
+     * @param parallelism    The maximal number of concurrent requests.
+     * @param maxAttempts    The maximal number of attempts for a single route, at least one.
+     * @param initialBackoff The backoff in milliseconds before the first retry. It doubles with every further one.
+     * @param maxBackoff     The upper bound of the backoff in milliseconds.
+     * @throws IllegalArgumentException if the parallelism or the number of attempts is not positive.
+     */
+    public BatchRouter(final OpenRouteServiceManager manager, int parallelism, int maxAttempts, long initialBackoff, long maxBackoff) throws IllegalArgumentException {
+        this(new Router() {
+            @Override
+            public Road[] route(ArrayList<GeoPoint> waypoints) throws RoutingException, InterruptedException {
+                return manager.fetchRoads(waypoints);
+            }
+        }, parallelism, maxAttempts, initialBackoff, maxBackoff);
+    }
+
+    /**
+     * Create a new batch router.
+     *
+     * @param router         The router used for the single routes.
+     * @param parallelism    The maximal number of concurrent requests.
+     * @param maxAttempts    The maximal number of attempts for a single route, at least one.
+     * @param initialBackoff The backoff in milliseconds before the first retry. It doubles with every further one.
+     * @param maxBackoff     The upper bound of the backoff in milliseconds.
+     * @throws IllegalArgumentException if the parallelism or the number of attempts is not positive.
+     */
+    public BatchRouter(Router router, int parallelism, int maxAttempts, long initialBackoff, long maxBackoff) throws IllegalArgumentException {
+        if (parallelism < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Parallelism and attempts must be positive");
+        }
+
+        this.router = router;
+        this.parallelism = parallelism;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Calculate all the routes. This method returns once every route was either calculated or failed.
+     * The listener is called from the worker threads, possibly concurrently and in an arbitrary order.
+     *
+     * @param requests The waypoints of the routes. They are consumed lazily, only as many as currently processed.
+     * @param listener The listener receiving the results.
+     * @throws InterruptedException if the current thread was interrupted. All running calculations are cancelled.
+     */
+    public void run(Iterator<ArrayList<GeoPoint>> requests, final Listener listener) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final Semaphore slots = new Semaphore(parallelism);
+        try {
+            for (int index = 0; requests.hasNext(); ++index) {
+                // Wait for a free slot before consuming the next request, so that never more requests than workers are held.
+                slots.acquire();
+                final int requestIndex = index;
+                final ArrayList<GeoPoint> waypoints = requests.next();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            BatchRouter.this.calculate(requestIndex, waypoints, listener);
+                        } finally {
+                            slots.release();
+                        }
+                    }
+                });
+            }
+
+            // Wait for the remaining calculations
+            slots.acquire(parallelism);
+            slots.release(parallelism);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Calculate a single route, retrying temporary failures, and report its result.
+     * An unexpected error of the router or the listener is reported as a failure of the route, too.
+     *
+     * @param index     The index of the route in the batch.
+     * @param waypoints The waypoints of the route.
+     * @param listener  The listener receiving the result.
+     */
+    private void calculate(int index, ArrayList<GeoPoint> waypoints, Listener listener) {
+        try {
+            for (int attempt = 1; ; ++attempt) {
+                try {
+                    Road[] roads = router.route(waypoints);
+                    if (roads == null || roads.length == 0) {
+                        throw new RoutingException("No route found", null, false);
+                    }
+                    listener.onRoute(index, waypoints, roads);
+                    return;
+                } catch (RoutingException failure) {
+                    if (!failure.isRetryable() || attempt >= maxAttempts) {
+                        listener.onFailure(index, waypoints, failure);
+                        return;
+                    }
+                }
+                Thread.sleep(this.getBackoff(attempt));
+            }
+        } catch (InterruptedException interrupted) {
+            // The batch was cancelled
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException unexpected) {
+            // A bug must not drop the route silently and end the worker.
+            listener.onFailure(index, waypoints, new RoutingException("Unexpected error while calculating route", unexpected, false));
+        }
+    }
+
+    /**
+     * Calculate the backoff after a failed attempt.
+     * The delay is chosen uniformly up to the exponential bound, so that workers failing at the same time do not retry at
+     * the same time, too.
+     *
+     * @param attempt The number of the failed attempt, starting with one.
+     * @return the delay in milliseconds.
+     */
+    long getBackoff(int attempt) {
+        long bound = initialBackoff << Math.min(attempt - 1, 30);
+        if (bound <= 0 || bound > maxBackoff) {
+            bound = maxBackoff;
+        }
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+    }
+
+    /**
+     * The actual calculation of a single route.
+     */
+    public interface Router {
+
+        /**
+         * Calculate the roads between the waypoints.
+         *
+         * @param waypoints Waypoints of interest.
+         * @return the calculated roads.
+         * @throws RoutingException     if the roads could not be calculated.
+         * @throws InterruptedException if the current thread was interrupted.
+         */
+        Road[] route(ArrayList<GeoPoint> waypoints) throws RoutingException, InterruptedException;
+    }
+
+    /**
+     * Receives the results of a batch.
+     */
+    public interface Listener {
+
+        /**
+         * Called once a route was calculated.
+         *
+         * @param index     The index of the route in the batch.
+         * @param waypoints The waypoints of the route.
+         * @param roads     The calculated roads.
+         */
+        void onRoute(int index, ArrayList<GeoPoint> waypoints, Road[] roads);
+
+        /**
+         * Called once a route finally failed.
+         *
+         * @param index     The index of the route in the batch.
+         * @param waypoints The waypoints of the route.
+         * @param cause     The cause of the last failed attempt.
+         */
+        void onFailure(int index, ArrayList<GeoPoint> waypoints, RoutingException cause);
+    }
+}
@@ -0,0 +1,79 @@
+package edu.uos.openroute.routing;
+
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadManager;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+
+/**
+ * A road manager answering repeated requests from a persistent cache before asking the Open Route Service.
+ */
+public class CachingRoadManager extends RoadManager {
+
+    private final OpenRouteServiceManager manager;
+    private final RouteCache cache;
+
+    /**
+     * Create a new caching manager.
+     *
+     * @param manager The manager used if the cache does not know the route.
+     * @param cache   The cache.
+     */
+    public CachingRoadManager(OpenRouteServiceManager manager, RouteCache cache) {
+        this.manager = manager;
+        this.cache = cache;
+    }
+
+    /**
+     * Return the underlying cache, i.e. for querying its statistics.
+     *
+     * @return the cache.
+     */
+    public RouteCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public Road getRoad(ArrayList<GeoPoint> waypoints) {
+        Road[] roads = this.getRoads(waypoints, false);
+        return roads != null ? roads[0] : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Between two waypoints, alternative routes are requested as well and cached apart from the single route.
+     */
+    @Override
+    public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
+        return this.getRoads(waypoints, true);
+    }
+
+    /**
+     * Calculate the roads between the waypoints, either from the cache or by the service.
+     *
+     * @param waypoints    Waypoints of interest.
+     * @param alternatives True, if alternative routes should be calculated if possible.
+     * @return the roads or null, if they could not be calculated.
+     */
+    private Road[] getRoads(ArrayList<GeoPoint> waypoints, boolean alternatives) {
+        // Try the cache first ...
+        RouteKey key = new RouteKey(manager.getProfile(), OpenRouteServiceManager.Language.currentLanguage(), waypoints, alternatives);
+        Road[] roads = cache.get(key);
+        if (roads != null) {
+            return roads;
+        }
+
+        // ... and ask the service otherwise, remembering its successful answers.
+        if (alternatives) {
+            roads = manager.getRoads(waypoints);
+        } else {
+            Road road = manager.getRoad(waypoints);
+            roads = road != null ? new Road[]{road} : null;
+        }
+        if (roads != null) {
+            cache.put(key, roads);
+        }
+        return roads;
+    }
+}
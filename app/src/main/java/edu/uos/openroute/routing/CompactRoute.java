@@ -0,0 +1,662 @@
+package edu.uos.openroute.routing;
+
+import edu.uos.openroute.util.Geodesy;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadLeg;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A memory efficient representation of a route: Instead of an object per vertex and step, all the data is kept in
+ * parallel primitive arrays with coordinates as interleaved fixed-point numbers (E5). Instructions repeating along the
+ * route are stored only once. The osmdroid {@link Road} is only built on demand, i.e. for rendering.
+ */
+public final class CompactRoute {
+
+    private final int status;
+    private final double length, duration;
+    private final int north, east, south, west;
+    private final RouteGeometry geometry;
+
+    // The steps: Location (interleaved E5), vertex in the geometry, metrics, maneuver and instruction. The instructions of
+    // a parsed route are only read once they are accessed.
+    private final int[] stepCoordinates, stepVertices;
+    private final float[] stepLengths, stepDurations;
+    private final byte[] stepManeuvers;
+    private final InstructionTable instructions;
+
+    // The legs: First and last step and their metrics.
+    private final int[] legStarts, legEnds;
+    private final float[] legLengths, legDurations;
+
+    private CompactRoute(int status, double length, double duration, int north, int east, int south, int west, RouteGeometry geometry,
+                         int[] stepCoordinates, int[] stepVertices, float[] stepLengths, float[] stepDurations, byte[] stepManeuvers,
+                         InstructionTable instructions, int[] legStarts, int[] legEnds, float[] legLengths, float[] legDurations) {
+        this.status = status;
+        this.length = length;
+        this.duration = duration;
+        this.north = north;
+        this.east = east;
+        this.south = south;
+        this.west = west;
+        this.geometry = geometry;
+        this.stepCoordinates = stepCoordinates;
+        this.stepVertices = stepVertices;
+        this.stepLengths = stepLengths;
+        this.stepDurations = stepDurations;
+        this.stepManeuvers = stepManeuvers;
+        this.instructions = instructions;
+        this.legStarts = legStarts;
+        this.legEnds = legEnds;
+        this.legLengths = legLengths;
+        this.legDurations = legDurations;
+    }
+
+    /**
+     * Create the compact representation of a road.
+     *
+     * @param road The road.
+     * @return the compact route.
+     */
+    public static CompactRoute fromRoad(Road road) {
+        OpenRouteServiceRoad serviceRoad = road instanceof OpenRouteServiceRoad ? (OpenRouteServiceRoad) road : null;
+        RouteGeometry geometry = serviceRoad != null ? serviceRoad.getGeometry() : GeoPoints.toGeometry(road.mRouteHigh);
+        BoundingBox box = road.mBoundingBox;
+
+        // The packed steps of a parsed or restored road are shared as they are, without creating its nodes
+        StepTable table = serviceRoad != null ? serviceRoad.getSteps() : null;
+        if (table != null) {
+            return new CompactRoute(road.mStatus, road.mLength, road.mDuration,
+                    CompactRoute.toE5(box.getLatNorth()), CompactRoute.toE5(box.getLonEast()), CompactRoute.toE5(box.getLatSouth()), CompactRoute.toE5(box.getLonWest()),
+                    geometry, table.stepCoordinates, table.stepVertices, table.stepLengths, table.stepDurations, table.stepManeuvers,
+                    table.instructions, table.legStarts, table.legEnds, table.legLengths, table.legDurations);
+        }
+        ArrayList<RoadNode> nodes = serviceRoad != null ? serviceRoad.getNodes() : road.mNodes;
+        ArrayList<RoadLeg> roadLegs = serviceRoad != null ? serviceRoad.getLegs() : road.mLegs;
+
+        // Copy the steps into the parallel arrays, interning their instructions
+        final int steps = nodes.size();
+        int[] stepCoordinates = new int[2 * steps], stepVertices = new int[steps], stepInstructions = new int[steps];
+        float[] stepLengths = new float[steps], stepDurations = new float[steps];
+        byte[] stepManeuvers = new byte[steps];
+        HashMap<String, Integer> instructionIndices = new HashMap<>();
+        List<String> instructions = new ArrayList<>();
+        for (int i = 0; i < steps; ++i) {
+            RoadNode node = nodes.get(i);
+            stepCoordinates[2 * i] = CompactRoute.toE5(node.mLocation.getLatitude());
+            stepCoordinates[2 * i + 1] = CompactRoute.toE5(node.mLocation.getLongitude());
+            stepVertices[i] = serviceRoad != null ? serviceRoad.getNodeVertex(i)
+                    : CompactRoute.findVertex(geometry, stepCoordinates[2 * i], stepCoordinates[2 * i + 1], i > 0 ? stepVertices[i - 1] : 0);
+            stepLengths[i] = (float) node.mLength;
+            stepDurations[i] = (float) node.mDuration;
+            stepManeuvers[i] = (byte) node.mManeuverType;
+
+            String instruction = node.mInstructions != null ? node.mInstructions : "";
+            Integer index = instructionIndices.get(instruction);
+            if (index == null) {
+                index = instructions.size();
+                instructionIndices.put(instruction, index);
+                instructions.add(instruction);
+            }
+            stepInstructions[i] = index;
+        }
+
+        final int legs = roadLegs.size();
+        int[] legStarts = new int[legs], legEnds = new int[legs];
+        float[] legLengths = new float[legs], legDurations = new float[legs];
+        for (int i = 0; i < legs; ++i) {
+            RoadLeg leg = roadLegs.get(i);
+            legStarts[i] = leg.mStartNodeIndex;
+            legEnds[i] = leg.mEndNodeIndex;
+            legLengths[i] = (float) leg.mLength;
+            legDurations[i] = (float) leg.mDuration;
+        }
+
+        return new CompactRoute(road.mStatus, road.mLength, road.mDuration,
+                CompactRoute.toE5(box.getLatNorth()), CompactRoute.toE5(box.getLonEast()), CompactRoute.toE5(box.getLatSouth()), CompactRoute.toE5(box.getLonWest()),
+                geometry, stepCoordinates, stepVertices, stepLengths, stepDurations, stepManeuvers,
+                new InstructionTable(stepInstructions, instructions.toArray(new String[instructions.size()])), legStarts, legEnds, legLengths, legDurations);
+    }
+
+    /**
+     * Find the vertex of a geometry nearest to a location, not before a given vertex. As steps usually start exactly
+     * at a vertex, the search stops at the first exact match.
+     *
+     * @param geometry  The geometry.
+     * @param latitude  The latitude of the location in E5.
+     * @param longitude The longitude of the location in E5.
+     * @param first     The first vertex considered.
+     * @return the index of the nearest vertex.
+     */
+    private static int findVertex(RouteGeometry geometry, int latitude, int longitude, int first) {
+        int nearest = first;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int i = first; i < geometry.size() && nearestDistance > 0; ++i) {
+            long dy = geometry.getLatitudeE5(i) - latitude, dx = geometry.getLongitudeE5(i) - longitude;
+            if (dx * dx + dy * dy < nearestDistance) {
+                nearestDistance = dx * dx + dy * dy;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Build the osmdroid road for this route. The GeoPoints of its geometry as well as its nodes and legs are only created
+     * once they are required.
+     *
+     * @return a new road.
+     */
+    public OpenRouteServiceRoad toRoad() {
+        OpenRouteServiceRoad road = new OpenRouteServiceRoad();
+        road.mStatus = status;
+        road.mLength = length;
+        road.mDuration = duration;
+        road.mBoundingBox = new BoundingBox(north / RouteGeometry.E5, east / RouteGeometry.E5, south / RouteGeometry.E5, west / RouteGeometry.E5);
+
+        // The arrays are never modified, so the road shares them
+        road.setSteps(new StepTable(stepCoordinates, stepVertices, stepLengths, stepDurations, stepManeuvers,
+                instructions, legStarts, legEnds, legLengths, legDurations));
+        road.setGeometry(geometry);
+        return road;
+    }
+
+    /**
+     * Replace the part of the route behind a vertex by another route, i.e. one calculated from the current location
+     * after leaving this route. Steps starting at or behind the vertex are dropped and the step containing the vertex is
+     * shortened proportionally. The other route has to start in the leg left and visit the remaining waypoints:
+     * Its first leg continues the shortened leg, so each leg still ends at the same waypoint.
+     *
+     * @param vertex The last vertex of the geometry which is kept.
+     * @param tail   The route continuing behind the vertex.
+     * @return the combined route.
+     */
+    public CompactRoute splice(int vertex, CompactRoute tail) {
+        vertex = Math.max(0, Math.min(vertex, geometry.size() - 1));
+
+        // Keep the geometry up to the vertex and append the tail
+        final int offset = vertex + 1;
+        RouteGeometry combined = new RouteGeometry(offset + tail.geometry.size());
+        for (int i = 0; i < offset; ++i) {
+            combined.add(geometry.getLatitudeE5(i), geometry.getLongitudeE5(i));
+        }
+        for (int i = 0; i < tail.geometry.size(); ++i) {
+            combined.add(tail.geometry.getLatitudeE5(i), tail.geometry.getLongitudeE5(i));
+        }
+
+        // Keep the steps starting before the vertex, the last one only up to the vertex
+        int kept = 0;
+        while (kept < this.getStepCount() && stepVertices[kept] < vertex) {
+            ++kept;
+        }
+        final int steps = kept + tail.getStepCount();
+        int[] combinedCoordinates = Arrays.copyOf(stepCoordinates, 2 * steps), combinedVertices = Arrays.copyOf(stepVertices, steps);
+        String[] instructions = this.instructions.getInstructions();
+        int[] combinedInstructions = Arrays.copyOf(this.instructions.getStepInstructions(), steps);
+        float[] combinedLengths = Arrays.copyOf(stepLengths, steps), combinedDurations = Arrays.copyOf(stepDurations, steps);
+        byte[] combinedManeuvers = Arrays.copyOf(stepManeuvers, steps);
+        if (kept > 0) {
+            final int last = stepVertices[kept - 1], end = kept < this.getStepCount() ? stepVertices[kept] : geometry.size() - 1;
+            final double fullLength = this.getGeometryLength(last, end);
+            final float share = fullLength > 0 ? (float) (this.getGeometryLength(last, vertex) / fullLength) : 1;
+            combinedLengths[kept - 1] *= share;
+            combinedDurations[kept - 1] *= share;
+        }
+
+        // Append the steps of the tail, merging both instruction tables
+        HashMap<String, Integer> instructionIndices = new HashMap<>();
+        List<String> combinedTable = new ArrayList<>(Arrays.asList(instructions));
+        for (int i = 0; i < instructions.length; ++i) {
+            instructionIndices.put(instructions[i], i);
+        }
+        for (int i = 0; i < tail.getStepCount(); ++i) {
+            String instruction = tail.getStepInstruction(i);
+            Integer index = instructionIndices.get(instruction);
+            if (index == null) {
+                index = combinedTable.size();
+                instructionIndices.put(instruction, index);
+                combinedTable.add(instruction);
+            }
+            combinedCoordinates[2 * (kept + i)] = tail.stepCoordinates[2 * i];
+            combinedCoordinates[2 * (kept + i) + 1] = tail.stepCoordinates[2 * i + 1];
+            combinedVertices[kept + i] = tail.stepVertices[i] + offset;
+            combinedInstructions[kept + i] = index;
+            combinedLengths[kept + i] = tail.stepLengths[i];
+            combinedDurations[kept + i] = tail.stepDurations[i];
+            combinedManeuvers[kept + i] = tail.stepManeuvers[i];
+        }
+
+        // Keep the legs with kept steps, shortened to them, and append the legs of the tail. The tail starts in the leg
+        // left and continues it towards the same waypoint, so both are merged: Leg i still ends at the i-th waypoint.
+        int keptLegs = 0;
+        while (keptLegs < legStarts.length && legStarts[keptLegs] < kept) {
+            ++keptLegs;
+        }
+        final int merged = keptLegs > 0 && tail.legStarts.length > 0 ? 1 : 0;
+        final int legs = keptLegs + tail.legStarts.length - merged;
+        int[] combinedLegStarts = new int[legs], combinedLegEnds = new int[legs];
+        float[] combinedLegLengths = new float[legs], combinedLegDurations = new float[legs];
+        double prefixDuration = 0;
+        for (int i = 0; i < keptLegs; ++i) {
+            combinedLegStarts[i] = legStarts[i];
+            combinedLegEnds[i] = Math.min(legEnds[i], kept - 1);
+            for (int step = combinedLegStarts[i]; step <= combinedLegEnds[i]; ++step) {
+                combinedLegLengths[i] += combinedLengths[step];
+                combinedLegDurations[i] += combinedDurations[step];
+            }
+        }
+        for (int step = 0; step < kept; ++step) {
+            prefixDuration += combinedDurations[step];
+        }
+        for (int i = 0; i < tail.legStarts.length; ++i) {
+            final int leg = keptLegs - merged + i;
+            if (i > 0 || merged == 0) {
+                combinedLegStarts[leg] = tail.legStarts[i] + kept;
+            }
+            combinedLegEnds[leg] = tail.legEnds[i] + kept;
+            combinedLegLengths[leg] += tail.legLengths[i];
+            combinedLegDurations[leg] += tail.legDurations[i];
+        }
+
+        return new CompactRoute(tail.status, this.getGeometryLength(0, vertex) + tail.length, prefixDuration + tail.duration,
+                Math.max(north, tail.north), Math.max(east, tail.east), Math.min(south, tail.south), Math.min(west, tail.west),
+                combined, combinedCoordinates, combinedVertices, combinedLengths, combinedDurations, combinedManeuvers,
+                new InstructionTable(combinedInstructions, combinedTable.toArray(new String[combinedTable.size()])),
+                combinedLegStarts, combinedLegEnds, combinedLegLengths, combinedLegDurations);
+    }
+
+    /**
+     * Measure the geometry between two vertices.
+     *
+     * @param from The index of the first vertex.
+     * @param to   The index of the last vertex.
+     * @return the length in kilometers.
+     */
+    private double getGeometryLength(int from, int to) {
+        double distance = 0;
+        for (int i = from; i < to; ++i) {
+            distance += Geodesy.haversine(
+                    geometry.getLatitudeE5(i) / RouteGeometry.E5, geometry.getLongitudeE5(i) / RouteGeometry.E5,
+                    geometry.getLatitudeE5(i + 1) / RouteGeometry.E5, geometry.getLongitudeE5(i + 1) / RouteGeometry.E5
+            );
+        }
+        return distance;
+    }
+
+    /**
+     * Return the geometry of the route.
+     *
+     * @return the geometry.
+     */
+    public RouteGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Return the length of the route.
+     *
+     * @return the length in kilometers.
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * Return the duration of the route.
+     *
+     * @return the duration in seconds.
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * Return the number of steps.
+     *
+     * @return the number of steps.
+     */
+    public int getStepCount() {
+        return stepVertices.length;
+    }
+
+    /**
+     * Return the location of a step.
+     *
+     * @param step The index of the step.
+     * @return a new point at the location.
+     */
+    public GeoPoint getStepLocation(int step) {
+        return new GeoPoint(stepCoordinates[2 * step] / RouteGeometry.E5, stepCoordinates[2 * step + 1] / RouteGeometry.E5);
+    }
+
+    /**
+     * Return the latitude of a step in E5.
+     *
+     * @param step The index of the step.
+     * @return the latitude in E5.
+     */
+    public int getStepLatitudeE5(int step) {
+        return stepCoordinates[2 * step];
+    }
+
+    /**
+     * Return the longitude of a step in E5.
+     *
+     * @param step The index of the step.
+     * @return the longitude in E5.
+     */
+    public int getStepLongitudeE5(int step) {
+        return stepCoordinates[2 * step + 1];
+    }
+
+    /**
+     * Return the index of the vertex in the geometry where a step starts.
+     *
+     * @param step The index of the step.
+     * @return the index of the vertex.
+     */
+    public int getStepVertex(int step) {
+        return stepVertices[step];
+    }
+
+    /**
+     * Return the length of a step.
+     *
+     * @param step The index of the step.
+     * @return the length in kilometers.
+     */
+    public float getStepLength(int step) {
+        return stepLengths[step];
+    }
+
+    /**
+     * Return the duration of a step.
+     *
+     * @param step The index of the step.
+     * @return the duration in seconds.
+     */
+    public float getStepDuration(int step) {
+        return stepDurations[step];
+    }
+
+    /**
+     * Return the maneuver of a step.
+     *
+     * @param step The index of the step.
+     * @return the maneuver type as used by osmdroid.
+     */
+    public int getStepManeuver(int step) {
+        return stepManeuvers[step];
+    }
+
+    /**
+     * Return the instruction of a step.
+     *
+     * @param step The index of the step.
+     * @return the instruction.
+     */
+    public String getStepInstruction(int step) {
+        return instructions.getStepInstruction(step);
+    }
+
+    /**
+     * Return the number of legs, i.e. the parts of the route between two waypoints.
+     *
+     * @return the number of legs.
+     */
+    public int getLegCount() {
+        return legStarts.length;
+    }
+
+    /**
+     * Return the leg a step belongs to, i.e. to find the waypoints not reached yet.
+     *
+     * @param step The index of the step.
+     * @return the index of the leg, the last one for steps behind all legs.
+     */
+    public int getStepLeg(int step) {
+        int leg = 0;
+        while (leg < legEnds.length - 1 && legEnds[leg] < step) {
+            ++leg;
+        }
+        return leg;
+    }
+
+    /**
+     * Return the last step of a leg.
+     *
+     * @param leg The index of the leg.
+     * @return the index of the step.
+     */
+    public int getLegEnd(int leg) {
+        return legEnds[leg];
+    }
+
+    /**
+     * Return the number of distinct instructions.
+     *
+     * @return the size of the instruction table.
+     */
+    public int getInstructionCount() {
+        return instructions.getInstructions().length;
+    }
+
+    /**
+     * Write the route in its binary form. Coordinates and vertex indices are stored as differences to their predecessor in
+     * a variable-length encoding, so that the typically small steps along a route take only one or two bytes each.
+     *
+     * @param output The target.
+     * @throws IOException if writing failed.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeByte(status);
+        output.writeDouble(length);
+        output.writeDouble(duration);
+        output.writeInt(north);
+        output.writeInt(east);
+        output.writeInt(south);
+        output.writeInt(west);
+
+        // The geometry as delta encoded vertices
+        int[] coordinates = geometry.getCoordinates();
+        CompactRoute.writeVarInt(output, geometry.size());
+        CompactRoute.writeDeltas(output, coordinates, 2 * geometry.size());
+
+        // The instruction table and the steps
+        String[] instructions = this.instructions.getInstructions();
+        int[] stepInstructions = this.instructions.getStepInstructions();
+        CompactRoute.writeVarInt(output, instructions.length);
+        for (String instruction : instructions) {
+            output.writeUTF(instruction);
+        }
+        CompactRoute.writeVarInt(output, this.getStepCount());
+        CompactRoute.writeDeltas(output, stepCoordinates, stepCoordinates.length);
+        int previousVertex = 0;
+        for (int i = 0; i < this.getStepCount(); ++i) {
+            CompactRoute.writeVarInt(output, CompactRoute.zigZag(stepVertices[i] - previousVertex));
+            previousVertex = stepVertices[i];
+            CompactRoute.writeVarInt(output, stepInstructions[i]);
+            output.writeByte(stepManeuvers[i]);
+            output.writeFloat(stepLengths[i]);
+            output.writeFloat(stepDurations[i]);
+        }
+
+        CompactRoute.writeVarInt(output, legStarts.length);
+        for (int i = 0; i < legStarts.length; ++i) {
+            CompactRoute.writeVarInt(output, legStarts[i]);
+            CompactRoute.writeVarInt(output, legEnds[i]);
+            output.writeFloat(legLengths[i]);
+            output.writeFloat(legDurations[i]);
+        }
+    }
+
+    /**
+     * Read a route written by {@link #write(DataOutput)}.
+     *
+     * @param input The source.
+     * @return the route.
+     * @throws IOException if reading failed.
+     */
+    public static CompactRoute read(DataInput input) throws IOException {
+        int status = input.readByte();
+        double length = input.readDouble(), duration = input.readDouble();
+        int north = input.readInt(), east = input.readInt(), south = input.readInt(), west = input.readInt();
+
+        int vertices = CompactRoute.readVarInt(input);
+        RouteGeometry geometry = new RouteGeometry(vertices);
+        int latitude = 0, longitude = 0;
+        for (int i = 0; i < vertices; ++i) {
+            latitude += CompactRoute.unZigZag(CompactRoute.readVarInt(input));
+            longitude += CompactRoute.unZigZag(CompactRoute.readVarInt(input));
+            geometry.add(latitude, longitude);
+        }
+
+        String[] instructions = new String[CompactRoute.readVarInt(input)];
+        for (int i = 0; i < instructions.length; ++i) {
+            instructions[i] = input.readUTF();
+        }
+
+        int steps = CompactRoute.readVarInt(input);
+        int[] stepCoordinates = CompactRoute.readDeltas(input, 2 * steps);
+        int[] stepVertices = new int[steps], stepInstructions = new int[steps];
+        float[] stepLengths = new float[steps], stepDurations = new float[steps];
+        byte[] stepManeuvers = new byte[steps];
+        int vertex = 0;
+        for (int i = 0; i < steps; ++i) {
+            vertex += CompactRoute.unZigZag(CompactRoute.readVarInt(input));
+            stepVertices[i] = vertex;
+            stepInstructions[i] = CompactRoute.readVarInt(input);
+            if (stepInstructions[i] >= instructions.length) {
+                throw new IOException("Unknown instruction");
+            }
+            stepManeuvers[i] = input.readByte();
+            stepLengths[i] = input.readFloat();
+            stepDurations[i] = input.readFloat();
+        }
+
+        int legs = CompactRoute.readVarInt(input);
+        int[] legStarts = new int[legs], legEnds = new int[legs];
+        float[] legLengths = new float[legs], legDurations = new float[legs];
+        for (int i = 0; i < legs; ++i) {
+            legStarts[i] = CompactRoute.readVarInt(input);
+            legEnds[i] = CompactRoute.readVarInt(input);
+            legLengths[i] = input.readFloat();
+            legDurations[i] = input.readFloat();
+        }
+
+        return new CompactRoute(status, length, duration, north, east, south, west, geometry,
+                stepCoordinates, stepVertices, stepLengths, stepDurations, stepManeuvers,
+                new InstructionTable(stepInstructions, instructions), legStarts, legEnds, legLengths, legDurations);
+    }
+
+    /**
+     * Convert degrees into the fixed-point representation.
+     *
+     * @param degrees The degrees.
+     * @return the fixed-point number.
+     */
+    private static int toE5(double degrees) {
+        return (int) Math.round(degrees * RouteGeometry.E5);
+    }
+
+    /**
+     * Write interleaved coordinates as differences to the previous coordinate of the same kind.
+     *
+     * @param output      The target.
+     * @param coordinates The interleaved coordinates.
+     * @param count       The number of values to write.
+     * @throws IOException if writing failed.
+     */
+    private static void writeDeltas(DataOutput output, int[] coordinates, int count) throws IOException {
+        int latitude = 0, longitude = 0;
+        for (int i = 0; i < count; i += 2) {
+            CompactRoute.writeVarInt(output, CompactRoute.zigZag(coordinates[i] - latitude));
+            CompactRoute.writeVarInt(output, CompactRoute.zigZag(coordinates[i + 1] - longitude));
+            latitude = coordinates[i];
+            longitude = coordinates[i + 1];
+        }
+    }
+
+    /**
+     * Read interleaved coordinates written by {@link #writeDeltas(DataOutput, int[], int)}.
+     *
+     * @param input The source.
+     * @param count The number of values to read.
+     * @return the coordinates.
+     * @throws IOException if reading failed.
+     */
+    private static int[] readDeltas(DataInput input, int count) throws IOException {
+        int[] coordinates = new int[count];
+        int latitude = 0, longitude = 0;
+        for (int i = 0; i < count; i += 2) {
+            latitude += CompactRoute.unZigZag(CompactRoute.readVarInt(input));
+            longitude += CompactRoute.unZigZag(CompactRoute.readVarInt(input));
+            coordinates[i] = latitude;
+            coordinates[i + 1] = longitude;
+        }
+        return coordinates;
+    }
+
+    /**
+     * Map a signed number onto an unsigned one, so that numbers close to zero stay small.
+     *
+     * @param value The signed number.
+     * @return the unsigned number.
+     */
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverse {@link #zigZag(int)}.
+     *
+     * @param value The unsigned number.
+     * @return the signed number.
+     */
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Write an unsigned number with seven bits per byte, the highest bit marking a following byte.
+     *
+     * @param output The target.
+     * @param value  The number.
+     * @throws IOException if writing failed.
+     */
+    private static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            output.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * Read a number written by {@link #writeVarInt(DataOutput, int)}.
+     *
+     * @param input The source.
+     * @return the number.
+     * @throws IOException if reading failed or the number is malformed.
+     */
+    private static int readVarInt(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int chunk = input.readUnsignedByte();
+            value |= (chunk & 0x7f) << shift;
+            if ((chunk & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+}
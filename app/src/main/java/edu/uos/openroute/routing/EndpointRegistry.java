@@ -0,0 +1,226 @@
+package edu.uos.openroute.routing;
+
+import android.content.Context;
+import edu.uos.openroute.R;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A set of backends compatible to the Open Route Service. For each backend, the latencies of its recent responses and
+ * its health are tracked, so that requests may be sent to the fastest one which is currently working.
+ */
+public class EndpointRegistry {
+
+    /**
+     * The base URL of the public Open Route Service.
+     */
+    public static final String PUBLIC_BASE_URL = "https://api.openrouteservice.org";
+
+    // The registry shared by all managers.
+    private static EndpointRegistry sharedRegistry = null;
+
+    private final List<Backend> backends = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create an empty registry.
+     */
+    public EndpointRegistry() {
+    }
+
+    /**
+     * Return the registry shared by all managers, initialized with the backends configured in the resources.
+     *
+     * @param context The context used for loading the configuration.
+     * @return the shared registry.
+     * @throws MalformedURLException if a configured backend is invalid.
+     */
+    public static synchronized EndpointRegistry getInstance(Context context) throws MalformedURLException {
+        if (EndpointRegistry.sharedRegistry == null) {
+            EndpointRegistry registry = new EndpointRegistry();
+            for (String baseUrl : context.getResources().getStringArray(R.array.OpenRouteServiceBackends)) {
+                registry.add(baseUrl);
+            }
+            EndpointRegistry.sharedRegistry = registry;
+        }
+        return EndpointRegistry.sharedRegistry;
+    }
+
+    /**
+     * Add a backend.
+     *
+     * @param baseUrl The base URL of the backend, e.g. {@link #PUBLIC_BASE_URL}.
+     * @return the added backend.
+     * @throws MalformedURLException if the base URL is invalid.
+     */
+    public Backend add(String baseUrl) throws MalformedURLException {
+        Backend backend = new Backend(baseUrl);
+        backends.add(backend);
+        return backend;
+    }
+
+    /**
+     * Return all the backends.
+     *
+     * @return the backends.
+     */
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Select the backend with the lowest median latency among the healthy ones.
+     * Backends without any known latency are preferred, so that each one is tried at least once.
+     *
+     * @param excluded A backend which must not be selected, may be null.
+     * @return the selected backend or null, if there is no healthy one. If no backend is excluded and none is healthy,
+     * the one which is going to recover first is returned.
+     */
+    public Backend select(Backend excluded) {
+        final long now = System.currentTimeMillis();
+        Backend fastest = null, recovering = null;
+        long fastestLatency = Long.MAX_VALUE;
+        for (Backend backend : backends) {
+            if (backend == excluded) {
+                continue;
+            }
+
+            if (backend.isHealthy(now)) {
+                long latency = Math.max(0, backend.getLatencyPercentile(0.5));
+                if (latency < fastestLatency) {
+                    fastest = backend;
+                    fastestLatency = latency;
+                }
+            } else if (recovering == null || backend.getRecoveryTime() < recovering.getRecoveryTime()) {
+                recovering = backend;
+            }
+        }
+        return fastest != null || excluded != null ? fastest : recovering;
+    }
+
+    /**
+     * A single backend.
+     */
+    public static class Backend {
+
+        // The number of latencies the percentiles are calculated on.
+        private static final int SAMPLES = 64;
+
+        // The time a failed backend is avoided at first and at most, in milliseconds. The time doubles with every failure.
+        private static final long MIN_COOLDOWN = 1000, MAX_COOLDOWN = 60000;
+
+        private final String baseUrl;
+        private final ConcurrentHashMap<String, URL> endpoints = new ConcurrentHashMap<>();
+
+        // Ring buffer of the latest latencies in milliseconds.
+        private final long[] latencies = new long[SAMPLES];
+        private int latencyCount = 0, nextLatency = 0;
+
+        private int failures = 0;
+        private long recoveryTime = 0;
+
+        /**
+         * Create a new backend.
+         *
+         * @param baseUrl The base URL of the backend.
+         * @throws MalformedURLException if the base URL is invalid.
+         */
+        Backend(String baseUrl) throws MalformedURLException {
+            // Validate the URL early
+            new URL(baseUrl);
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        }
+
+        /**
+         * Return the base URL of the backend.
+         *
+         * @return the base URL.
+         */
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * Return the URL of an endpoint on this backend. The URLs are cached.
+         *
+         * @param file The path and query of the endpoint.
+         * @return the URL.
+         * @throws MalformedURLException if the URL is invalid.
+         */
+        public URL resolve(String file) throws MalformedURLException {
+            URL endpoint = endpoints.get(file);
+            if (endpoint == null) {
+                endpoint = new URL(baseUrl + file);
+                endpoints.put(file, endpoint);
+            }
+            return endpoint;
+        }
+
+        /**
+         * Record a successful response. The backend is healthy afterwards.
+         *
+         * @param latency The latency of the response in milliseconds.
+         */
+        public synchronized void recordSuccess(long latency) {
+            latencies[nextLatency] = latency;
+            nextLatency = (nextLatency + 1) % SAMPLES;
+            latencyCount = Math.min(latencyCount + 1, SAMPLES);
+            failures = 0;
+            recoveryTime = 0;
+        }
+
+        /**
+         * Record a failure of the backend itself. The backend is avoided for a time growing with each further failure.
+         */
+        public synchronized void recordFailure() {
+            long cooldown = Math.min(MAX_COOLDOWN, MIN_COOLDOWN << Math.min(failures, 16));
+            failures += 1;
+            recoveryTime = System.currentTimeMillis() + cooldown;
+        }
+
+        /**
+         * Check whether the backend is healthy.
+         *
+         * @param now The current time in milliseconds.
+         * @return true, if the backend may be used.
+         */
+        public synchronized boolean isHealthy(long now) {
+            return now >= recoveryTime;
+        }
+
+        /**
+         * Return the time the backend may be used again.
+         *
+         * @return the time in milliseconds.
+         */
+        public synchronized long getRecoveryTime() {
+            return recoveryTime;
+        }
+
+        /**
+         * Return a percentile of the recent latencies.
+         *
+         * @param percentile The percentile between 0 and 1, i.e. 0.95 for the 95th percentile.
+         * @return the latency in milliseconds or -1, if no latency is known yet.
+         */
+        public synchronized long getLatencyPercentile(double percentile) {
+            if (latencyCount == 0) {
+                return -1;
+            }
+
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * latencyCount) - 1;
+            return sorted[Math.max(0, Math.min(latencyCount - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+}
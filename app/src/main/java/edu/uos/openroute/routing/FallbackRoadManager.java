@@ -0,0 +1,71 @@
+package edu.uos.openroute.routing;
+
+import android.util.Log;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadManager;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+
+/**
+ * A road manager asking a second one if the first one is unable to calculate a route, i.e. the service while the
+ * device is offline and the {@link OfflineRoadManager} then.
+ */
+public class FallbackRoadManager extends RoadManager {
+
+    // Name for the used logger.
+    private final static String LOGGER_ID = "FallbackRoadManager";
+
+    private final RoadManager primary, fallback;
+
+    /**
+     * Create a new manager.
+     *
+     * @param primary  The manager asked first.
+     * @param fallback The manager asked if the first one failed.
+     */
+    public FallbackRoadManager(RoadManager primary, RoadManager fallback) {
+        this.primary = primary;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Road getRoad(ArrayList<GeoPoint> waypoints) {
+        Road road = primary.getRoad(waypoints);
+        if (FallbackRoadManager.isUsable(road) || !FallbackRoadManager.isRequired()) {
+            return road;
+        }
+        Log.i(LOGGER_ID, "Calculating the route with the fallback");
+        return fallback.getRoad(waypoints);
+    }
+
+    @Override
+    public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
+        Road[] roads = primary.getRoads(waypoints);
+        if ((roads != null && roads.length > 0 && FallbackRoadManager.isUsable(roads[0])) || !FallbackRoadManager.isRequired()) {
+            return roads;
+        }
+        Log.i(LOGGER_ID, "Calculating the routes with the fallback");
+        return fallback.getRoads(waypoints);
+    }
+
+    /**
+     * Check if a road was calculated successfully.
+     *
+     * @param road The road, may be null.
+     * @return true iff the road may be used.
+     */
+    private static boolean isUsable(Road road) {
+        return road != null && road.mStatus == Road.STATUS_OK;
+    }
+
+    /**
+     * Check if the fallback should be asked, which is not the case if the request was aborted in the meantime.
+     *
+     * @return true iff the request is still running.
+     */
+    private static boolean isRequired() {
+        RequestContext context = RequestContext.current();
+        return context == null || !context.isCancelled();
+    }
+}
@@ -0,0 +1,54 @@
+package edu.uos.openroute.routing;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversions between the packed geometries of the routing core and the GeoPoints used by OSMDroid.
+ */
+public final class GeoPoints {
+
+    private GeoPoints() {
+    }
+
+    /**
+     * Create a geometry from existing points.
+     *
+     * @param points The points.
+     * @return the geometry.
+     */
+    public static RouteGeometry toGeometry(List<GeoPoint> points) {
+        RouteGeometry geometry = new RouteGeometry(points.size());
+        for (GeoPoint point : points) {
+            geometry.add((int) Math.round(point.getLatitude() * RouteGeometry.E5), (int) Math.round(point.getLongitude() * RouteGeometry.E5));
+        }
+        return geometry;
+    }
+
+    /**
+     * Create a GeoPoint usable in OSMDroid for a vertex of a geometry.
+     *
+     * @param geometry The geometry.
+     * @param index    The index of the vertex.
+     * @return the GeoPoint.
+     */
+    public static GeoPoint of(RouteGeometry geometry, int index) {
+        return new GeoPoint(geometry.getLatitudeE5(index) / RouteGeometry.E5, geometry.getLongitudeE5(index) / RouteGeometry.E5);
+    }
+
+    /**
+     * Create GeoPoints usable in OSMDroid for all vertices of a geometry.
+     *
+     * @param geometry The geometry.
+     * @return the GeoPoints.
+     */
+    public static ArrayList<GeoPoint> of(RouteGeometry geometry) {
+        ArrayList<GeoPoint> points = new ArrayList<>(geometry.size());
+        for (int i = 0; i < geometry.size(); ++i) {
+            points.add(GeoPoints.of(geometry, i));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,178 @@
+package edu.uos.openroute.routing;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transport distributing the requests among the backends of a registry.
+ * <p>
+ * Each request is sent to the fastest healthy backend, resolving the path of the given endpoint against it. If that
+ * backend did not answer within its 95th percentile of latency, the request is additionally sent to the next best
+ * backend and the first successful response wins. As the response handler may hence run twice concurrently, it must
+ * not depend on being called only once.
+ */
+public class HedgedTransport implements Transport {
+
+    // The delay before hedging if the latency of a backend is not yet known, in milliseconds.
+    private static final long DEFAULT_HEDGE_DELAY = 1000;
+
+    // The transport shared by all managers.
+    private static HedgedTransport sharedTransport = null;
+
+    private final EndpointRegistry registry;
+    private final Transport transport;
+    private final ExecutorService executor;
+
+    /**
+     * Create a new transport.
+     *
+     * @param registry  The backends.
+     * @param transport The transport used for the single requests.
+     * @param executor  The executor the single requests are sent on.
+     */
+    public HedgedTransport(EndpointRegistry registry, Transport transport, ExecutorService executor) {
+        this.registry = registry;
+        this.transport = transport;
+        this.executor = executor;
+    }
+
+    /**
+     * Return the transport shared by all managers, using the shared registry.
+     *
+     * @param context The context used for loading the configuration.
+     * @return the shared transport.
+     * @throws MalformedURLException if a configured backend is invalid.
+     */
+    public static synchronized HedgedTransport getInstance(Context context) throws MalformedURLException {
+        if (HedgedTransport.sharedTransport == null) {
+            HedgedTransport.sharedTransport = new HedgedTransport(EndpointRegistry.getInstance(context), HttpTransport.getInstance(), Executors.newCachedThreadPool());
+        }
+        return HedgedTransport.sharedTransport;
+    }
+
+    /**
+     * Return the backends used by this transport.
+     *
+     * @return the registry.
+     */
+    public EndpointRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only the path and query of the endpoint are used, the host is given by the selected backend.
+     */
+    @Override
+    public <T> T post(URL endpoint, String apiKey, byte[] body, ResponseHandler<T> handler) throws IOException {
+        final EndpointRegistry.Backend primary = registry.select(null);
+        if (primary == null) {
+            throw new RoutingException("No backend available", null, false);
+        }
+
+        // The attempts run on other threads, but belong to the request of the current one.
+        final RequestContext context = RequestContext.current();
+        CompletionService<T> attempts = new ExecutorCompletionService<>(executor);
+        Future<T> primaryAttempt = attempts.submit(this.attempt(context, primary, endpoint.getFile(), apiKey, body, handler));
+        Future<T> hedgedAttempt = null;
+        try {
+            // Give the primary backend the time it usually requires at most ...
+            long hedgeDelay = primary.getLatencyPercentile(0.95);
+            Future<T> done = attempts.poll(hedgeDelay >= 0 ? hedgeDelay : DEFAULT_HEDGE_DELAY, TimeUnit.MILLISECONDS);
+
+            // ... before asking another one, too.
+            EndpointRegistry.Backend secondary = done == null ? registry.select(primary) : null;
+            if (secondary != null) {
+                hedgedAttempt = attempts.submit(this.attempt(context, secondary, endpoint.getFile(), apiKey, body, handler));
+            }
+
+            // Take the first successful response. If the first one failed, wait for the other one.
+            int pending = hedgedAttempt != null ? 2 : 1;
+            IOException failure = null;
+            while (pending-- > 0) {
+                if (done == null) {
+                    done = attempts.take();
+                }
+                try {
+                    return done.get();
+                } catch (ExecutionException execution) {
+                    Throwable cause = execution.getCause();
+                    if (cause instanceof RoutingException && !((RoutingException) cause).isRetryable()) {
+                        // The request itself is wrong. Another backend would not answer differently.
+                        throw (RoutingException) cause;
+                    } else if (cause instanceof IOException) {
+                        failure = (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        failure = new IOException("Unexpected error while sending request", cause);
+                    }
+                }
+                done = null;
+            }
+            throw failure;
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new RoutingException("Interrupted while waiting for response", interrupted, false);
+        } finally {
+            // The loser is not required anymore
+            primaryAttempt.cancel(true);
+            if (hedgedAttempt != null) {
+                hedgedAttempt.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Create a single attempt of a request, which updates the statistics of its backend.
+     *
+     * @param context The context of the request, may be null.
+     * @param backend The backend.
+     * @param file    The path and query of the endpoint.
+     * @param apiKey  The API key for the service.
+     * @param body    The JSON request.
+     * @param handler The handler of a successful response.
+     * @param <T>     The result of the handler.
+     * @return the attempt.
+     */
+    private <T> Callable<T> attempt(final RequestContext context, final EndpointRegistry.Backend backend, final String file, final String apiKey, final byte[] body, final ResponseHandler<T> handler) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws IOException {
+                final long start = System.nanoTime();
+                RequestContext previous = RequestContext.attach(context);
+                try {
+                    T result = transport.post(backend.resolve(file), apiKey, body, handler);
+                    backend.recordSuccess((System.nanoTime() - start) / 1000000);
+                    return result;
+                } catch (RoutingException routing) {
+                    // Only overload and server errors indicate a problem of the backend.
+                    if (routing.isRetryable()) {
+                        backend.recordFailure();
+                    } else {
+                        backend.recordSuccess((System.nanoTime() - start) / 1000000);
+                    }
+                    throw routing;
+                } catch (IOException io) {
+                    if (!Thread.currentThread().isInterrupted()) {
+                        backend.recordFailure();
+                    }
+                    throw io;
+                } finally {
+                    RequestContext.detach(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,286 @@
+package edu.uos.openroute.routing;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A transport based on {@link HttpURLConnection} which keeps the connections alive and requests compressed responses.
+ * <p>
+ * The platform pools a connection for reuse only if its response was read completely and it was not disconnected.
+ * Therefore the transport owns the stream of every response: Handlers only read it, while the transport drains and
+ * closes it afterwards. Connections are only disconnected if the exchange failed.
+ * <p>
+ * The platform does not tell whether a request reused a pooled connection. Instead, the time until the connection was
+ * established is measured for each request and reported to an {@link ExchangeListener}: It is close to zero for a
+ * reused connection and at least a round trip - plus the TLS handshake - for a new one.
+ * <p>
+ * Responses are streamed into the handler instead of being buffered, so apart from a buffer per thread for draining
+ * and reading error responses, no buffers are allocated by the transport itself.
+ */
+public class HttpTransport implements Transport {
+
+    // Name for the used logger.
+    private final static String LOGGER_ID = "HttpTransport";
+
+    // The size of the buffers used for reading responses.
+    private final static int BUFFER_SIZE = 8192;
+
+    // The transport shared by all managers.
+    private static HttpTransport instance = null;
+
+    // A buffer for each thread, used for draining and reading error responses.
+    private final static ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private final int connectTimeout;
+    private final AtomicLong requests = new AtomicLong(), compressed = new AtomicLong();
+    private final AtomicLong connectTime = new AtomicLong(), totalTime = new AtomicLong();
+    private volatile ExchangeListener listener = null;
+
+    /**
+     * Create a new transport.
+     *
+     * @param connectTimeout The timeout for establishing a connection in milliseconds.
+     */
+    public HttpTransport(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Return the transport shared by all managers, so that they share their connections, too.
+     *
+     * @return the shared transport.
+     */
+    public static synchronized HttpTransport getInstance() {
+        if (HttpTransport.instance == null) {
+            HttpTransport.instance = new HttpTransport(2000);
+        }
+        return HttpTransport.instance;
+    }
+
+    /**
+     * Set the listener informed about the timing of each successful exchange.
+     *
+     * @param listener The listener or null, if none should be informed.
+     */
+    public void setExchangeListener(ExchangeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Read the remainder of a stream, so that its connection may be reused.
+     *
+     * @param stream The stream.
+     * @throws IOException if the stream could not be read.
+     */
+    private static void drain(InputStream stream) throws IOException {
+        byte[] buffer = buffers.get();
+        while (stream.read(buffer) != -1) {
+            // Just discard the data
+        }
+    }
+
+    /**
+     * Read the body of an error response.
+     *
+     * @param stream The stream, may be null.
+     * @return the body.
+     * @throws IOException if the stream could not be read.
+     */
+    private static String readError(InputStream stream) throws IOException {
+        if (stream == null) {
+            return "";
+        }
+
+        byte[] buffer = buffers.get();
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        for (int read; (read = stream.read(buffer)) != -1; ) {
+            error.write(buffer, 0, read);
+        }
+        return error.toString("UTF-8");
+    }
+
+    @Override
+    public <T> T post(URL endpoint, String apiKey, byte[] body, ResponseHandler<T> handler) throws IOException {
+        // Respect the deadline of the request the current thread is working on, if any
+        final RequestContext context = RequestContext.current();
+        if (context != null) {
+            context.checkpoint();
+        }
+
+        final long start = System.nanoTime();
+        requests.incrementAndGet();
+
+        final HttpURLConnection client = (HttpURLConnection) endpoint.openConnection();
+        final Closeable abort = new Closeable() {
+            @Override
+            public void close() {
+                client.disconnect();
+            }
+        };
+        InputStream response = null;
+        boolean reusable = false;
+        try {
+            // Specify all the required header data and ask for a compressed response
+            client.setRequestMethod("POST");
+            client.setRequestProperty("Authorization", apiKey);
+            client.setRequestProperty("Content-Type", "application/json");
+            client.setRequestProperty("Accept", "application/json");
+            client.setRequestProperty("Accept-Encoding", "gzip");
+            client.setDoOutput(true);
+            client.setDoInput(true);
+            client.setUseCaches(false);
+            client.setConnectTimeout(connectTimeout);
+            if (context != null) {
+                // Without a read timeout a stalled server would block forever. Cancelling closes the socket.
+                int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, context.getRemainingTime()));
+                client.setConnectTimeout(Math.min(connectTimeout, remaining));
+                client.setReadTimeout(remaining);
+                context.register(abort);
+            }
+
+            // Connect - or take a pooled connection - and send the request
+            client.setFixedLengthStreamingMode(body.length);
+            client.connect();
+            final long connected = System.nanoTime();
+            try (OutputStream requestStream = client.getOutputStream()) {
+                requestStream.write(body);
+                requestStream.flush();
+            }
+
+            // Recieve the response and decompress it while reading, if required
+            final int code = client.getResponseCode();
+            final long firstByte = System.nanoTime();
+            response = code < HttpURLConnection.HTTP_BAD_REQUEST ? client.getInputStream() : client.getErrorStream();
+            final boolean gzip = response != null && "gzip".equalsIgnoreCase(client.getContentEncoding());
+            if (gzip) {
+                compressed.incrementAndGet();
+            }
+            InputStream decoded = gzip ? new GZIPInputStream(response, BUFFER_SIZE) : response;
+
+            if (code != HttpURLConnection.HTTP_OK) {
+                // The server report some kind of error. The connection stays usable nevertheless.
+                String error = HttpTransport.readError(decoded);
+                reusable = true;
+                throw new RoutingException(String.format("Got unsuccessful access code %d: %s", code, error), code);
+            }
+
+            // The handler must not close the stream, as it still has to be drained for reusing the connection
+            T result = handler.handle(new InputStreamReader(new RetainedInputStream(decoded), "UTF-8"));
+            HttpTransport.drain(response);
+            reusable = !"close".equalsIgnoreCase(client.getHeaderField("Connection"));
+
+            final long end = System.nanoTime();
+            connectTime.addAndGet(connected - start);
+            totalTime.addAndGet(end - start);
+            Log.d(LOGGER_ID, String.format("POST %s: connected after %d ms, %d ms in total, gzip %b", endpoint.getPath(),
+                    (connected - start) / 1000000, (end - start) / 1000000, gzip));
+            ExchangeListener listener = this.listener;
+            if (listener != null) {
+                listener.onExchange(endpoint, connected - start, firstByte - start, end - start, gzip);
+            }
+            return result;
+        } finally {
+            if (context != null) {
+                context.unregister(abort);
+            }
+
+            // Return the connection to the pool if the exchange completed, tear it down otherwise.
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException ignored) {
+                    reusable = false;
+                }
+            }
+            if (!reusable) {
+                client.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Return the number of requests sent.
+     *
+     * @return the number of requests.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Return the number of responses which were compressed.
+     *
+     * @return the number of compressed responses.
+     */
+    public long getCompressedCount() {
+        return compressed.get();
+    }
+
+    /**
+     * Return the time spent on establishing connections, summed over all successful requests. Compared to
+     * {@link #getTotalTime()}, it shows how much connection reuse saves.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getConnectTime() {
+        return connectTime.get();
+    }
+
+    /**
+     * Return the time spent on all successful requests.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getTotalTime() {
+        return totalTime.get();
+    }
+
+    /**
+     * A listener informed about the timing of each successful exchange, i.e. for collecting statistics in the field.
+     * It is called on the thread of the request.
+     */
+    public interface ExchangeListener {
+        /**
+         * Called once an exchange completed. All times are measured from the start of the request.
+         *
+         * @param endpoint    The endpoint.
+         * @param connectTime The time until the connection was established in nanoseconds, close to zero if a pooled
+         *                    connection was reused.
+         * @param firstByte   The time until the status of the response was received in nanoseconds.
+         * @param totalTime   The time until the response was handled in nanoseconds.
+         * @param compressed  True, if the response was compressed.
+         */
+        void onExchange(URL endpoint, long connectTime, long firstByte, long totalTime, boolean compressed);
+    }
+
+    /**
+     * The stream of a response as seen by a handler, which is not closed with the reader of the handler.
+     */
+    private static class RetainedInputStream extends FilterInputStream {
+
+        RetainedInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public void close() {
+            // The transport closes the stream once it is drained.
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package edu.uos.openroute.routing;
+
+/**
+ * The progress along a route while following it. For each location, the remaining distance and time are derived from
+ * the current step and sums over the following steps, which are calculated once for the whole route.
+ * Additionally, it decides how often new locations are required: Rarely while the next maneuver is far away or the user
+ * is standing still, often while approaching it.
+ */
+public class NavigationProgress {
+
+    /**
+     * The intervals locations are requested with in milliseconds, from the most to the least frequent.
+     */
+    public static final long[] UPDATE_INTERVALS = {1000, 2000, 5000, 10000};
+
+    // The speed below which the user is considered standing still, in meters per second.
+    private static final double STANDING_SPEED = 0.5;
+
+    // The number of locations expected before reaching the next maneuver.
+    private static final int UPDATES_PER_STEP = 5;
+
+    // The time to the next maneuver in milliseconds above which locations are delivered in batches, and their size.
+    private static final long BATCHING_TIME = 120000;
+    private static final int BATCH_SIZE = 6;
+
+    // Snapping near the last match: The segments searched before and after it, and the distance in kilometers up to
+    // which a match there is preferred over the nearest one of the whole route.
+    private static final int LOCAL_SEGMENTS_BEFORE = 4, LOCAL_SEGMENTS_AFTER = 64;
+    private static final double LOCAL_MATCH_DISTANCE = 0.05;
+
+    private final RouteIndex index;
+
+    // The distance of the start of each step from the start of the route in kilometers.
+    private final double[] stepStarts;
+
+    // The duration of each step and of all the steps following it in seconds.
+    private final double[] stepDurations, followingDurations;
+
+    private RouteIndex.Match match = null;
+    private int step = -1;
+
+    /**
+     * Create the progress of a route. Calculating the index takes a while for long routes and should not happen on the
+     * UI thread.
+     *
+     * @param route The route.
+     */
+    public NavigationProgress(CompactRoute route) {
+        this(route, new RouteIndex(route));
+    }
+
+    /**
+     * Create the progress of a route with an existing index.
+     *
+     * @param route The route.
+     * @param index The index of the route.
+     */
+    public NavigationProgress(CompactRoute route, RouteIndex index) {
+        this.index = index;
+
+        final int steps = route.getStepCount();
+        this.stepStarts = new double[steps];
+        this.stepDurations = new double[steps];
+        this.followingDurations = new double[steps];
+        for (int i = 0; i < steps; ++i) {
+            this.stepStarts[i] = index.getDistanceAt(route.getStepVertex(i));
+            this.stepDurations[i] = route.getStepDuration(i);
+        }
+        for (int i = steps - 2; i >= 0; --i) {
+            this.followingDurations[i] = this.followingDurations[i + 1] + this.stepDurations[i + 1];
+        }
+    }
+
+    /**
+     * Update the progress with a new location of the user. The location is snapped onto the route near the last match
+     * first, so that the user stays on the part of the route travelled where it passes itself closely. Only if the
+     * user is not close to this part anymore, the whole route is searched.
+     *
+     * @param latitude  The latitude of the user in degrees.
+     * @param longitude The longitude of the user in degrees.
+     * @return the location snapped onto the route or null, if the route is empty.
+     */
+    public RouteIndex.Match update(double latitude, double longitude) {
+        RouteIndex.Match local = null;
+        if (this.match != null) {
+            local = this.index.nearest(latitude, longitude, this.match.getSegment(), LOCAL_SEGMENTS_BEFORE, LOCAL_SEGMENTS_AFTER);
+        }
+        this.match = local != null && local.getDistance() <= LOCAL_MATCH_DISTANCE ? local : this.index.nearest(latitude, longitude);
+        this.step = this.match != null ? this.match.getStep() : -1;
+        return this.match;
+    }
+
+    /**
+     * Return the location of the user snapped onto the route.
+     *
+     * @return the snapped location or null, if there was no update yet.
+     */
+    public RouteIndex.Match getMatch() {
+        return this.match;
+    }
+
+    /**
+     * Return the step the user is currently on.
+     *
+     * @return the index of the step, i.e. the road node, or -1 if unknown.
+     */
+    public int getStep() {
+        return this.step;
+    }
+
+    /**
+     * Return the distance to the end of the route.
+     *
+     * @return the distance in kilometers.
+     */
+    public double getRemainingDistance() {
+        return this.match != null ? this.index.getLength() - this.match.getDistanceAlong() : this.index.getLength();
+    }
+
+    /**
+     * Return the distance to the start of the next step, i.e. the next maneuver.
+     *
+     * @return the distance in kilometers.
+     */
+    public double getDistanceToNextStep() {
+        if (this.step < 0) {
+            return this.getRemainingDistance();
+        }
+        return Math.max(0, this.getStepEnd(this.step) - this.match.getDistanceAlong());
+    }
+
+    /**
+     * Return the expected time to the end of the route, assuming the current step is passed at its usual speed.
+     *
+     * @return the time in seconds.
+     */
+    public double getRemainingDuration() {
+        if (this.step < 0) {
+            return this.stepDurations.length > 0 ? this.stepDurations[0] + this.followingDurations[0] : 0;
+        }
+        double stepLength = this.getStepEnd(this.step) - this.stepStarts[this.step];
+        double remainingShare = stepLength > 0 ? this.getDistanceToNextStep() / stepLength : 0;
+        return this.followingDurations[this.step] + remainingShare * this.stepDurations[this.step];
+    }
+
+    /**
+     * Return the interval locations are required in.
+     *
+     * @param speed The current speed of the user in meters per second.
+     * @return the interval in milliseconds, one of {@link #UPDATE_INTERVALS}.
+     */
+    public long getUpdateInterval(double speed) {
+        final long timeToNextStep = this.getTimeToNextStep(speed);
+
+        // Choose the longest interval still giving enough locations before the maneuver.
+        long interval = UPDATE_INTERVALS[0];
+        for (long candidate : UPDATE_INTERVALS) {
+            if (candidate * UPDATES_PER_STEP <= timeToNextStep) {
+                interval = candidate;
+            }
+        }
+        return interval;
+    }
+
+    /**
+     * Return the time locations may be collected before they are delivered in a batch.
+     *
+     * @param speed The current speed of the user in meters per second.
+     * @return the time in milliseconds, 0 if each location should be delivered immediately.
+     */
+    public long getBatchTime(double speed) {
+        return this.getTimeToNextStep(speed) > BATCHING_TIME ? BATCH_SIZE * this.getUpdateInterval(speed) : 0;
+    }
+
+    /**
+     * Estimate the time until the next maneuver.
+     *
+     * @param speed The current speed of the user in meters per second.
+     * @return the time in milliseconds, Long.MAX_VALUE if the user is standing still.
+     */
+    private long getTimeToNextStep(double speed) {
+        if (speed < STANDING_SPEED) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (this.getDistanceToNextStep() * 1000 * 1000 / speed);
+    }
+
+    /**
+     * Return the distance of the end of a step from the start of the route.
+     *
+     * @param step The index of the step.
+     * @return the distance in kilometers.
+     */
+    private double getStepEnd(int step) {
+        return step + 1 < this.stepStarts.length ? this.stepStarts[step + 1] : this.index.getLength();
+    }
+}
@@ -0,0 +1,696 @@
+package edu.uos.openroute.routing;
+
+import android.content.Context;
+import android.util.Log;
+import edu.uos.openroute.R;
+import edu.uos.openroute.util.Geodesy;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadLeg;
+import org.osmdroid.bonuspack.routing.RoadManager;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A road manager calculating routes on the device, without any connection, on a {@link RoadGraph}.
+ * <p>
+ * The fastest route is searched with A*, using the straight distance at the top speed of the profile as estimate. The
+ * resulting roads have the same structure as the ones of the Open Route Service: One leg per pair of waypoints, one
+ * node per maneuver with the maneuver types of the service, and the full geometry. The instructions are kept simple, as
+ * the graph does not know any street names.
+ * <p>
+ * The waypoints are snapped onto the nearest usable node within a limited distance, which is looked up in a grid over
+ * the nodes. The grid is built on the first query, so that creating a manager is cheap.
+ */
+public class OfflineRoadManager extends RoadManager {
+
+    // Name for the used logger.
+    private final static String LOGGER_ID = "OfflineRoadManager";
+
+    // The maneuver types of the Open Route Service.
+    private static final int LEFT = 0, RIGHT = 1, SHARP_LEFT = 2, SHARP_RIGHT = 3, SLIGHT_LEFT = 4, SLIGHT_RIGHT = 5, U_TURN = 9, DEPART = 11;
+
+    /**
+     * The name of the graph file in the files directory of the app, which is used if it exists.
+     */
+    public static final String GRAPH_FILE = "roads.graph";
+
+    // The distance in meters a waypoint may be away from the road network at most.
+    private static final double MAX_SNAP_DISTANCE = 500;
+
+    // The number of nodes per cell of the grid aimed for, and the smallest size of a cell in E5.
+    private static final int NODES_PER_CELL = 4;
+    private static final int MIN_CELL_SIZE = 100;
+
+    // The number of visited nodes a search has room for at first.
+    private static final int INITIAL_SEARCH_CAPACITY = 1024;
+
+    // The change of direction in degrees at a junction above which it becomes a maneuver.
+    private static final double MIN_TURN = 30;
+
+    // The factor applied on the straight distance, making up for the approximation of the distance in the estimate.
+    private static final double ESTIMATE_FACTOR = 0.99;
+
+    private final RoadGraph graph;
+    private final OpenRouteServiceManager.Profile profile;
+
+    // The instructions of the maneuver types, by type.
+    private final String[] instructions;
+
+    // The speed on each road class in meters per second, 0 if the class may not be used, and the highest speed.
+    private final double[] speeds;
+    private final double maxSpeed;
+
+    // The grid for snapping the waypoints, built on first use.
+    private volatile SnapGrid grid = null;
+
+    /**
+     * Create a new manager.
+     *
+     * @param graph        The road network.
+     * @param profile      The profile the routes are calculated for.
+     * @param instructions The instructions of the maneuver types, indexed by type.
+     */
+    public OfflineRoadManager(RoadGraph graph, OpenRouteServiceManager.Profile profile, String[] instructions) {
+        if (instructions.length <= DEPART) {
+            throw new IllegalArgumentException("Instructions for all maneuver types are required");
+        }
+        this.graph = graph;
+        this.profile = profile;
+        this.instructions = instructions;
+        this.speeds = OfflineRoadManager.getSpeeds(profile);
+
+        double maxSpeed = 0;
+        for (double speed : this.speeds) {
+            maxSpeed = Math.max(maxSpeed, speed);
+        }
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Create a manager on the graph file of the app with the instructions in the language of the user.
+     *
+     * @param context The context of the app.
+     * @param profile The profile the routes are calculated for.
+     * @return the manager or null, if there is no valid graph file.
+     */
+    public static OfflineRoadManager create(Context context, OpenRouteServiceManager.Profile profile) {
+        File file = new File(context.getFilesDir(), GRAPH_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return new OfflineRoadManager(RoadGraph.open(file), profile, context.getResources().getStringArray(R.array.offline_instructions));
+        } catch (IOException invalid) {
+            Log.w(LOGGER_ID, "Unable to open the road graph", invalid);
+            return null;
+        }
+    }
+
+    /**
+     * Return the usual speed on each road class for a profile.
+     *
+     * @param profile The profile.
+     * @return the speeds in meters per second, indexed by road class; 0 if the class may not be used.
+     */
+    private static double[] getSpeeds(OpenRouteServiceManager.Profile profile) {
+        // Speeds in kilometers per hour from motorway to path
+        double[] speeds;
+        switch (profile) {
+            case CAR:
+                speeds = new double[]{110, 90, 70, 60, 50, 30, 15, 0};
+                break;
+            case BICYCLE:
+                speeds = new double[]{0, 0, 18, 18, 18, 18, 15, 12};
+                break;
+            default:
+                speeds = new double[]{0, 0, 5, 5, 5, 5, 5, 5};
+        }
+        for (int i = 0; i < speeds.length; ++i) {
+            speeds[i] /= 3.6;
+        }
+        return speeds;
+    }
+
+    @Override
+    public Road getRoad(ArrayList<GeoPoint> waypoints) {
+        Road[] roads = this.getRoads(waypoints);
+        return roads != null ? roads[0] : null;
+    }
+
+    @Override
+    public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
+        try {
+            return new Road[]{this.calculate(waypoints)};
+        } catch (RoutingException routing) {
+            Log.e(LOGGER_ID, routing.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Calculate the fastest road along the waypoints. Unlike {@link #getRoads(ArrayList)}, failures are reported to the
+     * caller.
+     *
+     * @param waypoints The waypoints, at least two.
+     * @return the road with one leg per pair of consecutive waypoints.
+     * @throws RoutingException if a waypoint is farther than {@link #MAX_SNAP_DISTANCE} from any usable road or two
+     *                          waypoints are not connected.
+     */
+    public OpenRouteServiceRoad calculate(ArrayList<GeoPoint> waypoints) throws RoutingException {
+        if (waypoints.size() < 2) {
+            throw new RoutingException("At least two waypoints are required", null, false);
+        }
+
+        // Snap the waypoints onto the graph
+        int[] nodes = new int[waypoints.size()];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = this.findNearestNode(waypoints.get(i));
+            if (nodes[i] < 0) {
+                throw new RoutingException("No road found near waypoint " + i, null, false);
+            }
+        }
+
+        OpenRouteServiceRoad road = new OpenRouteServiceRoad();
+        RouteGeometry geometry = new RouteGeometry(64);
+        for (int i = 1; i < nodes.length; ++i) {
+            int[] path = new Search().run(nodes[i - 1], nodes[i]);
+            if (path == null) {
+                throw new RoutingException("Waypoints " + (i - 1) + " and " + i + " are not connected", null, false);
+            }
+            this.addLeg(road, geometry, path);
+        }
+
+        // Calculate the bounding box of the whole geometry
+        int north = Integer.MIN_VALUE, east = Integer.MIN_VALUE, south = Integer.MAX_VALUE, west = Integer.MAX_VALUE;
+        for (int i = 0; i < geometry.size(); ++i) {
+            north = Math.max(north, geometry.getLatitudeE5(i));
+            east = Math.max(east, geometry.getLongitudeE5(i));
+            south = Math.min(south, geometry.getLatitudeE5(i));
+            west = Math.min(west, geometry.getLongitudeE5(i));
+        }
+
+        geometry.trimToSize();
+        road.setGeometry(geometry);
+        road.mBoundingBox = new BoundingBox(north / RouteGeometry.E5, east / RouteGeometry.E5, south / RouteGeometry.E5, west / RouteGeometry.E5);
+        road.mStatus = Road.STATUS_OK;
+        return road;
+    }
+
+    /**
+     * Find the node nearest to a location which is connected to a road usable with the profile.
+     *
+     * @param location The location.
+     * @return the index of the node or -1, if there is no such node within {@link #MAX_SNAP_DISTANCE}.
+     */
+    private int findNearestNode(GeoPoint location) {
+        SnapGrid grid = this.grid;
+        if (grid == null) {
+            synchronized (this) {
+                if (this.grid == null) {
+                    this.grid = new SnapGrid();
+                }
+                grid = this.grid;
+            }
+        }
+        return grid.findNearest(location.getLatitude() * RouteGeometry.E5, location.getLongitude() * RouteGeometry.E5);
+    }
+
+    /**
+     * Check if a node has an outgoing edge usable with the profile.
+     *
+     * @param node The index of the node.
+     * @return true iff a route may start at the node.
+     */
+    private boolean isConnected(int node) {
+        for (int edge = this.graph.getEdgeStart(node); edge < this.graph.getEdgeEnd(node); ++edge) {
+            if (this.getSpeed(edge) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the speed on an edge.
+     *
+     * @param edge The index of the edge.
+     * @return the speed in meters per second, 0 if the edge may not be used with the profile.
+     */
+    private double getSpeed(int edge) {
+        if (this.profile != OpenRouteServiceManager.Profile.WALKING && this.graph.isAgainstOneway(edge)) {
+            return 0;
+        }
+        return this.speeds[this.graph.getRoadClass(edge)];
+    }
+
+    /**
+     * Append a path as leg to a road, creating a node for its start and each turn.
+     *
+     * @param road     The road.
+     * @param geometry The geometry of the road, which is extended.
+     * @param path     The path as alternating nodes and edges, starting and ending with a node.
+     */
+    private void addLeg(OpenRouteServiceRoad road, RouteGeometry geometry, int[] path) {
+        // The first vertex of a leg is the last one of the previous leg.
+        final int firstVertex = Math.max(0, geometry.size() - 1);
+        if (geometry.size() == 0) {
+            geometry.add(this.graph.getLatitudeE5(path[0]), this.graph.getLongitudeE5(path[0]));
+        }
+
+        RoadLeg leg = new RoadLeg();
+        leg.mStartNodeIndex = road.getNodeCount();
+        RoadNode step = this.createStep(DEPART, path[0]);
+        road.addNode(step, firstVertex);
+        double previousBearing = Double.NaN;
+        for (int i = 1; i < path.length; i += 2) {
+            final int edge = path[i], from = path[i - 1], to = path[i + 1];
+            final double bearing = this.getBearing(from, to);
+
+            // A junction with a noticeable change of direction starts a new step
+            if (!Double.isNaN(previousBearing) && this.graph.getEdgeEnd(from) - this.graph.getEdgeStart(from) > 2) {
+                int maneuver = OfflineRoadManager.getManeuver(bearing - previousBearing);
+                if (maneuver >= 0) {
+                    step = this.createStep(maneuver, from);
+                    road.addNode(step, firstVertex + (i - 1) / 2);
+                }
+            }
+            previousBearing = bearing;
+
+            final double length = this.graph.getLength(edge) / 1000.0, duration = this.graph.getLength(edge) / this.getSpeed(edge);
+            step.mLength += length;
+            step.mDuration += duration;
+            leg.mLength += length;
+            leg.mDuration += duration;
+            geometry.add(this.graph.getLatitudeE5(to), this.graph.getLongitudeE5(to));
+        }
+
+        leg.mEndNodeIndex = road.getNodeCount() - 1;
+        road.getLegs().add(leg);
+        road.mLength += leg.mLength;
+        road.mDuration += leg.mDuration;
+    }
+
+    /**
+     * Create the node of a step.
+     *
+     * @param maneuver The maneuver type.
+     * @param node     The index of the graph node the step starts at.
+     * @return the step without length and duration.
+     */
+    private RoadNode createStep(int maneuver, int node) {
+        RoadNode step = new RoadNode();
+        step.mManeuverType = maneuver;
+        step.mInstructions = this.instructions[maneuver];
+        step.mLocation = new GeoPoint(this.graph.getLatitudeE5(node) / RouteGeometry.E5, this.graph.getLongitudeE5(node) / RouteGeometry.E5);
+        step.mLength = 0;
+        step.mDuration = 0;
+        return step;
+    }
+
+    /**
+     * Calculate the direction from one node towards another.
+     *
+     * @param from The index of the first node.
+     * @param to   The index of the second node.
+     * @return the bearing in degrees clockwise from north.
+     */
+    private double getBearing(int from, int to) {
+        final double scale = Math.cos(Math.toRadians(this.graph.getLatitudeE5(from) / RouteGeometry.E5));
+        final double dy = this.graph.getLatitudeE5(to) - this.graph.getLatitudeE5(from);
+        final double dx = (this.graph.getLongitudeE5(to) - this.graph.getLongitudeE5(from)) * scale;
+        return Math.toDegrees(Math.atan2(dx, dy));
+    }
+
+    /**
+     * Classify a change of direction.
+     *
+     * @param change The change of the bearing in degrees.
+     * @return the maneuver type or -1, if the direction is kept.
+     */
+    private static int getManeuver(double change) {
+        // Normalize into (-180, 180]: positive changes are turns to the right
+        change = change % 360;
+        if (change > 180) {
+            change -= 360;
+        } else if (change <= -180) {
+            change += 360;
+        }
+
+        final double angle = Math.abs(change);
+        if (angle < MIN_TURN) {
+            return -1;
+        } else if (angle < 60) {
+            return change > 0 ? SLIGHT_RIGHT : SLIGHT_LEFT;
+        } else if (angle < 120) {
+            return change > 0 ? RIGHT : LEFT;
+        } else if (angle < 170) {
+            return change > 0 ? SHARP_RIGHT : SHARP_LEFT;
+        }
+        return U_TURN;
+    }
+
+    /**
+     * The nodes of the usable roads, grouped by the cells of a grid over the graph, for snapping locations onto them.
+     * The cells are sized to hold a few nodes each, and the nodes of each cell are consecutive.
+     */
+    private final class SnapGrid {
+        private final int minLatitude, minLongitude, cellSize, rows, columns;
+        private final int[] cellStarts, nodes;
+
+        /**
+         * Create the grid of all nodes usable with the profile.
+         */
+        SnapGrid() {
+            final RoadGraph graph = OfflineRoadManager.this.graph;
+            int minLatitude = Integer.MAX_VALUE, minLongitude = Integer.MAX_VALUE, maxLatitude = Integer.MIN_VALUE, maxLongitude = Integer.MIN_VALUE;
+            for (int node = 0; node < graph.getNodeCount(); ++node) {
+                minLatitude = Math.min(minLatitude, graph.getLatitudeE5(node));
+                maxLatitude = Math.max(maxLatitude, graph.getLatitudeE5(node));
+                minLongitude = Math.min(minLongitude, graph.getLongitudeE5(node));
+                maxLongitude = Math.max(maxLongitude, graph.getLongitudeE5(node));
+            }
+            this.minLatitude = minLatitude;
+            this.minLongitude = minLongitude;
+
+            // Size the cells, so that there are about as many as nodes per cell aimed for
+            final double area = Math.max(0, (double) maxLatitude - minLatitude) * Math.max(0, (double) maxLongitude - minLongitude);
+            final int cellCount = Math.max(1, graph.getNodeCount() / NODES_PER_CELL);
+            this.cellSize = (int) Math.max(MIN_CELL_SIZE, Math.ceil(Math.sqrt(area / cellCount)));
+            this.rows = graph.getNodeCount() == 0 ? 1 : (maxLatitude - minLatitude) / this.cellSize + 1;
+            this.columns = graph.getNodeCount() == 0 ? 1 : (maxLongitude - minLongitude) / this.cellSize + 1;
+
+            // Sort the usable nodes into their cells with a counting sort
+            this.cellStarts = new int[this.rows * this.columns + 1];
+            int usable = 0;
+            for (int node = 0; node < graph.getNodeCount(); ++node) {
+                if (OfflineRoadManager.this.isConnected(node)) {
+                    ++this.cellStarts[this.getCell(node) + 1];
+                    ++usable;
+                }
+            }
+            for (int cell = 0; cell < this.rows * this.columns; ++cell) {
+                this.cellStarts[cell + 1] += this.cellStarts[cell];
+            }
+            this.nodes = new int[usable];
+            int[] next = Arrays.copyOf(this.cellStarts, this.rows * this.columns);
+            for (int node = 0; node < graph.getNodeCount(); ++node) {
+                if (OfflineRoadManager.this.isConnected(node)) {
+                    this.nodes[next[this.getCell(node)]++] = node;
+                }
+            }
+        }
+
+        /**
+         * Return the cell of a node.
+         *
+         * @param node The index of the node.
+         * @return the index of the cell.
+         */
+        private int getCell(int node) {
+            final RoadGraph graph = OfflineRoadManager.this.graph;
+            return ((graph.getLatitudeE5(node) - this.minLatitude) / this.cellSize) * this.columns
+                    + (graph.getLongitudeE5(node) - this.minLongitude) / this.cellSize;
+        }
+
+        /**
+         * Find the usable node nearest to a location, searching the cells in rings around the one of the location until
+         * no closer node is possible.
+         *
+         * @param latitude  The latitude of the location in E5.
+         * @param longitude The longitude of the location in E5.
+         * @return the index of the node or -1, if there is no such node within {@link #MAX_SNAP_DISTANCE}.
+         */
+        int findNearest(double latitude, double longitude) {
+            final RoadGraph graph = OfflineRoadManager.this.graph;
+            final double scale = Math.cos(Math.toRadians(latitude / RouteGeometry.E5));
+            final double metersPerE5 = 1000 * Geodesy.EARTH_RADIUS * Math.toRadians(1 / RouteGeometry.E5);
+
+            // Locations outside the grid start at its border, which does not bring any node closer.
+            final int row = (int) Math.max(0, Math.min(this.rows - 1, Math.floor((latitude - this.minLatitude) / this.cellSize)));
+            final int column = (int) Math.max(0, Math.min(this.columns - 1, Math.floor((longitude - this.minLongitude) / this.cellSize)));
+
+            int nearest = -1;
+            double nearestDistance = Math.pow(MAX_SNAP_DISTANCE / metersPerE5, 2);
+            for (int ring = 0; ring <= Math.max(this.rows, this.columns); ++ring) {
+                // Any node in this ring is at least all the rings in between away.
+                final double ringDistance = Math.max(0, ring - 1) * this.cellSize * scale;
+                if (ringDistance * ringDistance >= nearestDistance) {
+                    break;
+                }
+
+                // The rings are small, as the distance is limited: Just skip the cells inside the ring.
+                for (int r = Math.max(0, row - ring); r <= Math.min(this.rows - 1, row + ring); ++r) {
+                    for (int c = Math.max(0, column - ring); c <= Math.min(this.columns - 1, column + ring); ++c) {
+                        if (Math.abs(r - row) != ring && Math.abs(c - column) != ring) {
+                            continue;
+                        }
+                        final int cell = r * this.columns + c;
+                        for (int i = this.cellStarts[cell]; i < this.cellStarts[cell + 1]; ++i) {
+                            final int node = this.nodes[i];
+                            final double dy = graph.getLatitudeE5(node) - latitude, dx = (graph.getLongitudeE5(node) - longitude) * scale;
+                            final double distance = dx * dx + dy * dy;
+                            if (distance < nearestDistance) {
+                                nearest = node;
+                                nearestDistance = distance;
+                            }
+                        }
+                    }
+                }
+            }
+            return nearest;
+        }
+    }
+
+    /**
+     * The state of a single A* search. Only the nodes visited are stored, in an open-addressing hash table which grows
+     * with them, so that a search does not allocate arrays of the size of the whole graph.
+     */
+    private final class Search {
+        // The visited nodes plus one as keys (0 marks a free slot) and per node its cost, predecessor, edge and state.
+        private int[] keys, predecessors, edges;
+        private float[] costs;
+        private boolean[] settled;
+        private int size = 0, shift;
+
+        // A binary min-heap of nodes by their estimated total cost. Nodes are inserted again instead of being updated.
+        private int[] heapNodes = new int[256];
+        private double[] heapKeys = new double[256];
+        private int heapSize;
+
+        /**
+         * Create the state of a new search.
+         */
+        Search() {
+            this.allocate(INITIAL_SEARCH_CAPACITY);
+        }
+
+        /**
+         * Allocate an empty hash table.
+         *
+         * @param capacity The number of slots, a power of two.
+         */
+        private void allocate(int capacity) {
+            this.keys = new int[capacity];
+            this.predecessors = new int[capacity];
+            this.edges = new int[capacity];
+            this.costs = new float[capacity];
+            this.settled = new boolean[capacity];
+            this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        /**
+         * Find the slot of a node.
+         *
+         * @param node The index of the node.
+         * @return the slot of the node or the free slot it would be stored in.
+         */
+        private int find(int node) {
+            final int mask = this.keys.length - 1;
+            int slot = (node * 0x9e3779b9) >>> this.shift;
+            while (this.keys[slot] != 0 && this.keys[slot] != node + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Find the slot of a node, adding the node if it was not visited before.
+         *
+         * @param node The index of the node.
+         * @return the slot of the node.
+         */
+        private int visit(int node) {
+            int slot = this.find(node);
+            if (this.keys[slot] != 0) {
+                return slot;
+            }
+
+            // Keep the table at most half full
+            if (2 * (this.size + 1) > this.keys.length) {
+                int[] keys = this.keys, predecessors = this.predecessors, edges = this.edges;
+                float[] costs = this.costs;
+                boolean[] settled = this.settled;
+                this.allocate(2 * keys.length);
+                for (int old = 0; old < keys.length; ++old) {
+                    if (keys[old] != 0) {
+                        final int moved = this.find(keys[old] - 1);
+                        this.keys[moved] = keys[old];
+                        this.predecessors[moved] = predecessors[old];
+                        this.edges[moved] = edges[old];
+                        this.costs[moved] = costs[old];
+                        this.settled[moved] = settled[old];
+                    }
+                }
+                slot = this.find(node);
+            }
+            this.keys[slot] = node + 1;
+            this.costs[slot] = Float.POSITIVE_INFINITY;
+            ++this.size;
+            return slot;
+        }
+
+        /**
+         * Search the fastest path between two nodes.
+         *
+         * @param start  The index of the start node.
+         * @param target The index of the target node.
+         * @return the path as alternating nodes and edges, starting and ending with a node; null if there is none.
+         */
+        int[] run(int start, int target) {
+            final RoadGraph graph = OfflineRoadManager.this.graph;
+            final double targetLatitude = graph.getLatitudeE5(target), targetLongitude = graph.getLongitudeE5(target);
+
+            // The estimate uses the smallest scale of longitudes around the target, underestimating the distance.
+            final double scale = Math.cos(Math.toRadians(Math.min(90, Math.abs(targetLatitude / RouteGeometry.E5) + 1)));
+            final double metersPerE5 = 1000 * Geodesy.EARTH_RADIUS * Math.toRadians(1 / RouteGeometry.E5);
+            final double estimateFactor = ESTIMATE_FACTOR * metersPerE5 / OfflineRoadManager.this.maxSpeed;
+
+            this.heapSize = 0;
+            this.costs[this.visit(start)] = 0;
+            this.push(start, 0);
+
+            while (this.heapSize > 0) {
+                final int node = this.pop();
+                final int slot = this.find(node);
+                if (this.settled[slot]) {
+                    continue;
+                }
+                this.settled[slot] = true;
+                if (node == target) {
+                    return this.getPath(start, target);
+                }
+
+                final float nodeCost = this.costs[slot];
+                for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); ++edge) {
+                    final double speed = OfflineRoadManager.this.getSpeed(edge);
+                    if (speed <= 0) {
+                        continue;
+                    }
+                    final int next = graph.getTarget(edge);
+                    final int nextSlot = this.visit(next);
+                    if (this.settled[nextSlot]) {
+                        continue;
+                    }
+
+                    final float cost = (float) (nodeCost + graph.getLength(edge) / speed);
+                    if (cost < this.costs[nextSlot]) {
+                        this.costs[nextSlot] = cost;
+                        this.predecessors[nextSlot] = node;
+                        this.edges[nextSlot] = edge;
+
+                        final double dy = graph.getLatitudeE5(next) - targetLatitude;
+                        final double dx = (graph.getLongitudeE5(next) - targetLongitude) * scale;
+                        this.push(next, cost + estimateFactor * Math.sqrt(dx * dx + dy * dy));
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Collect the path towards a settled node.
+         *
+         * @param start  The index of the start node.
+         * @param target The index of the settled node.
+         * @return the path as alternating nodes and edges.
+         */
+        private int[] getPath(int start, int target) {
+            int length = 1;
+            for (int node = target; node != start; node = this.predecessors[this.find(node)]) {
+                length += 2;
+            }
+            int[] path = new int[length];
+            int node = target;
+            for (int i = length - 1; i > 0; i -= 2) {
+                final int slot = this.find(node);
+                path[i] = node;
+                path[i - 1] = this.edges[slot];
+                node = this.predecessors[slot];
+            }
+            path[0] = start;
+            return path;
+        }
+
+        /**
+         * Insert a node into the heap.
+         *
+         * @param node The index of the node.
+         * @param key  Its estimated total cost.
+         */
+        private void push(int node, double key) {
+            if (this.heapSize == this.heapNodes.length) {
+                this.heapNodes = Arrays.copyOf(this.heapNodes, 2 * this.heapSize);
+                this.heapKeys = Arrays.copyOf(this.heapKeys, 2 * this.heapSize);
+            }
+
+            // Sift the new entry up
+            int position = this.heapSize++;
+            while (position > 0) {
+                final int parent = (position - 1) / 2;
+                if (this.heapKeys[parent] <= key) {
+                    break;
+                }
+                this.heapNodes[position] = this.heapNodes[parent];
+                this.heapKeys[position] = this.heapKeys[parent];
+                position = parent;
+            }
+            this.heapNodes[position] = node;
+            this.heapKeys[position] = key;
+        }
+
+        /**
+         * Remove the node with the lowest key from the heap.
+         *
+         * @return the index of the node.
+         */
+        private int pop() {
+            final int result = this.heapNodes[0];
+            final int node = this.heapNodes[--this.heapSize];
+            final double key = this.heapKeys[this.heapSize];
+
+            // Sift the last entry down from the root
+            int position = 0;
+            while (2 * position + 1 < this.heapSize) {
+                int child = 2 * position + 1;
+                if (child + 1 < this.heapSize && this.heapKeys[child + 1] < this.heapKeys[child]) {
+                    ++child;
+                }
+                if (key <= this.heapKeys[child]) {
+                    break;
+                }
+                this.heapNodes[position] = this.heapNodes[child];
+                this.heapKeys[position] = this.heapKeys[child];
+                position = child;
+            }
+            this.heapNodes[position] = node;
+            this.heapKeys[position] = key;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package edu.uos.openroute.routing;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import edu.uos.openroute.util.SingleFlight;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class calculates the areas reachable within time ranges utilizing the isochrones endpoint of the Open Route
+ * Service. Results are kept in memory: Centers are quantized to a grid, so that requests for nearby centers with the
+ * same profile and ranges share a single result, and identical requests running at the same time are only sent once.
+ */
+public class OpenRouteServiceIsochrones {
+
+    /**
+     * The default size of the grid centers are quantized to in degrees, roughly 100 meters.
+     */
+    public static final double DEFAULT_PRECISION = 0.001;
+
+    // Default limits of the cache: 32 results for an hour.
+    private static final int DEFAULT_MAX_ENTRIES = 32;
+    private static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000L;
+
+    private final String apiKey;
+    private final Transport transport;
+    private final int maxEntries;
+    private final long timeToLive;
+    private final double precision;
+
+    private final SingleFlight<String, Isochrone> runningRequests = new SingleFlight<>();
+    private final LinkedHashMap<String, CachedIsochrone> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits, misses;
+
+    /**
+     * Create a new client with the default cache.
+     *
+     * @param apiKey The API key for the service.
+     */
+    public OpenRouteServiceIsochrones(String apiKey) {
+        this(apiKey, HttpTransport.getInstance(), DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Create a new client.
+     *
+     * @param apiKey     The API key for the service.
+     * @param transport  The transport used for the requests.
+     * @param maxEntries The maximal number of cached results.
+     * @param timeToLive The time in milliseconds a cached result is valid.
+     * @param precision  The size of the grid centers are quantized to in degrees.
+     */
+    public OpenRouteServiceIsochrones(String apiKey, Transport transport, int maxEntries, long timeToLive, double precision) {
+        this.apiKey = apiKey;
+        this.transport = transport;
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+        this.precision = precision;
+    }
+
+    /**
+     * Calculate the areas reachable from a center. The center is moved onto the grid before the request is sent.
+     *
+     * @param profile The profile.
+     * @param center  The center.
+     * @param ranges  The time ranges in seconds.
+     * @return the isochrone with a level per distinct range, ascending.
+     * @throws RoutingException     if the isochrone could not be calculated.
+     * @throws InterruptedException if the current thread was interrupted while waiting for an identical request.
+     */
+    public Isochrone calculate(final OpenRouteServiceManager.Profile profile, GeoPoint center, int... ranges) throws RoutingException, InterruptedException {
+        if (ranges.length == 0) {
+            throw new RoutingException("At least one range is required", null, false);
+        }
+
+        // Quantize the center and normalize the ranges, which identify the request
+        final long latitudeCell = Math.round(center.getLatitude() / precision), longitudeCell = Math.round(center.getLongitude() / precision);
+        final int[] sortedRanges = Arrays.copyOf(ranges, ranges.length);
+        Arrays.sort(sortedRanges);
+        final String key = profile.name() + '/' + latitudeCell + ',' + longitudeCell + '/' + Arrays.toString(sortedRanges);
+
+        Isochrone isochrone = this.get(key);
+        if (isochrone != null) {
+            return isochrone;
+        }
+        try {
+            isochrone = this.runningRequests.execute(key, new Callable<Isochrone>() {
+                @Override
+                public Isochrone call() throws RoutingException {
+                    final GeoPoint gridCenter = new GeoPoint(latitudeCell * precision, longitudeCell * precision);
+                    return OpenRouteServiceIsochrones.this.request(profile, gridCenter, sortedRanges);
+                }
+            });
+        } catch (ExecutionException execution) {
+            Throwable cause = execution.getCause();
+            if (cause instanceof RoutingException) {
+                throw (RoutingException) cause;
+            }
+            throw new RoutingException("Unexpected error while accessing isochrone", cause, false);
+        }
+        this.put(key, isochrone);
+        return isochrone;
+    }
+
+    /**
+     * Return the number of calculations answered from the cache.
+     *
+     * @return the number of hits.
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Return the number of calculations not answered from the cache.
+     *
+     * @return the number of misses.
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Load a cached result.
+     *
+     * @param key The identity of the request.
+     * @return the result or null, if none is cached or it expired.
+     */
+    private synchronized Isochrone get(String key) {
+        CachedIsochrone entry = this.entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.created > timeToLive) {
+            this.entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            ++this.misses;
+            return null;
+        }
+        ++this.hits;
+        return entry.isochrone;
+    }
+
+    /**
+     * Cache a result, evicting the least recently used ones above the limit.
+     *
+     * @param key       The identity of the request.
+     * @param isochrone The result.
+     */
+    private synchronized void put(String key, Isochrone isochrone) {
+        this.entries.put(key, new CachedIsochrone(isochrone, System.currentTimeMillis()));
+        Iterator<CachedIsochrone> iterator = this.entries.values().iterator();
+        while (this.entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Generate an appropriate JSON for the request.
+     *
+     * @param center The center.
+     * @param ranges The time ranges in seconds.
+     * @return an appropriate JSON for request, formatted as string.
+     */
+    private static String generateRequestJson(GeoPoint center, int[] ranges) {
+        JSONObject request = new JSONObject();
+        try {
+            // Add the center - longitude first! - and the ranges as times
+            request.put("locations", new JSONArray().put(new JSONArray().put(center.getLongitude()).put(center.getLatitude())));
+            JSONArray rangeArray = new JSONArray();
+            for (int range : ranges) {
+                rangeArray.put(range);
+            }
+            request.put("range", rangeArray);
+            request.put("range_type", "time");
+        } catch (JSONException ignored) {
+            // Should never be called. But well...
+        }
+        return request.toString();
+    }
+
+    /**
+     * Send the request to the service and parse its response.
+     *
+     * @param profile The profile.
+     * @param center  The center on the grid.
+     * @param ranges  The time ranges in seconds, ascending.
+     * @return the parsed isochrone.
+     * @throws RoutingException if the request failed.
+     */
+    private Isochrone request(OpenRouteServiceManager.Profile profile, GeoPoint center, int[] ranges) throws RoutingException {
+        try {
+            byte[] requestJson = OpenRouteServiceIsochrones.generateRequestJson(center, ranges).getBytes("UTF-8");
+            return transport.post(profile.getIsochroneEndpoint(), apiKey, requestJson, new Transport.ResponseHandler<Isochrone>() {
+                @Override
+                public Isochrone handle(Reader response) throws IOException {
+                    return OpenRouteServiceIsochrones.parse(new JsonReader(response));
+                }
+            });
+        } catch (MalformedURLException | ProtocolException connection) {
+            // Something is wrong with the connection.
+            throw new RoutingException("Unable to initialize response", connection, false);
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException json) {
+            // There was an error when parsing the JSON. The response might be corrupted or our parser wrong.
+            throw new RoutingException("JSON error while interpreting response", json, false);
+        } catch (RoutingException routing) {
+            // The server reported some kind of error.
+            throw routing;
+        } catch (IOException io) {
+            // Something is wrong with the IO. Probably a time out?
+            throw new RoutingException("IO error while accessing isochrone", io, true);
+        }
+    }
+
+    /**
+     * Parse the GeoJSON feature collection returned by the service, with a polygon per range.
+     *
+     * @param reader The reader positioned in front of the response.
+     * @return the isochrone.
+     * @throws IOException if the stream could not be read.
+     */
+    private static Isochrone parse(JsonReader reader) throws IOException {
+        // Collect the rings by their range, as features of the same range are merged
+        TreeMap<Integer, List<int[]>> levels = new TreeMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("features")) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                OpenRouteServiceIsochrones.parseFeature(reader, levels);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+
+        if (levels.isEmpty()) {
+            throw new IllegalStateException("Response does not contain an isochrone");
+        }
+        int[] ranges = new int[levels.size()];
+        List<List<int[]>> rings = new ArrayList<>(levels.size());
+        for (Map.Entry<Integer, List<int[]>> level : levels.entrySet()) {
+            ranges[rings.size()] = level.getKey();
+            rings.add(level.getValue());
+        }
+        return new Isochrone(ranges, rings);
+    }
+
+    /**
+     * Parse a single feature and add its rings to the level of its range.
+     *
+     * @param reader The reader positioned in front of the feature object.
+     * @param levels The rings by range, which are extended.
+     * @throws IOException if the stream could not be read.
+     */
+    private static void parseFeature(JsonReader reader, TreeMap<Integer, List<int[]>> levels) throws IOException {
+        List<int[]> rings = new ArrayList<>();
+        int range = -1;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "properties":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("value")) {
+                            range = (int) Math.round(reader.nextDouble());
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "geometry":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("coordinates")) {
+                            OpenRouteServiceIsochrones.parseCoordinates(reader, rings, new int[2]);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (range < 0) {
+            throw new IllegalStateException("Feature without range");
+        }
+        List<int[]> level = levels.get(range);
+        if (level == null) {
+            levels.put(range, rings);
+        } else {
+            level.addAll(rings);
+        }
+    }
+
+    /**
+     * Parse nested coordinate arrays of polygons and multi polygons. Each array of positions becomes a ring.
+     *
+     * @param reader   The reader positioned in front of the array.
+     * @param rings    The rings, with latitude and longitude interleaved in E5, which are extended.
+     * @param position The array receiving the latitude and longitude, if the array was a position.
+     * @return true iff the array was a single position.
+     * @throws IOException if the stream could not be read.
+     */
+    private static boolean parseCoordinates(JsonReader reader, List<int[]> rings, int[] position) throws IOException {
+        reader.beginArray();
+        if (reader.peek() == JsonToken.NUMBER) {
+            // A position - longitude first! Any elevation is skipped.
+            position[1] = (int) Math.round(reader.nextDouble() * RouteGeometry.E5);
+            position[0] = (int) Math.round(reader.nextDouble() * RouteGeometry.E5);
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+            return true;
+        }
+
+        int[] ring = new int[64];
+        int size = 0;
+        while (reader.hasNext()) {
+            if (OpenRouteServiceIsochrones.parseCoordinates(reader, rings, position)) {
+                if (size == ring.length) {
+                    ring = Arrays.copyOf(ring, 2 * ring.length);
+                }
+                ring[size++] = position[0];
+                ring[size++] = position[1];
+            }
+        }
+        reader.endArray();
+        if (size > 0) {
+            rings.add(Arrays.copyOf(ring, size));
+        }
+        return false;
+    }
+
+    /**
+     * A cached result with its time of creation.
+     */
+    private static class CachedIsochrone {
+        private final Isochrone isochrone;
+        private final long created;
+
+        /**
+         * Create a new entry.
+         *
+         * @param isochrone The result.
+         * @param created   The time of creation in milliseconds.
+         */
+        CachedIsochrone(Isochrone isochrone, long created) {
+            this.isochrone = isochrone;
+            this.created = created;
+        }
+    }
+}
@@ -2,24 +2,26 @@ package edu.uos.openroute.routing;
 
 import android.support.annotation.NonNull;
 import android.util.Log;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.gson.stream.MalformedJsonException;
+import edu.uos.openroute.util.SingleFlight;
 import org.osmdroid.bonuspack.routing.Road;
 import org.osmdroid.bonuspack.routing.RoadManager;
-import org.osmdroid.bonuspack.routing.RoadNode;
-import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Locale;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * This class allows the calculation of routes utilizing the Open Route Service.
@@ -29,8 +31,15 @@ public class OpenRouteServiceManager extends RoadManager {
     // Name for the used logger.
     private final static String LOGGER_ID = "OpenRouteService";
 
+    // Requests currently sent to the service, shared by all managers so that identical ones are only sent once.
+    private final static SingleFlight<RouteKey, Road[]> runningRequests = new SingleFlight<>();
+
+    // The time a request may take at most in milliseconds. As it is shared, it does not depend on the deadline of any caller.
+    private final static long SHARED_REQUEST_TIMEOUT = 30000;
+
     private final Profile profile;
     private final String apiKey;
+    private final Transport transport;
 
     /**
      * Creates a new manager for cars.
@@ -48,165 +57,182 @@ public class OpenRouteServiceManager extends RoadManager {
      * @param currentProfile The profile.
      */
     public OpenRouteServiceManager(String apiKey, Profile currentProfile) {
+        this(apiKey, currentProfile, HttpTransport.getInstance());
+    }
+
+    /**
+     * Create a new manager sending its requests with a specific transport.
+     *
+     * @param apiKey         The API key for the service.
+     * @param currentProfile The profile.
+     * @param transport      The transport used for the requests.
+     */
+    public OpenRouteServiceManager(String apiKey, Profile currentProfile, Transport transport) {
         this.profile = currentProfile;
         this.apiKey = apiKey;
+        this.transport = transport;
     }
 
     /**
-     * Parse the response given by Open Route Service.
+     * Return the profile used for route generation.
      *
-     * @param response The response given.
-     * @return parsed road.
-     * @throws JSONException if the response is not valid.
+     * @return the profile.
      */
-    private static Road parseRoad(JSONObject response) throws JSONException {
-        Road road = new Road();
-
-        // Parse the bounding box
-        JSONArray bbox = response.getJSONArray("bbox");
-        road.mBoundingBox = new BoundingBox(bbox.getDouble(1), bbox.getDouble(2), bbox.getDouble(3), bbox.getDouble(0));
-
-        // Extract the segments of interest and get distance and duration
-        JSONObject route = response.getJSONArray("routes").getJSONObject(0).getJSONArray("segments").getJSONObject(0);
-        road.mLength = route.getDouble("distance");
-        road.mDuration = route.getDouble("duration");
+    public Profile getProfile() {
+        return profile;
+    }
 
-        // Parse all the nodes and add them if they are of interest
-        JSONArray nodes = route.getJSONArray("steps");
-        for (int i = 0, length = nodes.length(); i < length; ++i) {
-            RoadNode node = OpenRouteServiceManager.parseStep(nodes.getJSONObject(i));
-            if (node != null) {
-                road.mNodes.add(node);
-                road.mRouteHigh.add(node.mLocation);
-            }
-        }
+    @Override
+    public Road getRoad(ArrayList<GeoPoint> waypoints) {
+        Road[] roads = this.getRoads(waypoints, false);
+        return roads != null ? roads[0] : null;
+    }
 
-        // Build the legs and mark the route as valid
-        road.buildLegs(road.mRouteHigh);
-        road.mStatus = Road.STATUS_OK;
-        return road;
+    /**
+     * {@inheritDoc}
+     * Between two waypoints, alternative routes are requested as well and follow the fastest route in the result.
+     * While an identical request is already running, the result of that request is shared instead of sending another one.
+     */
+    @Override
+    public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
+        return this.getRoads(waypoints, true);
     }
 
     /**
-     * Parse a single step of the route.
+     * Calculate the roads between the waypoints, logging any failure.
      *
-     * @param step The step as part of the JSON response.
-     * @return The parsed step.
-     * @throws JSONException if the response is not valid.
+     * @param waypoints    Waypoints of interest.
+     * @param alternatives True, if alternative routes should be calculated if possible.
+     * @return the calculated roads or null, if they could not be calculated.
      */
-    private static RoadNode parseStep(JSONObject step) throws JSONException {
-        RoadNode node = new RoadNode();
-
-        // Fill all the attributes
-        node.mDuration = step.getDouble("duration");
-        node.mLength = step.getDouble("distance");
-        node.mManeuverType = step.getInt("type");
-        node.mInstructions = step.getString("instruction");
-
-        // A maneuver type of 10 just mean "arrive". Skip that.
-        if (node.mManeuverType == 10) {
+    private Road[] getRoads(ArrayList<GeoPoint> waypoints, boolean alternatives) {
+        try {
+            return this.fetchRoads(waypoints, alternatives);
+        } catch (InterruptedException interrupted) {
+            // We were cancelled while waiting for the identical request. Keep the flag for our caller.
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (RoutingException routing) {
+            Log.e(LOGGER_ID, routing.getMessage(), routing.getCause());
             return null;
         }
-
-        // Parse the location
-        JSONArray location = step.getJSONObject("maneuver").getJSONArray("location");
-        node.mLocation = new GeoPoint(location.getDouble(1), location.getDouble(0));
-        return node;
     }
 
     /**
-     * Generate an appropriate JSON for request.
+     * Calculate the road between the waypoints without alternatives. Unlike {@link #getRoad(ArrayList)}, failures are
+     * reported to the caller.
      *
      * @param waypoints Waypoints of interest.
-     * @return an appropriate JSON for request, formatted as string.
+     * @return the calculated road as single element.
+     * @throws RoutingException     if the roads could not be calculated.
+     * @throws InterruptedException if the current thread was interrupted while waiting for an identical request.
      */
-    private static String generateRequestJson(ArrayList<GeoPoint> waypoints) {
-        JSONObject request = new JSONObject();
-        try {
-            // Include (english) instructions and maneuvers and set kilometers as unit.
-            request.put("instructions", true);
-            request.put("instructions_format", "text");
-            request.put("language", Language.currentLanguage().toString());
-            request.put("maneuvers", true);
-            request.put("units", "km");
+    public Road[] fetchRoads(ArrayList<GeoPoint> waypoints) throws RoutingException, InterruptedException {
+        return this.fetchRoads(waypoints, false);
+    }
 
-            // Add the waypoints to the JSON - longitude first!
-            JSONArray coordinates = new JSONArray();
-            for (GeoPoint waypoint : waypoints) {
-                JSONArray waypointArray = new JSONArray();
-                waypointArray.put(waypoint.getLongitude());
-                waypointArray.put(waypoint.getLatitude());
-                coordinates.put(waypointArray);
+    /**
+     * Calculate the roads between the waypoints, optionally with alternatives. Failures are reported to the caller.
+     * While an identical request is already running, the result of that request is shared instead of sending another one.
+     * The request itself runs detached from the context of the current thread: Cancelling this context or exceeding its
+     * deadline only stops the current thread from waiting, while the request continues for other callers.
+     *
+     * @param waypoints    Waypoints of interest.
+     * @param alternatives True, if alternative routes should be calculated. The service only does so between two waypoints.
+     * @return the calculated roads, the fastest one first.
+     * @throws RoutingException     if the roads could not be calculated.
+     * @throws InterruptedException if the current thread was interrupted while waiting for the request.
+     */
+    public Road[] fetchRoads(final ArrayList<GeoPoint> waypoints, boolean alternatives) throws RoutingException, InterruptedException {
+        final RouteKey key = new RouteKey(profile, Language.currentLanguage(), waypoints, alternatives);
+        final Future<Road[]> result = OpenRouteServiceManager.runningRequests.join(key, new Callable<Road[]>() {
+            @Override
+            public Road[] call() throws RoutingException {
+                RequestContext previous = RequestContext.attach(new RequestContext(SHARED_REQUEST_TIMEOUT));
+                try {
+                    return OpenRouteServiceManager.this.requestRoads(waypoints, key.getLanguage(), key.hasAlternatives());
+                } finally {
+                    RequestContext.detach(previous);
+                }
+            }
+        });
+
+        // Stop waiting once our own request is aborted
+        final RequestContext context = RequestContext.current();
+        final Closeable stopWaiting = new Closeable() {
+            @Override
+            public void close() {
+                result.cancel(false);
+            }
+        };
+        try {
+            if (context == null) {
+                return result.get();
+            }
+            context.register(stopWaiting);
+            return result.get(context.getRemainingTime(), TimeUnit.MILLISECONDS);
+        } catch (CancellationException | TimeoutException stopped) {
+            // Without a context of our own, the shared request itself was cancelled.
+            if (context == null) {
+                throw new RoutingException("The shared request was cancelled", stopped, true);
+            }
+            context.checkpoint();
+            throw new RoutingException("The deadline of the request was exceeded", null, false);
+        } catch (ExecutionException execution) {
+            Throwable cause = execution.getCause();
+            if (cause instanceof RoutingException) {
+                throw (RoutingException) cause;
+            }
+            throw new RoutingException("Unexpected error while accessing route", cause, false);
+        } finally {
+            if (context != null) {
+                context.unregister(stopWaiting);
             }
-            request.put("coordinates", coordinates);
-        } catch (JSONException ignored) {
-            // Should never be called. But well...
+            result.cancel(false);
         }
-        return request.toString();
     }
 
-    @Override
-    public Road getRoad(ArrayList<GeoPoint> waypoints) {
-        Road[] roads = this.getRoads(waypoints);
-        return roads != null ? roads[0] : null;
-    }
-
-    @Override
-    public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
-        HttpURLConnection client = null;
+    /**
+     * Send the request to the service and parse its response.
+     *
+     * @param waypoints    Waypoints of interest.
+     * @param language     The language of the instructions.
+     * @param alternatives True, if alternative routes should be calculated if possible.
+     * @return the parsed roads.
+     * @throws RoutingException if the request failed.
+     */
+    private Road[] requestRoads(ArrayList<GeoPoint> waypoints, Language language, boolean alternatives) throws RoutingException {
         try {
-            // Get the url and specify all the required header data and a timeout of 2 seconds
-            client = (HttpURLConnection) profile.getEndpoint().openConnection();
-            client.setRequestMethod("POST");
-            client.setRequestProperty("Authorization", apiKey);
-            client.setRequestProperty("Content-Type", "application/json");
-            client.setRequestProperty("Accept", "application/json");
-            client.setDoOutput(true);
-            client.setDoInput(true);
-            client.setUseCaches(false);
-            client.setConnectTimeout(2000);
-
-            // Generate the request JSON and send it to the server
-            String requestJsonString = OpenRouteServiceManager.generateRequestJson(waypoints);
-            byte[] requestJson = requestJsonString.getBytes();
-            client.setFixedLengthStreamingMode(requestJson.length);
-            try (OutputStream requestStream = client.getOutputStream()) {
-                requestStream.write(requestJson);
-                requestStream.flush();
-            }
-
-            // Recieve the response and try to parse it
-            final int code = client.getResponseCode();
-            if (code == HttpURLConnection.HTTP_OK) {
-                // Read the stream into a string and parse it as JSON.
-                String jsonString = new Scanner(client.getInputStream()).useDelimiter("\\A").next();
-                JSONObject response = new JSONObject(jsonString);
-
-                // Generate the road from the json
-                return new Road[]{OpenRouteServiceManager.parseRoad(response)};
-            } else {
-                // The server report some kind of error. Log that.
-                String error = new Scanner(client.getErrorStream()).useDelimiter("\\A").next();
-                Log.e(LOGGER_ID, String.format("Got unsuccessful access code %d: %s", code, error));
-                return null;
+            // Generate the request JSON, send it to the server and generate the road while streaming the response
+            double[] coordinates = new double[2 * waypoints.size()];
+            for (int i = 0; i < waypoints.size(); ++i) {
+                coordinates[2 * i] = waypoints.get(i).getLatitude();
+                coordinates[2 * i + 1] = waypoints.get(i).getLongitude();
             }
+            byte[] requestJson = DirectionsRequest.generateRequestJson(coordinates, language.toString(), alternatives).getBytes("UTF-8");
+            return transport.post(profile.getEndpoint(), apiKey, requestJson, new Transport.ResponseHandler<Road[]>() {
+                @Override
+                public Road[] handle(Reader response) throws IOException {
+                    ParsedRoute[] routes = RoadParser.parse(response);
+                    Road[] roads = new Road[routes.length];
+                    for (int i = 0; i < routes.length; ++i) {
+                        roads[i] = new OpenRouteServiceRoad(routes[i]);
+                    }
+                    return roads;
+                }
+            });
         } catch (MalformedURLException | ProtocolException connection) {
             // Something is wrong with the connection.
-            Log.e(LOGGER_ID, "Unable to initialize response");
-            return null;
+            throw new RoutingException("Unable to initialize response", connection, false);
+        } catch (MalformedJsonException | IllegalStateException | IllegalArgumentException json) {
+            // There was an error when parsing the JSON. The response might be corrupted or our parser wrong.
+            throw new RoutingException("JSON error while interpreting response", json, false);
+        } catch (RoutingException routing) {
+            // The server reported some kind of error.
+            throw routing;
         } catch (IOException io) {
             // Something is wrong with the IO. Probably a time out?
-            Log.e(LOGGER_ID, "IO error while accessing route");
-            return null;
-        } catch (JSONException json) {
-            // There was an error when parsing the JSON. The response might be corrupted or our parser wrong.
-            Log.e(LOGGER_ID, "JSON error while interpreting response");
-            return null;
-        } finally {
-            // Independent of the success ensure that the connection is closed properly
-            if (client != null) {
-                client.disconnect();
-            }
+            throw new RoutingException("IO error while accessing route", io, true);
         }
     }
 
@@ -220,6 +246,9 @@ public class OpenRouteServiceManager extends RoadManager {
 
         private final String code;
 
+        // The endpoints on the public service, created on first use.
+        private URL endpoint = null, matrixEndpoint = null, isochroneEndpoint = null;
+
         Profile(String code) {
             this.code = code;
         }
@@ -230,8 +259,37 @@ public class OpenRouteServiceManager extends RoadManager {
          * @return the API URL.
          * @throws MalformedURLException if generation of URL failed to obscure reasons.
          */
-        public URL getEndpoint() throws MalformedURLException {
-            return new URL(String.format("https://api.openrouteservice.org/v2/directions/%s/json", this.code));
+        public synchronized URL getEndpoint() throws MalformedURLException {
+            if (this.endpoint == null) {
+                this.endpoint = new URL(EndpointRegistry.PUBLIC_BASE_URL + "/v2/directions/" + this.code + "/json");
+            }
+            return this.endpoint;
+        }
+
+        /**
+         * Create a valid endpoint of the matrix API where a request may be send to.
+         *
+         * @return the API URL.
+         * @throws MalformedURLException if generation of URL failed to obscure reasons.
+         */
+        public synchronized URL getMatrixEndpoint() throws MalformedURLException {
+            if (this.matrixEndpoint == null) {
+                this.matrixEndpoint = new URL(EndpointRegistry.PUBLIC_BASE_URL + "/v2/matrix/" + this.code);
+            }
+            return this.matrixEndpoint;
+        }
+
+        /**
+         * Create a valid endpoint of the isochrones API where a request may be send to.
+         *
+         * @return the API URL.
+         * @throws MalformedURLException if generation of URL failed to obscure reasons.
+         */
+        public synchronized URL getIsochroneEndpoint() throws MalformedURLException {
+            if (this.isochroneEndpoint == null) {
+                this.isochroneEndpoint = new URL(EndpointRegistry.PUBLIC_BASE_URL + "/v2/isochrones/" + this.code);
+            }
+            return this.isochroneEndpoint;
         }
     }
 
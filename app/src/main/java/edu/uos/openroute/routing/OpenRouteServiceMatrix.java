@@ -0,0 +1,235 @@
+package edu.uos.openroute.routing;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class allows the calculation of travel durations and distances between many locations utilizing the matrix
+ * endpoint of the Open Route Service. Large requests are split into tiles respecting the limits of the service, which
+ * are requested concurrently.
+ */
+public class OpenRouteServiceMatrix {
+
+    /**
+     * The maximal number of origins and destinations in a single tile; the service allows 3500 pairs per request.
+     */
+    public static final int TILE_SIZE = 50;
+
+    private final String apiKey;
+    private final OpenRouteServiceManager.Profile profile;
+    private final ExecutorService executor;
+    private final Transport transport;
+
+    /**
+     * Create a new client.
+     *
+     * @param apiKey   The API key for the service.
+     * @param profile  The profile.
+     * @param executor The executor the tiles are requested on.
+     */
+    public OpenRouteServiceMatrix(String apiKey, OpenRouteServiceManager.Profile profile, ExecutorService executor) {
+        this(apiKey, profile, executor, HttpTransport.getInstance());
+    }
+
+    /**
+     * Create a new client sending its requests with a specific transport.
+     *
+     * @param apiKey    The API key for the service.
+     * @param profile   The profile.
+     * @param executor  The executor the tiles are requested on.
+     * @param transport The transport used for the requests.
+     */
+    public OpenRouteServiceMatrix(String apiKey, OpenRouteServiceManager.Profile profile, ExecutorService executor, Transport transport) {
+        this.apiKey = apiKey;
+        this.profile = profile;
+        this.executor = executor;
+        this.transport = transport;
+    }
+
+    /**
+     * Calculate the travel durations and distances from all origins to all destinations.
+     *
+     * @param origins      The origins.
+     * @param destinations The destinations.
+     * @return the matrix with a row per origin and a column per destination.
+     * @throws IOException          if a tile could not be requested.
+     * @throws InterruptedException if the calculation was interrupted.
+     */
+    public TravelMatrix calculate(List<GeoPoint> origins, List<GeoPoint> destinations) throws IOException, InterruptedException {
+        final TravelMatrix matrix = new TravelMatrix(origins.size(), destinations.size());
+
+        // Split the matrix into tiles and request them concurrently, belonging to the request of the current thread ...
+        final RequestContext context = RequestContext.current();
+        List<Future<Void>> tiles = new ArrayList<>();
+        for (int row = 0; row < origins.size(); row += TILE_SIZE) {
+            for (int column = 0; column < destinations.size(); column += TILE_SIZE) {
+                final int firstRow = row, firstColumn = column;
+                final List<GeoPoint> tileOrigins = origins.subList(row, Math.min(row + TILE_SIZE, origins.size()));
+                final List<GeoPoint> tileDestinations = destinations.subList(column, Math.min(column + TILE_SIZE, destinations.size()));
+                tiles.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        RequestContext previous = RequestContext.attach(context);
+                        try {
+                            OpenRouteServiceMatrix.this.requestTile(matrix, firstRow, firstColumn, tileOrigins, tileDestinations);
+                            return null;
+                        } finally {
+                            RequestContext.detach(previous);
+                        }
+                    }
+                }));
+            }
+        }
+
+        // ... and wait for all of them. Each tile writes into its own region of the matrix.
+        try {
+            for (Future<Void> tile : tiles) {
+                tile.get();
+            }
+        } catch (ExecutionException execution) {
+            Throwable cause = execution.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Unable to request tile", cause);
+        } finally {
+            for (Future<Void> tile : tiles) {
+                tile.cancel(true);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Generate an appropriate JSON for the request of a tile.
+     *
+     * @param origins      The origins of the tile.
+     * @param destinations The destinations of the tile.
+     * @return an appropriate JSON for request, formatted as string.
+     */
+    private static String generateRequestJson(List<GeoPoint> origins, List<GeoPoint> destinations) {
+        JSONObject request = new JSONObject();
+        try {
+            // Add all the locations - longitude first! - and mark their role
+            JSONArray locations = new JSONArray(), sources = new JSONArray(), targets = new JSONArray();
+            for (GeoPoint origin : origins) {
+                sources.put(locations.length());
+                locations.put(new JSONArray().put(origin.getLongitude()).put(origin.getLatitude()));
+            }
+            for (GeoPoint destination : destinations) {
+                targets.put(locations.length());
+                locations.put(new JSONArray().put(destination.getLongitude()).put(destination.getLatitude()));
+            }
+            request.put("locations", locations);
+            request.put("sources", sources);
+            request.put("destinations", targets);
+
+            // Request both metrics with kilometers as unit
+            request.put("metrics", new JSONArray().put("duration").put("distance"));
+            request.put("units", "km");
+        } catch (JSONException ignored) {
+            // Should never be called. But well...
+        }
+        return request.toString();
+    }
+
+    /**
+     * Request a single tile and write it into the matrix.
+     *
+     * @param matrix       The matrix.
+     * @param firstRow     The row of the first origin in the matrix.
+     * @param firstColumn  The column of the first destination in the matrix.
+     * @param origins      The origins of the tile.
+     * @param destinations The destinations of the tile.
+     * @throws IOException if the request failed.
+     */
+    private void requestTile(final TravelMatrix matrix, final int firstRow, final int firstColumn, final List<GeoPoint> origins,
+                             final List<GeoPoint> destinations) throws IOException {
+        // Generate the request JSON, send it to the server and stream the response right into the matrix
+        byte[] requestJson = OpenRouteServiceMatrix.generateRequestJson(origins, destinations).getBytes("UTF-8");
+        try {
+            transport.post(profile.getMatrixEndpoint(), apiKey, requestJson, new Transport.ResponseHandler<Void>() {
+                @Override
+                public Void handle(Reader response) throws IOException {
+                    OpenRouteServiceMatrix.parseTile(new JsonReader(response), matrix, firstRow, firstColumn, origins.size(), destinations.size());
+                    return null;
+                }
+            });
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException json) {
+            throw new RoutingException("JSON error while interpreting response", json, false);
+        }
+    }
+
+    /**
+     * Parse the response for a tile. Its rows and columns have to match the requested ones, so a wrong response never
+     * writes into the region of another tile.
+     *
+     * @param reader      The reader positioned in front of the response.
+     * @param matrix      The matrix which is filled.
+     * @param firstRow    The row of the first origin in the matrix.
+     * @param firstColumn The column of the first destination in the matrix.
+     * @param rows        The number of origins in the tile.
+     * @param columns     The number of destinations in the tile.
+     * @throws IOException           if the stream could not be read.
+     * @throws IllegalStateException if the response does not have the expected structure or size.
+     */
+    static void parseTile(JsonReader reader, TravelMatrix matrix, int firstRow, int firstColumn, int rows, int columns) throws IOException {
+        if (firstRow < 0 || firstColumn < 0 || firstRow + rows > matrix.getOriginCount() || firstColumn + columns > matrix.getDestinationCount()) {
+            throw new IllegalArgumentException("The tile is not part of the matrix");
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (!name.equals("durations") && !name.equals("distances")) {
+                reader.skipValue();
+                continue;
+            }
+
+            boolean durations = name.equals("durations");
+            int row = 0;
+            reader.beginArray();
+            for (; reader.hasNext(); ++row) {
+                if (row == rows) {
+                    throw new IllegalStateException("Tile has more rows than requested");
+                }
+
+                int column = 0;
+                reader.beginArray();
+                for (; reader.hasNext(); ++column) {
+                    if (column == columns) {
+                        throw new IllegalStateException("Tile has more columns than requested");
+                    }
+                    // Unreachable pairs are null and stay NaN.
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else if (durations) {
+                        matrix.setDuration(firstRow + row, firstColumn + column, (float) reader.nextDouble());
+                    } else {
+                        matrix.setDistance(firstRow + row, firstColumn + column, (float) reader.nextDouble());
+                    }
+                }
+                reader.endArray();
+                if (column != columns) {
+                    throw new IllegalStateException("Tile has less columns than requested");
+                }
+            }
+            reader.endArray();
+            if (row != rows) {
+                throw new IllegalStateException("Tile has less rows than requested");
+            }
+        }
+        reader.endObject();
+    }
+}
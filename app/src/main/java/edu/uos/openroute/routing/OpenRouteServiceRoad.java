@@ -0,0 +1,271 @@
+package edu.uos.openroute.routing;
+
+import android.os.Parcel;
+import android.util.Log;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadLeg;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A road calculated by the Open Route Service, keeping its full geometry in a packed form.
+ * The geometry may be kept encoded as polyline until it is first accessed, and the GeoPoints of the geometry are only
+ * created once they are required for rendering.
+ * <p>
+ * Likewise, the steps and legs of a parsed or restored road are kept in a packed {@link StepTable}, whose instructions
+ * are only read once they are accessed. The nodes and legs are only created by {@link #getNodes()} and
+ * {@link #getLegs()}, so mNodes and mLegs must not be read directly; {@link #getNodeCount()} and
+ * {@link #getNodeVertex(int)} do not create the nodes at all.
+ */
+public class OpenRouteServiceRoad extends Road {
+
+    // Name for the used logger.
+    private final static String LOGGER_ID = "OpenRouteServiceRoad";
+
+    // The decoded geometry, or null if it was not required yet. Until then, the encoded form is kept.
+    private RouteGeometry geometry = null;
+    private String encodedGeometry = null;
+    private int[] nodeVertices = new int[16];
+    private boolean routeHighAvailable;
+
+    // The packed steps and legs, or null if mNodes and mLegs are filled.
+    private StepTable steps = null;
+    private boolean nodesAvailable = true, legsAvailable = true;
+
+    /**
+     * Create a new, empty road.
+     */
+    public OpenRouteServiceRoad() {
+        super();
+    }
+
+    /**
+     * Create a road from a route parsed from a response, keeping its steps packed and its geometry encoded.
+     *
+     * @param route The parsed route.
+     */
+    OpenRouteServiceRoad(ParsedRoute route) {
+        super();
+        mStatus = Road.STATUS_OK;
+        mLength = route.length;
+        mDuration = route.duration;
+        mBoundingBox = new BoundingBox(route.boundingBox[0], route.boundingBox[1], route.boundingBox[2], route.boundingBox[3]);
+        this.setSteps(route.steps);
+        this.setEncodedGeometry(route.encodedGeometry);
+    }
+
+    /**
+     * Return the full geometry of the road, decoding it on the first call. Without a valid geometry, the straight lines
+     * between the nodes are used.
+     *
+     * @return the geometry.
+     */
+    public synchronized RouteGeometry getGeometry() {
+        if (geometry == null) {
+            if (encodedGeometry != null) {
+                try {
+                    geometry = RouteGeometry.decode(encodedGeometry);
+                } catch (IllegalArgumentException corrupted) {
+                    Log.w(LOGGER_ID, "Corrupted geometry, using the nodes instead");
+                }
+                encodedGeometry = null;
+            }
+            if (geometry == null) {
+                geometry = this.createNodeGeometry();
+            }
+        }
+        return geometry;
+    }
+
+    /**
+     * Create a geometry of straight lines between the nodes. Packed steps are used as they are, without creating nodes.
+     *
+     * @return the geometry.
+     */
+    private RouteGeometry createNodeGeometry() {
+        if (!nodesAvailable) {
+            final int count = steps.getStepCount();
+            RouteGeometry stepGeometry = new RouteGeometry(count);
+            for (int i = 0; i < count; ++i) {
+                stepGeometry.add(steps.stepCoordinates[2 * i], steps.stepCoordinates[2 * i + 1]);
+            }
+            return stepGeometry;
+        }
+        ArrayList<RoadNode> nodes = this.getNodes();
+        RouteGeometry nodeGeometry = new RouteGeometry(nodes.size());
+        for (int i = 0; i < nodes.size(); ++i) {
+            GeoPoint location = nodes.get(i).mLocation;
+            nodeGeometry.add((int) Math.round(location.getLatitude() * RouteGeometry.E5), (int) Math.round(location.getLongitude() * RouteGeometry.E5));
+        }
+        return nodeGeometry;
+    }
+
+    /**
+     * Return the number of nodes without creating them.
+     *
+     * @return the number of nodes.
+     */
+    public synchronized int getNodeCount() {
+        return nodesAvailable ? mNodes.size() : steps.getStepCount();
+    }
+
+    /**
+     * Return the index of the vertex in the geometry where a node starts.
+     *
+     * @param nodeIndex The index of the node.
+     * @return the index of its vertex.
+     */
+    public synchronized int getNodeVertex(int nodeIndex) {
+        return nodesAvailable ? nodeVertices[nodeIndex] : steps.stepVertices[nodeIndex];
+    }
+
+    /**
+     * Return the nodes of the road, creating them on the first call. They are available in mNodes afterwards.
+     *
+     * @return the nodes.
+     */
+    public synchronized ArrayList<RoadNode> getNodes() {
+        if (!nodesAvailable) {
+            final int count = steps.getStepCount();
+            mNodes.ensureCapacity(count);
+            nodeVertices = Arrays.copyOf(steps.stepVertices, Math.max(count, 16));
+            for (int i = 0; i < count; ++i) {
+                RoadNode node = new RoadNode();
+                node.mLocation = new GeoPoint(steps.stepCoordinates[2 * i] / RouteGeometry.E5, steps.stepCoordinates[2 * i + 1] / RouteGeometry.E5);
+                node.mLength = steps.stepLengths[i];
+                node.mDuration = steps.stepDurations[i];
+                node.mManeuverType = steps.stepManeuvers[i];
+                node.mInstructions = steps.instructions.getStepInstruction(i);
+                mNodes.add(node);
+            }
+            nodesAvailable = true;
+            this.releaseSteps();
+        }
+        return mNodes;
+    }
+
+    /**
+     * Return the legs of the road, creating them on the first call. They are available in mLegs afterwards.
+     *
+     * @return the legs.
+     */
+    public synchronized ArrayList<RoadLeg> getLegs() {
+        if (!legsAvailable) {
+            mLegs.ensureCapacity(steps.getLegCount());
+            for (int i = 0; i < steps.getLegCount(); ++i) {
+                RoadLeg leg = new RoadLeg();
+                leg.mStartNodeIndex = steps.legStarts[i];
+                leg.mEndNodeIndex = steps.legEnds[i];
+                leg.mLength = steps.legLengths[i];
+                leg.mDuration = steps.legDurations[i];
+                mLegs.add(leg);
+            }
+            legsAvailable = true;
+            this.releaseSteps();
+        }
+        return mLegs;
+    }
+
+    /**
+     * Create the nodes and the legs from the packed steps, so mNodes and mLegs may be used directly.
+     *
+     * @return this road.
+     */
+    synchronized OpenRouteServiceRoad createNodesAndLegs() {
+        this.getNodes();
+        this.getLegs();
+        return this;
+    }
+
+    /**
+     * Forget the packed steps once both nodes and legs were created from them.
+     */
+    private void releaseSteps() {
+        if (nodesAvailable && legsAvailable) {
+            steps = null;
+        }
+    }
+
+    /**
+     * Return the packed steps and legs, as long as neither nodes nor legs were created from them.
+     *
+     * @return the steps or null, if the nodes or legs are to be used.
+     */
+    synchronized StepTable getSteps() {
+        return !nodesAvailable && !legsAvailable ? steps : null;
+    }
+
+    /**
+     * Return the geometry as GeoPoints, i.e. for rendering. It is created on the first call and available in mRouteHigh afterwards.
+     *
+     * @return the geometry as GeoPoints.
+     */
+    public synchronized ArrayList<GeoPoint> getRouteHigh() {
+        if (!routeHighAvailable) {
+            mRouteHigh = GeoPoints.of(this.getGeometry());
+            routeHighAvailable = true;
+        }
+        return mRouteHigh;
+    }
+
+    /**
+     * Set the geometry of the road.
+     *
+     * @param geometry The geometry.
+     */
+    synchronized void setGeometry(RouteGeometry geometry) {
+        this.geometry = geometry;
+        this.encodedGeometry = null;
+        this.routeHighAvailable = false;
+    }
+
+    /**
+     * Set the geometry of the road as encoded polyline, which is decoded once it is accessed.
+     *
+     * @param encodedGeometry The encoded geometry or null, if the straight lines between the nodes should be used.
+     */
+    synchronized void setEncodedGeometry(String encodedGeometry) {
+        this.geometry = null;
+        this.encodedGeometry = encodedGeometry;
+        this.routeHighAvailable = false;
+    }
+
+    /**
+     * Set the steps and legs of the road, replacing all nodes and legs.
+     *
+     * @param steps The packed steps and legs.
+     */
+    synchronized void setSteps(StepTable steps) {
+        mNodes.clear();
+        mLegs.clear();
+        this.steps = steps;
+        this.nodesAvailable = this.legsAvailable = false;
+    }
+
+    /**
+     * Append a node.
+     *
+     * @param node   The node.
+     * @param vertex The index of the vertex in the geometry where the node starts.
+     */
+    synchronized void addNode(RoadNode node, int vertex) {
+        this.getNodes();
+        if (mNodes.size() == nodeVertices.length) {
+            nodeVertices = Arrays.copyOf(nodeVertices, 2 * nodeVertices.length);
+        }
+        nodeVertices[mNodes.size()] = vertex;
+        mNodes.add(node);
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        // The receiver only knows the plain road: Ensure the geometry, nodes and legs are part of it.
+        this.getRouteHigh();
+        this.createNodesAndLegs();
+        super.writeToParcel(out, flags);
+    }
+}
@@ -0,0 +1,231 @@
+package edu.uos.openroute.routing;
+
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadLeg;
+import org.osmdroid.bonuspack.routing.RoadManager;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A road manager for long trips with many waypoints: The trip is split into parts, which are requested concurrently and
+ * stitched into a single road afterwards. This trades a few more requests for a much lower latency.
+ */
+public class ParallelLegRoadManager extends RoadManager {
+
+    // The default maximal number of waypoints in a single part.
+    public final static int DEFAULT_WAYPOINTS_PER_REQUEST = 8;
+
+    // The executor shared by all managers created without one.
+    private static ExecutorService sharedExecutor = null;
+
+    private final RoadManager manager;
+    private final ExecutorService executor;
+    private final int waypointsPerRequest;
+
+    /**
+     * Create a new manager requesting the parts on an executor shared by all such managers.
+     *
+     * @param manager             The manager used for the single parts.
+     * @param waypointsPerRequest The maximal number of waypoints in a single part, at least two.
+     * @throws IllegalArgumentException if less than two waypoints per request are given.
+     */
+    public ParallelLegRoadManager(RoadManager manager, int waypointsPerRequest) throws IllegalArgumentException {
+        this(manager, ParallelLegRoadManager.getSharedExecutor(), waypointsPerRequest);
+    }
+
+    /**
+     * Create a new manager.
+     *
+     * @param manager             The manager used for the single parts.
+     * @param executor            The executor the parts are requested on.
+     * @param waypointsPerRequest The maximal number of waypoints in a single part, at least two.
+     * @throws IllegalArgumentException if less than two waypoints per request are given.
+     */
+    public ParallelLegRoadManager(RoadManager manager, ExecutorService executor, int waypointsPerRequest) throws IllegalArgumentException {
+        if (waypointsPerRequest < 2) {
+            throw new IllegalArgumentException("At least two waypoints per request are required");
+        }
+
+        this.manager = manager;
+        this.executor = executor;
+        this.waypointsPerRequest = waypointsPerRequest;
+    }
+
+    /**
+     * Return the executor shared by all managers created without one. Its threads only wait for the responses, so they
+     * are created as required and end once they are idle.
+     *
+     * @return the shared executor.
+     */
+    private static synchronized ExecutorService getSharedExecutor() {
+        if (ParallelLegRoadManager.sharedExecutor == null) {
+            ParallelLegRoadManager.sharedExecutor = Executors.newCachedThreadPool();
+        }
+        return ParallelLegRoadManager.sharedExecutor;
+    }
+
+    /**
+     * Stitch consecutive roads into a single one. The end of each road must be the start of the next one.
+     * A leg without nodes of its own, i.e. between two identical waypoints, is anchored at the last node before it.
+     *
+     * @param parts The roads.
+     * @return the combined road with the legs of all parts.
+     */
+    public static OpenRouteServiceRoad stitch(Road[] parts) {
+        // Estimate the size of the combined geometry
+        int vertices = 0;
+        for (Road part : parts) {
+            vertices += ParallelLegRoadManager.geometryOf(part).size();
+        }
+
+        OpenRouteServiceRoad road = new OpenRouteServiceRoad();
+        RouteGeometry geometry = new RouteGeometry(vertices);
+        double north = -90, east = -180, south = 90, west = 180;
+        for (Road part : parts) {
+            // Append the geometry. The first vertex of a part is the last one of the previous part.
+            RouteGeometry partGeometry = ParallelLegRoadManager.geometryOf(part);
+            int vertexOffset = geometry.size() > 0 ? geometry.size() - 1 : 0;
+            for (int i = geometry.size() > 0 ? 1 : 0; i < partGeometry.size(); ++i) {
+                geometry.add(partGeometry.getLatitudeE5(i), partGeometry.getLongitudeE5(i));
+            }
+
+            // Append the nodes and the legs, shifting their indices
+            int nodeOffset = road.getNodeCount();
+            ArrayList<RoadNode> partNodes = ParallelLegRoadManager.nodesOf(part);
+            for (int i = 0; i < partNodes.size(); ++i) {
+                int vertex = part instanceof OpenRouteServiceRoad ? ((OpenRouteServiceRoad) part).getNodeVertex(i) : 0;
+                road.addNode(partNodes.get(i), vertexOffset + vertex);
+            }
+            List<RoadLeg> partLegs = ParallelLegRoadManager.legsOf(part);
+            if (partLegs.isEmpty()) {
+                // A road without legs is a single leg on its own.
+                partLegs = Collections.singletonList(new RoadLeg(0, partNodes.size() - 1, partNodes));
+            }
+            for (RoadLeg partLeg : partLegs) {
+                // Keep the indices inside the nodes of the part, or at the last node before it if it has none
+                int lastNode = partNodes.size() - 1;
+                RoadLeg leg = new RoadLeg();
+                leg.mStartNodeIndex = Math.max(0, nodeOffset + Math.min(partLeg.mStartNodeIndex, lastNode));
+                leg.mEndNodeIndex = Math.max(leg.mStartNodeIndex, nodeOffset + Math.min(partLeg.mEndNodeIndex, lastNode));
+                leg.mLength = partLeg.mLength;
+                leg.mDuration = partLeg.mDuration;
+                road.getLegs().add(leg);
+            }
+
+            road.mLength += part.mLength;
+            road.mDuration += part.mDuration;
+            north = Math.max(north, part.mBoundingBox.getLatNorth());
+            east = Math.max(east, part.mBoundingBox.getLonEast());
+            south = Math.min(south, part.mBoundingBox.getLatSouth());
+            west = Math.min(west, part.mBoundingBox.getLonWest());
+        }
+
+        road.setGeometry(geometry);
+        road.mBoundingBox = new BoundingBox(north, east, south, west);
+        road.mStatus = Road.STATUS_OK;
+        return road;
+    }
+
+    /**
+     * Return the packed geometry of a road.
+     *
+     * @param road The road.
+     * @return its geometry.
+     */
+    private static RouteGeometry geometryOf(Road road) {
+        return road instanceof OpenRouteServiceRoad ? ((OpenRouteServiceRoad) road).getGeometry() : GeoPoints.toGeometry(road.mRouteHigh);
+    }
+
+    /**
+     * Return the nodes of a road, creating them if they are only kept packed.
+     *
+     * @param road The road.
+     * @return the nodes.
+     */
+    private static ArrayList<RoadNode> nodesOf(Road road) {
+        return road instanceof OpenRouteServiceRoad ? ((OpenRouteServiceRoad) road).getNodes() : road.mNodes;
+    }
+
+    /**
+     * Return the legs of a road, creating them if they are only kept packed.
+     *
+     * @param road The road.
+     * @return the legs.
+     */
+    private static List<RoadLeg> legsOf(Road road) {
+        return road instanceof OpenRouteServiceRoad ? ((OpenRouteServiceRoad) road).getLegs() : road.mLegs;
+    }
+
+    @Override
+    public Road getRoad(ArrayList<GeoPoint> waypoints) {
+        // A short trip is a single part
+        if (waypoints.size() <= waypointsPerRequest) {
+            return manager.getRoad(waypoints);
+        }
+
+        Road[] roads = this.getRoads(waypoints);
+        return roads != null ? roads[0] : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Trips with more waypoints than a single part may have are calculated without alternatives.
+     */
+    @Override
+    public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
+        // A short trip is a single part, which keeps its alternatives
+        if (waypoints.size() <= waypointsPerRequest) {
+            return manager.getRoads(waypoints);
+        }
+
+        // Split the trip into parts sharing their first and last waypoint, belonging to the request of the current thread ...
+        final RequestContext context = RequestContext.current();
+        List<Future<Road>> parts = new ArrayList<>();
+        for (int first = 0; first < waypoints.size() - 1; first += waypointsPerRequest - 1) {
+            final ArrayList<GeoPoint> partWaypoints = new ArrayList<>(waypoints.subList(first, Math.min(first + waypointsPerRequest, waypoints.size())));
+            parts.add(executor.submit(new Callable<Road>() {
+                @Override
+                public Road call() {
+                    RequestContext previous = RequestContext.attach(context);
+                    try {
+                        return manager.getRoad(partWaypoints);
+                    } finally {
+                        RequestContext.detach(previous);
+                    }
+                }
+            }));
+        }
+
+        // ... and wait for all of them. If a single one fails, the whole trip fails.
+        Road[] roads = new Road[parts.size()];
+        try {
+            for (int i = 0; i < roads.length; ++i) {
+                roads[i] = parts.get(i).get();
+                if (roads[i] == null || roads[i].mStatus != Road.STATUS_OK) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException execution) {
+            return null;
+        } finally {
+            for (Future<Road> part : parts) {
+                part.cancel(true);
+            }
+        }
+
+        return new Road[]{ParallelLegRoadManager.stitch(roads)};
+    }
+}
@@ -0,0 +1,272 @@
+package edu.uos.openroute.routing;
+
+import android.content.Context;
+import android.util.Log;
+import org.osmdroid.bonuspack.routing.Road;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A persistent cache for calculated routes stored in the app storage.
+ * Entries are evicted if they are older than a given time to live or if the cache exceeds its size (least recently used first).
+ * The time of the last use of an entry is its modification time, so the order of use survives restarts of the app.
+ */
+public class RouteCache {
+
+    // Name for the used logger.
+    private final static String LOGGER_ID = "RouteCache";
+
+    // Magic number and version of the serialized form.
+    private final static int MAGIC = 0x4f524334;
+
+    // Default limits of the shared cache: 4 MiB and one week.
+    private final static long DEFAULT_MAX_BYTES = 4 * 1024 * 1024, DEFAULT_TIME_TO_LIVE = 7 * 24 * 60 * 60 * 1000L;
+
+    private static RouteCache sharedCache;
+
+    private final File directory;
+    private final long maxBytes, timeToLive;
+    private final LinkedHashMap<String, File> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes, hits, misses, evictions;
+
+    /**
+     * Create a new cache in a specific directory. Existing entries are reused.
+     *
+     * @param directory  The directory the routes are stored in.
+     * @param maxBytes   The maximal size of all entries in bytes.
+     * @param timeToLive The time in milliseconds an entry is valid.
+     */
+    public RouteCache(File directory, long maxBytes, long timeToLive) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.timeToLive = timeToLive;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(LOGGER_ID, "Unable to create cache directory");
+            return;
+        }
+
+        // Restore the index of existing entries, the least recently used ones first
+        File[] files = directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File first, File second) {
+                    return Long.compare(first.lastModified(), second.lastModified());
+                }
+            });
+            for (File file : files) {
+                // Remove incomplete entries of a previous run
+                if (file.getName().endsWith(".tmp")) {
+                    file.delete();
+                    continue;
+                }
+                entries.put(file.getName(), file);
+                currentBytes += file.length();
+            }
+            this.trim();
+        }
+    }
+
+    /**
+     * A singleton for the cache shared in the whole app.
+     *
+     * @param context The context of the app.
+     * @return the shared cache.
+     */
+    public static synchronized RouteCache getInstance(Context context) {
+        if (RouteCache.sharedCache == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), "routes");
+            RouteCache.sharedCache = new RouteCache(directory, DEFAULT_MAX_BYTES, DEFAULT_TIME_TO_LIVE);
+        }
+        return RouteCache.sharedCache;
+    }
+
+    /**
+     * Load the routes stored for a specific request.
+     *
+     * @param key The request.
+     * @return the stored routes or null, if none are available.
+     */
+    public synchronized Road[] get(RouteKey key) {
+        String name = RouteCache.fileName(key);
+        File file = entries.get(name);
+        if (file == null) {
+            ++misses;
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || !input.readUTF().equals(key.toString())) {
+                throw new IOException("Entry does not belong to the key");
+            }
+
+            // The modification time is the last use, so the age is stored in the entry itself
+            long now = System.currentTimeMillis();
+            if (now - input.readLong() > timeToLive) {
+                this.remove(name);
+                ++evictions;
+                ++misses;
+                return null;
+            }
+
+            Road[] roads = new Road[input.readUnsignedByte()];
+            for (int i = 0; i < roads.length; ++i) {
+                roads[i] = CompactRoute.read(input).toRoad();
+            }
+            file.setLastModified(now);
+            ++hits;
+            return roads;
+        } catch (IOException io) {
+            // The entry is damaged or was removed by the system. Forget about it.
+            Log.w(LOGGER_ID, "Unable to read cached route");
+            this.remove(name);
+            ++misses;
+            return null;
+        }
+    }
+
+    /**
+     * Store the routes calculated for a specific request.
+     *
+     * @param key   The request.
+     * @param roads The calculated routes.
+     */
+    public synchronized void put(RouteKey key, Road[] roads) {
+        String name = RouteCache.fileName(key);
+        this.remove(name);
+
+        // Write into a temporary file first so a concurrent crash never leaves half an entry
+        File file = new File(directory, name), temporaryFile = new File(directory, name + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeUTF(key.toString());
+            output.writeLong(System.currentTimeMillis());
+            output.writeByte(roads.length);
+            for (Road road : roads) {
+                CompactRoute.fromRoad(road).write(output);
+            }
+        } catch (IOException io) {
+            Log.w(LOGGER_ID, "Unable to write route into cache");
+            temporaryFile.delete();
+            return;
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            return;
+        }
+        entries.put(name, file);
+        currentBytes += file.length();
+        this.trim();
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public synchronized void clear() {
+        for (File file : entries.values()) {
+            file.delete();
+        }
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Return the number of requests answered by the cache.
+     *
+     * @return the number of hits.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Return the number of requests the cache could not answer.
+     *
+     * @return the number of misses.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Return the number of entries removed due to the size limit or their age.
+     *
+     * @return the number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Return the current size of all entries.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getSize() {
+        return currentBytes;
+    }
+
+    /**
+     * Remove the least recently used entries until the size limit is satisfied.
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, File>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            File file = iterator.next().getValue();
+            currentBytes -= file.length();
+            file.delete();
+            iterator.remove();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Remove a single entry.
+     *
+     * @param name The file name of the entry.
+     */
+    private void remove(String name) {
+        File file = entries.remove(name);
+        if (file != null) {
+            currentBytes -= file.length();
+            file.delete();
+        }
+    }
+
+    /**
+     * Derive a file name from a request.
+     *
+     * @param key The request.
+     * @return the file name.
+     */
+    private static String fileName(RouteKey key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.toString().getBytes(Charset.forName("UTF-8")));
+            StringBuilder name = new StringBuilder(2 * hash.length);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException ignored) {
+            // SHA-1 is required on every Java platform. But well...
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package edu.uos.openroute.routing;
+
+import edu.uos.openroute.util.Geodesy;
+import org.osmdroid.bonuspack.routing.Road;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index over the segments of a route geometry for snapping locations onto the route.
+ * <p>
+ * The segments are packed into a static R-tree: The leaves are filled with the sort-tile-recursive method and each
+ * upper level groups consecutive nodes of the level below. Coordinates are projected onto a plane with the longitudes
+ * scaled by the cosine of the mean latitude, which is precise enough for finding the nearest segment. Distances reported
+ * are calculated on the sphere.
+ */
+public class RouteIndex {
+
+    // The maximal number of children of a node.
+    private static final int NODE_CAPACITY = 16;
+
+    private final int[] coordinates;
+    private final int vertexCount;
+    private final double longitudeScale;
+
+    // The distance of each vertex from the start of the route in kilometers.
+    private final double[] vertexDistances;
+
+    // The index of the first vertex of each step, ascending.
+    private final int[] stepVertices;
+
+    // The segments in the order of the leaves, identified by their first vertex.
+    private final int[] segments;
+
+    // The nodes, leaves first and the root last: Their bounds and the range of their children. The children of a leaf
+    // are segments, the children of any other node are nodes.
+    private final double[] minX, minY, maxX, maxY;
+    private final int[] childStarts, childEnds;
+    private final int leafCount;
+
+    /**
+     * Create the index of a route. This takes a while for long routes and should not happen on the UI thread.
+     *
+     * @param route The route.
+     */
+    public RouteIndex(CompactRoute route) {
+        RouteGeometry geometry = route.getGeometry();
+        this.coordinates = geometry.getCoordinates();
+        this.vertexCount = geometry.size();
+        this.longitudeScale = Math.cos(Math.toRadians(RouteIndex.meanLatitude(this.coordinates, this.vertexCount)));
+
+        this.stepVertices = new int[route.getStepCount()];
+        for (int step = 0; step < this.stepVertices.length; ++step) {
+            this.stepVertices[step] = route.getStepVertex(step);
+        }
+
+        this.vertexDistances = new double[this.vertexCount];
+        for (int i = 1; i < this.vertexCount; ++i) {
+            this.vertexDistances[i] = this.vertexDistances[i - 1] + Geodesy.haversine(
+                    coordinates[2 * i - 2] / RouteGeometry.E5, coordinates[2 * i - 1] / RouteGeometry.E5,
+                    coordinates[2 * i] / RouteGeometry.E5, coordinates[2 * i + 1] / RouteGeometry.E5
+            );
+        }
+
+        // A single vertex is indexed as a segment of zero length.
+        final int segmentCount = this.vertexCount == 0 ? 0 : Math.max(this.vertexCount - 1, 1);
+        this.segments = this.packLeaves(segmentCount);
+
+        // Count the nodes of all levels
+        int nodeCount = 0, levelSize = RouteIndex.divideRoundingUp(segmentCount, NODE_CAPACITY);
+        this.leafCount = levelSize;
+        while (levelSize > 0) {
+            nodeCount += levelSize;
+            levelSize = levelSize == 1 ? 0 : RouteIndex.divideRoundingUp(levelSize, NODE_CAPACITY);
+        }
+        this.minX = new double[nodeCount];
+        this.minY = new double[nodeCount];
+        this.maxX = new double[nodeCount];
+        this.maxY = new double[nodeCount];
+        this.childStarts = new int[nodeCount];
+        this.childEnds = new int[nodeCount];
+
+        // Fill the leaves
+        for (int node = 0; node < this.leafCount; ++node) {
+            this.childStarts[node] = node * NODE_CAPACITY;
+            this.childEnds[node] = Math.min(segmentCount, (node + 1) * NODE_CAPACITY);
+            this.minX[node] = this.minY[node] = Double.POSITIVE_INFINITY;
+            this.maxX[node] = this.maxY[node] = Double.NEGATIVE_INFINITY;
+            for (int child = this.childStarts[node]; child < this.childEnds[node]; ++child) {
+                int first = this.segments[child], second = Math.min(first + 1, this.vertexCount - 1);
+                this.extend(node, this.getX(first), this.getY(first));
+                this.extend(node, this.getX(second), this.getY(second));
+            }
+        }
+
+        // Group the nodes of each level until only the root is left
+        int levelStart = 0, levelEnd = this.leafCount, next = this.leafCount;
+        while (levelEnd - levelStart > 1) {
+            for (int child = levelStart; child < levelEnd; child += NODE_CAPACITY) {
+                this.childStarts[next] = child;
+                this.childEnds[next] = Math.min(levelEnd, child + NODE_CAPACITY);
+                this.minX[next] = this.minY[next] = Double.POSITIVE_INFINITY;
+                this.maxX[next] = this.maxY[next] = Double.NEGATIVE_INFINITY;
+                for (int i = this.childStarts[next]; i < this.childEnds[next]; ++i) {
+                    this.extend(next, this.minX[i], this.minY[i]);
+                    this.extend(next, this.maxX[i], this.maxY[i]);
+                }
+                ++next;
+            }
+            levelStart = levelEnd;
+            levelEnd = next;
+        }
+    }
+
+    /**
+     * Create the index of a road. This takes a while for long roads and should not happen on the UI thread.
+     *
+     * @param road The road.
+     * @return the index.
+     */
+    public static RouteIndex fromRoad(Road road) {
+        return new RouteIndex(CompactRoute.fromRoad(road));
+    }
+
+    /**
+     * Order the segments with the sort-tile-recursive method: Sort them by the x coordinate of their center, cut them
+     * into vertical slices and sort each slice by the y coordinate of the center.
+     *
+     * @param segmentCount The number of segments.
+     * @return the segments in the order of the leaves.
+     */
+    private int[] packLeaves(int segmentCount) {
+        final int leaves = RouteIndex.divideRoundingUp(segmentCount, NODE_CAPACITY);
+        final int sliceCount = (int) Math.ceil(Math.sqrt(leaves));
+        final int sliceSize = sliceCount * NODE_CAPACITY;
+
+        // Sort primitive keys holding the center in the upper and the segment in the lower half, avoiding boxing.
+        long[] keys = new long[segmentCount];
+        for (int segment = 0; segment < segmentCount; ++segment) {
+            keys[segment] = RouteIndex.toKey(this.getCenterX(segment), segment);
+        }
+        Arrays.sort(keys);
+        for (int slice = 0; slice < segmentCount; slice += sliceSize) {
+            int end = Math.min(segmentCount, slice + sliceSize);
+            for (int i = slice; i < end; ++i) {
+                int segment = (int) keys[i];
+                keys[i] = RouteIndex.toKey(this.getCenterY(segment), segment);
+            }
+            Arrays.sort(keys, slice, end);
+        }
+
+        int[] ordered = new int[segmentCount];
+        for (int i = 0; i < segmentCount; ++i) {
+            ordered[i] = (int) keys[i];
+        }
+        return ordered;
+    }
+
+    /**
+     * Find the point on the route nearest to a location.
+     *
+     * @param latitude  The latitude of the location in degrees.
+     * @param longitude The longitude of the location in degrees.
+     * @return the nearest point or null, if the route is empty.
+     */
+    public Match nearest(double latitude, double longitude) {
+        if (this.segments.length == 0) {
+            return null;
+        }
+        final double x = longitude * RouteGeometry.E5 * this.longitudeScale, y = latitude * RouteGeometry.E5;
+
+        // Search depth-first with branch and bound; each level adds at most one full node to the stack.
+        int[] stack = new int[NODE_CAPACITY * 8];
+        int stackSize = 0;
+        stack[stackSize++] = this.minX.length - 1;
+
+        double bestDistance = Double.POSITIVE_INFINITY, bestFraction = 0;
+        int bestSegment = -1;
+        while (stackSize > 0) {
+            final int node = stack[--stackSize];
+            if (this.getBoxDistance(node, x, y) >= bestDistance) {
+                continue;
+            }
+
+            if (node < this.leafCount) {
+                for (int child = this.childStarts[node]; child < this.childEnds[node]; ++child) {
+                    final int segment = this.segments[child];
+                    final double t = this.getFraction(segment, x, y);
+                    final double distance = this.getSquaredDistance(segment, t, x, y);
+                    if (distance < bestDistance || (distance == bestDistance && segment < bestSegment)) {
+                        bestDistance = distance;
+                        bestSegment = segment;
+                        bestFraction = t;
+                    }
+                }
+            } else {
+                if (stackSize + NODE_CAPACITY > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                for (int child = this.childStarts[node]; child < this.childEnds[node]; ++child) {
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+
+        return this.createMatch(bestSegment, bestFraction, latitude, longitude);
+    }
+
+    /**
+     * Find the point nearest to a location on the segments around a vertex only, i.e. around the last known position
+     * of the user. Other than {@link #nearest(double, double)}, this keeps the user on the part of the route just
+     * travelled, even where another part of the route passes by closer, and only scans a few segments.
+     *
+     * @param latitude  The latitude of the location in degrees.
+     * @param longitude The longitude of the location in degrees.
+     * @param vertex    The vertex to search around.
+     * @param before    The number of segments before the vertex to search.
+     * @param after     The number of segments starting at the vertex to search.
+     * @return the nearest point on these segments or null, if the route is empty.
+     */
+    public Match nearest(double latitude, double longitude, int vertex, int before, int after) {
+        if (this.segments.length == 0) {
+            return null;
+        }
+        final double x = longitude * RouteGeometry.E5 * this.longitudeScale, y = latitude * RouteGeometry.E5;
+
+        final int first = Math.max(0, Math.min(vertex - before, this.segments.length - 1));
+        final int last = Math.min(this.segments.length, Math.max(vertex + after, first + 1));
+        double bestDistance = Double.POSITIVE_INFINITY, bestFraction = 0;
+        int bestSegment = first;
+        for (int segment = first; segment < last; ++segment) {
+            final double t = this.getFraction(segment, x, y);
+            final double distance = this.getSquaredDistance(segment, t, x, y);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestSegment = segment;
+                bestFraction = t;
+            }
+        }
+        return this.createMatch(bestSegment, bestFraction, latitude, longitude);
+    }
+
+    /**
+     * Calculate the point of a segment nearest to a location in the projected plane.
+     *
+     * @param segment The index of the first vertex of the segment.
+     * @param x       The projected x coordinate of the location.
+     * @param y       The projected y coordinate of the location.
+     * @return the position of the point between the first (0) and the second vertex (1) of the segment.
+     */
+    private double getFraction(int segment, double x, double y) {
+        final int second = Math.min(segment + 1, this.vertexCount - 1);
+        final double x1 = this.getX(segment), y1 = this.getY(segment);
+        final double dx = this.getX(second) - x1, dy = this.getY(second) - y1;
+        final double squaredLength = dx * dx + dy * dy;
+        return squaredLength == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / squaredLength));
+    }
+
+    /**
+     * Calculate the squared distance of a location towards a point of a segment in the projected plane.
+     *
+     * @param segment  The index of the first vertex of the segment.
+     * @param fraction The position of the point on the segment.
+     * @param x        The projected x coordinate of the location.
+     * @param y        The projected y coordinate of the location.
+     * @return the squared distance.
+     */
+    private double getSquaredDistance(int segment, double fraction, double x, double y) {
+        final int second = Math.min(segment + 1, this.vertexCount - 1);
+        final double x1 = this.getX(segment), y1 = this.getY(segment);
+        final double ex = x1 + fraction * (this.getX(second) - x1) - x, ey = y1 + fraction * (this.getY(second) - y1) - y;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Create the match of a location, interpolating the snapped point and measuring on the sphere.
+     *
+     * @param segment   The index of the first vertex of the segment the location is snapped onto.
+     * @param fraction  The position of the snapped point on the segment.
+     * @param latitude  The latitude of the location in degrees.
+     * @param longitude The longitude of the location in degrees.
+     * @return the match.
+     */
+    private Match createMatch(int segment, double fraction, double latitude, double longitude) {
+        final int second = Math.min(segment + 1, this.vertexCount - 1);
+        final double snappedLatitude = (coordinates[2 * segment] + fraction * (coordinates[2 * second] - coordinates[2 * segment])) / RouteGeometry.E5;
+        final double snappedLongitude = (coordinates[2 * segment + 1] + fraction * (coordinates[2 * second + 1] - coordinates[2 * segment + 1])) / RouteGeometry.E5;
+        final double along = this.vertexDistances[segment] + fraction * (this.vertexDistances[second] - this.vertexDistances[segment]);
+        return new Match(
+                segment, snappedLatitude, snappedLongitude, Geodesy.haversine(latitude, longitude, snappedLatitude, snappedLongitude),
+                along, this.getStepAtVertex(segment)
+        );
+    }
+
+    /**
+     * Return the step a distance along the route belongs to.
+     *
+     * @param distance The distance from the start of the route in kilometers.
+     * @return the index of the step, i.e. the road node, or -1 if the route has no steps.
+     */
+    public int getStepAt(double distance) {
+        // Find the last vertex not after the distance
+        int low = 0, high = this.vertexCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.vertexDistances[middle] <= distance) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return this.getStepAtVertex(low);
+    }
+
+    /**
+     * Return the step a vertex belongs to.
+     *
+     * @param vertex The index of the vertex.
+     * @return the index of the step, i.e. the road node, or -1 if the route has no steps.
+     */
+    public int getStepAtVertex(int vertex) {
+        int low = 0, high = this.stepVertices.length - 1, step = this.stepVertices.length > 0 ? 0 : -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (this.stepVertices[middle] <= vertex) {
+                step = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return step;
+    }
+
+    /**
+     * Return the distance of a vertex from the start of the route.
+     *
+     * @param vertex The index of the vertex.
+     * @return the distance in kilometers.
+     */
+    public double getDistanceAt(int vertex) {
+        return this.vertexDistances[vertex];
+    }
+
+    /**
+     * Return the length of the route geometry.
+     *
+     * @return the length in kilometers.
+     */
+    public double getLength() {
+        return this.vertexCount == 0 ? 0 : this.vertexDistances[this.vertexCount - 1];
+    }
+
+    /**
+     * Calculate the squared distance of a point towards the bounds of a node.
+     *
+     * @param node The node.
+     * @param x    The projected x coordinate of the point.
+     * @param y    The projected y coordinate of the point.
+     * @return the squared distance in the projected plane, 0 if the point is inside.
+     */
+    private double getBoxDistance(int node, double x, double y) {
+        double dx = Math.max(0, Math.max(this.minX[node] - x, x - this.maxX[node]));
+        double dy = Math.max(0, Math.max(this.minY[node] - y, y - this.maxY[node]));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Extend the bounds of a node by a point.
+     *
+     * @param node The node.
+     * @param x    The projected x coordinate of the point.
+     * @param y    The projected y coordinate of the point.
+     */
+    private void extend(int node, double x, double y) {
+        this.minX[node] = Math.min(this.minX[node], x);
+        this.minY[node] = Math.min(this.minY[node], y);
+        this.maxX[node] = Math.max(this.maxX[node], x);
+        this.maxY[node] = Math.max(this.maxY[node], y);
+    }
+
+    /**
+     * Return the projected x coordinate of a vertex.
+     *
+     * @param vertex The index of the vertex.
+     * @return the x coordinate.
+     */
+    private double getX(int vertex) {
+        return this.coordinates[2 * vertex + 1] * this.longitudeScale;
+    }
+
+    /**
+     * Return the projected y coordinate of a vertex.
+     *
+     * @param vertex The index of the vertex.
+     * @return the y coordinate.
+     */
+    private double getY(int vertex) {
+        return this.coordinates[2 * vertex];
+    }
+
+    /**
+     * Return the projected x coordinate of the center of a segment.
+     *
+     * @param segment The index of the first vertex of the segment.
+     * @return the x coordinate.
+     */
+    private double getCenterX(int segment) {
+        return (this.getX(segment) + this.getX(Math.min(segment + 1, this.vertexCount - 1))) / 2;
+    }
+
+    /**
+     * Return the projected y coordinate of the center of a segment.
+     *
+     * @param segment The index of the first vertex of the segment.
+     * @return the y coordinate.
+     */
+    private double getCenterY(int segment) {
+        return (this.getY(segment) + this.getY(Math.min(segment + 1, this.vertexCount - 1))) / 2;
+    }
+
+    /**
+     * Build a sort key from a coordinate and a segment, ordering by the coordinate first.
+     *
+     * @param coordinate The projected coordinate, within the range of an int.
+     * @param segment    The segment.
+     * @return the key.
+     */
+    private static long toKey(double coordinate, int segment) {
+        return (((long) Math.floor(coordinate) + Integer.MAX_VALUE + 1L) << 32) | segment;
+    }
+
+    /**
+     * Divide two positive numbers, rounding the result up.
+     *
+     * @param dividend The dividend.
+     * @param divisor  The divisor.
+     * @return the rounded quotient.
+     */
+    private static int divideRoundingUp(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * Calculate the mean latitude of packed coordinates.
+     *
+     * @param coordinates The interleaved coordinates in E5.
+     * @param count       The number of vertices.
+     * @return the mean latitude in degrees.
+     */
+    private static double meanLatitude(int[] coordinates, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < count; ++i) {
+            sum += coordinates[2 * i];
+        }
+        return sum / count / RouteGeometry.E5;
+    }
+
+    /**
+     * A location snapped onto the route.
+     */
+    public static class Match {
+        private final int segment, step;
+        private final double latitude, longitude, distance, distanceAlong;
+
+        Match(int segment, double latitude, double longitude, double distance, double distanceAlong, int step) {
+            this.segment = segment;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.distance = distance;
+            this.distanceAlong = distanceAlong;
+            this.step = step;
+        }
+
+        /**
+         * Return the segment of the geometry the location was snapped onto.
+         *
+         * @return the index of the first vertex of the segment.
+         */
+        public int getSegment() {
+            return segment;
+        }
+
+        /**
+         * Return the step the location was snapped onto.
+         *
+         * @return the index of the step, i.e. the road node, or -1 if the route has no steps.
+         */
+        public int getStep() {
+            return step;
+        }
+
+        /**
+         * Return the latitude of the snapped point.
+         *
+         * @return the latitude in degrees.
+         */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        /**
+         * Return the longitude of the snapped point.
+         *
+         * @return the longitude in degrees.
+         */
+        public double getLongitude() {
+            return longitude;
+        }
+
+        /**
+         * Return the distance of the location towards the route.
+         *
+         * @return the distance in kilometers.
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        /**
+         * Return the distance of the snapped point from the start of the route.
+         *
+         * @return the distance along the route in kilometers.
+         */
+        public double getDistanceAlong() {
+            return distanceAlong;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package edu.uos.openroute.routing;
+
+import android.support.annotation.NonNull;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The identity of a route request: The profile, the language of the instructions, the waypoints and whether alternative
+ * routes are requested.
+ * Waypoints are quantized to five decimal places (roughly one meter) so that tiny differences in the input do not matter.
+ */
+public final class RouteKey {
+
+    // Factor for converting degrees into the fixed-point representation.
+    private static final double E5 = 1e5;
+
+    private final OpenRouteServiceManager.Profile profile;
+    private final OpenRouteServiceManager.Language language;
+    private final int[] waypoints;
+    private final boolean alternatives;
+
+    /**
+     * Create a new key for a request of a single route.
+     *
+     * @param profile   The profile used for routing.
+     * @param language  The language of the instructions.
+     * @param waypoints The waypoints of the route.
+     */
+    public RouteKey(OpenRouteServiceManager.Profile profile, OpenRouteServiceManager.Language language, List<GeoPoint> waypoints) {
+        this(profile, language, waypoints, false);
+    }
+
+    /**
+     * Create a new key.
+     *
+     * @param profile      The profile used for routing.
+     * @param language     The language of the instructions.
+     * @param waypoints    The waypoints of the route.
+     * @param alternatives True, if alternative routes are requested.
+     */
+    public RouteKey(OpenRouteServiceManager.Profile profile, OpenRouteServiceManager.Language language, List<GeoPoint> waypoints, boolean alternatives) {
+        this.profile = profile;
+        this.language = language;
+        this.alternatives = alternatives;
+
+        // Store latitude and longitude interleaved as fixed-point numbers.
+        this.waypoints = new int[2 * waypoints.size()];
+        for (int i = 0; i < waypoints.size(); ++i) {
+            GeoPoint waypoint = waypoints.get(i);
+            this.waypoints[2 * i] = (int) Math.round(waypoint.getLatitude() * E5);
+            this.waypoints[2 * i + 1] = (int) Math.round(waypoint.getLongitude() * E5);
+        }
+    }
+
+    /**
+     * Return the profile used for routing.
+     *
+     * @return the profile.
+     */
+    public OpenRouteServiceManager.Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Return the language of the instructions.
+     *
+     * @return the language.
+     */
+    public OpenRouteServiceManager.Language getLanguage() {
+        return language;
+    }
+
+    /**
+     * Return whether alternative routes are requested.
+     *
+     * @return true, if alternatives are requested.
+     */
+    public boolean hasAlternatives() {
+        return alternatives;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof RouteKey)) {
+            return false;
+        }
+
+        RouteKey otherKey = (RouteKey) other;
+        return profile == otherKey.profile && language == otherKey.language && alternatives == otherKey.alternatives
+                && Arrays.equals(waypoints, otherKey.waypoints);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * profile.hashCode() + language.hashCode()) + Arrays.hashCode(waypoints)) + (alternatives ? 1 : 0);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(profile.name()).append('/').append(language);
+        for (int i = 0; i < waypoints.length; i += 2) {
+            builder.append('/').append(waypoints[i]).append(',').append(waypoints[i + 1]);
+        }
+        if (alternatives) {
+            // Keys of single routes keep their established form.
+            builder.append("/alternatives");
+        }
+        return builder.toString();
+    }
+}
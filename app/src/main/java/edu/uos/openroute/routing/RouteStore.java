@@ -0,0 +1,277 @@
+package edu.uos.openroute.routing;
+
+import android.content.Context;
+import android.util.Log;
+import org.osmdroid.bonuspack.routing.Road;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process store for handing calculated roads from one activity to another.
+ * <p>
+ * Instead of parceling the whole road through Binder, an activity puts the road into the store and passes the returned
+ * handle, a single long, in its intent. Additionally, each road is written into a file named by its handle, so that it
+ * is still available if the process was killed in the meantime. Such a file is only read after a restart, which should
+ * not happen on the UI thread. Roads are kept in their compact form and the osmdroid road is only built once an
+ * activity asks for it.
+ * <p>
+ * All writing and deleting of files happens one after another on an executor of the store, so that neither putting nor
+ * releasing a road blocks the calling thread and a file is never deleted before it was written.
+ */
+public class RouteStore {
+
+    // Name for the used logger.
+    private final static String LOGGER_ID = "RouteStore";
+
+    // Magic number and version of the stored form.
+    private final static int MAGIC = 0x4f525332;
+
+    // Stored roads not released within this time in milliseconds are deleted on start, i.e. after a crash.
+    private final static long MAX_AGE = 24 * 60 * 60 * 1000L;
+
+    /**
+     * A handle never returned for a road.
+     */
+    public final static long NO_HANDLE = 0;
+
+    private static RouteStore sharedStore;
+
+    private final File directory;
+    private final Executor storage;
+    private final ConcurrentHashMap<Long, CompactRoute> roads = new ConcurrentHashMap<>();
+    private final Set<Long> deleting = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final AtomicLong nextHandle;
+    private final List<OnReplaceListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create a new store in a specific directory, writing the files on a thread of its own. Roads stored before are
+     * still available.
+     *
+     * @param directory The directory the roads are stored in.
+     */
+    public RouteStore(File directory) {
+        this(directory, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * Create a new store in a specific directory. Roads stored before are still available.
+     *
+     * @param directory The directory the roads are stored in.
+     * @param storage   The executor writing and deleting the files, which has to run them in order.
+     */
+    public RouteStore(final File directory, Executor storage) {
+        this.directory = directory;
+        this.storage = storage;
+
+        // Start at the current time, so that handles of a previous process are never reused.
+        this.nextHandle = new AtomicLong(System.currentTimeMillis() << 8);
+
+        storage.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    Log.w(LOGGER_ID, "Unable to create store directory");
+                }
+
+                // Clean up forgotten roads
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (System.currentTimeMillis() - file.lastModified() > MAX_AGE) {
+                            file.delete();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the store shared by all activities of the app.
+     *
+     * @param context The context of the app.
+     * @return the shared store.
+     */
+    public static synchronized RouteStore getInstance(Context context) {
+        if (RouteStore.sharedStore == null) {
+            RouteStore.sharedStore = new RouteStore(new File(context.getApplicationContext().getFilesDir(), "handoff"));
+        }
+        return RouteStore.sharedStore;
+    }
+
+    /**
+     * Put a road into the store. As the road is converted into its compact form, this should not be called on the UI
+     * thread.
+     *
+     * @param road The road.
+     * @return the handle of the road.
+     */
+    public long put(Road road) {
+        return this.put(CompactRoute.fromRoad(road));
+    }
+
+    /**
+     * Put a route into the store. The route is available right away, while it is written to storage in the background.
+     *
+     * @param route The route.
+     * @return the handle of the route.
+     */
+    public long put(final CompactRoute route) {
+        final long handle = nextHandle.incrementAndGet();
+        roads.put(handle, route);
+
+        this.storage.execute(new Runnable() {
+            @Override
+            public void run() {
+                // A road released in the meantime is not written anymore.
+                if (roads.get(handle) != route) {
+                    return;
+                }
+
+                // Write the road in its binary form straight into the file
+                File file = RouteStore.this.fileOf(handle);
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                    output.writeInt(MAGIC);
+                    route.write(output);
+                } catch (IOException io) {
+                    // The road is still available as long as the process lives.
+                    Log.w(LOGGER_ID, "Unable to write road into store");
+                    file.delete();
+                }
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Build the road of a handle. As the route may be read from storage, this should not be called on the UI thread.
+     *
+     * @param handle The handle.
+     * @return a new road or null, if there is none for the handle.
+     */
+    public OpenRouteServiceRoad get(long handle) {
+        CompactRoute route = this.getCompact(handle);
+        return route != null ? route.toRoad() : null;
+    }
+
+    /**
+     * Return the route of a handle. If the process was restarted in the meantime, the route is read from its file, so
+     * this should not be called on the UI thread.
+     *
+     * @param handle The handle.
+     * @return the route or null, if there is none for the handle.
+     */
+    public CompactRoute getCompact(long handle) {
+        CompactRoute route = roads.get(handle);
+        if (route != null || handle == NO_HANDLE) {
+            return route;
+        }
+
+        // The file of a released road may still exist until it is deleted in the background.
+        File stored = this.fileOf(handle);
+        if (deleting.contains(handle) || !stored.isFile()) {
+            return null;
+        }
+        // The route is decoded into arrays anyway, so the file is simply streamed.
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(stored)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Unknown format");
+            }
+            route = CompactRoute.read(input);
+        } catch (IOException io) {
+            Log.w(LOGGER_ID, "Unable to read road from store");
+            return null;
+        }
+
+        CompactRoute previous = roads.putIfAbsent(handle, route);
+        return previous != null ? previous : route;
+    }
+
+    /**
+     * Release a road which is not required anymore. Its file is deleted in the background.
+     *
+     * @param handle The handle of the road.
+     */
+    public void release(final long handle) {
+        deleting.add(handle);
+        roads.remove(handle);
+        this.storage.execute(new Runnable() {
+            @Override
+            public void run() {
+                RouteStore.this.fileOf(handle).delete();
+                deleting.remove(handle);
+            }
+        });
+    }
+
+    /**
+     * Release a road which was replaced by another one, i.e. after calculating a new road from the current location,
+     * and inform the listeners.
+     *
+     * @param previous The handle of the replaced road.
+     * @param handle   The handle of the new road.
+     */
+    public void replace(long previous, long handle) {
+        this.release(previous);
+        for (OnReplaceListener listener : this.listeners) {
+            listener.onReplace(previous, handle);
+        }
+    }
+
+    /**
+     * Add a listener informed about replaced roads.
+     *
+     * @param listener The listener.
+     */
+    public void addOnReplaceListener(OnReplaceListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added before.
+     *
+     * @param listener The listener.
+     */
+    public void removeOnReplaceListener(OnReplaceListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Return the file a road is stored in.
+     *
+     * @param handle The handle of the road.
+     * @return the file.
+     */
+    private File fileOf(long handle) {
+        return new File(directory, Long.toHexString(handle));
+    }
+
+    /**
+     * Informed once a road was replaced by another one.
+     */
+    public interface OnReplaceListener {
+
+        /**
+         * Called on the thread replacing the road, after the replaced one was released.
+         *
+         * @param previous The handle of the replaced road.
+         * @param handle   The handle of the new road.
+         */
+        void onReplace(long previous, long handle);
+    }
+}
@@ -0,0 +1,203 @@
+package edu.uos.openroute.routing;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs route calculations in parallel in the background, each one with an end-to-end deadline.
+ * The result of a calculation is delivered by a callback, unless the calculation was cancelled before.
+ */
+public class RoutingExecutor {
+
+    // The number of calculations running at the same time in the shared executor.
+    private static final int DEFAULT_THREADS = 4;
+
+    // The executor shared by all activities.
+    private static RoutingExecutor sharedExecutor = null;
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor();
+    private final Executor callbacks;
+
+    /**
+     * Create a new executor.
+     *
+     * @param threads   The number of calculations running at the same time.
+     * @param callbacks The executor the callbacks are delivered on.
+     */
+    public RoutingExecutor(int threads, Executor callbacks) {
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.callbacks = callbacks;
+    }
+
+    /**
+     * Return the executor shared by all activities, which delivers its callbacks on the main thread.
+     *
+     * @return the shared executor.
+     */
+    public static synchronized RoutingExecutor getInstance() {
+        if (RoutingExecutor.sharedExecutor == null) {
+            final Handler mainThread = new Handler(Looper.getMainLooper());
+            RoutingExecutor.sharedExecutor = new RoutingExecutor(DEFAULT_THREADS, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainThread.post(command);
+                }
+            });
+        }
+        return RoutingExecutor.sharedExecutor;
+    }
+
+    /**
+     * Submit a calculation.
+     *
+     * @param timeout     The time the calculation may take at most in milliseconds, including waiting for a free thread.
+     * @param calculation The calculation.
+     * @param callback    The callback receiving the result.
+     * @param <T>         The result of the calculation.
+     * @return the context of the calculation, which allows cancelling it.
+     */
+    public <T> RequestContext submit(long timeout, Callable<T> calculation, Callback<T> callback) {
+        return this.submit(timeout, calculation, callback, null);
+    }
+
+    /**
+     * Submit a calculation whose result holds resources, which have to be freed if the result is never delivered.
+     *
+     * @param timeout     The time the calculation may take at most in milliseconds, including waiting for a free thread.
+     * @param calculation The calculation.
+     * @param callback    The callback receiving the result.
+     * @param cleanup     The cleanup receiving a result which was calculated but not delivered, may be null.
+     * @param <T>         The result of the calculation.
+     * @return the context of the calculation, which allows cancelling it.
+     */
+    public <T> RequestContext submit(long timeout, final Callable<T> calculation, final Callback<T> callback, final Cleanup<T> cleanup) {
+        final RequestContext context = new RequestContext(timeout);
+
+        // Abort the calculation once the deadline is exceeded
+        final ScheduledFuture<?> deadline = deadlines.schedule(new Runnable() {
+            @Override
+            public void run() {
+                context.expire();
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        context.setFuture(workers.submit(new Runnable() {
+            @Override
+            public void run() {
+                RequestContext previous = RequestContext.attach(context);
+                context.setRunner(Thread.currentThread());
+                T result = null;
+                try {
+                    context.checkpoint();
+                    result = calculation.call();
+                    context.checkpoint();
+                } catch (Exception failure) {
+                    // A result finished after the request was aborted is never delivered.
+                    RoutingExecutor.discard(cleanup, result);
+
+                    // Report exceeded deadlines as such, not as the error the abort caused.
+                    if (context.isExpired()) {
+                        failure = new RoutingException("The deadline of the request was exceeded", failure, true);
+                    }
+                    RoutingExecutor.this.deliver(context, callback, null, null, failure);
+                    return;
+                } finally {
+                    deadline.cancel(false);
+                    context.setRunner(null);
+                    RequestContext.detach(previous);
+                }
+                RoutingExecutor.this.deliver(context, callback, cleanup, result, null);
+            }
+        }));
+        return context;
+    }
+
+    /**
+     * Deliver the result of a calculation, unless it was cancelled.
+     *
+     * @param context  The context of the calculation.
+     * @param callback The callback.
+     * @param cleanup  The cleanup of a result which is not delivered, may be null.
+     * @param result   The result, if successful.
+     * @param failure  The failure, if not successful.
+     * @param <T>      The result of the calculation.
+     */
+    private <T> void deliver(final RequestContext context, final Callback<T> callback, final Cleanup<T> cleanup, final T result, final Exception failure) {
+        callbacks.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The calculation may be cancelled until the very last moment.
+                if (context.isCancelled()) {
+                    RoutingExecutor.discard(cleanup, result);
+                    return;
+                }
+
+                if (failure == null) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onFailure(failure);
+                }
+            }
+        });
+    }
+
+    /**
+     * Free the resources of a result which is not delivered.
+     *
+     * @param cleanup The cleanup, may be null.
+     * @param result  The result, may be null if there is none.
+     * @param <T>     The result of the calculation.
+     */
+    private static <T> void discard(Cleanup<T> cleanup, T result) {
+        if (cleanup != null && result != null) {
+            cleanup.onUndelivered(result);
+        }
+    }
+
+    /**
+     * Receives the result of a calculation.
+     *
+     * @param <T> The result of the calculation.
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called once the calculation succeeded.
+         *
+         * @param result The result.
+         */
+        void onSuccess(T result);
+
+        /**
+         * Called once the calculation failed or exceeded its deadline.
+         *
+         * @param cause The cause.
+         */
+        void onFailure(Exception cause);
+    }
+
+    /**
+     * Frees the resources of a result which was calculated but never delivered, i.e. as the calculation was cancelled
+     * or exceeded its deadline in the meantime.
+     *
+     * @param <T> The result of the calculation.
+     */
+    public interface Cleanup<T> {
+
+        /**
+         * Called on the thread of the calculation or the one of the callbacks, instead of delivering the result.
+         *
+         * @param result The result.
+         */
+        void onUndelivered(T result);
+    }
+}
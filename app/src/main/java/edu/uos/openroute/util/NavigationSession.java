@@ -0,0 +1,136 @@
+package edu.uos.openroute.util;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.Looper;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import edu.uos.openroute.routing.NavigationProgress;
+
+/**
+ * A continuous subscription to the location of the user while following a route.
+ * The location request is adapted to the progress: Locations are requested rarely and delivered in batches while the
+ * next maneuver is far away, and requested often and delivered immediately while approaching it.
+ * The permission to access the location must have been granted before, i.e. by a {@link LocationAccess}.
+ */
+public class NavigationSession extends LocationCallback {
+
+    private final FusedLocationProviderClient locationProvider;
+    private final NavigationProgress progress;
+    private final Listener listener;
+
+    // The currently requested interval and batch time in milliseconds, or -1 if no updates are requested.
+    private long interval = -1, batchTime = -1;
+    private double speed = 0;
+    private Location lastLocation = null;
+
+    /**
+     * Create a new session, which is not started yet.
+     *
+     * @param context  The context of the session.
+     * @param progress The progress along the route, which is updated on each location.
+     * @param listener The listener informed on the main thread about the progress.
+     */
+    public NavigationSession(Context context, NavigationProgress progress, Listener listener) {
+        this.locationProvider = new FusedLocationProviderClient(context);
+        this.progress = progress;
+        this.listener = listener;
+    }
+
+    /**
+     * Start requesting locations.
+     *
+     * @throws SecurityException if the permission to access the location is missing.
+     */
+    public void start() throws SecurityException {
+        if (!this.isRunning()) {
+            this.request(NavigationProgress.UPDATE_INTERVALS[0], 0);
+        }
+    }
+
+    /**
+     * Stop requesting locations.
+     */
+    public void stop() {
+        if (this.isRunning()) {
+            this.locationProvider.removeLocationUpdates(this);
+            this.interval = this.batchTime = -1;
+        }
+    }
+
+    /**
+     * Check if locations are requested.
+     *
+     * @return true iff the session is running.
+     */
+    public boolean isRunning() {
+        return this.interval >= 0;
+    }
+
+    @Override
+    public void onLocationResult(LocationResult result) {
+        Location location = result != null ? result.getLastLocation() : null;
+        if (location == null || !this.isRunning()) {
+            return;
+        }
+
+        // Only the latest location of a batch matters for the progress. Without a measured speed, estimate it.
+        if (location.hasSpeed()) {
+            this.speed = location.getSpeed();
+        } else if (this.lastLocation != null && location.getTime() > this.lastLocation.getTime()) {
+            this.speed = 1000 * location.distanceTo(this.lastLocation) / (location.getTime() - this.lastLocation.getTime());
+        }
+        this.lastLocation = location;
+
+        this.progress.update(location.getLatitude(), location.getLongitude());
+        this.listener.onProgress(this.progress, location);
+
+        // The listener might have stopped the session
+        if (this.isRunning()) {
+            try {
+                this.request(this.progress.getUpdateInterval(this.speed), this.progress.getBatchTime(this.speed));
+            } catch (SecurityException ex) {
+                this.stop();
+            }
+        }
+    }
+
+    /**
+     * Request locations with specific parameters, unless they are already requested this way.
+     *
+     * @param interval  The interval in milliseconds.
+     * @param batchTime The time locations may be collected before being delivered in milliseconds.
+     * @throws SecurityException if the permission to access the location is missing.
+     */
+    private void request(long interval, long batchTime) throws SecurityException {
+        if (interval == this.interval && batchTime == this.batchTime) {
+            return;
+        }
+
+        // High accuracy is only worth its battery while moving towards a maneuver.
+        final long[] intervals = NavigationProgress.UPDATE_INTERVALS;
+        LocationRequest request = LocationRequest.create()
+                .setInterval(interval)
+                .setFastestInterval(interval / 2)
+                .setMaxWaitTime(batchTime)
+                .setPriority(interval < intervals[intervals.length - 1] ? LocationRequest.PRIORITY_HIGH_ACCURACY : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+        this.locationProvider.requestLocationUpdates(request, this, Looper.getMainLooper());
+        this.interval = interval;
+        this.batchTime = batchTime;
+    }
+
+    /**
+     * A listener informed about the progress along the route.
+     */
+    public interface Listener {
+        /**
+         * Handle a new location.
+         *
+         * @param progress The updated progress.
+         * @param location The location of the user.
+         */
+        void onProgress(NavigationProgress progress, Location location);
+    }
+}
@@ -5,8 +5,7 @@ import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import org.osmdroid.util.GeoPoint;
 
-import java.text.NumberFormat;
-import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Locale;
 
 /**
@@ -42,14 +41,32 @@ public class Position implements Parcelable {
      * @return The position or null, if the strings do not represent a valid latitude or longitude.
      */
     public static Position fromString(String latitude, String longitude) {
-        NumberFormat formatter = NumberFormat.getInstance();
-        try {
-            double latitude_dbl = formatter.parse(latitude).doubleValue();
-            double longitude_dbl = formatter.parse(longitude).doubleValue();
-            return new Position(latitude_dbl, longitude_dbl);
-        } catch (ParseException | IllegalArgumentException ex) {
-            return null;
+        double[] coordinates = Coordinates.parse(latitude, longitude);
+        return coordinates != null ? new Position(coordinates[0], coordinates[1]) : null;
+    }
+
+    /**
+     * Create positions from a text with one position per line, whose latitude and longitude are separated by ';'.
+     * Empty lines are ignored.
+     *
+     * @param text The text.
+     * @return the positions or null, if a line does not represent a valid latitude and longitude.
+     */
+    public static Position[] listFromString(String text) {
+        ArrayList<Position> positions = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            String[] coordinates = line.split(";");
+            Position position = coordinates.length == 2 ? Position.fromString(coordinates[0].trim(), coordinates[1].trim()) : null;
+            if (position == null) {
+                return null;
+            }
+            positions.add(position);
         }
+        return positions.toArray(new Position[positions.size()]);
     }
 
     /**
@@ -94,36 +111,13 @@ public class Position implements Parcelable {
     }
 
     /**
-     * Calculate a rough approximation between two point on the earth.
+     * Calculate the great-circle distance between two points on the earth.
      *
      * @param otherPosition The position which is used as other point.
-     * @return the distance.
+     * @return the distance in kilometers.
      */
     public double distance(Position otherPosition) {
-        final double EARTH_RADIUS = 6371;
-        double[] pos1 = this.toSpace(EARTH_RADIUS), pos2 = otherPosition.toSpace(EARTH_RADIUS);
-
-        double alpha = 0.0;
-        for (int i = 0; i < pos1.length; ++i) {
-            alpha += pos1[i] * pos2[i];
-        }
-        alpha /= EARTH_RADIUS * EARTH_RADIUS;
-        alpha = Math.acos(alpha);
-        return alpha * EARTH_RADIUS;
-    }
-
-    /**
-     * Transfer the radians into another coordinate system.
-     *
-     * @param r The radius.
-     * @return The mapped coordinates.
-     */
-    private double[] toSpace(double r) {
-        return new double[]{
-                r * Math.cos(latitude) * Math.cos(longitude),
-                r * Math.cos(latitude) * Math.sin(longitude),
-                r * Math.sin(latitude)
-        };
+        return Geodesy.haversine(this.getLatitude(), this.getLongitude(), otherPosition.getLatitude(), otherPosition.getLongitude());
     }
 
     @Override
@@ -0,0 +1,121 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.BatchRouter;
+import edu.uos.openroute.routing.RoutingException;
+import org.junit.Test;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchRouterUnitTest {
+    @Test
+    public void testRetries() throws Exception {
+        final ConcurrentHashMap<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        final AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+
+        // Every route fails temporarily twice, the route with index 3 fails permanently.
+        BatchRouter router = new BatchRouter(new BatchRouter.Router() {
+            @Override
+            public Road[] route(ArrayList<GeoPoint> waypoints) throws RoutingException, InterruptedException {
+                int index = (int) waypoints.get(0).getLatitude();
+                attempts.putIfAbsent(index, new AtomicInteger());
+                int attempt = attempts.get(index).incrementAndGet();
+
+                int current = running.incrementAndGet();
+                while (true) {
+                    int max = maxRunning.get();
+                    if (current <= max || maxRunning.compareAndSet(max, current)) {
+                        break;
+                    }
+                }
+                Thread.sleep(2);
+                running.decrementAndGet();
+
+                if (index == 3) {
+                    throw new RoutingException("Bad request", 400);
+                } else if (attempt <= 2) {
+                    throw new RoutingException("Unavailable", 503);
+                }
+                return new Road[]{new Road()};
+            }
+        }, 3, 3, 1, 4);
+
+        List<ArrayList<GeoPoint>> requests = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            requests.add(new ArrayList<>(Collections.singletonList(new GeoPoint((double) i, 0.0))));
+        }
+
+        final List<Integer> routes = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<RoutingException> failures = Collections.synchronizedList(new ArrayList<RoutingException>());
+        router.run(requests.iterator(), new BatchRouter.Listener() {
+            @Override
+            public void onRoute(int index, ArrayList<GeoPoint> waypoints, Road[] roads) {
+                routes.add(index);
+            }
+
+            @Override
+            public void onFailure(int index, ArrayList<GeoPoint> waypoints, RoutingException cause) {
+                assertEquals(3, index);
+                failures.add(cause);
+            }
+        });
+
+        assertEquals(9, routes.size());
+        assertFalse(routes.contains(3));
+        assertEquals(1, failures.size());
+        assertEquals(400, failures.get(0).getStatus());
+        assertEquals(1, attempts.get(3).get());
+        assertEquals(3, attempts.get(0).get());
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testUnexpectedErrors() throws Exception {
+        // The router fails unexpectedly for the route with index 1, the listener for the route with index 2
+        BatchRouter router = new BatchRouter(new BatchRouter.Router() {
+            @Override
+            public Road[] route(ArrayList<GeoPoint> waypoints) {
+                if (waypoints.get(0).getLatitude() == 1.0) {
+                    throw new IllegalStateException("Router bug");
+                }
+                return new Road[]{new Road()};
+            }
+        }, 2, 3, 1, 4);
+
+        List<ArrayList<GeoPoint>> requests = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            requests.add(new ArrayList<>(Collections.singletonList(new GeoPoint((double) i, 0.0))));
+        }
+
+        final List<Integer> routes = Collections.synchronizedList(new ArrayList<Integer>());
+        final ConcurrentHashMap<Integer, RoutingException> failures = new ConcurrentHashMap<>();
+        router.run(requests.iterator(), new BatchRouter.Listener() {
+            @Override
+            public void onRoute(int index, ArrayList<GeoPoint> waypoints, Road[] roads) {
+                if (index == 2) {
+                    throw new IllegalArgumentException("Listener bug");
+                }
+                routes.add(index);
+            }
+
+            @Override
+            public void onFailure(int index, ArrayList<GeoPoint> waypoints, RoutingException cause) {
+                failures.put(index, cause);
+            }
+        });
+
+        // Both are reported as failures without retrying, the other routes are not affected
+        assertEquals(2, routes.size());
+        assertEquals(2, failures.size());
+        assertTrue(failures.get(1).getCause() instanceof IllegalStateException);
+        assertTrue(failures.get(2).getCause() instanceof IllegalArgumentException);
+        assertFalse(failures.get(1).isRetryable());
+    }
+}
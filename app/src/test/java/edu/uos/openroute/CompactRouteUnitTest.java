@@ -0,0 +1,153 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.CompactRoute;
+import edu.uos.openroute.routing.OpenRouteServiceRoad;
+import org.junit.Test;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadLeg;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CompactRouteUnitTest {
+
+    /**
+     * Create a straight road along a latitude, with a step at every vertex but the last one of each leg.
+     *
+     * @param longitudes The longitudes of the vertices.
+     * @param waypoints  The vertices of the intermediate waypoints, where a new leg starts.
+     * @return the road.
+     */
+    private static Road createLine(double[] longitudes, int... waypoints) {
+        Road road = new Road();
+        road.mBoundingBox = new BoundingBox(52.1, longitudes[longitudes.length - 1], 51.9, longitudes[0]);
+        for (double longitude : longitudes) {
+            road.mRouteHigh.add(new GeoPoint(52.0, longitude));
+        }
+        for (int i = 0; i < longitudes.length - 1; ++i) {
+            RoadNode node = new RoadNode();
+            node.mLocation = road.mRouteHigh.get(i);
+            node.mInstructions = "Continue to " + longitudes[i + 1];
+            node.mLength = 1;
+            node.mDuration = 60;
+            road.mNodes.add(node);
+            road.mLength += node.mLength;
+            road.mDuration += node.mDuration;
+        }
+        for (int i = 0; i <= waypoints.length; ++i) {
+            RoadLeg leg = new RoadLeg();
+            leg.mStartNodeIndex = i > 0 ? waypoints[i - 1] : 0;
+            leg.mEndNodeIndex = (i < waypoints.length ? waypoints[i] : longitudes.length - 1) - 1;
+            leg.mDuration = 60 * (leg.mEndNodeIndex - leg.mStartNodeIndex + 1);
+            road.mLegs.add(leg);
+        }
+        return road;
+    }
+
+    private static Road createRoad() {
+        Road road = new Road();
+        road.mLength = 12.5;
+        road.mDuration = 900;
+        road.mBoundingBox = new BoundingBox(49.5, 8.7, -33.9, -70.6);
+
+        // A route with large jumps in both directions and repeated instructions
+        double[][] points = {{49.41461, 8.681495}, {-33.86785, -70.6}, {49.420318, 8.687872}, {49.420319, 8.687871}};
+        for (int i = 0; i < points.length; ++i) {
+            GeoPoint point = new GeoPoint(points[i][0], points[i][1]);
+            road.mRouteHigh.add(point);
+
+            RoadNode node = new RoadNode();
+            node.mLocation = point;
+            node.mInstructions = i % 2 == 0 ? "Continue straight" : "Turn left";
+            node.mManeuverType = i;
+            node.mLength = i * 0.5;
+            node.mDuration = i * 30;
+            road.mNodes.add(node);
+        }
+        RoadLeg leg = new RoadLeg();
+        leg.mStartNodeIndex = 0;
+        leg.mEndNodeIndex = 3;
+        road.mLegs.add(leg);
+        return road;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        CompactRoute route = CompactRoute.fromRoad(createRoad());
+        assertEquals(4, route.getStepCount());
+        assertEquals(2, route.getInstructionCount());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        route.write(new DataOutputStream(bytes));
+        CompactRoute read = CompactRoute.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        OpenRouteServiceRoad road = read.toRoad();
+        assertEquals(900, road.mDuration, 1e-9);
+        assertEquals(4, road.getGeometry().size());
+        assertEquals(-3386785, road.getGeometry().getLatitudeE5(1));
+        assertEquals(868787, road.getGeometry().getLongitudeE5(3));
+        assertEquals(4, road.getNodeCount());
+        assertEquals(-70.6, road.getNodes().get(1).mLocation.getLongitude(), 1e-9);
+        assertEquals("Turn left", road.getNodes().get(3).mInstructions);
+        assertEquals(3, road.getNodes().get(3).mManeuverType);
+        assertEquals(90, road.getNodes().get(3).mDuration, 1e-6);
+        assertEquals(3, road.getLegs().get(0).mEndNodeIndex);
+        assertEquals(-33.9, road.mBoundingBox.getLatSouth(), 1e-9);
+    }
+
+    @Test
+    public void testSplice() {
+        CompactRoute route = CompactRoute.fromRoad(createRoad());
+
+        // Leave after the third vertex and continue on a new route
+        Road detour = createRoad();
+        detour.mNodes.get(1).mInstructions = "Turn right";
+        CompactRoute spliced = route.splice(2, CompactRoute.fromRoad(detour));
+        assertEquals(7, spliced.getGeometry().size());
+        assertEquals(2 + 4, spliced.getStepCount());
+        assertEquals(3, spliced.getInstructionCount());
+        assertEquals(3, spliced.getStepVertex(2));
+        assertEquals("Turn right", spliced.getStepInstruction(3));
+        assertEquals(1, spliced.getLegCount());
+        assertEquals(5, spliced.getLegEnd(0));
+        assertEquals(-3386785, spliced.getGeometry().getLatitudeE5(1));
+
+        // The second step ends at the spliced vertex and thus is passed completely
+        assertEquals(30 + 900, spliced.getDuration(), 1e-3);
+    }
+
+    @Test
+    public void testRerouteTwice() {
+        // From 8.00 via 8.03 and 8.06 to 8.09
+        CompactRoute route = CompactRoute.fromRoad(createLine(new double[]{8.00, 8.01, 8.02, 8.03, 8.04, 8.05, 8.06, 8.07, 8.08, 8.09}, 3, 6));
+        assertEquals(3, route.getLegCount());
+
+        // Leave the route on the second segment, heading for the first waypoint, and come back at 8.015
+        assertEquals(0, route.getStepLeg(1));
+        route = route.splice(1, CompactRoute.fromRoad(createLine(new double[]{8.015, 8.03, 8.04, 8.05, 8.06, 8.07, 8.08, 8.09}, 1, 4)));
+        assertEquals(3, route.getLegCount());
+        assertEquals(803000, route.getStepLongitudeE5(route.getLegEnd(0) + 1));
+        assertEquals(806000, route.getStepLongitudeE5(route.getLegEnd(1) + 1));
+
+        // Leave it again before reaching the first waypoint: It is still the next one to visit
+        int step = 1;
+        assertEquals(801500, route.getStepLongitudeE5(step));
+        assertEquals(0, route.getStepLeg(step));
+        route = route.splice(route.getStepVertex(step), CompactRoute.fromRoad(createLine(new double[]{8.02, 8.03, 8.04, 8.05, 8.06, 8.07, 8.08, 8.09}, 1, 4)));
+        assertEquals(3, route.getLegCount());
+        assertEquals(0, route.getStepLeg(step));
+        assertEquals(803000, route.getStepLongitudeE5(route.getLegEnd(0) + 1));
+        assertEquals(806000, route.getStepLongitudeE5(route.getLegEnd(1) + 1));
+        assertEquals(809000 - 1000, route.getStepLongitudeE5(route.getLegEnd(2)));
+        assertEquals(1, route.getStepLeg(route.getLegEnd(0) + 1));
+        assertEquals(route.getStepCount() - 1, route.getLegEnd(2));
+    }
+}
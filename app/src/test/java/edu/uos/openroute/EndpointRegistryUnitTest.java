@@ -0,0 +1,55 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.EndpointRegistry;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+
+import static org.junit.Assert.*;
+
+public class EndpointRegistryUnitTest {
+    @Test
+    public void testPercentile() throws MalformedURLException {
+        EndpointRegistry.Backend backend = new EndpointRegistry().add("https://example.org/");
+        assertEquals(-1, backend.getLatencyPercentile(0.95));
+
+        for (int latency = 1; latency <= 100; ++latency) {
+            backend.recordSuccess(latency);
+        }
+
+        // Only the latest 64 latencies (37 to 100) are considered
+        assertEquals(68, backend.getLatencyPercentile(0.5));
+        assertEquals(97, backend.getLatencyPercentile(0.95));
+        assertEquals(100, backend.getLatencyPercentile(1));
+        assertEquals("https://example.org/v2/matrix/driving-car", backend.resolve("/v2/matrix/driving-car").toString());
+    }
+
+    @Test
+    public void testSelection() throws MalformedURLException {
+        EndpointRegistry registry = new EndpointRegistry();
+        EndpointRegistry.Backend slow = registry.add("https://slow.example.org");
+        EndpointRegistry.Backend fast = registry.add("https://fast.example.org");
+
+        // Unknown backends are tried first
+        slow.recordSuccess(500);
+        assertSame(fast, registry.select(null));
+        fast.recordSuccess(100);
+        assertSame(fast, registry.select(null));
+        assertSame(slow, registry.select(fast));
+
+        // Failed backends are avoided
+        fast.recordFailure();
+        assertFalse(fast.isHealthy(System.currentTimeMillis()));
+        assertSame(slow, registry.select(null));
+        assertNull(registry.select(slow));
+
+        // ... unless none is healthy. The cooldown grows with repeated failures.
+        slow.recordFailure();
+        slow.recordFailure();
+        assertSame(fast, registry.select(null));
+
+        // A success heals a backend
+        slow.recordSuccess(500);
+        assertSame(slow, registry.select(null));
+    }
+}
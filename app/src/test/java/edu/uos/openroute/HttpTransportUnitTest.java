@@ -0,0 +1,155 @@
+package edu.uos.openroute;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uos.openroute.routing.HttpTransport;
+import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.Transport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class HttpTransportUnitTest {
+
+    // A single step of a route followed by the arrival.
+    private static final String STEPS = "[{\"distance\":1.5,\"duration\":90.0,\"type\":11,\"instruction\":\"Head north\",\"way_points\":[0,2],"
+            + "\"maneuver\":{\"bearing_after\":0,\"location\":[-120.2,38.5]}},"
+            + "{\"distance\":0.0,\"duration\":0.0,\"type\":10,\"instruction\":\"Arrive\",\"way_points\":[2,2],"
+            + "\"maneuver\":{\"location\":[-126.453,43.252]}}]";
+
+    // A route with an encoded geometry.
+    private static final String RESPONSE = "{\"bbox\":[-127.0,38.0,-120.0,44.0],\"routes\":["
+            + "{\"summary\":{\"distance\":1.5,\"duration\":90.0},\"segments\":[{\"distance\":1.5,\"duration\":90.0,\"steps\":" + STEPS + "}],"
+            + "\"bbox\":[-126.453,38.5,-120.2,43.252],\"geometry\":\"_p~iF~ps|U_ulLnnqC_mqNvxq`@\",\"way_points\":[0,2]}"
+            + "],\"metadata\":{\"service\":\"routing\"}}";
+
+    private HttpServer server;
+    private final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+    private volatile int status = 200;
+
+    /**
+     * A transport sending the requests to the local server instead of the actual service.
+     */
+    private class LocalTransport implements Transport {
+        private final HttpTransport transport = new HttpTransport(2000);
+
+        @Override
+        public <T> T post(URL endpoint, String apiKey, byte[] body, ResponseHandler<T> handler) throws IOException {
+            URL local = new URL("http", "localhost", server.getAddress().getPort(), endpoint.getPath());
+            return transport.post(local, apiKey, body, handler);
+        }
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                try (InputStream request = exchange.getRequestBody()) {
+                    while (request.read() != -1) {
+                        // Consume the request
+                    }
+                }
+
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (GZIPOutputStream compressed = new GZIPOutputStream(body)) {
+                    compressed.write((status == 200 ? RESPONSE : "{\"error\":\"invalid\"}").getBytes("UTF-8"));
+                }
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.size());
+                try (OutputStream response = exchange.getResponseBody()) {
+                    body.writeTo(response);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static ArrayList<GeoPoint> waypoints() {
+        ArrayList<GeoPoint> waypoints = new ArrayList<>();
+        waypoints.add(new GeoPoint(38.5, -120.2));
+        waypoints.add(new GeoPoint(43.252, -126.453));
+        return waypoints;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        LocalTransport transport = new LocalTransport();
+        final List<long[]> exchanges = Collections.synchronizedList(new ArrayList<long[]>());
+        transport.transport.setExchangeListener(new HttpTransport.ExchangeListener() {
+            @Override
+            public void onExchange(URL endpoint, long connectTime, long firstByte, long totalTime, boolean compressed) {
+                assertTrue(compressed);
+                exchanges.add(new long[]{connectTime, firstByte, totalTime});
+            }
+        });
+        OpenRouteServiceManager manager = new OpenRouteServiceManager("key", OpenRouteServiceManager.Profile.CAR, transport);
+
+        // The parser reads the compressed response without closing the stream the transport still has to drain
+        for (int i = 0; i < 2; ++i) {
+            Road road = manager.getRoad(waypoints());
+            assertNotNull(road);
+            assertEquals(Road.STATUS_OK, road.mStatus);
+            assertEquals(1.5, road.mLength, 1e-9);
+        }
+        assertEquals(2, transport.transport.getRequestCount());
+        assertEquals(2, transport.transport.getCompressedCount());
+
+        // Each exchange reports when it was connected, received the first byte and completed
+        assertEquals(2, exchanges.size());
+        for (long[] exchange : exchanges) {
+            assertTrue(0 <= exchange[0] && exchange[0] <= exchange[1] && exchange[1] <= exchange[2]);
+        }
+        assertEquals(exchanges.get(0)[0] + exchanges.get(1)[0], transport.transport.getConnectTime());
+        assertEquals(exchanges.get(0)[2] + exchanges.get(1)[2], transport.transport.getTotalTime());
+
+        // As the first response was read completely, the second request reused its connection
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    public void testError() throws IOException {
+        status = 400;
+        try {
+            new LocalTransport().post(new URL("https://api.openrouteservice.org/v2/directions"), "key", new byte[0], new Transport.ResponseHandler<Object>() {
+                @Override
+                public Object handle(Reader response) {
+                    fail();
+                    return null;
+                }
+            });
+            fail();
+        } catch (RoutingException expected) {
+            assertTrue(expected.getMessage().contains("400"));
+            assertTrue(expected.getMessage().contains("invalid"));
+        }
+    }
+}
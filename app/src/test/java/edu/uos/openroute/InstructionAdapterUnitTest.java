@@ -0,0 +1,41 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.gui.InstructionAdapter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InstructionAdapterUnitTest {
+
+    @Test
+    public void testRerouted() {
+        List<InstructionAdapter.Step> current = Arrays.asList(
+                new InstructionAdapter.Step(5240000, 800000, 11, "Head north", "1 km, 2 min"),
+                new InstructionAdapter.Step(5241000, 800000, 1, "Turn right", "500 m, 1 min"),
+                new InstructionAdapter.Step(5241000, 801000, 0, "Turn left", "2 km, 3 min")
+        );
+
+        // After rerouting, the route starts at the current location, so the kept maneuvers are at other vertices
+        List<InstructionAdapter.Step> next = Arrays.asList(
+                new InstructionAdapter.Step(5240500, 800000, 11, "Head north", "500 m, 1 min"),
+                new InstructionAdapter.Step(5241000, 800000, 1, "Turn right", "500 m, 1 min"),
+                new InstructionAdapter.Step(5241000, 801000, 1, "Turn right", "1 km, 2 min")
+        );
+        InstructionAdapter.StepDiff diff = new InstructionAdapter.StepDiff(current, next);
+        assertEquals(3, diff.getOldListSize());
+        assertEquals(3, diff.getNewListSize());
+
+        // The same maneuver at the same location is kept, and only updated if its label changed
+        assertTrue(diff.areItemsTheSame(1, 1));
+        assertTrue(diff.areContentsTheSame(1, 1));
+        assertFalse(diff.areContentsTheSame(2, 2));
+
+        // A start elsewhere or another maneuver at the same location is a different step
+        assertFalse(diff.areItemsTheSame(0, 0));
+        assertFalse(diff.areItemsTheSame(2, 2));
+        assertFalse(diff.areItemsTheSame(1, 2));
+    }
+}
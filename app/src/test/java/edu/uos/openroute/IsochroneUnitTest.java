@@ -0,0 +1,102 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.Isochrone;
+import edu.uos.openroute.routing.OpenRouteServiceIsochrones;
+import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.Transport;
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IsochroneUnitTest {
+
+    // Two ranges: A square with a hole for ten minutes, a larger square and an island for twenty minutes.
+    private static final String RESPONSE = "{\"type\":\"FeatureCollection\",\"bbox\":[7.99,51.99,8.11,52.11],\"features\":["
+            + "{\"type\":\"Feature\",\"properties\":{\"group_index\":0,\"value\":1200.0,\"center\":[8.005,52.005]},"
+            + "\"geometry\":{\"type\":\"MultiPolygon\",\"coordinates\":["
+            + "[[[7.99,51.99],[8.02,51.99],[8.02,52.02],[7.99,52.02],[7.99,51.99]]],"
+            + "[[[8.1,52.1],[8.11,52.1],[8.11,52.11],[8.1,52.11],[8.1,52.1]]]]}},"
+            + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Polygon\",\"coordinates\":["
+            + "[[8.0,52.0,12.5],[8.01,52.0,12.5],[8.01,52.01,12.5],[8.0,52.01,12.5],[8.0,52.0,12.5]],"
+            + "[[8.004,52.004],[8.006,52.004],[8.006,52.006],[8.004,52.006],[8.004,52.004]]]},"
+            + "\"properties\":{\"group_index\":0,\"value\":600.0,\"center\":[8.005,52.005]}}"
+            + "],\"metadata\":{\"service\":\"isochrones\"}}";
+
+    private static class FakeTransport implements Transport {
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public <T> T post(URL endpoint, String apiKey, byte[] body, ResponseHandler<T> handler) throws IOException {
+            requests.add(endpoint.getPath() + " " + new String(body, "UTF-8"));
+            return handler.handle(new StringReader(RESPONSE));
+        }
+    }
+
+    @Test
+    public void testParseAndContains() throws RoutingException, InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        OpenRouteServiceIsochrones client = new OpenRouteServiceIsochrones("key", transport, 4, 60000, 0.001);
+        Isochrone isochrone = client.calculate(OpenRouteServiceManager.Profile.BICYCLE, new GeoPoint(52.00502, 8.00498), 1200, 600);
+
+        // The request uses the center on the grid and sorted ranges
+        assertEquals(1, transport.requests.size());
+        String request = transport.requests.get(0);
+        assertTrue(request.startsWith("/v2/isochrones/cycling-regular "));
+        assertTrue(request.contains("\"range\":[600,1200]"));
+        assertTrue(request.contains("52.005"));
+        assertFalse(request.contains("52.00502"));
+
+        // The levels are sorted by range, holes and parts are kept as rings
+        assertEquals(2, isochrone.getLevelCount());
+        assertEquals(600, isochrone.getRange(0));
+        assertEquals(1200, isochrone.getRange(1));
+        assertEquals(2, isochrone.getRingCount(0));
+        assertEquals(2, isochrone.getRingCount(1));
+        int[] ring = isochrone.getRing(0, 0);
+        assertEquals(10, ring.length);
+        assertEquals(5200000, ring[0]);
+        assertEquals(801000, ring[3]);
+
+        // Inside, in the hole, in the larger area, on the island and outside of everything
+        assertTrue(isochrone.contains(0, 52.002, 8.002));
+        assertFalse(isochrone.contains(0, 52.005, 8.005));
+        assertTrue(isochrone.contains(1, 52.005, 8.005));
+        assertFalse(isochrone.contains(0, 52.015, 8.015));
+        assertEquals(600, isochrone.getReachableRange(52.002, 8.008));
+        assertEquals(1200, isochrone.getReachableRange(52.005, 8.005));
+        assertEquals(1200, isochrone.getReachableRange(52.105, 8.105));
+        assertEquals(-1, isochrone.getReachableRange(52.05, 8.05));
+
+        int[] out = new int[3];
+        isochrone.getReachableRanges(new double[]{52.002, 8.002, 52.019, 7.991, 51.98, 8.0}, 3, out);
+        assertArrayEquals(new int[]{600, 1200, -1}, out);
+    }
+
+    @Test
+    public void testCache() throws RoutingException, InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        OpenRouteServiceIsochrones client = new OpenRouteServiceIsochrones("key", transport, 2, 60000, 0.001);
+
+        // Nearby centers share a result, other profiles, centers or ranges do not
+        Isochrone first = client.calculate(OpenRouteServiceManager.Profile.CAR, new GeoPoint(52.0, 8.0), 600);
+        assertSame(first, client.calculate(OpenRouteServiceManager.Profile.CAR, new GeoPoint(52.0002, 7.9998), 600));
+        client.calculate(OpenRouteServiceManager.Profile.WALKING, new GeoPoint(52.0, 8.0), 600);
+        client.calculate(OpenRouteServiceManager.Profile.CAR, new GeoPoint(52.0, 8.0), 600, 1200);
+        assertEquals(3, transport.requests.size());
+        assertEquals(1, client.getHitCount());
+        assertEquals(3, client.getMissCount());
+
+        // The least recently used result was evicted
+        assertNotSame(first, client.calculate(OpenRouteServiceManager.Profile.CAR, new GeoPoint(52.0, 8.0), 600));
+        assertEquals(4, transport.requests.size());
+    }
+}
@@ -0,0 +1,107 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.CompactRoute;
+import edu.uos.openroute.routing.NavigationProgress;
+import edu.uos.openroute.routing.RouteIndex;
+import org.junit.Test;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import static org.junit.Assert.*;
+
+public class NavigationProgressUnitTest {
+
+    // A straight road northwards with two steps of 0.01 degrees (about 1.1 km), taking 100 and 300 seconds.
+    private static NavigationProgress createProgress() {
+        Road road = new Road();
+        road.mBoundingBox = new BoundingBox(49.42, 8.7, 49.4, 8.7);
+        for (int i = 0; i <= 20; ++i) {
+            road.mRouteHigh.add(new GeoPoint(49.4 + i * 0.001, 8.7));
+        }
+        for (int i = 0; i < 2; ++i) {
+            RoadNode node = new RoadNode();
+            node.mLocation = new GeoPoint(49.4 + i * 0.01, 8.7);
+            node.mDuration = 100 + i * 200;
+            road.mNodes.add(node);
+        }
+        return new NavigationProgress(CompactRoute.fromRoad(road));
+    }
+
+    @Test
+    public void testRemaining() {
+        NavigationProgress progress = NavigationProgressUnitTest.createProgress();
+        assertEquals(400, progress.getRemainingDuration(), 1e-6);
+
+        // Halfway through the first step, slightly off the road
+        progress.update(49.405, 8.7001);
+        assertEquals(0, progress.getStep());
+        assertEquals(progress.getRemainingDistance() / 3, progress.getDistanceToNextStep(), 1e-6);
+        assertEquals(350, progress.getRemainingDuration(), 1e-3);
+
+        // Halfway through the second step
+        progress.update(49.415, 8.7);
+        assertEquals(1, progress.getStep());
+        assertEquals(progress.getRemainingDistance(), progress.getDistanceToNextStep(), 1e-9);
+        assertEquals(150, progress.getRemainingDuration(), 1e-3);
+    }
+
+    @Test
+    public void testUpdateInterval() {
+        NavigationProgress progress = NavigationProgressUnitTest.createProgress();
+        progress.update(49.4, 8.7);
+
+        // Standing still, locations are rare and batched
+        assertEquals(10000, progress.getUpdateInterval(0));
+        assertTrue(progress.getBatchTime(0) > 0);
+
+        // At 30 m/s, the maneuver is about 37 seconds away
+        assertEquals(5000, progress.getUpdateInterval(30));
+        assertEquals(0, progress.getBatchTime(30));
+
+        // Shortly before the maneuver, locations are frequent
+        progress.update(49.4095, 8.7);
+        assertEquals(1000, progress.getUpdateInterval(30));
+
+        // Walking far away from the next maneuver
+        progress.update(49.4102, 8.7);
+        assertEquals(10000, progress.getUpdateInterval(1.4));
+        assertEquals(60000, progress.getBatchTime(1.4));
+    }
+
+    @Test
+    public void testSnappingNearLastMatch() {
+        // A road northwards and back southwards about 15 meters east of it, with vertices about every 11 meters
+        Road road = new Road();
+        road.mBoundingBox = new BoundingBox(49.41, 8.7002, 49.4, 8.7);
+        for (int i = 0; i <= 100; ++i) {
+            road.mRouteHigh.add(new GeoPoint(49.4 + i * 0.0001, 8.7));
+        }
+        for (int i = 100; i >= 0; --i) {
+            road.mRouteHigh.add(new GeoPoint(49.4 + i * 0.0001, 8.7002));
+        }
+        for (int i = 0; i < 2; ++i) {
+            RoadNode node = new RoadNode();
+            node.mLocation = road.mRouteHigh.get(101 * i);
+            road.mNodes.add(node);
+        }
+        NavigationProgress progress = new NavigationProgress(CompactRoute.fromRoad(road));
+
+        // Without a previous location, the way back is nearer
+        RouteIndex.Match match = progress.update(49.40055, 8.70012);
+        assertEquals(1, match.getStep());
+
+        // On the way there, the user stays on it while the way back passes closer by
+        progress = new NavigationProgress(CompactRoute.fromRoad(road));
+        assertEquals(4, progress.update(49.40045, 8.7).getSegment());
+        match = progress.update(49.40055, 8.70012);
+        assertEquals(0, match.getStep());
+        assertEquals(5, match.getSegment());
+
+        // Far ahead of the last match, the whole road is searched
+        match = progress.update(49.40905, 8.7);
+        assertEquals(0, match.getStep());
+        assertEquals(90, match.getSegment());
+    }
+}
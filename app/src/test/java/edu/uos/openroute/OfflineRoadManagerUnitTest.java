@@ -0,0 +1,252 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.OfflineRoadManager;
+import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.OpenRouteServiceRoad;
+import edu.uos.openroute.routing.RoadGraph;
+import edu.uos.openroute.routing.RouteGeometry;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.util.Geodesy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OfflineRoadManagerUnitTest {
+
+    // The distance between neighbouring nodes of the grid in degrees.
+    private static final double SPACING = 0.001;
+
+    // The instructions by maneuver type.
+    private static final String[] INSTRUCTIONS = {"Turn left", "Turn right", "Turn sharp left", "Turn sharp right",
+            "Turn slightly left", "Turn slightly right", "", "", "", "Make a U-turn", "", "Head"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RoadGraph createGrid(int size) throws IOException {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                builder.addNode(52 + row * SPACING, 8 + column * SPACING);
+            }
+        }
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                if (column + 1 < size) {
+                    builder.addRoad(row * size + column, row * size + column + 1, RoadGraph.RESIDENTIAL, false);
+                }
+                if (row + 1 < size) {
+                    builder.addRoad(row * size + column, (row + 1) * size + column, RoadGraph.RESIDENTIAL, false);
+                }
+            }
+        }
+
+        File file = folder.newFile();
+        builder.write(file);
+        return RoadGraph.open(file);
+    }
+
+    private static ArrayList<GeoPoint> waypoints(double... coordinates) {
+        ArrayList<GeoPoint> waypoints = new ArrayList<>();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            waypoints.add(new GeoPoint(coordinates[i], coordinates[i + 1]));
+        }
+        return waypoints;
+    }
+
+    @Test
+    public void testGraphFile() throws IOException {
+        RoadGraph graph = this.createGrid(3);
+        assertEquals(9, graph.getNodeCount());
+        assertEquals(24, graph.getEdgeCount());
+        assertEquals(5200100, graph.getLatitudeE5(3));
+        assertEquals(800200, graph.getLongitudeE5(5));
+
+        // The center is connected to its four neighbours
+        int[] neighbours = new int[4];
+        for (int edge = graph.getEdgeStart(4); edge < graph.getEdgeEnd(4); ++edge) {
+            neighbours[edge - graph.getEdgeStart(4)] = graph.getTarget(edge);
+            assertEquals(RoadGraph.RESIDENTIAL, graph.getRoadClass(edge));
+            assertFalse(graph.isAgainstOneway(edge));
+        }
+        Arrays.sort(neighbours);
+        assertArrayEquals(new int[]{1, 3, 5, 7}, neighbours);
+        assertEquals(68.5, graph.getLength(graph.getEdgeStart(1)), 0.5);
+
+        // Anything else is rejected
+        File invalid = folder.newFile();
+        try (FileOutputStream output = new FileOutputStream(invalid)) {
+            output.write(new byte[32]);
+        }
+        try {
+            RoadGraph.open(invalid);
+            fail();
+        } catch (IOException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRoute() throws IOException, RoutingException {
+        OfflineRoadManager manager = new OfflineRoadManager(this.createGrid(5), OpenRouteServiceManager.Profile.CAR, INSTRUCTIONS);
+
+        // From a corner to the opposite one with a stop in between, starting a bit off the road
+        OpenRouteServiceRoad road = manager.calculate(waypoints(52.00002, 7.99998, 52.002, 8.002, 52.004, 8.004));
+        assertEquals(Road.STATUS_OK, road.mStatus);
+        assertEquals(2, road.mLegs.size());
+        assertEquals(4 * (0.0685 + 0.1112), road.mLength, 0.01);
+        assertEquals(road.mLength / 30 * 3600, road.mDuration, 1);
+        assertEquals(road.mLength / 2, road.mLegs.get(0).mLength, 0.01);
+
+        // The geometry follows the grid from corner to corner
+        RouteGeometry geometry = road.getGeometry();
+        assertEquals(9, geometry.size());
+        assertEquals(5200000, geometry.getLatitudeE5(0));
+        assertEquals(800000, geometry.getLongitudeE5(0));
+        assertEquals(5200400, geometry.getLatitudeE5(8));
+        assertEquals(800400, geometry.getLongitudeE5(8));
+        assertEquals(52.004, road.mBoundingBox.getLatNorth(), 1e-9);
+        assertEquals(8.0, road.mBoundingBox.getLonWest(), 1e-9);
+
+        // Each leg departs first, the steps sum up to the legs and start at their vertices
+        assertEquals(11, road.mNodes.get(road.mLegs.get(0).mStartNodeIndex).mManeuverType);
+        assertEquals(11, road.mNodes.get(road.mLegs.get(1).mStartNodeIndex).mManeuverType);
+        assertEquals(4, road.getNodeVertex(road.mLegs.get(1).mStartNodeIndex));
+        double length = 0;
+        for (int i = 0; i < road.mNodes.size(); ++i) {
+            length += road.mNodes.get(i).mLength;
+            assertEquals(geometry.getLatitudeE5(road.getNodeVertex(i)) / RouteGeometry.E5, road.mNodes.get(i).mLocation.getLatitude(), 1e-9);
+            assertEquals(geometry.getLongitudeE5(road.getNodeVertex(i)) / RouteGeometry.E5, road.mNodes.get(i).mLocation.getLongitude(), 1e-9);
+            assertFalse(road.mNodes.get(i).mInstructions.isEmpty());
+        }
+        assertEquals(road.mLength, length, 1e-6);
+        assertEquals(road.mNodes.size() - 1, road.mLegs.get(1).mEndNodeIndex);
+    }
+
+    @Test
+    public void testTurns() throws IOException, RoutingException {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int west = builder.addNode(52, 8), center = builder.addNode(52, 8.001), north = builder.addNode(52.001, 8.001);
+        int south = builder.addNode(51.999, 8.001), east = builder.addNode(52, 8.002);
+        builder.addRoad(west, center, RoadGraph.PRIMARY, false);
+        builder.addRoad(center, north, RoadGraph.PRIMARY, false);
+        builder.addRoad(center, south, RoadGraph.PRIMARY, false);
+        builder.addRoad(center, east, RoadGraph.PRIMARY, false);
+        File file = folder.newFile();
+        builder.write(file);
+        OfflineRoadManager manager = new OfflineRoadManager(RoadGraph.open(file), OpenRouteServiceManager.Profile.CAR, INSTRUCTIONS);
+
+        // Going east from the west turns left towards the north and right towards the south
+        Road left = manager.getRoad(waypoints(52, 8, 52.001, 8.001));
+        assertEquals(2, left.mNodes.size());
+        assertEquals(0, left.mNodes.get(1).mManeuverType);
+        Road right = manager.getRoad(waypoints(52, 8, 51.999, 8.001));
+        assertEquals(1, right.mNodes.get(1).mManeuverType);
+
+        // Going straight is no maneuver
+        Road straight = manager.getRoad(waypoints(52, 8, 52, 8.002));
+        assertEquals(1, straight.mNodes.size());
+    }
+
+    @Test
+    public void testProfiles() throws IOException, RoutingException {
+        // A one-way shortcut and a detour along a path, with a road leading to the start
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int start = builder.addNode(52, 8), end = builder.addNode(52, 8.002), detour = builder.addNode(52.001, 8.001);
+        int west = builder.addNode(52, 7.999);
+        builder.addRoad(end, start, RoadGraph.RESIDENTIAL, true);
+        builder.addRoad(west, start, RoadGraph.RESIDENTIAL, false);
+        builder.addRoad(start, detour, RoadGraph.PATH, false);
+        builder.addRoad(detour, end, RoadGraph.PATH, false);
+        File file = folder.newFile();
+        builder.write(file);
+        RoadGraph graph = RoadGraph.open(file);
+
+        // Cars may neither go against the one-way road nor use the path
+        try {
+            new OfflineRoadManager(graph, OpenRouteServiceManager.Profile.CAR, INSTRUCTIONS).calculate(waypoints(52, 8, 52, 8.002));
+            fail();
+        } catch (RoutingException expected) {
+            assertFalse(expected.isRetryable());
+        }
+        assertEquals(0.137, new OfflineRoadManager(graph, OpenRouteServiceManager.Profile.CAR, INSTRUCTIONS).getRoad(waypoints(52, 8.002, 52, 8)).mLength, 0.001);
+
+        // Cyclists take the detour, pedestrians the shortcut
+        Road cycling = new OfflineRoadManager(graph, OpenRouteServiceManager.Profile.BICYCLE, INSTRUCTIONS).getRoad(waypoints(52, 8, 52, 8.002));
+        assertEquals(0.261, cycling.mLength, 0.001);
+        Road walking = new OfflineRoadManager(graph, OpenRouteServiceManager.Profile.WALKING, INSTRUCTIONS).getRoad(waypoints(52, 8, 52, 8.002));
+        assertEquals(0.137, walking.mLength, 0.001);
+    }
+
+    @Test
+    public void testLargeGrid() throws IOException, RoutingException {
+        OfflineRoadManager manager = new OfflineRoadManager(this.createGrid(300), OpenRouteServiceManager.Profile.WALKING, INSTRUCTIONS);
+
+        // Reusing the search state gives the same results
+        for (int i = 0; i < 3; ++i) {
+            OpenRouteServiceRoad road = manager.calculate(waypoints(52, 8, 52.299, 8.299));
+            assertEquals(599, road.getGeometry().size());
+            assertEquals(299 * (0.0685 + 0.1112), road.mLength, 0.5);
+        }
+    }
+
+    @Test
+    public void testSnapping() throws IOException, RoutingException {
+        // Scattered nodes, of which only the ones on roads may be snapped onto
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        Random random = new Random(5);
+        double[] coordinates = new double[2 * 2000];
+        for (int i = 0; i < 2000; ++i) {
+            coordinates[2 * i] = 52 + random.nextDouble() * 0.2;
+            coordinates[2 * i + 1] = 8 + random.nextDouble() * 0.3;
+            builder.addNode(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+        for (int i = 0; i + 1 < 2000; i += 4) {
+            builder.addRoad(i, i + 1, RoadGraph.RESIDENTIAL, false);
+        }
+        File file = folder.newFile();
+        builder.write(file);
+        OfflineRoadManager manager = new OfflineRoadManager(RoadGraph.open(file), OpenRouteServiceManager.Profile.CAR, INSTRUCTIONS);
+
+        // The grid finds the same node as a scan over all of them, which is where the road starts or ends
+        for (int query = 0; query < 200; ++query) {
+            double latitude = 52 + random.nextDouble() * 0.2, longitude = 8 + random.nextDouble() * 0.3;
+            int nearest = -1;
+            double nearestDistance = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < 2000; ++i) {
+                double distance = Geodesy.haversine(latitude, longitude, coordinates[2 * i], coordinates[2 * i + 1]);
+                if (i % 4 < 2 && distance < nearestDistance) {
+                    nearest = i;
+                    nearestDistance = distance;
+                }
+            }
+            if (nearestDistance > 0.45) {
+                continue;
+            }
+
+            // Route from the location to itself, which consists of the snapped node only
+            OpenRouteServiceRoad road = manager.calculate(waypoints(latitude, longitude, latitude, longitude));
+            assertEquals(Math.round(coordinates[2 * nearest] * RouteGeometry.E5), road.getGeometry().getLatitudeE5(0));
+            assertEquals(Math.round(coordinates[2 * nearest + 1] * RouteGeometry.E5), road.getGeometry().getLongitudeE5(0));
+        }
+
+        // Waypoints far away from any road are rejected
+        try {
+            manager.calculate(waypoints(52.1, 8.1, 52.5, 8.1));
+            fail();
+        } catch (RoutingException expected) {
+            assertTrue(expected.getMessage().contains("waypoint 1"));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.CompactRoute;
+import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.OpenRouteServiceRoad;
+import edu.uos.openroute.routing.RouteGeometry;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.Transport;
+import org.junit.Test;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OpenRouteServiceManagerUnitTest {
+
+    // A single step of a route followed by the arrival.
+    private static final String STEPS = "[{\"distance\":1.5,\"duration\":90.0,\"type\":11,\"instruction\":\"Head north\",\"way_points\":[0,2],"
+            + "\"maneuver\":{\"bearing_after\":0,\"location\":[-120.2,38.5]}},"
+            + "{\"distance\":0.0,\"duration\":0.0,\"type\":10,\"instruction\":\"Arrive\",\"way_points\":[2,2],"
+            + "\"maneuver\":{\"location\":[-126.453,43.252]}}]";
+
+    // The fastest route with an encoded geometry and an alternative without one, heading the other way.
+    private static final String RESPONSE = "{\"bbox\":[-127.0,38.0,-120.0,44.0],\"routes\":["
+            + "{\"summary\":{\"distance\":1.5,\"duration\":90.0},\"segments\":[{\"distance\":1.5,\"duration\":90.0,\"steps\":" + STEPS + "}],"
+            + "\"bbox\":[-126.453,38.5,-120.2,43.252],\"geometry\":\"_p~iF~ps|U_ulLnnqC_mqNvxq`@\",\"way_points\":[0,2]},"
+            + "{\"summary\":{\"distance\":2.0,\"duration\":120.0},\"segments\":[{\"distance\":2.0,\"duration\":120.0,\"steps\":" + STEPS.replace("north", "south") + "}],"
+            + "\"way_points\":[0,2]}"
+            + "],\"metadata\":{\"service\":\"routing\"}}";
+
+    private static class FakeTransport implements Transport {
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public <T> T post(URL endpoint, String apiKey, byte[] body, ResponseHandler<T> handler) throws IOException {
+            requests.add(new String(body, "UTF-8"));
+            return handler.handle(new StringReader(RESPONSE));
+        }
+    }
+
+    private static ArrayList<GeoPoint> waypoints(int count) {
+        ArrayList<GeoPoint> waypoints = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            waypoints.add(new GeoPoint(38.5 + i, -120.2 - i));
+        }
+        return waypoints;
+    }
+
+    @Test
+    public void testAlternatives() throws RoutingException, InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        OpenRouteServiceManager manager = new OpenRouteServiceManager("key", OpenRouteServiceManager.Profile.CAR, transport);
+
+        Road[] roads = manager.fetchRoads(waypoints(2), true);
+        assertEquals(1, transport.requests.size());
+        assertTrue(transport.requests.get(0).contains("\"alternative_routes\":{"));
+        assertEquals(2, roads.length);
+
+        // The fastest route comes first with its own bounding box and the decoded geometry
+        OpenRouteServiceRoad fastest = (OpenRouteServiceRoad) roads[0];
+        assertEquals(Road.STATUS_OK, fastest.mStatus);
+        assertEquals(1.5, fastest.mLength, 1e-9);
+        assertEquals(1, fastest.getNodeCount());
+        assertEquals(43.252, fastest.mBoundingBox.getLatNorth(), 1e-9);
+        RouteGeometry geometry = fastest.getGeometry();
+        assertEquals(3, geometry.size());
+        assertEquals(4070000, geometry.getLatitudeE5(1));
+        assertEquals(-12645300, geometry.getLongitudeE5(2));
+        assertEquals(3, fastest.getRouteHigh().size());
+
+        // The nodes and legs are only created once they are accessed, skipping the arrival
+        assertTrue(fastest.mNodes.isEmpty());
+        assertEquals(0, fastest.getNodeVertex(0));
+        assertEquals(1, fastest.getNodes().size());
+        assertEquals("Head north", fastest.getNodes().get(0).mInstructions);
+        assertEquals(11, fastest.getNodes().get(0).mManeuverType);
+        assertEquals(38.5, fastest.getNodes().get(0).mLocation.getLatitude(), 1e-9);
+        assertEquals(1, fastest.getLegs().size());
+        assertEquals(0, fastest.getLegs().get(0).mEndNodeIndex);
+        assertEquals(90.0, fastest.getLegs().get(0).mDuration, 1e-9);
+
+        // The alternative shares the bounding box of the response and falls back to its nodes
+        OpenRouteServiceRoad alternative = (OpenRouteServiceRoad) roads[1];
+        assertEquals(2.0, alternative.mLength, 1e-9);
+        assertEquals(44.0, alternative.mBoundingBox.getLatNorth(), 1e-9);
+        assertEquals(1, alternative.getGeometry().size());
+
+        // Its nodes are only created once it is selected
+        assertTrue(alternative.mNodes.isEmpty());
+        assertEquals(1, alternative.getNodeCount());
+        assertEquals("Head south", alternative.getNodes().get(0).mInstructions);
+    }
+
+    @Test
+    public void testPackedInstructions() throws RoutingException, InterruptedException {
+        OpenRouteServiceManager manager = new OpenRouteServiceManager("key", OpenRouteServiceManager.Profile.CAR, new FakeTransport());
+        Road[] roads = manager.fetchRoads(waypoints(2), true);
+
+        // The compact form shares the packed steps, whose instructions are read from the response of their own route
+        CompactRoute route = CompactRoute.fromRoad(roads[1]);
+        assertTrue(roads[1].mNodes.isEmpty());
+        assertEquals(1, route.getStepCount());
+        assertEquals("Head south", route.getStepInstruction(0));
+        assertEquals("Head north", CompactRoute.fromRoad(roads[0]).getStepInstruction(0));
+    }
+
+    @Test
+    public void testSingleRoute() throws RoutingException, InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        OpenRouteServiceManager manager = new OpenRouteServiceManager("key", OpenRouteServiceManager.Profile.CAR, transport);
+
+        // Alternatives are neither requested for a single road nor along intermediate waypoints
+        manager.fetchRoads(waypoints(2));
+        manager.fetchRoads(waypoints(3), true);
+        assertEquals(2, transport.requests.size());
+        assertFalse(transport.requests.get(0).contains("alternative_routes"));
+        assertFalse(transport.requests.get(1).contains("alternative_routes"));
+    }
+}
@@ -0,0 +1,114 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.OpenRouteServiceMatrix;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.Transport;
+import edu.uos.openroute.routing.TravelMatrix;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OpenRouteServiceMatrixUnitTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    /**
+     * A service answering every pair with the index of its origin times 1000 plus the index of its destination, which
+     * are encoded into the latitude of the origins and the longitude of the destinations.
+     */
+    private static class IndexService implements Transport {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final int extraColumns;
+
+        IndexService(int extraColumns) {
+            this.extraColumns = extraColumns;
+        }
+
+        @Override
+        public <T> T post(URL endpoint, String apiKey, byte[] body, ResponseHandler<T> handler) throws IOException {
+            requests.incrementAndGet();
+            try {
+                JSONObject request = new JSONObject(new String(body, "UTF-8"));
+                JSONArray locations = request.getJSONArray("locations");
+                JSONArray sources = request.getJSONArray("sources"), destinations = request.getJSONArray("destinations");
+
+                JSONArray durations = new JSONArray();
+                for (int i = 0; i < sources.length(); ++i) {
+                    int origin = (int) Math.round(locations.getJSONArray(sources.getInt(i)).getDouble(1) * 1000);
+                    JSONArray row = new JSONArray();
+                    for (int j = 0; j < destinations.length() + extraColumns; ++j) {
+                        int destination = j < destinations.length() ? (int) Math.round(locations.getJSONArray(destinations.getInt(j)).getDouble(0) * 1000) : j;
+                        row.put(origin == 7 && destination == 3 ? JSONObject.NULL : (Object) (origin * 1000 + destination));
+                    }
+                    durations.put(row);
+                }
+                return handler.handle(new StringReader(new JSONObject().put("durations", durations).put("distances", durations).toString()));
+            } catch (JSONException invalid) {
+                throw new IOException(invalid);
+            }
+        }
+    }
+
+    private static List<GeoPoint> createPoints(int count, boolean latitude) {
+        List<GeoPoint> points = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            points.add(latitude ? new GeoPoint(i / 1000.0, 8.0) : new GeoPoint(52.0, i / 1000.0));
+        }
+        return points;
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTiling() throws Exception {
+        // 120 x 70 pairs need three rows and two columns of tiles
+        IndexService service = new IndexService(0);
+        OpenRouteServiceMatrix client = new OpenRouteServiceMatrix("key", OpenRouteServiceManager.Profile.CAR, executor, service);
+        TravelMatrix matrix = client.calculate(createPoints(120, true), createPoints(70, false));
+        assertEquals(6, service.requests.get());
+
+        assertEquals(120, matrix.getOriginCount());
+        assertEquals(70, matrix.getDestinationCount());
+        for (int origin = 0; origin < 120; ++origin) {
+            for (int destination = 0; destination < 70; ++destination) {
+                if (origin == 7 && destination == 3) {
+                    // Unreachable pairs stay unknown
+                    assertTrue(Float.isNaN(matrix.getDuration(origin, destination)));
+                } else {
+                    assertEquals(origin * 1000 + destination, matrix.getDuration(origin, destination), 0.5);
+                    assertEquals(origin * 1000 + destination, matrix.getDistance(origin, destination), 0.5);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTileSize() throws Exception {
+        // A tile with more columns than requested must not spill into the next tile
+        OpenRouteServiceMatrix client = new OpenRouteServiceMatrix("key", OpenRouteServiceManager.Profile.CAR, executor, new IndexService(1));
+        try {
+            client.calculate(createPoints(10, true), createPoints(60, false));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected instanceof RoutingException || expected.getCause() instanceof RoutingException);
+        }
+    }
+}
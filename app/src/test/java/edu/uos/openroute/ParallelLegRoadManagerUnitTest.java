@@ -0,0 +1,138 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.OpenRouteServiceRoad;
+import edu.uos.openroute.routing.ParallelLegRoadManager;
+import org.junit.After;
+import org.junit.Test;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadLeg;
+import org.osmdroid.bonuspack.routing.RoadManager;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ParallelLegRoadManagerUnitTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    /**
+     * A manager returning a straight road through the waypoints, with a leg of one node for each pair of them.
+     */
+    private static class StraightRoadManager extends RoadManager {
+        private final AtomicInteger requests = new AtomicInteger();
+
+        @Override
+        public Road getRoad(ArrayList<GeoPoint> waypoints) {
+            requests.incrementAndGet();
+            Road road = new Road();
+            road.mStatus = Road.STATUS_OK;
+            road.mRouteHigh = new ArrayList<>(waypoints);
+            road.mBoundingBox = BoundingBox.fromGeoPoints(waypoints);
+            for (int i = 0; i < waypoints.size() - 1; ++i) {
+                RoadNode node = new RoadNode();
+                node.mLocation = waypoints.get(i);
+                node.mInstructions = "Leave waypoint " + waypoints.get(i).getLatitude();
+                road.mNodes.add(node);
+
+                RoadLeg leg = new RoadLeg();
+                leg.mStartNodeIndex = leg.mEndNodeIndex = i;
+                leg.mLength = 1.0;
+                leg.mDuration = 60.0;
+                road.mLegs.add(leg);
+                road.mLength += leg.mLength;
+                road.mDuration += leg.mDuration;
+            }
+            return road;
+        }
+
+        @Override
+        public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
+            return new Road[]{this.getRoad(waypoints)};
+        }
+    }
+
+    private static ArrayList<GeoPoint> createWaypoints(int count) {
+        ArrayList<GeoPoint> waypoints = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            waypoints.add(new GeoPoint(52.0 + i, 8.0 + 0.5 * i));
+        }
+        return waypoints;
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStitching() {
+        StraightRoadManager parts = new StraightRoadManager();
+        Road road = new ParallelLegRoadManager(parts, executor, 3).getRoad(createWaypoints(7));
+        assertNotNull(road);
+        assertEquals(3, parts.requests.get());
+
+        // The legs of all parts follow each other, pointing to the nodes of their part
+        assertEquals(6, road.mLegs.size());
+        assertEquals(6, road.mNodes.size());
+        for (int i = 0; i < road.mLegs.size(); ++i) {
+            RoadLeg leg = road.mLegs.get(i);
+            assertEquals(i, leg.mStartNodeIndex);
+            assertEquals(i, leg.mEndNodeIndex);
+            assertEquals("Leave waypoint " + (52.0 + i), road.mNodes.get(leg.mStartNodeIndex).mInstructions);
+        }
+
+        // The shared waypoint of two parts is only contained once in the geometry
+        OpenRouteServiceRoad stitched = (OpenRouteServiceRoad) road;
+        assertEquals(7, stitched.getGeometry().size());
+        assertEquals(2, stitched.getNodeVertex(2));
+        assertEquals(6.0, road.mLength, 1e-9);
+        assertEquals(360.0, road.mDuration, 1e-9);
+        assertEquals(58.0, road.mBoundingBox.getLatNorth(), 1e-9);
+        assertEquals(8.0, road.mBoundingBox.getLonWest(), 1e-9);
+    }
+
+    @Test
+    public void testEmptyLeg() {
+        // The second part has neither nodes nor legs, i.e. as its waypoints are identical
+        Road first = new StraightRoadManager().getRoad(createWaypoints(3));
+        Road empty = new Road();
+        empty.mStatus = Road.STATUS_OK;
+        empty.mRouteHigh = new ArrayList<>(Collections.singletonList(createWaypoints(3).get(2)));
+        empty.mBoundingBox = BoundingBox.fromGeoPoints(empty.mRouteHigh);
+
+        Road road = ParallelLegRoadManager.stitch(new Road[]{first, empty});
+        assertEquals(2, road.mNodes.size());
+        assertEquals(3, road.mLegs.size());
+
+        // Its leg is anchored at the last node before it instead of pointing behind the nodes
+        RoadLeg leg = road.mLegs.get(2);
+        assertEquals(1, leg.mStartNodeIndex);
+        assertEquals(1, leg.mEndNodeIndex);
+
+        // The same holds for an empty part in front
+        road = ParallelLegRoadManager.stitch(new Road[]{empty, first});
+        List<RoadLeg> legs = road.mLegs;
+        assertEquals(0, legs.get(0).mStartNodeIndex);
+        assertEquals(0, legs.get(0).mEndNodeIndex);
+        assertEquals(1, legs.get(2).mEndNodeIndex);
+    }
+
+    @Test
+    public void testShortTrip() {
+        // A trip fitting into a single request is passed through
+        StraightRoadManager parts = new StraightRoadManager();
+        Road road = new ParallelLegRoadManager(parts, executor, 3).getRoad(createWaypoints(3));
+        assertNotNull(road);
+        assertFalse(road instanceof OpenRouteServiceRoad);
+        assertEquals(1, parts.requests.get());
+    }
+}
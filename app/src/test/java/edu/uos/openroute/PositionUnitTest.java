@@ -10,4 +10,17 @@ public class PositionUnitTest {
         String degreesMinutesSeconds = Position.toDegreeMinutesSeconds(40.34722);
         Assert.assertEquals("40° 20' 50''", degreesMinutesSeconds);
     }
+
+    @Test
+    public void testList() {
+        Position[] positions = Position.listFromString("52.2799; 8.0472\n\n 52.0302 ;8.5325 \n");
+        Assert.assertNotNull(positions);
+        Assert.assertEquals(2, positions.length);
+        Assert.assertEquals(52.0302, positions[1].getLatitude(), 1e-9);
+        Assert.assertEquals(8.5325, positions[1].getLongitude(), 1e-9);
+
+        Assert.assertEquals(0, Position.listFromString("").length);
+        Assert.assertNull(Position.listFromString("52.2799; 8.0472\n52.0302"));
+        Assert.assertNull(Position.listFromString("95; 8.0472"));
+    }
 }
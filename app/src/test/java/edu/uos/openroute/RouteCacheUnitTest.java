@@ -0,0 +1,107 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.OpenRouteServiceManager;
+import edu.uos.openroute.routing.OpenRouteServiceRoad;
+import edu.uos.openroute.routing.RouteCache;
+import edu.uos.openroute.routing.RouteKey;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class RouteCacheUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static RouteKey createKey(double latitude) {
+        ArrayList<GeoPoint> points = new ArrayList<>();
+        points.add(new GeoPoint(latitude, 8.681495));
+        points.add(new GeoPoint(49.420318, 8.687872));
+        return new RouteKey(OpenRouteServiceManager.Profile.CAR, OpenRouteServiceManager.Language.ENGLISH, points);
+    }
+
+    private static Road createRoad() {
+        Road road = new Road();
+        road.mLength = 1.4;
+        road.mDuration = 293.9;
+        road.mBoundingBox = new BoundingBox(49.420318, 8.687872, 49.41461, 8.681495);
+
+        RoadNode node = new RoadNode();
+        node.mInstructions = "Head north";
+        node.mLocation = new GeoPoint(49.41461, 8.681495);
+        road.mNodes.add(node);
+        road.mRouteHigh.add(node.mLocation);
+        return road;
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals(createKey(49.414611), createKey(49.414612));
+        assertNotEquals(createKey(49.41461), createKey(49.41561));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        RouteCache cache = new RouteCache(folder.getRoot(), 1024 * 1024, 60000);
+        assertNull(cache.get(createKey(49.41461)));
+
+        cache.put(createKey(49.41461), new Road[]{createRoad()});
+        Road[] roads = new RouteCache(folder.getRoot(), 1024 * 1024, 60000).get(createKey(49.41461));
+        assertNotNull(roads);
+        assertEquals(293.9, roads[0].mDuration, 0.01);
+        assertEquals("Head north", ((OpenRouteServiceRoad) roads[0]).getNodes().get(0).mInstructions);
+        assertEquals(49.41461, ((OpenRouteServiceRoad) roads[0]).getRouteHigh().get(0).getLatitude(), 1e-5);
+
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testRecencySurvivesRestart() {
+        RouteCache cache = new RouteCache(folder.getRoot(), 1024 * 1024, 60000);
+        cache.put(createKey(49.41461), new Road[]{createRoad()});
+        cache.put(createKey(49.41561), new Road[]{createRoad()});
+
+        // Both entries were used a while ago, then the first one is used again
+        for (File file : folder.getRoot().listFiles()) {
+            assertTrue(file.setLastModified(System.currentTimeMillis() - 10000));
+        }
+        assertNotNull(cache.get(createKey(49.41461)));
+
+        // A restarted cache with room for one entry only evicts the least recently used one
+        RouteCache restarted = new RouteCache(folder.getRoot(), cache.getSize() - 1, 60000);
+        assertEquals(1, restarted.getEvictionCount());
+        assertNotNull(restarted.get(createKey(49.41461)));
+        assertNull(restarted.get(createKey(49.41561)));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        RouteCache cache = new RouteCache(folder.getRoot(), 1024 * 1024, 50);
+        cache.put(createKey(49.41461), new Road[]{createRoad()});
+        Thread.sleep(100);
+
+        // A recent use does not extend the time to live of an entry
+        for (File file : folder.getRoot().listFiles()) {
+            assertTrue(file.setLastModified(System.currentTimeMillis()));
+        }
+        assertNull(cache.get(createKey(49.41461)));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testEviction() {
+        RouteCache cache = new RouteCache(folder.getRoot(), 1, 60000);
+        cache.put(createKey(49.41461), new Road[]{createRoad()});
+        assertNull(cache.get(createKey(49.41461)));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,131 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.CompactRoute;
+import edu.uos.openroute.routing.RouteGeometry;
+import edu.uos.openroute.routing.RouteIndex;
+import edu.uos.openroute.util.Geodesy;
+import org.junit.Test;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RouteIndexUnitTest {
+
+    private static Road createRoad(int vertices) {
+        Road road = new Road();
+        road.mBoundingBox = new BoundingBox(60, 20, 40, 0);
+        Random random = new Random(42);
+        double latitude = 49.4, longitude = 8.7;
+        for (int i = 0; i < vertices; ++i) {
+            road.mRouteHigh.add(new GeoPoint(latitude, longitude));
+            if (i % 50 == 0) {
+                RoadNode node = new RoadNode();
+                node.mLocation = new GeoPoint(latitude, longitude);
+                road.mNodes.add(node);
+            }
+            latitude += (random.nextDouble() - 0.3) * 0.001;
+            longitude += (random.nextDouble() - 0.5) * 0.002;
+        }
+        return road;
+    }
+
+    @Test
+    public void testNearestMatchesLinearScan() {
+        Road road = RouteIndexUnitTest.createRoad(2000);
+        RouteIndex index = RouteIndex.fromRoad(road);
+        Random random = new Random(7);
+        for (int query = 0; query < 200; ++query) {
+            GeoPoint location = road.mRouteHigh.get(random.nextInt(road.mRouteHigh.size()));
+            double latitude = location.getLatitude() + (random.nextDouble() - 0.5) * 0.002;
+            double longitude = location.getLongitude() + (random.nextDouble() - 0.5) * 0.002;
+
+            // The nearest vertex is never closer than the nearest segment, up to the rounding of the stored geometry
+            double nearestVertex = Double.POSITIVE_INFINITY;
+            for (GeoPoint point : road.mRouteHigh) {
+                nearestVertex = Math.min(nearestVertex, Geodesy.haversine(latitude, longitude, point.getLatitude(), point.getLongitude()));
+            }
+            RouteIndex.Match match = index.nearest(latitude, longitude);
+            assertTrue(match.getDistance() <= nearestVertex + 1e-3);
+            assertEquals(match.getSegment() / 50, match.getStep());
+            assertTrue(match.getDistanceAlong() >= index.getDistanceAt(match.getSegment()));
+            assertTrue(match.getDistanceAlong() <= index.getDistanceAt(match.getSegment() + 1));
+        }
+    }
+
+    /**
+     * Calculate the distance of a location towards a segment, snapping it in the same plane the index projects the
+     * route into.
+     *
+     * @param geometry  The geometry of the route.
+     * @param segment   The first vertex of the segment.
+     * @param latitude  The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return the squared distance in the plane, which ranks the segments, and the distance on the sphere in kilometers.
+     */
+    private static double[] getSegmentDistance(RouteGeometry geometry, int segment, double latitude, double longitude) {
+        double meanLatitude = 0;
+        for (int i = 0; i < geometry.size(); ++i) {
+            meanLatitude += geometry.getLatitudeE5(i);
+        }
+        final double scale = Math.cos(Math.toRadians(meanLatitude / geometry.size() / RouteGeometry.E5));
+        final double x = longitude * RouteGeometry.E5 * scale, y = latitude * RouteGeometry.E5;
+
+        final double x1 = geometry.getLongitudeE5(segment) * scale, y1 = geometry.getLatitudeE5(segment);
+        final double dx = geometry.getLongitudeE5(segment + 1) * scale - x1, dy = geometry.getLatitudeE5(segment + 1) - y1;
+        final double squaredLength = dx * dx + dy * dy;
+        final double t = squaredLength == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / squaredLength));
+        final double snappedLatitude = (geometry.getLatitudeE5(segment) + t * (geometry.getLatitudeE5(segment + 1) - geometry.getLatitudeE5(segment))) / RouteGeometry.E5;
+        final double snappedLongitude = (geometry.getLongitudeE5(segment) + t * (geometry.getLongitudeE5(segment + 1) - geometry.getLongitudeE5(segment))) / RouteGeometry.E5;
+        final double ex = x1 + t * dx - x, ey = y1 + t * dy - y;
+        return new double[]{ex * ex + ey * ey, Geodesy.haversine(latitude, longitude, snappedLatitude, snappedLongitude)};
+    }
+
+    @Test
+    public void testNearestMatchesBruteForce() {
+        Road road = RouteIndexUnitTest.createRoad(3000);
+        RouteIndex index = RouteIndex.fromRoad(road);
+        RouteGeometry geometry = CompactRoute.fromRoad(road).getGeometry();
+        Random random = new Random(11);
+        for (int query = 0; query < 1000; ++query) {
+            // Locations close to the route as well as far away from it, where whole subtrees have to be pruned
+            GeoPoint location = road.mRouteHigh.get(random.nextInt(road.mRouteHigh.size()));
+            double spread = query % 2 == 0 ? 0.005 : 0.5;
+            double latitude = location.getLatitude() + (random.nextDouble() - 0.5) * spread;
+            double longitude = location.getLongitude() + (random.nextDouble() - 0.5) * spread;
+
+            // Scan all the segments for the nearest one
+            double[] nearest = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+            for (int segment = 0; segment < geometry.size() - 1; ++segment) {
+                double[] distance = RouteIndexUnitTest.getSegmentDistance(geometry, segment, latitude, longitude);
+                if (distance[0] < nearest[0]) {
+                    nearest = distance;
+                }
+            }
+
+            // The index finds a segment just as near, which is ambiguous only at the vertex shared by two segments
+            RouteIndex.Match match = index.nearest(latitude, longitude);
+            assertEquals(nearest[1], match.getDistance(), 1e-9);
+            assertEquals(nearest[0], RouteIndexUnitTest.getSegmentDistance(geometry, match.getSegment(), latitude, longitude)[0], 1e-6);
+        }
+    }
+
+    @Test
+    public void testAlongRoute() {
+        Road road = RouteIndexUnitTest.createRoad(120);
+        RouteIndex index = RouteIndex.fromRoad(road);
+        GeoPoint vertex = road.mRouteHigh.get(75);
+        RouteIndex.Match match = index.nearest(vertex.getLatitude(), vertex.getLongitude());
+        assertEquals(0, match.getDistance(), 1e-3);
+        assertEquals(index.getDistanceAt(75), match.getDistanceAlong(), 1e-3);
+        assertEquals(1, index.getStepAt(match.getDistanceAlong()));
+        assertEquals(2, index.getStepAt(index.getLength()));
+        Road empty = new Road();
+        empty.mBoundingBox = road.mBoundingBox;
+        assertNull(RouteIndex.fromRoad(empty).nearest(49.4, 8.7));
+    }
+}
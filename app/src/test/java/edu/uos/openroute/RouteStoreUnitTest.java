@@ -0,0 +1,114 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.OpenRouteServiceRoad;
+import edu.uos.openroute.routing.RouteStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadNode;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class RouteStoreUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Write the files right on the calling thread.
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Queues the file operations until they are run explicitly.
+     */
+    private static class QueuedExecutor implements Executor {
+        private final List<Runnable> queued = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queued.add(command);
+        }
+
+        void runAll() {
+            for (Runnable command : queued) {
+                command.run();
+            }
+            queued.clear();
+        }
+    }
+
+    private static Road createRoad() {
+        Road road = new Road();
+        road.mLength = 1.4;
+        road.mDuration = 293.9;
+        road.mBoundingBox = new BoundingBox(49.420318, 8.687872, 49.41461, 8.681495);
+
+        RoadNode node = new RoadNode();
+        node.mInstructions = "Head north";
+        node.mLocation = new GeoPoint(49.41461, 8.681495);
+        road.mNodes.add(node);
+        road.mRouteHigh.add(node.mLocation);
+        road.mRouteHigh.add(new GeoPoint(49.420318, 8.687872));
+        return road;
+    }
+
+    @Test
+    public void testHandoff() {
+        RouteStore store = new RouteStore(folder.getRoot(), DIRECT);
+        Road road = createRoad();
+        long handle = store.put(road);
+        assertNotEquals(RouteStore.NO_HANDLE, handle);
+        assertEquals(293.9, store.get(handle).mDuration, 1e-9);
+
+        // A new process reads the road from its file
+        OpenRouteServiceRoad restored = new RouteStore(folder.getRoot(), DIRECT).get(handle);
+        assertNotNull(restored);
+        assertEquals(293.9, restored.mDuration, 1e-9);
+        assertEquals("Head north", restored.getNodes().get(0).mInstructions);
+
+        // Released roads are gone for good
+        store.release(handle);
+        assertNull(store.get(handle));
+        assertNull(new RouteStore(folder.getRoot(), DIRECT).get(handle));
+    }
+
+    @Test
+    public void testBackgroundWriting() {
+        QueuedExecutor storage = new QueuedExecutor();
+        RouteStore store = new RouteStore(folder.getRoot(), storage);
+        storage.runAll();
+
+        // The road is available right away, while its file is only written in the background
+        long handle = store.put(createRoad());
+        assertNotNull(store.get(handle));
+        assertEquals(0, folder.getRoot().listFiles().length);
+        storage.runAll();
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].length() > 0);
+
+        // A released road is not read from its file again, even before it is deleted
+        store.release(handle);
+        assertNull(store.getCompact(handle));
+        storage.runAll();
+        assertEquals(0, folder.getRoot().listFiles().length);
+
+        // A road released before it was written never reaches storage
+        handle = store.put(createRoad());
+        store.release(handle);
+        storage.runAll();
+        assertEquals(0, folder.getRoot().listFiles().length);
+        assertNull(new RouteStore(folder.getRoot(), DIRECT).get(handle));
+    }
+}
@@ -0,0 +1,219 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.RequestContext;
+import edu.uos.openroute.routing.RoutingException;
+import edu.uos.openroute.routing.RoutingExecutor;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RoutingExecutorUnitTest {
+
+    /**
+     * Delivers the callbacks right on the worker threads and counts down once a delivery passed, even if it was dropped.
+     */
+    private static class DirectExecutor implements Executor {
+        private final CountDownLatch delivered = new CountDownLatch(1);
+
+        @Override
+        public void execute(Runnable command) {
+            try {
+                command.run();
+            } finally {
+                delivered.countDown();
+            }
+        }
+    }
+
+    /**
+     * A calculation blocking until it is interrupted, with a resource which records the state of the calculation when
+     * it is closed.
+     */
+    private static class BlockingCalculation implements Callable<String> {
+        private final CountDownLatch started = new CountDownLatch(1), closed = new CountDownLatch(1);
+        private final AtomicBoolean interruptedBeforeClose = new AtomicBoolean();
+
+        @Override
+        public String call() throws Exception {
+            final Thread runner = Thread.currentThread();
+            RequestContext.current().register(new Closeable() {
+                @Override
+                public void close() {
+                    interruptedBeforeClose.set(runner.isInterrupted());
+                    closed.countDown();
+                }
+            });
+            started.countDown();
+            new CountDownLatch(1).await();
+            return "late";
+        }
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        DirectExecutor callbacks = new DirectExecutor();
+        RoutingExecutor executor = new RoutingExecutor(2, callbacks);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicBoolean succeeded = new AtomicBoolean();
+
+        // A calculation stalling beyond its deadline
+        BlockingCalculation calculation = new BlockingCalculation();
+        executor.submit(100, calculation, new RoutingExecutor.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                succeeded.set(true);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                failure.set(cause);
+            }
+        });
+
+        // The resources are closed before the calculation is interrupted
+        assertTrue(calculation.closed.await(5, TimeUnit.SECONDS));
+        assertFalse(calculation.interruptedBeforeClose.get());
+
+        assertTrue(callbacks.delivered.await(5, TimeUnit.SECONDS));
+        assertFalse(succeeded.get());
+        assertTrue(failure.get() instanceof RoutingException);
+        assertTrue(((RoutingException) failure.get()).isRetryable());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        DirectExecutor callbacks = new DirectExecutor();
+        RoutingExecutor executor = new RoutingExecutor(2, callbacks);
+        final AtomicBoolean delivered = new AtomicBoolean();
+
+        BlockingCalculation calculation = new BlockingCalculation();
+        RequestContext context = executor.submit(10000, calculation, new RoutingExecutor.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                delivered.set(true);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                delivered.set(true);
+            }
+        });
+
+        assertTrue(calculation.started.await(5, TimeUnit.SECONDS));
+        context.cancel();
+
+        // The resources are closed before the calculation is interrupted, and its failure is dropped
+        assertTrue(calculation.closed.await(5, TimeUnit.SECONDS));
+        assertFalse(calculation.interruptedBeforeClose.get());
+        assertTrue(callbacks.delivered.await(5, TimeUnit.SECONDS));
+        assertTrue(context.isCancelled());
+        assertFalse(delivered.get());
+    }
+
+    @Test
+    public void testCleanupOfLateResult() throws Exception {
+        RoutingExecutor executor = new RoutingExecutor(2, new DirectExecutor());
+        final AtomicReference<String> discarded = new AtomicReference<>();
+        final AtomicBoolean succeeded = new AtomicBoolean();
+        final CountDownLatch finished = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        // A calculation ignoring the abort and finishing after its deadline
+        executor.submit(100, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                RequestContext.current().register(new Closeable() {
+                    @Override
+                    public void close() {
+                        closed.countDown();
+                    }
+                });
+                while (closed.getCount() > 0) {
+                    try {
+                        closed.await();
+                    } catch (InterruptedException ignored) {
+                        // Keep on calculating
+                    }
+                }
+                return "late";
+            }
+        }, new RoutingExecutor.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                succeeded.set(true);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                finished.countDown();
+            }
+        }, new RoutingExecutor.Cleanup<String>() {
+            @Override
+            public void onUndelivered(String result) {
+                discarded.set(result);
+            }
+        });
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(succeeded.get());
+        assertEquals("late", discarded.get());
+    }
+
+    @Test
+    public void testCleanupOfCancelledResult() throws Exception {
+        // Queue the deliveries, so that the calculation can be cancelled after its result is ready
+        final List<Runnable> deliveries = new ArrayList<>();
+        final CountDownLatch queued = new CountDownLatch(1);
+        RoutingExecutor executor = new RoutingExecutor(2, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                synchronized (deliveries) {
+                    deliveries.add(command);
+                }
+                queued.countDown();
+            }
+        });
+        final AtomicReference<String> discarded = new AtomicReference<>();
+        final AtomicBoolean delivered = new AtomicBoolean();
+
+        RequestContext context = executor.submit(10000, new Callable<String>() {
+            @Override
+            public String call() {
+                return "result";
+            }
+        }, new RoutingExecutor.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                delivered.set(true);
+            }
+
+            @Override
+            public void onFailure(Exception cause) {
+                delivered.set(true);
+            }
+        }, new RoutingExecutor.Cleanup<String>() {
+            @Override
+            public void onUndelivered(String result) {
+                discarded.set(result);
+            }
+        });
+
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        context.cancel();
+        synchronized (deliveries) {
+            deliveries.get(0).run();
+        }
+        assertFalse(delivered.get());
+        assertEquals("result", discarded.get());
+    }
+}
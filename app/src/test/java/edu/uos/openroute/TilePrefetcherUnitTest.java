@@ -0,0 +1,149 @@
+package edu.uos.openroute;
+
+import android.graphics.drawable.Drawable;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uos.openroute.gui.TilePrefetcher;
+import edu.uos.openroute.routing.RouteGeometry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osmdroid.tileprovider.modules.IFilesystemCache;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+import org.osmdroid.tileprovider.tilesource.XYTileSource;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TilePrefetcherUnitTest {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    // A local stand-in for a tile server answering every tile with 100 bytes
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                exchange.sendResponseHeaders(200, 100);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(new byte[100]);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static RouteGeometry createGeometry() {
+        RouteGeometry geometry = new RouteGeometry(3);
+        geometry.add(4941461, 868149);
+        geometry.add(4950000, 880000);
+        geometry.add(4960000, 880000);
+        return geometry;
+    }
+
+    @Test
+    public void testCorridor() {
+        // At zoom 10, a tile is about 25 km wide, so the whole route lies within a 2x2 block at most
+        long[] tiles = TilePrefetcher.getCorridorTiles(createGeometry(), 100, 10, 10, 100);
+        assertTrue(tiles.length >= 1 && tiles.length <= 4);
+        assertEquals(10, MapTileIndex.getZoom(tiles[0]));
+        assertEquals(536, MapTileIndex.getX(tiles[0]));
+        assertEquals(349, MapTileIndex.getY(tiles[0]));
+
+        // A wider corridor covers more tiles, no tile twice, and the limit is respected
+        long[] wide = TilePrefetcher.getCorridorTiles(createGeometry(), 2000, 14, 15, 100000);
+        assertTrue(wide.length > TilePrefetcher.getCorridorTiles(createGeometry(), 100, 14, 15, 100000).length);
+        Set<Long> unique = new HashSet<>();
+        for (long tile : wide) {
+            assertTrue(unique.add(tile));
+        }
+        assertEquals(10, TilePrefetcher.getCorridorTiles(createGeometry(), 2000, 14, 15, 10).length);
+    }
+
+    @Test
+    public void testDownload() throws InterruptedException {
+        XYTileSource source = new XYTileSource("Test", 0, 18, 256, ".png",
+                new String[]{"http://127.0.0.1:" + server.getAddress().getPort() + "/"});
+        MemoryCache cache = new MemoryCache();
+        long[] tiles = TilePrefetcher.getCorridorTiles(createGeometry(), 500, 12, 13, 1000);
+        cache.tiles.add(tiles[0]);
+
+        final AtomicInteger reported = new AtomicInteger();
+        long bytes = new TilePrefetcher(source, cache, 4, Long.MAX_VALUE, "OpenRoute").run(tiles, new TilePrefetcher.Listener() {
+            @Override
+            public void onProgress(int processed, int total, long bytes) {
+                reported.incrementAndGet();
+            }
+        });
+
+        // The cached tile was skipped
+        assertEquals(tiles.length - 1, requests.get());
+        assertEquals(100L * (tiles.length - 1), bytes);
+        assertEquals(tiles.length, reported.get());
+        assertEquals(tiles.length, cache.tiles.size());
+
+        // Stop once the size limit is reached
+        requests.set(0);
+        new TilePrefetcher(source, new MemoryCache(), 1, 250, "OpenRoute").run(tiles, new TilePrefetcher.Listener() {
+            @Override
+            public void onProgress(int processed, int total, long bytes) {
+            }
+        });
+        assertEquals(3, requests.get());
+    }
+
+    /**
+     * A tile cache only remembering the cached tiles.
+     */
+    private static class MemoryCache implements IFilesystemCache {
+        private final Set<Long> tiles = Collections.synchronizedSet(new HashSet<Long>());
+
+        @Override
+        public boolean saveFile(ITileSource source, long tile, InputStream stream, Long expiration) {
+            return tiles.add(tile);
+        }
+
+        @Override
+        public boolean exists(ITileSource source, long tile) {
+            return tiles.contains(tile);
+        }
+
+        @Override
+        public void onDetach() {
+        }
+
+        @Override
+        public boolean remove(ITileSource source, long tile) {
+            return tiles.remove(tile);
+        }
+
+        @Override
+        public Long getExpirationTimestamp(ITileSource source, long tile) {
+            return null;
+        }
+
+        @Override
+        public Drawable loadTile(ITileSource source, long tile) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package edu.uos.openroute.routing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generating the body of a directions request: A trip with alternatives and one along many waypoints.
+ */
+@State(Scope.Benchmark)
+public class DirectionsRequestBenchmark {
+
+    @Param({"2", "50"})
+    public int waypointCount;
+
+    private double[] waypoints;
+
+    @Setup
+    public void setUp() {
+        this.waypoints = Fixtures.createWaypoints(this.waypointCount);
+    }
+
+    @Benchmark
+    public String generateRequestJson() {
+        return DirectionsRequest.generateRequestJson(this.waypoints, "en", true);
+    }
+}
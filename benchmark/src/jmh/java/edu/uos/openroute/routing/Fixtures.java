@@ -0,0 +1,136 @@
+package edu.uos.openroute.routing;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic but realistically shaped data for the benchmarks, created deterministically.
+ */
+final class Fixtures {
+
+    // The number of vertices of the geometry per step, the number of steps per segment and of distinct street names.
+    private static final int VERTICES_PER_STEP = 4, STEPS_PER_SEGMENT = 1000, STREETS = 200;
+
+    // The maneuvers along the route; departure and arrival are added at the ends of the segments.
+    private static final int[] MANEUVERS = {0, 1, 4, 5, 6, 2, 3};
+    private static final String[] VERBS = {"Turn left", "Turn right", "Turn slight left", "Turn slight right", "Continue straight", "Turn sharp left", "Turn sharp right"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * Create a winding geometry in northern Germany.
+     *
+     * @param vertices The number of vertices.
+     * @return the geometry.
+     */
+    static RouteGeometry createGeometry(int vertices) {
+        Random random = new Random(42);
+        RouteGeometry geometry = new RouteGeometry(vertices);
+        int latitude = 5227900, longitude = 804700;
+        for (int i = 0; i < vertices; ++i) {
+            geometry.add(latitude, longitude);
+            latitude += random.nextInt(61) - 20;
+            longitude += random.nextInt(61) - 20;
+        }
+        return geometry;
+    }
+
+    /**
+     * Encode a geometry as polyline with five decimal places.
+     *
+     * @param geometry The geometry.
+     * @return the encoded polyline.
+     */
+    static String encode(RouteGeometry geometry) {
+        StringBuilder polyline = new StringBuilder(6 * geometry.size());
+        int latitude = 0, longitude = 0;
+        for (int i = 0; i < geometry.size(); ++i) {
+            Fixtures.encodeValue(geometry.getLatitudeE5(i) - latitude, polyline);
+            Fixtures.encodeValue(geometry.getLongitudeE5(i) - longitude, polyline);
+            latitude = geometry.getLatitudeE5(i);
+            longitude = geometry.getLongitudeE5(i);
+        }
+        return polyline.toString();
+    }
+
+    /**
+     * Append a single delta to an encoded polyline.
+     *
+     * @param value    The delta.
+     * @param polyline The polyline.
+     */
+    private static void encodeValue(int value, StringBuilder polyline) {
+        int bits = value < 0 ? ~(value << 1) : value << 1;
+        while (bits >= 0x20) {
+            polyline.append((char) ((0x20 | (bits & 0x1f)) + 63));
+            bits >>>= 5;
+        }
+        polyline.append((char) (bits + 63));
+    }
+
+    /**
+     * Create a response of the directions endpoint with a single route.
+     *
+     * @param steps The number of steps of the route, excluding the arrivals.
+     * @return the response.
+     */
+    static String createDirectionsResponse(int steps) {
+        RouteGeometry geometry = Fixtures.createGeometry(steps * VERTICES_PER_STEP + 1);
+        StringBuilder response = new StringBuilder(300 * steps + 6 * geometry.size() + 256);
+        response.append("{\"bbox\":[7.9,52.1,8.9,52.9],\"routes\":[{\"summary\":{\"distance\":")
+                .append(0.2 * steps).append(",\"duration\":").append(20.0 * steps).append("},\"segments\":[");
+
+        for (int first = 0; first < steps; first += STEPS_PER_SEGMENT) {
+            final int last = Math.min(steps, first + STEPS_PER_SEGMENT);
+            if (first > 0) {
+                response.append(',');
+            }
+            response.append("{\"distance\":").append(0.2 * (last - first)).append(",\"duration\":").append(20.0 * (last - first))
+                    .append(",\"steps\":[");
+            for (int step = first; step < last; ++step) {
+                int maneuver = step == first ? 11 : MANEUVERS[step % MANEUVERS.length];
+                String street = "Street " + (step * 7919 % STREETS);
+                String instruction = maneuver == 11 ? "Head north on " + street : VERBS[step % VERBS.length] + " onto " + street;
+                Fixtures.appendStep(response, step * VERTICES_PER_STEP, (step + 1) * VERTICES_PER_STEP, maneuver, instruction, street, geometry);
+                response.append(',');
+            }
+            Fixtures.appendStep(response, last * VERTICES_PER_STEP, last * VERTICES_PER_STEP, 10, "Arrive at your destination", "-", geometry);
+            response.append("]}");
+        }
+
+        // The polyline may contain backslashes, which are escaped in JSON
+        response.append("],\"bbox\":[7.9,52.1,8.9,52.9],\"geometry\":\"").append(Fixtures.encode(geometry).replace("\\", "\\\\"))
+                .append("\",\"way_points\":[0,").append(geometry.size() - 1).append("]}],")
+                .append("\"metadata\":{\"attribution\":\"openrouteservice.org | OpenStreetMap contributors\",\"service\":\"routing\"}}");
+        return response.toString();
+    }
+
+    /**
+     * Append a step as the service describes it.
+     */
+    private static void appendStep(StringBuilder response, int firstVertex, int lastVertex, int maneuver, String instruction,
+                                   String street, RouteGeometry geometry) {
+        response.append(String.format(Locale.ENGLISH,
+                "{\"distance\":%.1f,\"duration\":%.1f,\"type\":%d,\"instruction\":\"%s\",\"name\":\"%s\",\"way_points\":[%d,%d],"
+                        + "\"maneuver\":{\"bearing_before\":%d,\"bearing_after\":%d,\"location\":[%.5f,%.5f]}}",
+                0.2, 20.0, maneuver, instruction, street, firstVertex, lastVertex, firstVertex % 360, lastVertex % 360,
+                geometry.getLongitudeE5(firstVertex) / RouteGeometry.E5, geometry.getLatitudeE5(firstVertex) / RouteGeometry.E5));
+    }
+
+    /**
+     * Create waypoints along the geometry of {@link #createGeometry(int)}.
+     *
+     * @param count The number of waypoints.
+     * @return latitude and longitude in degrees, interleaved.
+     */
+    static double[] createWaypoints(int count) {
+        RouteGeometry geometry = Fixtures.createGeometry(count);
+        double[] waypoints = new double[2 * count];
+        for (int i = 0; i < count; ++i) {
+            waypoints[2 * i] = geometry.getLatitudeE5(i) / RouteGeometry.E5;
+            waypoints[2 * i + 1] = geometry.getLongitudeE5(i) / RouteGeometry.E5;
+        }
+        return waypoints;
+    }
+}
@@ -0,0 +1,39 @@
+package edu.uos.openroute.routing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Parsing responses of the directions endpoint: A short trip, a long one and a continental one with 50,000 steps.
+ */
+@State(Scope.Benchmark)
+public class RoadParserBenchmark {
+
+    @Param({"10", "1000", "50000"})
+    public int steps;
+
+    private String response;
+    private String encodedGeometry;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.response = Fixtures.createDirectionsResponse(this.steps);
+        this.encodedGeometry = RoadParser.parse(new StringReader(this.response))[0].encodedGeometry;
+    }
+
+    @Benchmark
+    public ParsedRoute[] parse() throws IOException {
+        return RoadParser.parse(new StringReader(this.response));
+    }
+
+    @Benchmark
+    public RouteGeometry decodeGeometry() {
+        return RouteGeometry.decode(this.encodedGeometry);
+    }
+}
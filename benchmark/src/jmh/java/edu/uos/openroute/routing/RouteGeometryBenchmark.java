@@ -0,0 +1,34 @@
+package edu.uos.openroute.routing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Operations on the geometry of a route: Building the pyramid for rendering and simplifying for a single zoom level.
+ */
+@State(Scope.Benchmark)
+public class RouteGeometryBenchmark {
+
+    @Param({"1000", "200000"})
+    public int vertices;
+
+    private RouteGeometry geometry;
+
+    @Setup
+    public void setUp() {
+        this.geometry = Fixtures.createGeometry(this.vertices);
+    }
+
+    @Benchmark
+    public RoutePyramid buildPyramid() {
+        return new RoutePyramid(this.geometry);
+    }
+
+    @Benchmark
+    public RouteGeometry simplify() {
+        return RoutePyramid.simplify(this.geometry, 10, Math.cos(Math.toRadians(52.3)));
+    }
+}
@@ -0,0 +1,47 @@
+package edu.uos.openroute.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The work behind Position: Its distance, which is the haversine formula, and parsing it from the user input.
+ * Position itself is Parcelable and stays in the app, so its core parts are measured directly.
+ */
+@State(Scope.Thread)
+public class CoordinatesBenchmark {
+
+    public double latitude1 = 52.27264, longitude1 = 8.04718, latitude2 = 48.13743, longitude2 = 11.57549;
+    public String latitude = "52.27264", longitude = "8.04718";
+
+    private final double[] coordinates = new double[2 * 1000];
+    private final double[] distances = new double[1000];
+
+    {
+        for (int i = 0; i < 1000; ++i) {
+            coordinates[2 * i] = 47.0 + i * 0.007;
+            coordinates[2 * i + 1] = 6.0 + i * 0.009;
+        }
+    }
+
+    @Benchmark
+    public double distance() {
+        return Geodesy.haversine(latitude1, longitude1, latitude2, longitude2);
+    }
+
+    @Benchmark
+    public double distanceVincenty() {
+        return Geodesy.vincenty(latitude1, longitude1, latitude2, longitude2);
+    }
+
+    @Benchmark
+    public double[] distanceBatch() {
+        Geodesy.haversine(latitude1, longitude1, coordinates, 1000, distances);
+        return distances;
+    }
+
+    @Benchmark
+    public double[] fromString() {
+        return Coordinates.parse(latitude, longitude);
+    }
+}
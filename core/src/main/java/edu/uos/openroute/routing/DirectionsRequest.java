@@ -0,0 +1,66 @@
+package edu.uos.openroute.routing;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * The body of a request to the Open Route Service directions endpoint.
+ */
+final class DirectionsRequest {
+
+    // The parameters of alternative routes: Their maximal number, how much longer and how similar to the fastest route
+    // they may be. The service only calculates alternatives between two waypoints.
+    private final static int ALTERNATIVE_COUNT = 3;
+    private final static double ALTERNATIVE_WEIGHT_FACTOR = 1.4, ALTERNATIVE_SHARE_FACTOR = 0.6;
+
+    private DirectionsRequest() {
+    }
+
+    /**
+     * Generate an appropriate JSON for request.
+     *
+     * @param waypoints    Latitude and longitude of the waypoints of interest in degrees, interleaved.
+     * @param language     The code of the language of the instructions.
+     * @param alternatives True, if alternative routes should be calculated if possible.
+     * @return an appropriate JSON for request, formatted as string.
+     */
+    static String generateRequestJson(double[] waypoints, String language, boolean alternatives) {
+        StringWriter request = new StringWriter(128 + 48 * waypoints.length / 2);
+        try (JsonWriter writer = new JsonWriter(request)) {
+            writer.beginObject();
+
+            // Include (english) instructions and maneuvers and set kilometers as unit.
+            writer.name("instructions").value(true);
+            writer.name("instructions_format").value("text");
+            writer.name("language").value(language);
+            writer.name("maneuvers").value(true);
+            writer.name("units").value("km");
+
+            // Request the full, unsimplified geometry as encoded polyline.
+            writer.name("geometry").value(true);
+            writer.name("geometry_simplify").value(false);
+            writer.name("elevation").value(false);
+
+            // Add the waypoints to the JSON - longitude first!
+            writer.name("coordinates").beginArray();
+            for (int i = 0; i + 1 < waypoints.length; i += 2) {
+                writer.beginArray().value(waypoints[i + 1]).value(waypoints[i]).endArray();
+            }
+            writer.endArray();
+
+            if (alternatives && waypoints.length == 4) {
+                writer.name("alternative_routes").beginObject();
+                writer.name("target_count").value(ALTERNATIVE_COUNT);
+                writer.name("weight_factor").value(ALTERNATIVE_WEIGHT_FACTOR);
+                writer.name("share_factor").value(ALTERNATIVE_SHARE_FACTOR);
+                writer.endObject();
+            }
+            writer.endObject();
+        } catch (IOException ignored) {
+            // Should never be called, as the writer is in memory. But well...
+        }
+        return request.toString();
+    }
+}
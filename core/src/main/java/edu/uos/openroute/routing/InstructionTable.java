@@ -0,0 +1,118 @@
+package edu.uos.openroute.routing;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The instructions of the steps of a route: Each step refers to an entry of a table, so instructions repeating along the
+ * route are stored only once. The instructions of a parsed route are not read while parsing; the table keeps the text of
+ * the response instead and only reads them from it once they are accessed for the first time.
+ */
+final class InstructionTable {
+
+    // The index into the instructions for each step and the distinct instructions, or null until they are read.
+    private int[] stepInstructions;
+    private String[] instructions;
+
+    // The text of the response the instructions are read from and the index of the route in it, until they are read.
+    private char[] response;
+    private int responseLength, route, steps;
+
+    /**
+     * Create a table on top of existing arrays.
+     *
+     * @param stepInstructions The index into the instructions for each step.
+     * @param instructions     The distinct instructions.
+     */
+    InstructionTable(int[] stepInstructions, String[] instructions) {
+        this.stepInstructions = stepInstructions;
+        this.instructions = instructions;
+    }
+
+    /**
+     * Create a table whose instructions are read from the response once they are accessed.
+     *
+     * @param response       The text of the response. It is shared and never modified.
+     * @param responseLength The number of characters of the response.
+     * @param route          The index of the route in the response.
+     * @param steps          The number of steps of the route, excluding the arrivals.
+     */
+    InstructionTable(char[] response, int responseLength, int route, int steps) {
+        this.response = response;
+        this.responseLength = responseLength;
+        this.route = route;
+        this.steps = steps;
+    }
+
+    /**
+     * Return the instruction of a step.
+     *
+     * @param step The index of the step.
+     * @return the instruction.
+     */
+    synchronized String getStepInstruction(int step) {
+        this.read();
+        return this.instructions[this.stepInstructions[step]];
+    }
+
+    /**
+     * Return the index into the instructions for each step. The array is shared and must not be modified.
+     *
+     * @return the indices.
+     */
+    synchronized int[] getStepInstructions() {
+        this.read();
+        return this.stepInstructions;
+    }
+
+    /**
+     * Return the distinct instructions. The array is shared and must not be modified.
+     *
+     * @return the instructions.
+     */
+    synchronized String[] getInstructions() {
+        this.read();
+        return this.instructions;
+    }
+
+    /**
+     * Read the instructions from the response, if this did not happen yet, and forget the response afterwards.
+     */
+    private void read() {
+        if (this.response == null) {
+            return;
+        }
+
+        List<String> stepTexts;
+        try {
+            stepTexts = RoadParser.parseInstructions(new CharArrayReader(this.response, 0, this.responseLength), this.route);
+        } catch (IOException io) {
+            // The response was parsed once already, so this is not expected.
+            throw new IllegalStateException("Unable to read the instructions", io);
+        }
+        if (stepTexts.size() != this.steps) {
+            throw new IllegalStateException("Instructions do not match the steps");
+        }
+
+        // Instructions repeating along the route are stored only once.
+        HashMap<String, Integer> instructionIndices = new HashMap<>();
+        List<String> instructions = new ArrayList<>();
+        int[] stepInstructions = new int[this.steps];
+        for (int i = 0; i < this.steps; ++i) {
+            String instruction = stepTexts.get(i);
+            Integer index = instructionIndices.get(instruction);
+            if (index == null) {
+                index = instructions.size();
+                instructionIndices.put(instruction, index);
+                instructions.add(instruction);
+            }
+            stepInstructions[i] = index;
+        }
+        this.stepInstructions = stepInstructions;
+        this.instructions = instructions.toArray(new String[instructions.size()]);
+        this.response = null;
+    }
+}
@@ -0,0 +1,227 @@
+package edu.uos.openroute.routing;
+
+import java.util.List;
+
+/**
+ * The areas reachable from a center within one or more time ranges, stored as packed rings in primitive arrays.
+ * <p>
+ * Each range is a level consisting of rings of E5 coordinates. Whether a location is inside a level is decided by the
+ * even-odd rule over all of its rings, so holes and disjoint parts need no special treatment. The bounds of each ring and
+ * level are kept to reject most locations without looking at a single vertex.
+ */
+public class Isochrone {
+
+    // The time range of each level in seconds, ascending.
+    private final int[] ranges;
+
+    // The first ring of each level and the first vertex of each ring, each followed by the total count.
+    private final int[] levelStarts, ringStarts;
+
+    // The vertices with latitude and longitude interleaved in E5.
+    private final int[] coordinates;
+
+    // The bounds of each ring and each level as south, west, north and east in E5.
+    private final int[] ringBounds, levelBounds;
+
+    /**
+     * Pack the rings of the levels.
+     *
+     * @param ranges The time range of each level in seconds, ascending.
+     * @param levels The rings of each level, each with latitude and longitude interleaved in E5.
+     */
+    Isochrone(int[] ranges, List<List<int[]>> levels) {
+        this.ranges = ranges;
+
+        // Count the rings and vertices to allocate the arrays once
+        int rings = 0, vertices = 0;
+        for (List<int[]> level : levels) {
+            rings += level.size();
+            for (int[] ring : level) {
+                vertices += ring.length / 2;
+            }
+        }
+        this.levelStarts = new int[levels.size() + 1];
+        this.ringStarts = new int[rings + 1];
+        this.coordinates = new int[2 * vertices];
+        this.ringBounds = new int[4 * rings];
+        this.levelBounds = new int[4 * levels.size()];
+
+        int ring = 0, vertex = 0;
+        for (int level = 0; level < levels.size(); ++level) {
+            this.levelStarts[level] = ring;
+            Isochrone.resetBounds(this.levelBounds, level);
+            for (int[] ringCoordinates : levels.get(level)) {
+                this.ringStarts[ring] = vertex;
+                Isochrone.resetBounds(this.ringBounds, ring);
+                System.arraycopy(ringCoordinates, 0, this.coordinates, 2 * vertex, ringCoordinates.length);
+                for (int i = 0; i < ringCoordinates.length; i += 2) {
+                    Isochrone.extendBounds(this.ringBounds, ring, ringCoordinates[i], ringCoordinates[i + 1]);
+                    Isochrone.extendBounds(this.levelBounds, level, ringCoordinates[i], ringCoordinates[i + 1]);
+                }
+                vertex += ringCoordinates.length / 2;
+                ++ring;
+            }
+        }
+        this.levelStarts[levels.size()] = ring;
+        this.ringStarts[rings] = vertex;
+    }
+
+    /**
+     * Set bounds to be empty.
+     *
+     * @param bounds The bounds.
+     * @param index  The index of the bounds to reset.
+     */
+    private static void resetBounds(int[] bounds, int index) {
+        bounds[4 * index] = bounds[4 * index + 1] = Integer.MAX_VALUE;
+        bounds[4 * index + 2] = bounds[4 * index + 3] = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Extend bounds to include a vertex.
+     *
+     * @param bounds    The bounds.
+     * @param index     The index of the bounds to extend.
+     * @param latitude  The latitude of the vertex in E5.
+     * @param longitude The longitude of the vertex in E5.
+     */
+    private static void extendBounds(int[] bounds, int index, int latitude, int longitude) {
+        bounds[4 * index] = Math.min(bounds[4 * index], latitude);
+        bounds[4 * index + 1] = Math.min(bounds[4 * index + 1], longitude);
+        bounds[4 * index + 2] = Math.max(bounds[4 * index + 2], latitude);
+        bounds[4 * index + 3] = Math.max(bounds[4 * index + 3], longitude);
+    }
+
+    /**
+     * Check if a location is within bounds.
+     *
+     * @param bounds    The bounds.
+     * @param index     The index of the bounds.
+     * @param latitude  The latitude of the location in E5.
+     * @param longitude The longitude of the location in E5.
+     * @return true iff the location is within the bounds.
+     */
+    private static boolean isWithin(int[] bounds, int index, double latitude, double longitude) {
+        return latitude >= bounds[4 * index] && longitude >= bounds[4 * index + 1]
+                && latitude <= bounds[4 * index + 2] && longitude <= bounds[4 * index + 3];
+    }
+
+    /**
+     * Return the number of levels, i.e. time ranges.
+     *
+     * @return the number of levels.
+     */
+    public int getLevelCount() {
+        return this.ranges.length;
+    }
+
+    /**
+     * Return the time range of a level.
+     *
+     * @param level The index of the level.
+     * @return the range in seconds.
+     */
+    public int getRange(int level) {
+        return this.ranges[level];
+    }
+
+    /**
+     * Return the number of rings of a level.
+     *
+     * @param level The index of the level.
+     * @return the number of rings.
+     */
+    public int getRingCount(int level) {
+        return this.levelStarts[level + 1] - this.levelStarts[level];
+    }
+
+    /**
+     * Return the vertices of a ring, i.e. for drawing.
+     *
+     * @param level The index of the level.
+     * @param ring  The index of the ring within the level.
+     * @return the vertices with latitude and longitude interleaved in E5.
+     */
+    public int[] getRing(int level, int ring) {
+        final int index = this.levelStarts[level] + ring;
+        final int start = 2 * this.ringStarts[index], end = 2 * this.ringStarts[index + 1];
+        int[] result = new int[end - start];
+        System.arraycopy(this.coordinates, start, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Check if a location is reachable within the range of a level.
+     *
+     * @param level     The index of the level.
+     * @param latitude  The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     * @return true iff the location is inside the area of the level.
+     */
+    public boolean contains(int level, double latitude, double longitude) {
+        final double y = latitude * RouteGeometry.E5, x = longitude * RouteGeometry.E5;
+        if (!Isochrone.isWithin(this.levelBounds, level, y, x)) {
+            return false;
+        }
+
+        boolean inside = false;
+        for (int ring = this.levelStarts[level]; ring < this.levelStarts[level + 1]; ++ring) {
+            if (Isochrone.isWithin(this.ringBounds, ring, y, x) && this.crossesOddTimes(ring, y, x)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Return the shortest time range a location is reachable within.
+     *
+     * @param latitude  The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     * @return the range in seconds or -1, if the location is not reachable within any range.
+     */
+    public int getReachableRange(double latitude, double longitude) {
+        for (int level = 0; level < this.ranges.length; ++level) {
+            if (this.contains(level, latitude, longitude)) {
+                return this.ranges[level];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the shortest time range for many locations at once.
+     *
+     * @param coordinates The locations with latitude and longitude interleaved in degrees.
+     * @param count       The number of locations.
+     * @param out         The array receiving the range in seconds per location, -1 if not reachable.
+     */
+    public void getReachableRanges(double[] coordinates, int count, int[] out) {
+        for (int i = 0; i < count; ++i) {
+            out[i] = this.getReachableRange(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Check if a horizontal ray from a location crosses the edges of a ring an odd number of times.
+     *
+     * @param ring      The index of the ring.
+     * @param latitude  The latitude of the location in E5.
+     * @param longitude The longitude of the location in E5.
+     * @return true iff the location is inside the ring.
+     */
+    private boolean crossesOddTimes(int ring, double latitude, double longitude) {
+        final int start = this.ringStarts[ring], end = this.ringStarts[ring + 1];
+        boolean odd = false;
+        for (int i = start, j = end - 1; i < end; j = i++) {
+            final double yi = this.coordinates[2 * i], yj = this.coordinates[2 * j];
+            if ((yi > latitude) != (yj > latitude)) {
+                final double xi = this.coordinates[2 * i + 1], xj = this.coordinates[2 * j + 1];
+                if (longitude < (xj - xi) * (latitude - yi) / (yj - yi) + xi) {
+                    odd = !odd;
+                }
+            }
+        }
+        return odd;
+    }
+}
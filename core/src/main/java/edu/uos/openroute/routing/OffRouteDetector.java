@@ -0,0 +1,117 @@
+package edu.uos.openroute.routing;
+
+/**
+ * Decides when the user has left the route and a new one should be calculated.
+ * <p>
+ * To be robust against single bad locations, the user has to be farther away than a threshold for several locations in
+ * a row. Any other location breaks the row, including those less accurate than the threshold. Coming back closer than
+ * a second, smaller threshold ends the detour. Recalculations are rate-limited with an interval doubling with each recalculation during a detour.
+ * <p>
+ * Asking whether a recalculation is due does not use up the rate limit, only starting one does: A caller still waiting
+ * for a previous recalculation simply ignores the answer.
+ */
+public class OffRouteDetector {
+
+    private final double leaveDistance, returnDistance;
+    private final int confirmations;
+    private final long minInterval, maxInterval;
+
+    private boolean offRoute = false;
+    private int farLocations = 0;
+    private long interval, nextReroute = Long.MIN_VALUE;
+
+    /**
+     * Create a new detector.
+     *
+     * @param leaveDistance  The distance towards the route in meters above which the user may have left it.
+     * @param returnDistance The distance towards the route in meters below which the user is back on it.
+     * @param confirmations  The number of far locations in a row required for leaving the route.
+     * @param minInterval    The time between two recalculations in milliseconds at first.
+     * @param maxInterval    The time between two recalculations in milliseconds at most.
+     */
+    public OffRouteDetector(double leaveDistance, double returnDistance, int confirmations, long minInterval, long maxInterval) {
+        if (returnDistance > leaveDistance || confirmations < 1 || minInterval > maxInterval) {
+            throw new IllegalArgumentException("Invalid detector parameters");
+        }
+        this.leaveDistance = leaveDistance;
+        this.returnDistance = returnDistance;
+        this.confirmations = confirmations;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.interval = minInterval;
+    }
+
+    /**
+     * Create a detector with defaults suitable for driving.
+     */
+    public OffRouteDetector() {
+        this(50, 25, 3, 10000, 120000);
+    }
+
+    /**
+     * Handle a new location.
+     *
+     * @param distance The distance of the location towards the route in meters.
+     * @param accuracy The accuracy of the location in meters, 0 if unknown.
+     * @param time     The time of the location in milliseconds.
+     * @return true iff a new route should be calculated now, which has to be reported by {@link #onRerouting(long)}.
+     */
+    public boolean update(double distance, double accuracy, long time) {
+        if (distance < returnDistance) {
+            // Back on the route: the detour ended, and so did its backoff.
+            this.offRoute = false;
+            this.farLocations = 0;
+            this.interval = minInterval;
+            return false;
+        }
+        if (accuracy > leaveDistance || distance <= leaveDistance) {
+            // Inaccurate locations or those in between both thresholds do not confirm leaving the route, but they do
+            // not end a detour either.
+            this.farLocations = 0;
+            return this.isRerouteDue(time);
+        }
+
+        if (++this.farLocations >= confirmations) {
+            this.offRoute = true;
+        }
+        return this.isRerouteDue(time);
+    }
+
+    /**
+     * Check if the user has left the route.
+     *
+     * @return true iff the user is considered off the route.
+     */
+    public boolean isOffRoute() {
+        return this.offRoute;
+    }
+
+    /**
+     * Handle the start of a recalculation, which delays the next one by the current interval and doubles it.
+     *
+     * @param time The current time in milliseconds.
+     */
+    public void onRerouting(long time) {
+        this.nextReroute = time + this.interval;
+        this.interval = Math.min(maxInterval, 2 * this.interval);
+    }
+
+    /**
+     * Handle a successful recalculation, i.e. a new route starting at the user. The rate limit is not reset, so that
+     * the next recalculation is delayed further if the user keeps leaving the new route.
+     */
+    public void onRerouted() {
+        this.offRoute = false;
+        this.farLocations = 0;
+    }
+
+    /**
+     * Check if a recalculation is required and allowed by the rate limit.
+     *
+     * @param time The current time in milliseconds.
+     * @return true iff a new route should be calculated now.
+     */
+    private boolean isRerouteDue(long time) {
+        return this.offRoute && time >= this.nextReroute;
+    }
+}
@@ -0,0 +1,219 @@
+package edu.uos.openroute.routing;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Creates the road graph for routing on the device from an OSM extract in XML, i.e. as exported from openstreetmap.org
+ * or converted with osmconvert. The resulting file is placed as "roads.graph" in the files directory of the app.
+ * <p>
+ * The extract is streamed, so only the coordinates of its nodes and the roads read so far are kept. As the nodes of an
+ * OSM file precede its ways, the nodes are added to the graph once a road uses them.
+ */
+public class OsmImporter extends DefaultHandler {
+
+    // The road classes of the highway tags, all other ways are ignored.
+    private static final Map<String, Integer> ROAD_CLASSES = new HashMap<>();
+
+    static {
+        OsmImporter.addRoadClass(RoadGraph.MOTORWAY, "motorway", "motorway_link");
+        OsmImporter.addRoadClass(RoadGraph.TRUNK, "trunk", "trunk_link");
+        OsmImporter.addRoadClass(RoadGraph.PRIMARY, "primary", "primary_link");
+        OsmImporter.addRoadClass(RoadGraph.SECONDARY, "secondary", "secondary_link");
+        OsmImporter.addRoadClass(RoadGraph.TERTIARY, "tertiary", "tertiary_link");
+        OsmImporter.addRoadClass(RoadGraph.RESIDENTIAL, "residential", "unclassified", "living_street", "road");
+        OsmImporter.addRoadClass(RoadGraph.SERVICE, "service", "track");
+        OsmImporter.addRoadClass(RoadGraph.PATH, "footway", "path", "pedestrian", "cycleway", "bridleway", "steps");
+    }
+
+    private final RoadGraph.Builder builder = new RoadGraph.Builder();
+
+    // The coordinates of the OSM nodes and the graph nodes created for them.
+    private final Map<Long, double[]> coordinates = new HashMap<>();
+    private final Map<Long, Integer> nodes = new HashMap<>();
+
+    // The way currently read, if any.
+    private boolean inWay = false;
+    private long[] references = new long[16];
+    private int referenceCount = 0;
+    private String highway, oneway, junction;
+
+    /**
+     * Map highway tags to a road class.
+     *
+     * @param roadClass The road class.
+     * @param highways  The values of the highway tag.
+     */
+    private static void addRoadClass(int roadClass, String... highways) {
+        for (String highway : highways) {
+            ROAD_CLASSES.put(highway, roadClass);
+        }
+    }
+
+    /**
+     * Read the roads of an OSM extract.
+     *
+     * @param input The extract in XML, which is not closed.
+     * @return the builder containing the roads, ready to be written.
+     * @throws IOException if the extract could not be read or is malformed.
+     */
+    public static RoadGraph.Builder read(InputStream input) throws IOException {
+        OsmImporter importer = new OsmImporter();
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(input, importer);
+        } catch (ParserConfigurationException | SAXException invalid) {
+            throw new IOException("Malformed OSM extract", invalid);
+        }
+        return importer.builder;
+    }
+
+    /**
+     * Convert an OSM extract into a graph file.
+     *
+     * @param arguments The path of the extract and the path of the graph file.
+     * @throws IOException if the extract could not be read or the graph file could not be written.
+     */
+    public static void main(String[] arguments) throws IOException {
+        if (arguments.length != 2) {
+            System.err.println("Usage: OsmImporter <extract.osm> <roads.graph>");
+            System.exit(1);
+        }
+        try (InputStream input = new BufferedInputStream(new FileInputStream(arguments[0]))) {
+            OsmImporter.read(input).write(new File(arguments[1]));
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        switch (qName) {
+            case "node":
+                this.coordinates.put(OsmImporter.getId(attributes, "id"), new double[]{
+                        OsmImporter.getCoordinate(attributes, "lat"), OsmImporter.getCoordinate(attributes, "lon")
+                });
+                break;
+            case "way":
+                this.inWay = true;
+                this.referenceCount = 0;
+                this.highway = this.oneway = this.junction = null;
+                break;
+            case "nd":
+                if (this.inWay) {
+                    if (this.referenceCount == this.references.length) {
+                        this.references = Arrays.copyOf(this.references, 2 * this.references.length);
+                    }
+                    this.references[this.referenceCount++] = OsmImporter.getId(attributes, "ref");
+                }
+                break;
+            case "tag":
+                if (this.inWay) {
+                    String key = attributes.getValue("k"), value = attributes.getValue("v");
+                    if ("highway".equals(key)) {
+                        this.highway = value;
+                    } else if ("oneway".equals(key)) {
+                        this.oneway = value;
+                    } else if ("junction".equals(key)) {
+                        this.junction = value;
+                    }
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (!"way".equals(qName)) {
+            return;
+        }
+        this.inWay = false;
+
+        Integer roadClass = this.highway != null ? ROAD_CLASSES.get(this.highway) : null;
+        if (roadClass == null) {
+            return;
+        }
+
+        // Roundabouts and motorways are one-way unless tagged otherwise, "-1" means against the order of the nodes.
+        boolean reverse = "-1".equals(this.oneway);
+        boolean oneway = reverse || "yes".equals(this.oneway) || "true".equals(this.oneway) || "1".equals(this.oneway)
+                || (this.oneway == null && ("roundabout".equals(this.junction) || roadClass == RoadGraph.MOTORWAY));
+
+        // Split the way at its shape points, skipping nodes missing in the extract
+        int previous = -1;
+        for (int i = 0; i < this.referenceCount; ++i) {
+            int node = this.getNode(this.references[i]);
+            if (node < 0) {
+                previous = -1;
+                continue;
+            } else if (previous >= 0 && previous != node) {
+                if (reverse) {
+                    this.builder.addRoad(node, previous, roadClass, true);
+                } else {
+                    this.builder.addRoad(previous, node, roadClass, oneway);
+                }
+            }
+            previous = node;
+        }
+    }
+
+    /**
+     * Return the graph node of an OSM node, adding it on its first use.
+     *
+     * @param id The id of the OSM node.
+     * @return the index of the graph node or -1, if the OSM node is not contained in the extract.
+     */
+    private int getNode(long id) {
+        Integer node = this.nodes.get(id);
+        if (node == null) {
+            double[] coordinate = this.coordinates.get(id);
+            if (coordinate == null) {
+                return -1;
+            }
+            node = this.builder.addNode(coordinate[0], coordinate[1]);
+            this.nodes.put(id, node);
+        }
+        return node;
+    }
+
+    /**
+     * Parse an id attribute.
+     *
+     * @param attributes The attributes of the element.
+     * @param name       The name of the attribute.
+     * @return the id.
+     * @throws SAXException if the attribute is missing or no number.
+     */
+    private static long getId(Attributes attributes, String name) throws SAXException {
+        try {
+            return Long.parseLong(attributes.getValue(name));
+        } catch (NumberFormatException invalid) {
+            throw new SAXException("Invalid attribute " + name, invalid);
+        }
+    }
+
+    /**
+     * Parse a coordinate attribute.
+     *
+     * @param attributes The attributes of the element.
+     * @param name       The name of the attribute.
+     * @return the coordinate in degrees.
+     * @throws SAXException if the attribute is missing or no number.
+     */
+    private static double getCoordinate(Attributes attributes, String name) throws SAXException {
+        try {
+            return Double.parseDouble(attributes.getValue(name));
+        } catch (NullPointerException | NumberFormatException invalid) {
+            throw new SAXException("Invalid attribute " + name, invalid);
+        }
+    }
+}
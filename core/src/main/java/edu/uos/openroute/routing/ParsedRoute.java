@@ -0,0 +1,19 @@
+package edu.uos.openroute.routing;
+
+/**
+ * A route as parsed from a response of the Open Route Service, before it becomes an osmdroid road in the app.
+ */
+final class ParsedRoute {
+
+    // The length in kilometers and the duration in seconds.
+    double length, duration;
+
+    // The bounding box as north, east, south and west in degrees.
+    double[] boundingBox = null;
+
+    // The geometry as encoded polyline or null, if the route has none.
+    String encodedGeometry = null;
+
+    // The packed steps and legs.
+    StepTable steps = null;
+}
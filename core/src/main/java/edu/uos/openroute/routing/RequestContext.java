@@ -0,0 +1,223 @@
+package edu.uos.openroute.routing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * The deadline and the cancellation state of a routing request.
+ * <p>
+ * While a request is calculated, its context is attached to the calculating thread, so that the transports deep down the
+ * call chain are able to derive their timeouts from the deadline and to register their connections. Cancelling the
+ * context or exceeding its deadline closes all registered connections, which aborts even blocking socket operations.
+ */
+public class RequestContext {
+
+    // The context of the request the current thread is working on.
+    private final static ThreadLocal<RequestContext> current = new ThreadLocal<>();
+
+    private final long deadline;
+    private final List<Closeable> resources = new ArrayList<>();
+    private boolean cancelled = false, expired = false;
+    private Thread runner = null;
+    private Future<?> future = null;
+
+    /**
+     * Create a new context.
+     *
+     * @param timeout The time the request may take at most in milliseconds.
+     */
+    public RequestContext(long timeout) {
+        this.deadline = System.nanoTime() + timeout * 1000000;
+    }
+
+    /**
+     * Return the context of the request the current thread is working on.
+     *
+     * @return the context or null, if the thread is not working on a request with a context.
+     */
+    public static RequestContext current() {
+        return RequestContext.current.get();
+    }
+
+    /**
+     * Attach a context to the current thread. Helper threads of a request attach its context, too.
+     *
+     * @param context The context, may be null.
+     * @return the context attached before, which should be restored with {@link #detach(RequestContext)}.
+     */
+    public static RequestContext attach(RequestContext context) {
+        RequestContext previous = RequestContext.current.get();
+        RequestContext.current.set(context);
+        return previous;
+    }
+
+    /**
+     * Detach the context from the current thread and restore the previous one.
+     *
+     * @param previous The context to restore, may be null.
+     */
+    public static void detach(RequestContext previous) {
+        RequestContext.current.set(previous);
+    }
+
+    /**
+     * Set the thread calculating the request, which is interrupted once the deadline is exceeded.
+     *
+     * @param thread The thread or null, if none is calculating it anymore.
+     */
+    synchronized void setRunner(Thread thread) {
+        if (thread == null && this.runner != null) {
+            // Do not leak an interrupt of this request into the next work of the thread.
+            Thread.interrupted();
+        }
+        this.runner = thread;
+    }
+
+    /**
+     * Set the future of the calculation, which is cancelled with the context.
+     *
+     * @param future The future.
+     */
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+        if (cancelled) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Return the time left until the deadline.
+     *
+     * @return the remaining time in milliseconds, which is not positive if the deadline was exceeded.
+     */
+    public long getRemainingTime() {
+        return (deadline - System.nanoTime()) / 1000000;
+    }
+
+    /**
+     * Check whether the request was cancelled.
+     *
+     * @return true, if the request was cancelled.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Check whether the deadline of the request was exceeded.
+     *
+     * @return true, if the deadline was exceeded.
+     */
+    public synchronized boolean isExpired() {
+        return expired || this.getRemainingTime() <= 0;
+    }
+
+    /**
+     * Ensure the request should still be calculated.
+     *
+     * @throws RoutingException if the request was cancelled or its deadline was exceeded.
+     */
+    public void checkpoint() throws RoutingException {
+        if (this.isCancelled()) {
+            throw new RoutingException("The request was cancelled", null, false);
+        } else if (this.isExpired()) {
+            throw new RoutingException("The deadline of the request was exceeded", null, false);
+        }
+    }
+
+    /**
+     * Register a resource which is closed if the request is aborted.
+     *
+     * @param resource The resource.
+     * @throws RoutingException if the request is already aborted. The resource is closed then, too.
+     */
+    public void register(Closeable resource) throws RoutingException {
+        synchronized (this) {
+            if (!cancelled && !expired) {
+                resources.add(resource);
+                return;
+            }
+        }
+        RequestContext.closeQuietly(resource);
+        this.checkpoint();
+    }
+
+    /**
+     * Unregister a resource which is not used anymore.
+     *
+     * @param resource The resource.
+     */
+    public synchronized void unregister(Closeable resource) {
+        resources.remove(resource);
+    }
+
+    /**
+     * Cancel the request. Its result is not required anymore.
+     * <p>
+     * The registered resources are closed before the calculation is interrupted, so that it fails on the closed
+     * connections instead of leaving them behind in an undefined state.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+        this.abort();
+        synchronized (this) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Mark the deadline as exceeded and abort the running work in the same order as {@link #cancel()}.
+     */
+    void expire() {
+        synchronized (this) {
+            if (expired || cancelled) {
+                return;
+            }
+            expired = true;
+        }
+        this.abort();
+        synchronized (this) {
+            // The runner is only set while it still works on this request.
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Close all the registered resources.
+     */
+    private void abort() {
+        List<Closeable> aborted;
+        synchronized (this) {
+            aborted = new ArrayList<>(resources);
+            resources.clear();
+        }
+        for (Closeable resource : aborted) {
+            RequestContext.closeQuietly(resource);
+        }
+    }
+
+    /**
+     * Close a resource, ignoring any errors.
+     *
+     * @param resource The resource.
+     */
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException ignored) {
+            // Aborting is best effort anyway.
+        }
+    }
+}
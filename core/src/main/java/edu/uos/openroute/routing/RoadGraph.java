@@ -0,0 +1,333 @@
+package edu.uos.openroute.routing;
+
+import edu.uos.openroute.util.Geodesy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A road network for routing on the device, stored as a graph in compressed sparse row form.
+ * <p>
+ * The graph file is memory-mapped instead of being read, so only the pages touched by a search are loaded and the heap
+ * stays small regardless of the size of the network. The file starts with a header of four integers: a magic number,
+ * the format version and the numbers of nodes and edges. The header is followed by the latitudes and longitudes of the
+ * nodes in E5, the index of the first outgoing edge of each node plus the total edge count, and per edge its target
+ * node, its length in meters and a byte with its road class and flags. All numbers are big-endian.
+ * <p>
+ * Each road is stored as two directed edges. The edge against the direction of a one-way road is kept, but flagged, as
+ * pedestrians may still use it.
+ */
+public class RoadGraph {
+
+    /**
+     * The road classes, from the fastest to the slowest.
+     */
+    public static final int MOTORWAY = 0, TRUNK = 1, PRIMARY = 2, SECONDARY = 3, TERTIARY = 4, RESIDENTIAL = 5, SERVICE = 6, PATH = 7;
+
+    /**
+     * The number of road classes.
+     */
+    public static final int ROAD_CLASSES = 8;
+
+    // The first integer of each graph file ("ORG1") and the version of the format.
+    private static final int MAGIC = 0x4f524731;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    // The bits of the attribute byte of an edge.
+    private static final int CLASS_MASK = 0x0f;
+    private static final int AGAINST_ONEWAY = 0x80;
+
+    private final int nodeCount, edgeCount;
+    private final IntBuffer latitudes, longitudes, edgeStarts, targets;
+    private final FloatBuffer lengths;
+    private final ByteBuffer attributes;
+
+    /**
+     * Create a graph on top of the content of a graph file.
+     *
+     * @param buffer The content, i.e. a mapped file.
+     * @throws IOException if the content is no valid graph.
+     */
+    RoadGraph(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("No road graph");
+        } else if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported road graph version " + buffer.getInt(4));
+        }
+
+        this.nodeCount = buffer.getInt(8);
+        this.edgeCount = buffer.getInt(12);
+        if (this.nodeCount < 0 || this.edgeCount < 0
+                || buffer.capacity() != HEADER_SIZE + 4L * (3L * this.nodeCount + 1) + 9L * this.edgeCount) {
+            throw new IOException("Truncated road graph");
+        }
+
+        int offset = HEADER_SIZE;
+        this.latitudes = RoadGraph.slice(buffer, offset, 4 * this.nodeCount).asIntBuffer();
+        offset += 4 * this.nodeCount;
+        this.longitudes = RoadGraph.slice(buffer, offset, 4 * this.nodeCount).asIntBuffer();
+        offset += 4 * this.nodeCount;
+        this.edgeStarts = RoadGraph.slice(buffer, offset, 4 * (this.nodeCount + 1)).asIntBuffer();
+        offset += 4 * (this.nodeCount + 1);
+        this.targets = RoadGraph.slice(buffer, offset, 4 * this.edgeCount).asIntBuffer();
+        offset += 4 * this.edgeCount;
+        this.lengths = RoadGraph.slice(buffer, offset, 4 * this.edgeCount).asFloatBuffer();
+        offset += 4 * this.edgeCount;
+        this.attributes = RoadGraph.slice(buffer, offset, this.edgeCount);
+    }
+
+    /**
+     * Open a graph file.
+     *
+     * @param file The file written by a {@link Builder}.
+     * @return the graph.
+     * @throws IOException if the file could not be mapped or is no valid graph.
+     */
+    public static RoadGraph open(File file) throws IOException {
+        // The mapping stays valid after the channel is closed.
+        try (FileInputStream input = new FileInputStream(file); FileChannel channel = input.getChannel()) {
+            return new RoadGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Return a part of a buffer as a buffer on its own.
+     *
+     * @param buffer The buffer.
+     * @param offset The start of the part in bytes.
+     * @param length The length of the part in bytes.
+     * @return the part sharing its content with the buffer.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * Return the number of nodes.
+     *
+     * @return the number of nodes.
+     */
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * Return the number of directed edges.
+     *
+     * @return the number of edges.
+     */
+    public int getEdgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+     * Return the latitude of a node.
+     *
+     * @param node The index of the node.
+     * @return the latitude in E5.
+     */
+    public int getLatitudeE5(int node) {
+        return this.latitudes.get(node);
+    }
+
+    /**
+     * Return the longitude of a node.
+     *
+     * @param node The index of the node.
+     * @return the longitude in E5.
+     */
+    public int getLongitudeE5(int node) {
+        return this.longitudes.get(node);
+    }
+
+    /**
+     * Return the first outgoing edge of a node. The edges of a node are consecutive.
+     *
+     * @param node The index of the node.
+     * @return the index of the first edge.
+     */
+    public int getEdgeStart(int node) {
+        return this.edgeStarts.get(node);
+    }
+
+    /**
+     * Return the end of the outgoing edges of a node.
+     *
+     * @param node The index of the node.
+     * @return the index after the last edge.
+     */
+    public int getEdgeEnd(int node) {
+        return this.edgeStarts.get(node + 1);
+    }
+
+    /**
+     * Return the node an edge leads to.
+     *
+     * @param edge The index of the edge.
+     * @return the index of the target node.
+     */
+    public int getTarget(int edge) {
+        return this.targets.get(edge);
+    }
+
+    /**
+     * Return the length of an edge.
+     *
+     * @param edge The index of the edge.
+     * @return the length in meters.
+     */
+    public float getLength(int edge) {
+        return this.lengths.get(edge);
+    }
+
+    /**
+     * Return the class of the road an edge belongs to.
+     *
+     * @param edge The index of the edge.
+     * @return the road class, i.e. {@link #RESIDENTIAL}.
+     */
+    public int getRoadClass(int edge) {
+        return this.attributes.get(edge) & CLASS_MASK;
+    }
+
+    /**
+     * Check if an edge runs against the direction of a one-way road.
+     *
+     * @param edge The index of the edge.
+     * @return true iff only pedestrians may use the edge.
+     */
+    public boolean isAgainstOneway(int edge) {
+        return (this.attributes.get(edge) & AGAINST_ONEWAY) != 0;
+    }
+
+    /**
+     * Collects nodes and roads, i.e. while importing an OSM extract, and writes them as a graph file.
+     */
+    public static class Builder {
+
+        private int[] coordinates = new int[64];
+        private int nodeCount = 0;
+
+        // The edges as sources, targets and attributes, and their lengths.
+        private int[] edges = new int[96];
+        private float[] edgeLengths = new float[32];
+        private int edgeCount = 0;
+
+        /**
+         * Add a node.
+         *
+         * @param latitude  The latitude in degrees.
+         * @param longitude The longitude in degrees.
+         * @return the index of the node.
+         */
+        public int addNode(double latitude, double longitude) {
+            if (2 * this.nodeCount == this.coordinates.length) {
+                this.coordinates = Arrays.copyOf(this.coordinates, 2 * this.coordinates.length);
+            }
+            this.coordinates[2 * this.nodeCount] = (int) Math.round(latitude * RouteGeometry.E5);
+            this.coordinates[2 * this.nodeCount + 1] = (int) Math.round(longitude * RouteGeometry.E5);
+            return this.nodeCount++;
+        }
+
+        /**
+         * Add a straight road between two nodes. Curved roads have to be split at their shape points.
+         *
+         * @param from      The index of the first node.
+         * @param to        The index of the second node.
+         * @param roadClass The class of the road, i.e. {@link #RESIDENTIAL}.
+         * @param oneway    True, if vehicles may only go from the first to the second node.
+         * @throws IllegalArgumentException if a node or the road class is unknown.
+         */
+        public void addRoad(int from, int to, int roadClass, boolean oneway) throws IllegalArgumentException {
+            if (from < 0 || from >= this.nodeCount || to < 0 || to >= this.nodeCount) {
+                throw new IllegalArgumentException("Unknown node");
+            } else if (roadClass < 0 || roadClass >= ROAD_CLASSES) {
+                throw new IllegalArgumentException("Unknown road class");
+            }
+
+            final float length = (float) (1000 * Geodesy.haversine(
+                    this.coordinates[2 * from] / RouteGeometry.E5, this.coordinates[2 * from + 1] / RouteGeometry.E5,
+                    this.coordinates[2 * to] / RouteGeometry.E5, this.coordinates[2 * to + 1] / RouteGeometry.E5));
+            this.addEdge(from, to, roadClass, length);
+            this.addEdge(to, from, oneway ? roadClass | AGAINST_ONEWAY : roadClass, length);
+        }
+
+        /**
+         * Add a directed edge.
+         *
+         * @param from       The index of the source node.
+         * @param to         The index of the target node.
+         * @param attributes The road class and the flags.
+         * @param length     The length in meters.
+         */
+        private void addEdge(int from, int to, int attributes, float length) {
+            if (this.edgeCount == this.edgeLengths.length) {
+                this.edges = Arrays.copyOf(this.edges, 2 * this.edges.length);
+                this.edgeLengths = Arrays.copyOf(this.edgeLengths, 2 * this.edgeLengths.length);
+            }
+            this.edges[3 * this.edgeCount] = from;
+            this.edges[3 * this.edgeCount + 1] = to;
+            this.edges[3 * this.edgeCount + 2] = attributes;
+            this.edgeLengths[this.edgeCount++] = length;
+        }
+
+        /**
+         * Write the graph file.
+         *
+         * @param file The file, which is replaced.
+         * @throws IOException if the file could not be written.
+         */
+        public void write(File file) throws IOException {
+            // Sort the edges by their source with a counting sort
+            int[] edgeStarts = new int[this.nodeCount + 1];
+            for (int i = 0; i < this.edgeCount; ++i) {
+                ++edgeStarts[this.edges[3 * i] + 1];
+            }
+            for (int i = 0; i < this.nodeCount; ++i) {
+                edgeStarts[i + 1] += edgeStarts[i];
+            }
+            int[] order = new int[this.edgeCount], next = Arrays.copyOf(edgeStarts, this.nodeCount);
+            for (int i = 0; i < this.edgeCount; ++i) {
+                order[next[this.edges[3 * i]]++] = i;
+            }
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(this.nodeCount);
+                output.writeInt(this.edgeCount);
+                for (int i = 0; i < this.nodeCount; ++i) {
+                    output.writeInt(this.coordinates[2 * i]);
+                }
+                for (int i = 0; i < this.nodeCount; ++i) {
+                    output.writeInt(this.coordinates[2 * i + 1]);
+                }
+                for (int edgeStart : edgeStarts) {
+                    output.writeInt(edgeStart);
+                }
+                for (int edge : order) {
+                    output.writeInt(this.edges[3 * edge + 1]);
+                }
+                for (int edge : order) {
+                    output.writeFloat(this.edgeLengths[edge]);
+                }
+                for (int edge : order) {
+                    output.writeByte(this.edges[3 * edge + 2]);
+                }
+            }
+        }
+    }
+}
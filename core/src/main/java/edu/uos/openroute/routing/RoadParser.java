@@ -0,0 +1,394 @@
+package edu.uos.openroute.routing;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A streaming parser for the responses of the Open Route Service directions endpoint.
+ * The response is consumed token by token, so no tree of the whole response is ever built. Only its text is kept until
+ * the instructions of the routes are read from it once they are required. The parser does not depend on Android, the
+ * routes are turned into osmdroid roads by the app.
+ */
+final class RoadParser {
+
+    // A maneuver type of 10 just mean "arrive".
+    private static final int MANEUVER_ARRIVE = 10;
+
+    // The initial size of the buffer the text of the response is read into.
+    private static final int BUFFER_SIZE = 8192;
+
+    private RoadParser() {
+    }
+
+    /**
+     * Parse the response given by Open Route Service directly from its stream.
+     * The geometries are kept encoded and only decoded once they are accessed, and the instructions of the steps are
+     * skipped until they are accessed, so alternatives which are never shown stay cheap.
+     *
+     * @param input The (unbuffered) stream of the response. It belongs to the caller and is not closed.
+     * @return parsed routes in the order of the response, i.e. the fastest one first.
+     * @throws IOException           if reading the stream failed or it is no valid JSON at all.
+     * @throws IllegalStateException if the JSON does not have the expected structure.
+     */
+    static ParsedRoute[] parse(Reader input) throws IOException {
+        // Keep the text, as the instructions are read from it later on
+        char[] response = new char[BUFFER_SIZE];
+        int length = 0;
+        for (int read; (read = input.read(response, length, response.length - length)) != -1; ) {
+            length += read;
+            if (length == response.length) {
+                response = Arrays.copyOf(response, 2 * response.length);
+            }
+        }
+
+        JsonReader reader = new JsonReader(new CharArrayReader(response, 0, length));
+        List<ParsedRoute> routes = new ArrayList<>();
+        double[] boundingBox = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "bbox":
+                    boundingBox = RoadParser.parseBoundingBox(reader);
+                    break;
+                case "routes":
+                    RoadParser.parseRoutes(reader, routes, response, length);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        for (ParsedRoute route : routes) {
+            // Routes without a bounding box of their own use the one of the whole response
+            if (route.boundingBox == null) {
+                route.boundingBox = boundingBox;
+            }
+            if (route.boundingBox == null) {
+                throw new IllegalStateException("Response does not contain a route");
+            }
+        }
+        if (routes.isEmpty()) {
+            throw new IllegalStateException("Response does not contain a route");
+        }
+        return routes.toArray(new ParsedRoute[routes.size()]);
+    }
+
+    /**
+     * Parse the bounding box given as [west, south, east, north].
+     *
+     * @param reader The reader positioned in front of the array.
+     * @return the bounding box as north, east, south and west.
+     * @throws IOException if the stream could not be read.
+     */
+    private static double[] parseBoundingBox(JsonReader reader) throws IOException {
+        reader.beginArray();
+        double west = reader.nextDouble(), south = reader.nextDouble();
+        double east = reader.nextDouble(), north = reader.nextDouble();
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return new double[]{north, east, south, west};
+    }
+
+    /**
+     * Parse all routes of the response, i.e. the fastest route and its alternatives.
+     *
+     * @param reader         The reader positioned in front of the array.
+     * @param routes         The list the routes are added to.
+     * @param response       The text of the response, which the instructions are read from later on.
+     * @param responseLength The number of characters of the response.
+     * @throws IOException if the stream could not be read.
+     */
+    private static void parseRoutes(JsonReader reader, List<ParsedRoute> routes, char[] response, int responseLength) throws IOException {
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); ++index) {
+            ParsedRoute route = new ParsedRoute();
+            StepTable.Builder steps = new StepTable.Builder();
+            boolean routeFound = false;
+            String geometry = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "bbox":
+                        route.boundingBox = RoadParser.parseBoundingBox(reader);
+                        break;
+                    case "segments":
+                        routeFound = RoadParser.parseSegments(reader, route, steps);
+                        break;
+                    case "geometry":
+                        geometry = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // Without a geometry, the road falls back to the straight lines between the maneuvers.
+            if (routeFound) {
+                route.steps = steps.build(new InstructionTable(response, responseLength, index, steps.getStepCount()));
+                route.encodedGeometry = geometry;
+                routes.add(route);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Parse all segments of a route, each becoming a leg.
+     *
+     * @param reader The reader positioned in front of the array.
+     * @param route  The route whose length and duration are set.
+     * @param steps  The packed steps and legs which are filled.
+     * @return true iff a segment was found.
+     * @throws IOException if the stream could not be read.
+     */
+    private static boolean parseSegments(JsonReader reader, ParsedRoute route, StepTable.Builder steps) throws IOException {
+        route.length = 0;
+        route.duration = 0;
+        boolean segmentFound = false;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            final int start = steps.getStepCount();
+            double length = 0, duration = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "distance":
+                        length = reader.nextDouble();
+                        break;
+                    case "duration":
+                        duration = reader.nextDouble();
+                        break;
+                    case "steps":
+                        RoadParser.parseSteps(reader, steps);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // The leg ends with its last node; the arrival itself is skipped. A segment without nodes of its own, i.e.
+            // between identical waypoints, is anchored at the last node before it.
+            final int end = steps.getStepCount() - 1, anchor = Math.max(0, start - 1);
+            steps.addLeg(end < start ? anchor : start, end < start ? anchor : end, (float) length, (float) duration);
+            route.length += length;
+            route.duration += duration;
+            segmentFound = true;
+        }
+        reader.endArray();
+        return segmentFound;
+    }
+
+    /**
+     * Parse all the steps and add them to the table if they are of interest.
+     *
+     * @param reader The reader positioned in front of the array.
+     * @param steps  The packed steps which are filled.
+     * @throws IOException if the stream could not be read.
+     */
+    private static void parseSteps(JsonReader reader, StepTable.Builder steps) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            RoadParser.parseStep(reader, steps);
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Parse a single step of the route and add it to the table if it is of interest. No objects are created; the
+     * instruction is skipped and the nodes are only created once the road is asked for them.
+     *
+     * @param reader The reader positioned in front of the step object.
+     * @param steps  The packed steps which are filled.
+     * @throws IOException if the stream could not be read.
+     */
+    private static void parseStep(JsonReader reader, StepTable.Builder steps) throws IOException {
+        double length = 0, duration = 0;
+        int maneuver = 0, vertex = steps.getStepCount();
+        int[] location = null;
+
+        // Fill all the attributes in the order they appear
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "duration":
+                    duration = reader.nextDouble();
+                    break;
+                case "distance":
+                    length = reader.nextDouble();
+                    break;
+                case "type":
+                    maneuver = reader.nextInt();
+                    break;
+                case "maneuver":
+                    location = RoadParser.parseManeuverLocation(reader);
+                    break;
+                case "way_points":
+                    // The first index is the vertex in the geometry where the step starts.
+                    reader.beginArray();
+                    vertex = reader.nextInt();
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // Skip the arrival.
+        if (maneuver == MANEUVER_ARRIVE) {
+            return;
+        } else if (location == null) {
+            throw new IllegalStateException("Step without location");
+        }
+        steps.addStep(location[0], location[1], vertex, (float) length, (float) duration, maneuver);
+    }
+
+    /**
+     * Read the instructions of the steps of a route, skipping the arrivals as {@link #parse(Reader)} does.
+     *
+     * @param input The text of a response parsed before.
+     * @param route The index of the route in the response.
+     * @return the instructions of the steps in their order.
+     * @throws IOException           if reading the stream failed or it is no valid JSON at all.
+     * @throws IllegalStateException if the JSON does not have the expected structure.
+     */
+    static List<String> parseInstructions(Reader input, int route) throws IOException {
+        JsonReader reader = new JsonReader(input);
+        List<String> instructions = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("routes")) {
+                reader.skipValue();
+                continue;
+            }
+
+            // Skip the routes in front of the requested one; the rest of the response is of no interest.
+            reader.beginArray();
+            for (int index = 0; index < route && reader.hasNext(); ++index) {
+                reader.skipValue();
+            }
+            if (!reader.hasNext()) {
+                throw new IllegalStateException("Response does not contain the route");
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("segments")) {
+                    RoadParser.parseSegmentInstructions(reader, instructions);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            return instructions;
+        }
+        throw new IllegalStateException("Response does not contain a route");
+    }
+
+    /**
+     * Read the instructions of the steps of all segments of a route.
+     *
+     * @param reader       The reader positioned in front of the array.
+     * @param instructions The list the instructions are added to.
+     * @throws IOException if the stream could not be read.
+     */
+    private static void parseSegmentInstructions(JsonReader reader, List<String> instructions) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("steps")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    RoadParser.parseStepInstruction(reader, instructions);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Read the instruction of a single step, unless it is the arrival.
+     *
+     * @param reader       The reader positioned in front of the step object.
+     * @param instructions The list the instruction is added to.
+     * @throws IOException if the stream could not be read.
+     */
+    private static void parseStepInstruction(JsonReader reader, List<String> instructions) throws IOException {
+        int maneuver = 0;
+        String instruction = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    maneuver = reader.nextInt();
+                    break;
+                case "instruction":
+                    // The text of the arrival is never shown.
+                    if (maneuver == MANEUVER_ARRIVE) {
+                        reader.skipValue();
+                    } else {
+                        instruction = reader.nextString();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (maneuver != MANEUVER_ARRIVE) {
+            instructions.add(instruction);
+        }
+    }
+
+    /**
+     * Parse the location out of the maneuver object of a step.
+     *
+     * @param reader The reader positioned in front of the maneuver object.
+     * @return the latitude and longitude in E5 or null, if not available.
+     * @throws IOException if the stream could not be read.
+     */
+    private static int[] parseManeuverLocation(JsonReader reader) throws IOException {
+        int[] location = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("location") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                // Longitude first!
+                reader.beginArray();
+                double longitude = reader.nextDouble(), latitude = reader.nextDouble();
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+                location = new int[]{(int) Math.round(latitude * RouteGeometry.E5), (int) Math.round(longitude * RouteGeometry.E5)};
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return location;
+    }
+}
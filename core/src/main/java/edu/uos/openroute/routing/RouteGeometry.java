@@ -0,0 +1,134 @@
+package edu.uos.openroute.routing;
+
+import java.util.Arrays;
+
+/**
+ * The geometry of a route as a packed list of vertices.
+ * Latitude and longitude are stored interleaved as fixed-point numbers with five decimal places (E5), so no object is
+ * created per vertex. Points for rendering are created by {@code GeoPoints} in the app.
+ */
+public final class RouteGeometry {
+
+    // Factor for converting degrees into the fixed-point representation.
+    public static final double E5 = 1e5;
+
+    private int[] coordinates;
+    private int size;
+
+    /**
+     * Create an empty geometry.
+     *
+     * @param capacity The number of vertices which may be added without growing.
+     */
+    public RouteGeometry(int capacity) {
+        this.coordinates = new int[2 * Math.max(capacity, 1)];
+    }
+
+    /**
+     * Decode a polyline in the encoded polyline format with five decimal places as used by Open Route Service.
+     *
+     * @param polyline The encoded polyline.
+     * @return the decoded geometry.
+     * @throws IllegalArgumentException if the polyline is truncated.
+     */
+    public static RouteGeometry decode(CharSequence polyline) throws IllegalArgumentException {
+        // Each vertex requires at least two characters, usually about eight.
+        final int length = polyline.length();
+        RouteGeometry geometry = new RouteGeometry(length / 8);
+
+        int index = 0, latitude = 0, longitude = 0;
+        while (index < length) {
+            // Decode the latitude delta ...
+            int result = 0, shift = 0, chunk;
+            do {
+                if (index >= length) {
+                    throw new IllegalArgumentException("Polyline is truncated");
+                }
+                chunk = polyline.charAt(index++) - 63;
+                result |= (chunk & 0x1f) << shift;
+                shift += 5;
+            } while (chunk >= 0x20);
+            latitude += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            // ... and the longitude delta.
+            result = 0;
+            shift = 0;
+            do {
+                if (index >= length) {
+                    throw new IllegalArgumentException("Polyline is truncated");
+                }
+                chunk = polyline.charAt(index++) - 63;
+                result |= (chunk & 0x1f) << shift;
+                shift += 5;
+            } while (chunk >= 0x20);
+            longitude += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            geometry.add(latitude, longitude);
+        }
+        geometry.trimToSize();
+        return geometry;
+    }
+
+    /**
+     * Append a vertex.
+     *
+     * @param latitude  The latitude in E5.
+     * @param longitude The longitude in E5.
+     */
+    public void add(int latitude, int longitude) {
+        if (2 * size == coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+        }
+        coordinates[2 * size] = latitude;
+        coordinates[2 * size + 1] = longitude;
+        ++size;
+    }
+
+    /**
+     * Release the unused capacity.
+     */
+    public void trimToSize() {
+        if (coordinates.length > 2 * size) {
+            coordinates = Arrays.copyOf(coordinates, 2 * Math.max(size, 1));
+        }
+    }
+
+    /**
+     * Return the number of vertices.
+     *
+     * @return the number of vertices.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the backing array with latitude and longitude of all vertices interleaved in E5.
+     * Only the first 2 * size() entries are valid. The array must not be modified.
+     *
+     * @return the packed coordinates.
+     */
+    public int[] getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * Return the latitude of a vertex.
+     *
+     * @param index The index of the vertex.
+     * @return the latitude in E5.
+     */
+    public int getLatitudeE5(int index) {
+        return coordinates[2 * index];
+    }
+
+    /**
+     * Return the longitude of a vertex.
+     *
+     * @param index The index of the vertex.
+     * @return the longitude in E5.
+     */
+    public int getLongitudeE5(int index) {
+        return coordinates[2 * index + 1];
+    }
+}
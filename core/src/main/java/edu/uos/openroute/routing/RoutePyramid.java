@@ -0,0 +1,188 @@
+package edu.uos.openroute.routing;
+
+import java.util.Arrays;
+
+/**
+ * A level-of-detail pyramid of a route geometry: For a set of zoom bands, the geometry is simplified with the
+ * Douglas-Peucker algorithm so that the removed vertices are never more than about a pixel away from the drawn line.
+ */
+public class RoutePyramid {
+
+    /**
+     * The highest zoom level of each band. Above the last one, the full geometry is used.
+     */
+    public static final int[] BAND_ZOOM_LEVELS = {5, 8, 11, 14};
+
+    // Size of a tile in pixels, used to derive the tolerance of a zoom level.
+    private static final int TILE_SIZE = 256;
+
+    // The geometries ordered from the coarsest band to the full one.
+    private final RouteGeometry[] bands;
+
+    /**
+     * Create the pyramid. This might take a while for long routes and should not happen on the UI thread.
+     *
+     * @param geometry The full geometry of the route.
+     */
+    public RoutePyramid(RouteGeometry geometry) {
+        this.bands = new RouteGeometry[BAND_ZOOM_LEVELS.length + 1];
+        this.bands[BAND_ZOOM_LEVELS.length] = geometry;
+
+        // Simplify each band from the next finer one, which is much smaller than the full geometry.
+        double longitudeScale = Math.cos(Math.toRadians(RoutePyramid.meanLatitude(geometry)));
+        for (int band = BAND_ZOOM_LEVELS.length - 1; band >= 0; --band) {
+            double tolerance = RoutePyramid.getTolerance(BAND_ZOOM_LEVELS[band], longitudeScale);
+            this.bands[band] = RoutePyramid.simplify(this.bands[band + 1], tolerance, longitudeScale);
+        }
+    }
+
+    /**
+     * Calculate the size of a pixel in degrees of latitude. In the Mercator projection, a pixel spans the same
+     * longitudes everywhere, but a degree shrinks with cos(latitude) towards the poles - in both directions.
+     *
+     * @param zoomLevel      The zoom level.
+     * @param longitudeScale The cosine of the latitude of the route.
+     * @return the size of a pixel in E5 degrees of latitude.
+     */
+    public static double getTolerance(int zoomLevel, double longitudeScale) {
+        return longitudeScale * 360.0 * RouteGeometry.E5 / (TILE_SIZE * Math.pow(2, zoomLevel));
+    }
+
+    /**
+     * Simplify a geometry with the Douglas-Peucker algorithm.
+     *
+     * @param geometry       The geometry.
+     * @param tolerance      The maximal distance of a removed vertex towards the simplified line in E5 degrees of latitude.
+     * @param longitudeScale The factor converting longitudes into the scale of latitudes, i.e. cos(latitude).
+     * @return the simplified geometry.
+     */
+    public static RouteGeometry simplify(RouteGeometry geometry, double tolerance, double longitudeScale) {
+        final int size = geometry.size();
+        if (size < 3) {
+            return geometry;
+        }
+
+        final int[] coordinates = geometry.getCoordinates();
+        final double squaredTolerance = tolerance * tolerance;
+        boolean[] keep = new boolean[size];
+        keep[0] = keep[size - 1] = true;
+
+        // Process the ranges with an explicit stack instead of recursion, so long routes cannot overflow the call stack.
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = size - 1;
+        int kept = 2;
+        while (stackSize > 0) {
+            final int last = stack[--stackSize], first = stack[--stackSize];
+
+            // Find the vertex with the largest distance towards the line between first and last.
+            final double x1 = coordinates[2 * first + 1] * longitudeScale, y1 = coordinates[2 * first];
+            final double dx = coordinates[2 * last + 1] * longitudeScale - x1, dy = coordinates[2 * last] - y1;
+            final double squaredLength = dx * dx + dy * dy;
+            double maxDistance = -1;
+            int maxIndex = -1;
+            for (int i = first + 1; i < last; ++i) {
+                double px = coordinates[2 * i + 1] * longitudeScale - x1, py = coordinates[2 * i] - y1;
+                double distance;
+                if (squaredLength == 0) {
+                    distance = px * px + py * py;
+                } else {
+                    double t = Math.max(0, Math.min(1, (px * dx + py * dy) / squaredLength));
+                    double ex = px - t * dx, ey = py - t * dy;
+                    distance = ex * ex + ey * ey;
+                }
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    maxIndex = i;
+                }
+            }
+
+            // Keep it and process both halves if it is too far away.
+            if (maxDistance > squaredTolerance) {
+                keep[maxIndex] = true;
+                ++kept;
+                if (stackSize + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                if (maxIndex - first > 1) {
+                    stack[stackSize++] = first;
+                    stack[stackSize++] = maxIndex;
+                }
+                if (last - maxIndex > 1) {
+                    stack[stackSize++] = maxIndex;
+                    stack[stackSize++] = last;
+                }
+            }
+        }
+
+        RouteGeometry simplified = new RouteGeometry(kept);
+        for (int i = 0; i < size; ++i) {
+            if (keep[i]) {
+                simplified.add(coordinates[2 * i], coordinates[2 * i + 1]);
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Calculate the mean latitude of a geometry.
+     *
+     * @param geometry The geometry.
+     * @return the mean latitude in degrees.
+     */
+    private static double meanLatitude(RouteGeometry geometry) {
+        if (geometry.size() == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < geometry.size(); ++i) {
+            sum += geometry.getLatitudeE5(i);
+        }
+        return sum / geometry.size() / RouteGeometry.E5;
+    }
+
+    /**
+     * Return the number of bands, including the full geometry.
+     *
+     * @return the number of bands.
+     */
+    public int getBandCount() {
+        return bands.length;
+    }
+
+    /**
+     * Find the band suitable for a zoom level.
+     *
+     * @param zoomLevel The zoom level of the map.
+     * @return the index of the band.
+     */
+    public int getBand(double zoomLevel) {
+        for (int band = 0; band < BAND_ZOOM_LEVELS.length; ++band) {
+            if (zoomLevel <= BAND_ZOOM_LEVELS[band]) {
+                return band;
+            }
+        }
+        return BAND_ZOOM_LEVELS.length;
+    }
+
+    /**
+     * Return the geometry of a band.
+     *
+     * @param band The index of the band.
+     * @return the (simplified) geometry.
+     */
+    public RouteGeometry getGeometry(int band) {
+        return bands[band];
+    }
+
+    /**
+     * Return the number of vertices in a band.
+     *
+     * @param band The index of the band.
+     * @return the number of vertices.
+     */
+    public int getVertexCount(int band) {
+        return bands[band].size();
+    }
+}
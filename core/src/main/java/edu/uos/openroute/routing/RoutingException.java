@@ -0,0 +1,63 @@
+package edu.uos.openroute.routing;
+
+import java.io.IOException;
+
+/**
+ * An error while calculating a route. Besides the cause, it states whether sending the same request again might succeed.
+ */
+public class RoutingException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The status code used if the service did not answer at all.
+     */
+    public static final int NO_STATUS = -1;
+
+    private final int status;
+    private final boolean retryable;
+
+    /**
+     * Create an exception for an error which occurred before or while talking to the service.
+     *
+     * @param message   The description of the error.
+     * @param cause     The cause of the error.
+     * @param retryable True, if sending the request again might succeed.
+     */
+    public RoutingException(String message, Throwable cause, boolean retryable) {
+        super(message, cause);
+        this.status = NO_STATUS;
+        this.retryable = retryable;
+    }
+
+    /**
+     * Create an exception for an error reported by the service.
+     * Overload and server errors are retryable, all other ones are caused by the request itself.
+     *
+     * @param message The description of the error.
+     * @param status  The HTTP status code of the response.
+     */
+    public RoutingException(String message, int status) {
+        super(message);
+        this.status = status;
+        this.retryable = status == 429 || status >= 500;
+    }
+
+    /**
+     * Return the HTTP status code of the response.
+     *
+     * @return the status code or {@link #NO_STATUS}, if the service did not answer.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Return whether sending the same request again might succeed.
+     *
+     * @return true, if the error is temporary.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,143 @@
+package edu.uos.openroute.routing;
+
+import java.util.Arrays;
+
+/**
+ * The steps and legs of a route in parallel primitive arrays, laid out as in CompactRoute, from which the
+ * RoadNodes and RoadLegs of a road are only created once they are accessed. The arrays are shared and never modified.
+ */
+final class StepTable {
+
+    // The steps: Location (interleaved E5), vertex in the geometry, metrics, maneuver and instruction.
+    final int[] stepCoordinates, stepVertices;
+    final float[] stepLengths, stepDurations;
+    final byte[] stepManeuvers;
+    final InstructionTable instructions;
+
+    // The legs: First and last step and their metrics.
+    final int[] legStarts, legEnds;
+    final float[] legLengths, legDurations;
+
+    /**
+     * Create a table on top of existing arrays.
+     */
+    StepTable(int[] stepCoordinates, int[] stepVertices, float[] stepLengths, float[] stepDurations, byte[] stepManeuvers,
+              InstructionTable instructions, int[] legStarts, int[] legEnds, float[] legLengths, float[] legDurations) {
+        this.stepCoordinates = stepCoordinates;
+        this.stepVertices = stepVertices;
+        this.stepLengths = stepLengths;
+        this.stepDurations = stepDurations;
+        this.stepManeuvers = stepManeuvers;
+        this.instructions = instructions;
+        this.legStarts = legStarts;
+        this.legEnds = legEnds;
+        this.legLengths = legLengths;
+        this.legDurations = legDurations;
+    }
+
+    /**
+     * Return the number of steps.
+     *
+     * @return the number of steps.
+     */
+    int getStepCount() {
+        return this.stepVertices.length;
+    }
+
+    /**
+     * Return the number of legs.
+     *
+     * @return the number of legs.
+     */
+    int getLegCount() {
+        return this.legStarts.length;
+    }
+
+    /**
+     * Collects the steps and legs of a route while it is parsed, without their instructions.
+     */
+    static class Builder {
+        private int[] stepCoordinates = new int[32], stepVertices = new int[16];
+        private float[] stepLengths = new float[16], stepDurations = new float[16];
+        private byte[] stepManeuvers = new byte[16];
+        private int steps = 0;
+
+        private int[] legStarts = new int[4], legEnds = new int[4];
+        private float[] legLengths = new float[4], legDurations = new float[4];
+        private int legs = 0;
+
+        /**
+         * Return the number of steps added so far.
+         *
+         * @return the number of steps.
+         */
+        int getStepCount() {
+            return this.steps;
+        }
+
+        /**
+         * Append a step.
+         *
+         * @param latitude    The latitude of its start in E5.
+         * @param longitude   The longitude of its start in E5.
+         * @param vertex      The index of the vertex in the geometry where it starts.
+         * @param length      The length in kilometers.
+         * @param duration    The duration in seconds.
+         * @param maneuver    The maneuver type.
+         */
+        void addStep(int latitude, int longitude, int vertex, float length, float duration, int maneuver) {
+            if (this.steps == this.stepVertices.length) {
+                final int capacity = 2 * this.steps;
+                this.stepCoordinates = Arrays.copyOf(this.stepCoordinates, 2 * capacity);
+                this.stepVertices = Arrays.copyOf(this.stepVertices, capacity);
+                this.stepLengths = Arrays.copyOf(this.stepLengths, capacity);
+                this.stepDurations = Arrays.copyOf(this.stepDurations, capacity);
+                this.stepManeuvers = Arrays.copyOf(this.stepManeuvers, capacity);
+            }
+
+            this.stepCoordinates[2 * this.steps] = latitude;
+            this.stepCoordinates[2 * this.steps + 1] = longitude;
+            this.stepVertices[this.steps] = vertex;
+            this.stepLengths[this.steps] = length;
+            this.stepDurations[this.steps] = duration;
+            this.stepManeuvers[this.steps] = (byte) maneuver;
+            ++this.steps;
+        }
+
+        /**
+         * Append a leg.
+         *
+         * @param start    The index of its first step.
+         * @param end      The index of its last step.
+         * @param length   The length in kilometers.
+         * @param duration The duration in seconds.
+         */
+        void addLeg(int start, int end, float length, float duration) {
+            if (this.legs == this.legStarts.length) {
+                final int capacity = 2 * this.legs;
+                this.legStarts = Arrays.copyOf(this.legStarts, capacity);
+                this.legEnds = Arrays.copyOf(this.legEnds, capacity);
+                this.legLengths = Arrays.copyOf(this.legLengths, capacity);
+                this.legDurations = Arrays.copyOf(this.legDurations, capacity);
+            }
+            this.legStarts[this.legs] = start;
+            this.legEnds[this.legs] = end;
+            this.legLengths[this.legs] = length;
+            this.legDurations[this.legs] = duration;
+            ++this.legs;
+        }
+
+        /**
+         * Create the table with arrays of the exact size.
+         *
+         * @param instructions The instructions of the steps.
+         * @return the table.
+         */
+        StepTable build(InstructionTable instructions) {
+            return new StepTable(Arrays.copyOf(this.stepCoordinates, 2 * this.steps), Arrays.copyOf(this.stepVertices, this.steps),
+                    Arrays.copyOf(this.stepLengths, this.steps), Arrays.copyOf(this.stepDurations, this.steps),
+                    Arrays.copyOf(this.stepManeuvers, this.steps), instructions, Arrays.copyOf(this.legStarts, this.legs),
+                    Arrays.copyOf(this.legEnds, this.legs), Arrays.copyOf(this.legLengths, this.legs), Arrays.copyOf(this.legDurations, this.legs));
+        }
+    }
+}
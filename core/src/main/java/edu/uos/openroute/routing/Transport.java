@@ -0,0 +1,42 @@
+package edu.uos.openroute.routing;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+
+/**
+ * The way requests are sent to a routing service.
+ */
+public interface Transport {
+
+    /**
+     * Send a JSON request to the service and handle its response while it is streamed from the connection.
+     *
+     * @param endpoint The URL of the endpoint.
+     * @param apiKey   The API key for the service.
+     * @param body     The JSON request, UTF-8 encoded.
+     * @param handler  The handler of a successful response.
+     * @param <T>      The result of the handler.
+     * @return the result of the handler.
+     * @throws RoutingException if the service reported an error.
+     * @throws IOException      if the request failed otherwise or the handler was unable to read the response.
+     */
+    <T> T post(URL endpoint, String apiKey, byte[] body, ResponseHandler<T> handler) throws IOException;
+
+    /**
+     * Reads a successful response.
+     *
+     * @param <T> The result of the response.
+     */
+    interface ResponseHandler<T> {
+
+        /**
+         * Read the response.
+         *
+         * @param response The decoded body of the response. It belongs to the transport, which closes it afterwards.
+         * @return the result of the response.
+         * @throws IOException if the response could not be read.
+         */
+        T handle(Reader response) throws IOException;
+    }
+}
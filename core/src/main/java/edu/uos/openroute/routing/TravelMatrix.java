@@ -0,0 +1,108 @@
+package edu.uos.openroute.routing;
+
+import java.util.Arrays;
+
+/**
+ * Travel durations and distances between a set of origins and destinations, stored row-major in primitive arrays.
+ * Pairs the service could not connect are represented by NaN.
+ */
+public class TravelMatrix {
+
+    private final int origins, destinations;
+    private final float[] durations, distances;
+
+    /**
+     * Create an empty matrix where all the pairs are unknown.
+     *
+     * @param origins      The number of origins, i.e. rows.
+     * @param destinations The number of destinations, i.e. columns.
+     */
+    public TravelMatrix(int origins, int destinations) {
+        this.origins = origins;
+        this.destinations = destinations;
+        this.durations = new float[origins * destinations];
+        this.distances = new float[origins * destinations];
+        Arrays.fill(this.durations, Float.NaN);
+        Arrays.fill(this.distances, Float.NaN);
+    }
+
+    /**
+     * Return the number of origins.
+     *
+     * @return the number of rows.
+     */
+    public int getOriginCount() {
+        return origins;
+    }
+
+    /**
+     * Return the number of destinations.
+     *
+     * @return the number of columns.
+     */
+    public int getDestinationCount() {
+        return destinations;
+    }
+
+    /**
+     * Return the travel duration between an origin and a destination.
+     *
+     * @param origin      The index of the origin.
+     * @param destination The index of the destination.
+     * @return the duration in seconds or NaN, if not reachable.
+     */
+    public float getDuration(int origin, int destination) {
+        return durations[origin * destinations + destination];
+    }
+
+    /**
+     * Return the travel distance between an origin and a destination.
+     *
+     * @param origin      The index of the origin.
+     * @param destination The index of the destination.
+     * @return the distance in kilometers or NaN, if not reachable.
+     */
+    public float getDistance(int origin, int destination) {
+        return distances[origin * destinations + destination];
+    }
+
+    /**
+     * Return all durations in seconds, row-major. The array must not be modified.
+     *
+     * @return the durations.
+     */
+    public float[] getDurations() {
+        return durations;
+    }
+
+    /**
+     * Return all distances in kilometers, row-major. The array must not be modified.
+     *
+     * @return the distances.
+     */
+    public float[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Set the duration of a pair.
+     *
+     * @param origin      The index of the origin.
+     * @param destination The index of the destination.
+     * @param duration    The duration in seconds.
+     */
+    void setDuration(int origin, int destination, float duration) {
+        durations[origin * destinations + destination] = duration;
+    }
+
+    /**
+     * Set the distance of a pair.
+     *
+     * @param origin      The index of the origin.
+     * @param destination The index of the destination.
+     * @param distance    The distance in kilometers.
+     */
+    void setDistance(int origin, int destination, float distance) {
+        distances[origin * destinations + destination] = distance;
+    }
+}
@@ -0,0 +1,34 @@
+package edu.uos.openroute.util;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+
+/**
+ * Parsing of coordinates as entered by the user.
+ */
+public final class Coordinates {
+
+    private Coordinates() {
+    }
+
+    /**
+     * Parse latitude and longitude from two strings, supporting different decimal notation (i.e. ',' instead of '.' in German).
+     *
+     * @param latitude  The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     * @return latitude and longitude in degrees or null, if the strings do not represent a valid latitude or longitude.
+     */
+    public static double[] parse(String latitude, String longitude) {
+        NumberFormat formatter = NumberFormat.getInstance();
+        try {
+            double latitudeDegrees = formatter.parse(latitude).doubleValue();
+            double longitudeDegrees = formatter.parse(longitude).doubleValue();
+            if (Math.abs(latitudeDegrees) > 90.0 || Math.abs(longitudeDegrees) > 180.0) {
+                return null;
+            }
+            return new double[]{latitudeDegrees, longitudeDegrees};
+        } catch (ParseException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package edu.uos.openroute.util;
+
+/**
+ * Distance calculations on the earth working on primitive coordinates, suitable for many points at once.
+ * Coordinate arrays store latitude and longitude in degrees interleaved, i.e. {lat0, lon0, lat1, lon1, ...}.
+ * None of the methods allocates memory; results are written into arrays provided by the caller.
+ */
+public final class Geodesy {
+
+    /**
+     * The mean radius of the earth in kilometers.
+     */
+    public static final double EARTH_RADIUS = 6371.0088;
+
+    // The semi-major axis in kilometers and the flattening of the WGS 84 ellipsoid.
+    private static final double WGS84_A = 6378.137, WGS84_F = 1 / 298.257223563, WGS84_B = WGS84_A * (1 - WGS84_F);
+
+    private Geodesy() {
+    }
+
+    /**
+     * Calculate the great-circle distance between two points with the haversine formula.
+     * Unlike the spherical law of cosines, it stays precise for points only centimeters apart.
+     *
+     * @param latitude1  The latitude of the first point in degrees.
+     * @param longitude1 The longitude of the first point in degrees.
+     * @param latitude2  The latitude of the second point in degrees.
+     * @param longitude2 The longitude of the second point in degrees.
+     * @return the distance in kilometers.
+     */
+    public static double haversine(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1), phi2 = Math.toRadians(latitude2);
+        return Geodesy.toDistance(Geodesy.haversineTerm(phi1, Math.cos(phi1), phi2, Math.cos(phi2), Math.toRadians(longitude2 - longitude1)));
+    }
+
+    /**
+     * Calculate the distances from a single point to many points with the haversine formula.
+     *
+     * @param latitude    The latitude of the point in degrees.
+     * @param longitude   The longitude of the point in degrees.
+     * @param coordinates The interleaved coordinates of the other points.
+     * @param count       The number of other points.
+     * @param distances   The array receiving the distances in kilometers, at least count long.
+     */
+    public static void haversine(double latitude, double longitude, double[] coordinates, int count, double[] distances) {
+        final double phi = Math.toRadians(latitude), cosPhi = Math.cos(phi);
+        for (int i = 0; i < count; ++i) {
+            double otherPhi = Math.toRadians(coordinates[2 * i]);
+            double term = Geodesy.haversineTerm(phi, cosPhi, otherPhi, Math.cos(otherPhi), Math.toRadians(coordinates[2 * i + 1] - longitude));
+            distances[i] = Geodesy.toDistance(term);
+        }
+    }
+
+    /**
+     * Calculate the distances between all pairs of origins and destinations with the haversine formula.
+     *
+     * @param origins           The interleaved coordinates of the origins.
+     * @param originCount       The number of origins.
+     * @param destinations      The interleaved coordinates of the destinations.
+     * @param destinationCount  The number of destinations.
+     * @param distances         The array receiving the distances in kilometers row-major, a row per origin.
+     */
+    public static void haversine(double[] origins, int originCount, double[] destinations, int destinationCount, double[] distances) {
+        for (int origin = 0; origin < originCount; ++origin) {
+            final double phi = Math.toRadians(origins[2 * origin]), cosPhi = Math.cos(phi), lambda = origins[2 * origin + 1];
+            final int row = origin * destinationCount;
+            for (int destination = 0; destination < destinationCount; ++destination) {
+                double otherPhi = Math.toRadians(destinations[2 * destination]);
+                double term = Geodesy.haversineTerm(phi, cosPhi, otherPhi, Math.cos(otherPhi), Math.toRadians(destinations[2 * destination + 1] - lambda));
+                distances[row + destination] = Geodesy.toDistance(term);
+            }
+        }
+    }
+
+    /**
+     * Calculate the distance between two points on the WGS 84 ellipsoid with the inverse formula of Vincenty.
+     * It is precise up to millimeters but slower than {@link #haversine(double, double, double, double)}. For nearly
+     * antipodal points, where the iteration does not converge, the great-circle distance is returned.
+     *
+     * @param latitude1  The latitude of the first point in degrees.
+     * @param longitude1 The longitude of the first point in degrees.
+     * @param latitude2  The latitude of the second point in degrees.
+     * @param longitude2 The longitude of the second point in degrees.
+     * @return the distance in kilometers.
+     */
+    public static double vincenty(double latitude1, double longitude1, double latitude2, double longitude2) {
+        final double l = Math.toRadians(longitude2 - longitude1);
+        final double u1 = Math.atan((1 - WGS84_F) * Math.tan(Math.toRadians(latitude1)));
+        final double u2 = Math.atan((1 - WGS84_F) * Math.tan(Math.toRadians(latitude2)));
+        final double sinU1 = Math.sin(u1), cosU1 = Math.cos(u1), sinU2 = Math.sin(u2), cosU2 = Math.cos(u2);
+
+        double lambda = l, previousLambda;
+        double sinSigma, cosSigma, sigma, cosSquaredAlpha, cos2SigmaM;
+        int iterations = 0;
+        do {
+            double sinLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+            double a = cosU2 * sinLambda, b = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = Math.sqrt(a * a + b * b);
+            if (sinSigma == 0) {
+                // Both points are the same
+                return 0;
+            }
+            cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            cosSquaredAlpha = 1 - sinAlpha * sinAlpha;
+            cos2SigmaM = cosSquaredAlpha != 0 ? cosSigma - 2 * sinU1 * sinU2 / cosSquaredAlpha : 0;
+            double c = WGS84_F / 16 * cosSquaredAlpha * (4 + WGS84_F * (4 - 3 * cosSquaredAlpha));
+            previousLambda = lambda;
+            lambda = l + (1 - c) * WGS84_F * sinAlpha * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+        } while (Math.abs(lambda - previousLambda) > 1e-12 && ++iterations < 200);
+
+        if (iterations >= 200) {
+            return Geodesy.haversine(latitude1, longitude1, latitude2, longitude2);
+        }
+
+        double uSquared = cosSquaredAlpha * (WGS84_A * WGS84_A - WGS84_B * WGS84_B) / (WGS84_B * WGS84_B);
+        double a = 1 + uSquared / 16384 * (4096 + uSquared * (-768 + uSquared * (320 - 175 * uSquared)));
+        double b = uSquared / 1024 * (256 + uSquared * (-128 + uSquared * (74 - 47 * uSquared)));
+        double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                - b / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return WGS84_B * a * (sigma - deltaSigma);
+    }
+
+    /**
+     * Find the points nearest to a location.
+     *
+     * @param latitude    The latitude of the location in degrees.
+     * @param longitude   The longitude of the location in degrees.
+     * @param coordinates The interleaved coordinates of the points.
+     * @param count       The number of points.
+     * @param indices     The array receiving the indices of the nearest points, nearest first. Its length is the number of
+     *                    points searched for.
+     * @param distances   The array receiving the distances of the nearest points in kilometers, at least as long as indices.
+     * @return the number of points found, which is less than requested only if there are less points.
+     */
+    public static int nearest(double latitude, double longitude, double[] coordinates, int count, int[] indices, double[] distances) {
+        final double phi = Math.toRadians(latitude), cosPhi = Math.cos(phi);
+        final int k = Math.min(indices.length, count);
+
+        // Keep the k best points sorted by their haversine term, which grows monotonically with the distance.
+        int found = 0;
+        for (int i = 0; i < count; ++i) {
+            double otherPhi = Math.toRadians(coordinates[2 * i]);
+            double term = Geodesy.haversineTerm(phi, cosPhi, otherPhi, Math.cos(otherPhi), Math.toRadians(coordinates[2 * i + 1] - longitude));
+            if (found == k && term >= distances[k - 1]) {
+                continue;
+            }
+
+            int position = found < k ? found++ : k - 1;
+            while (position > 0 && distances[position - 1] > term) {
+                distances[position] = distances[position - 1];
+                indices[position] = indices[position - 1];
+                --position;
+            }
+            distances[position] = term;
+            indices[position] = i;
+        }
+
+        for (int i = 0; i < found; ++i) {
+            distances[i] = Geodesy.toDistance(distances[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Calculate the haversine of the central angle between two points.
+     *
+     * @param phi1        The latitude of the first point in radians.
+     * @param cosPhi1     The cosine of the first latitude.
+     * @param phi2        The latitude of the second point in radians.
+     * @param cosPhi2     The cosine of the second latitude.
+     * @param deltaLambda The difference of the longitudes in radians.
+     * @return the haversine term, between 0 and 1.
+     */
+    private static double haversineTerm(double phi1, double cosPhi1, double phi2, double cosPhi2, double deltaLambda) {
+        double sinHalfPhi = Math.sin((phi2 - phi1) / 2), sinHalfLambda = Math.sin(deltaLambda / 2);
+        return Math.min(1, sinHalfPhi * sinHalfPhi + cosPhi1 * cosPhi2 * sinHalfLambda * sinHalfLambda);
+    }
+
+    /**
+     * Convert the haversine term into a distance.
+     *
+     * @param term The haversine term.
+     * @return the distance in kilometers.
+     */
+    private static double toDistance(double term) {
+        return 2 * EARTH_RADIUS * Math.atan2(Math.sqrt(term), Math.sqrt(1 - term));
+    }
+}
@@ -0,0 +1,267 @@
+package edu.uos.openroute.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical calls running at the same time: While a call for a key is in flight, later callers with the same key
+ * do not start their own call but wait for the running one and share its result.
+ * <p>
+ * The call runs on an executor and not on the thread of any caller, so it is detached from the cancellation and the
+ * deadline of each of them: A caller which stops waiting does not affect the others. Only once all of them stopped
+ * waiting, the call is cancelled by interrupting it.
+ *
+ * @param <K> The key identifying identical calls.
+ * @param <V> The result of a call.
+ */
+public class SingleFlight<K, V> {
+
+    private final Executor executor;
+    private final ConcurrentHashMap<K, Call> calls = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong(), coalesced = new AtomicLong();
+
+    /**
+     * Create a new instance running the calls on threads of its own, which end once they are idle for a minute.
+     */
+    public SingleFlight() {
+        this(SingleFlight.createExecutor());
+    }
+
+    /**
+     * Create a new instance running the calls on a specific executor.
+     *
+     * @param executor The executor, which should not queue calls behind others.
+     */
+    public SingleFlight(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Create the executor for the calls, whose threads do not keep the virtual machine alive.
+     *
+     * @return the executor.
+     */
+    private static ExecutorService createExecutor() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SingleFlight");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Execute a call or join an identical one which is already running, and wait for its result.
+     * If the current thread is interrupted, only it stops waiting.
+     *
+     * @param key  The key identifying the call.
+     * @param call The actual call.
+     * @return the result of the call.
+     * @throws InterruptedException if the current thread was interrupted while waiting.
+     * @throws ExecutionException   if the call failed. All callers waiting for it receive the same exception.
+     */
+    public V execute(K key, Callable<V> call) throws InterruptedException, ExecutionException {
+        Future<V> result = this.join(key, call);
+        try {
+            return result.get();
+        } finally {
+            result.cancel(false);
+        }
+    }
+
+    /**
+     * Execute a call or join an identical one which is already running, without waiting for its result.
+     * <p>
+     * The returned future belongs to the current caller alone: Cancelling it only stops this caller from waiting, which
+     * cancels the call itself if no other caller is waiting for it anymore. A caller has to cancel its future if it
+     * stops waiting before the result is available, e.g. on a timeout or an interrupt.
+     *
+     * @param key  The key identifying the call.
+     * @param call The actual call.
+     * @return the future of the caller.
+     */
+    public Future<V> join(K key, Callable<V> call) {
+        while (true) {
+            Call created = new Call(key, call);
+            Call running = calls.putIfAbsent(key, created);
+
+            if (running == null) {
+                // We are the first one: Start the call, which removes itself from the running ones once done
+                executed.incrementAndGet();
+                executor.execute(created);
+                return new Waiter(created);
+            } else if (running.join()) {
+                coalesced.incrementAndGet();
+                return new Waiter(running);
+            }
+
+            // All callers of the running call stopped waiting just now and it is cancelled. Start a new one.
+            calls.remove(key, running);
+        }
+    }
+
+    /**
+     * Return the number of calls which were actually executed.
+     *
+     * @return the number of executed calls.
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Return the number of callers which joined a running call instead of executing their own.
+     *
+     * @return the number of coalesced callers.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * A call shared by all callers waiting for it.
+     */
+    private class Call extends FutureTask<V> {
+        private final K key;
+        private int waiting = 1;
+
+        /**
+         * Create a new call, which its creator already waits for.
+         *
+         * @param key  The key identifying the call.
+         * @param call The actual call.
+         */
+        Call(K key, Callable<V> call) {
+            super(call);
+            this.key = key;
+        }
+
+        /**
+         * Add a caller waiting for the result.
+         *
+         * @return false, if the call was already cancelled as nobody waited for it anymore.
+         */
+        synchronized boolean join() {
+            if (this.isCancelled()) {
+                return false;
+            }
+            ++this.waiting;
+            return true;
+        }
+
+        /**
+         * Remove a caller which stopped waiting for the result and cancel the call if it was the last one.
+         */
+        synchronized void leave() {
+            if (--this.waiting == 0 && !this.isDone()) {
+                this.cancel(true);
+            }
+            this.notifyAll();
+        }
+
+        @Override
+        protected void done() {
+            // Ensure later callers start a new call - independent of success.
+            calls.remove(this.key, this);
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The view of a single caller on a shared call.
+     */
+    private class Waiter implements Future<V> {
+        private final Call call;
+        private boolean left = false;
+
+        /**
+         * Create a new view.
+         *
+         * @param call The shared call, which the caller already joined.
+         */
+        Waiter(Call call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this.call) {
+                if (this.left || this.call.isDone()) {
+                    return false;
+                }
+                this.left = true;
+                this.call.leave();
+                return true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (this.call) {
+                return this.left;
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            synchronized (this.call) {
+                return this.left || this.call.isDone();
+            }
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            synchronized (this.call) {
+                while (!this.left && !this.call.isDone()) {
+                    this.call.wait();
+                }
+            }
+            return this.result();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (this.call) {
+                for (long remaining = unit.toNanos(timeout); !this.left && !this.call.isDone(); remaining = deadline - System.nanoTime()) {
+                    if (remaining <= 0) {
+                        throw new TimeoutException();
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this.call, remaining);
+                }
+            }
+            return this.result();
+        }
+
+        /**
+         * Return the result of the call once this caller stopped waiting.
+         *
+         * @return the result.
+         * @throws InterruptedException if the current thread was interrupted.
+         * @throws ExecutionException   if the call failed.
+         */
+        private V result() throws InterruptedException, ExecutionException {
+            synchronized (this.call) {
+                if (this.left) {
+                    throw new CancellationException();
+                }
+            }
+            return this.call.get();
+        }
+    }
+}
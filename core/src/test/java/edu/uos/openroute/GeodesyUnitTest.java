@@ -0,0 +1,57 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.util.Geodesy;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GeodesyUnitTest {
+
+    @Test
+    public void testShortDistance() {
+        // Ten centimeters northwards
+        double distance = Geodesy.haversine(49.41461, 8.681495, 49.41461 + 0.1 / 111194.9, 8.681495);
+        assertEquals(0.0001, distance, 1e-9);
+        assertEquals(0, Geodesy.haversine(49.41461, 8.681495, 49.41461, 8.681495), 0);
+    }
+
+    @Test
+    public void testVincenty() {
+        // Flinders Peak to Buninyong, the reference example of Vincenty
+        double distance = Geodesy.vincenty(-37.95103342, 144.42486789, -37.65282114, 143.92649554);
+        assertEquals(54.972271, distance, 1e-6);
+        assertEquals(distance, Geodesy.haversine(-37.95103342, 144.42486789, -37.65282114, 143.92649554), 0.2);
+    }
+
+    @Test
+    public void testBatch() {
+        double[] origins = {49.41461, 8.681495, 52.52, 13.405};
+        double[] destinations = {49.420318, 8.687872, 48.1351, 11.582, 52.52, 13.405};
+        double[] matrix = new double[6];
+        Geodesy.haversine(origins, 2, destinations, 3, matrix);
+
+        double[] row = new double[3];
+        Geodesy.haversine(52.52, 13.405, destinations, 3, row);
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(Geodesy.haversine(49.41461, 8.681495, destinations[2 * i], destinations[2 * i + 1]), matrix[i], 1e-12);
+            assertEquals(row[i], matrix[3 + i], 1e-12);
+        }
+        assertEquals(0, matrix[5], 0);
+    }
+
+    @Test
+    public void testNearest() {
+        double[] points = {52.52, 13.405, 49.420318, 8.687872, 48.1351, 11.582, 49.41461, 8.681495};
+        int[] indices = new int[3];
+        double[] distances = new double[3];
+        assertEquals(3, Geodesy.nearest(49.4, 8.7, points, 4, indices, distances));
+        assertArrayEquals(new int[]{3, 1, 2}, indices);
+        assertEquals(Geodesy.haversine(49.4, 8.7, 49.41461, 8.681495), distances[0], 1e-12);
+
+        // Asking for more points than available
+        indices = new int[8];
+        distances = new double[8];
+        assertEquals(4, Geodesy.nearest(49.4, 8.7, points, 4, indices, distances));
+        assertEquals(0, indices[3]);
+    }
+}
@@ -0,0 +1,73 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.OffRouteDetector;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffRouteDetectorUnitTest {
+
+    @Test
+    public void testHysteresis() {
+        OffRouteDetector detector = new OffRouteDetector(50, 25, 3, 10000, 40000);
+
+        // A single bad location does not count, neither do inaccurate ones
+        assertFalse(detector.update(200, 5, 0));
+        assertFalse(detector.update(10, 5, 1000));
+        assertFalse(detector.update(200, 100, 2000));
+        assertFalse(detector.update(200, 100, 3000));
+        assertFalse(detector.isOffRoute());
+
+        // Locations in between both thresholds or inaccurate ones break the row
+        assertFalse(detector.update(80, 5, 3100));
+        assertFalse(detector.update(80, 5, 3200));
+        assertFalse(detector.update(40, 5, 3300));
+        assertFalse(detector.update(80, 5, 3400));
+        assertFalse(detector.update(80, 5, 3500));
+        assertFalse(detector.update(200, 100, 3600));
+        assertFalse(detector.update(80, 5, 3700));
+        assertFalse(detector.isOffRoute());
+        assertFalse(detector.update(10, 5, 3800));
+
+        // Three far locations in a row leave the route
+        assertFalse(detector.update(80, 5, 4000));
+        assertFalse(detector.update(90, 5, 5000));
+        assertTrue(detector.update(100, 5, 6000));
+        assertTrue(detector.isOffRoute());
+        detector.onRerouting(6000);
+
+        // Between both thresholds, the user stays off the route
+        assertFalse(detector.update(40, 5, 7000));
+        assertTrue(detector.isOffRoute());
+        assertFalse(detector.update(20, 5, 8000));
+        assertFalse(detector.isOffRoute());
+    }
+
+    @Test
+    public void testRateLimit() {
+        OffRouteDetector detector = new OffRouteDetector(50, 25, 1, 10000, 40000);
+        assertTrue(detector.update(100, 0, 0));
+
+        // Only started recalculations use up the rate limit, not those which are due while another one is running
+        assertTrue(detector.update(100, 0, 1000));
+        detector.onRerouting(1000);
+
+        // The interval doubles while the user keeps being off the route
+        assertFalse(detector.update(100, 0, 10999));
+        assertTrue(detector.update(100, 0, 11000));
+        detector.onRerouting(11000);
+        assertFalse(detector.update(100, 0, 30999));
+        assertTrue(detector.update(100, 0, 31000));
+        detector.onRerouting(31000);
+        assertTrue(detector.update(100, 0, 71000));
+        detector.onRerouting(71000);
+        assertFalse(detector.update(100, 0, 110999));
+        assertTrue(detector.update(100, 0, 111000));
+        detector.onRerouting(111000);
+
+        // A new road is not left before being far away again
+        detector.onRerouted();
+        assertFalse(detector.update(40, 0, 200000));
+        assertTrue(detector.update(100, 0, 200000));
+    }
+}
@@ -0,0 +1,66 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.OsmImporter;
+import edu.uos.openroute.routing.RoadGraph;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class OsmImporterUnitTest {
+
+    private static final String EXTRACT = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version='0.6'>\n"
+            + "  <node id='1' lat='52.0' lon='8.0'/>\n"
+            + "  <node id='2' lat='52.001' lon='8.0'/>\n"
+            + "  <node id='3' lat='52.002' lon='8.0'/>\n"
+            + "  <node id='4' lat='52.002' lon='8.001'><tag k='amenity' v='cafe'/></node>\n"
+            + "  <way id='10'><nd ref='1'/><nd ref='2'/><nd ref='3'/><tag k='highway' v='residential'/></way>\n"
+            + "  <way id='11'><nd ref='3'/><nd ref='4'/><tag k='highway' v='primary'/><tag k='oneway' v='-1'/></way>\n"
+            + "  <way id='12'><nd ref='1'/><nd ref='4'/><tag k='building' v='yes'/></way>\n"
+            + "  <way id='13'><nd ref='2'/><nd ref='99'/><tag k='highway' v='footway'/></way>\n"
+            + "</osm>\n";
+
+    private static RoadGraph read(String extract) throws IOException {
+        File file = File.createTempFile("osm", ".graph");
+        file.deleteOnExit();
+        OsmImporter.read(new ByteArrayInputStream(extract.getBytes("UTF-8"))).write(file);
+        return RoadGraph.open(file);
+    }
+
+    @Test
+    public void testImport() throws IOException {
+        RoadGraph graph = OsmImporterUnitTest.read(EXTRACT);
+
+        // Only the nodes of roads are added, in the order of their first use
+        assertEquals(4, graph.getNodeCount());
+        assertEquals(5200000, graph.getLatitudeE5(0));
+        assertEquals(800100, graph.getLongitudeE5(3));
+
+        // Both roads are split at their shape points, the building and the road to a missing node are skipped
+        assertEquals(6, graph.getEdgeCount());
+        for (int edge = graph.getEdgeStart(0); edge < graph.getEdgeEnd(0); ++edge) {
+            assertEquals(1, graph.getTarget(edge));
+            assertEquals(RoadGraph.RESIDENTIAL, graph.getRoadClass(edge));
+            assertEquals(111.2, graph.getLength(edge), 0.5);
+        }
+
+        // The reversed one-way road may only be used from its last node
+        for (int edge = graph.getEdgeStart(3); edge < graph.getEdgeEnd(3); ++edge) {
+            assertEquals(2, graph.getTarget(edge));
+            assertEquals(RoadGraph.PRIMARY, graph.getRoadClass(edge));
+            assertFalse(graph.isAgainstOneway(edge));
+        }
+        for (int edge = graph.getEdgeStart(2); edge < graph.getEdgeEnd(2); ++edge) {
+            assertEquals(graph.getTarget(edge) == 3, graph.isAgainstOneway(edge));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformed() throws IOException {
+        OsmImporterUnitTest.read("<osm><node id='1' lat='north' lon='8.0'/></osm>");
+    }
+}
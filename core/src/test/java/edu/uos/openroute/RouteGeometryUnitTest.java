@@ -0,0 +1,25 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.RouteGeometry;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteGeometryUnitTest {
+    @Test
+    public void testDecode() {
+        RouteGeometry geometry = RouteGeometry.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        assertEquals(3, geometry.size());
+        assertEquals(3850000, geometry.getLatitudeE5(0));
+        assertEquals(-12020000, geometry.getLongitudeE5(0));
+        assertEquals(4070000, geometry.getLatitudeE5(1));
+        assertEquals(-12095000, geometry.getLongitudeE5(1));
+        assertEquals(4325200, geometry.getLatitudeE5(2));
+        assertEquals(-12645300, geometry.getLongitudeE5(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        RouteGeometry.decode("_p~iF~ps|U_ulL");
+    }
+}
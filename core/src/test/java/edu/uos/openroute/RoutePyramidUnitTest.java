@@ -0,0 +1,56 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.routing.RouteGeometry;
+import edu.uos.openroute.routing.RoutePyramid;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RoutePyramidUnitTest {
+    @Test
+    public void testSimplify() {
+        // A straight line with a single spike in the middle
+        RouteGeometry geometry = new RouteGeometry(101);
+        for (int i = 0; i <= 100; ++i) {
+            geometry.add(i == 50 ? 1000 : 0, 100 * i);
+        }
+
+        // Only the endpoints, the spike and its base remain
+        RouteGeometry simplified = RoutePyramid.simplify(geometry, 10, 1);
+        assertEquals(5, simplified.size());
+        assertEquals(1000, simplified.getLatitudeE5(2));
+        assertEquals(2, RoutePyramid.simplify(geometry, 2000, 1).size());
+    }
+
+    @Test
+    public void testBands() {
+        RouteGeometry geometry = new RouteGeometry(10000);
+        for (int i = 0; i < 10000; ++i) {
+            geometry.add((int) (5000000 + 1000 * Math.sin(i / 100.0)), 800000 + 10 * i);
+        }
+
+        RoutePyramid pyramid = new RoutePyramid(geometry);
+        assertEquals(10000, pyramid.getVertexCount(pyramid.getBand(18)));
+        for (int band = 1; band < pyramid.getBandCount(); ++band) {
+            assertTrue(pyramid.getVertexCount(band - 1) <= pyramid.getVertexCount(band));
+        }
+        assertTrue(pyramid.getVertexCount(pyramid.getBand(3)) < 100);
+    }
+
+    @Test
+    public void testHighLatitude() {
+        // A spike of less than a pixel at the equator, but more than a pixel at 60 degrees, where a pixel is half as large
+        int spike = (int) Math.ceil(0.8 * RoutePyramid.getTolerance(14, 1));
+        assertEquals(0.5 * RoutePyramid.getTolerance(14, 1), RoutePyramid.getTolerance(14, 0.5), 1e-9);
+
+        RouteGeometry equator = new RouteGeometry(3), north = new RouteGeometry(3);
+        for (int i = 0; i < 3; ++i) {
+            equator.add(i == 1 ? spike : 0, 1000 * i);
+            north.add(6000000 + (i == 1 ? spike : 0), 1000 * i);
+        }
+        RoutePyramid pyramid = new RoutePyramid(equator);
+        assertEquals(2, pyramid.getVertexCount(pyramid.getBand(14)));
+        pyramid = new RoutePyramid(north);
+        assertEquals(3, pyramid.getVertexCount(pyramid.getBand(14)));
+    }
+}
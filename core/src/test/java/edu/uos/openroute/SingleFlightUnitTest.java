@@ -0,0 +1,162 @@
+package edu.uos.openroute;
+
+import edu.uos.openroute.util.SingleFlight;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightUnitTest {
+    @Test
+    public void testCoalescing() throws Exception {
+        final SingleFlight<String, Integer> flight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Callable<Integer> work = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                started.countDown();
+                release.await();
+                return calls.incrementAndGet();
+            }
+        };
+        Callable<Integer> caller = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return flight.execute("key", work);
+            }
+        };
+
+        // Start the second caller only once the first one is in flight
+        Future<Integer> first = executor.submit(caller);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Integer> second = executor.submit(caller);
+        while (flight.getCoalescedCount() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertEquals(1, (int) first.get());
+        assertEquals(1, (int) second.get());
+        assertEquals(1, calls.get());
+        executor.shutdown();
+
+        // Once done, a new call is executed again
+        assertEquals(2, (int) flight.execute("key", work));
+        assertEquals(2, flight.getExecutedCount());
+    }
+
+    @Test
+    public void testWaiterStopsAlone() throws Exception {
+        final SingleFlight<String, Integer> flight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        Callable<Integer> work = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    throw e;
+                }
+                return 42;
+            }
+        };
+
+        Future<Integer> first = flight.join("key", work), second = flight.join("key", work);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The first caller gives up, first on its deadline and then for good, while the second one still gets the result
+        try {
+            first.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException expected) {
+            assertTrue(first.cancel(false));
+        }
+        assertTrue(first.isCancelled());
+        try {
+            first.get();
+            fail();
+        } catch (CancellationException expected) {
+            // Only this caller stopped waiting
+        }
+        release.countDown();
+        assertEquals(42, (int) second.get(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+        assertEquals(1, flight.getExecutedCount());
+    }
+
+    @Test
+    public void testAbandonedCall() throws Exception {
+        final SingleFlight<String, Integer> flight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1), interrupted = new CountDownLatch(1);
+        Callable<Integer> blocking = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return 0;
+            }
+        };
+
+        // Once nobody waits for the call anymore, it is interrupted
+        Future<Integer> first = flight.join("key", blocking), second = flight.join("key", blocking);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        first.cancel(false);
+        second.cancel(false);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        // A later caller starts a new call instead of joining the cancelled one
+        assertEquals(42, (int) flight.execute("key", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 42;
+            }
+        }));
+        assertEquals(2, flight.getExecutedCount());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        try {
+            flight.execute("key", new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    throw new IllegalStateException("failed");
+                }
+            });
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+
+        // The failed call must not block the key
+        assertEquals(42, (int) flight.execute("key", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 42;
+            }
+        }));
+    }
+}